@@ -0,0 +1,36 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.push;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import org.whispersystems.textsecuregcm.storage.Account;
+
+/**
+ * A stand-in for {@link PushNotificationManager} that counts "new message" notifications instead of sending them.
+ */
+public class InMemoryPushNotificationManager extends PushNotificationManager {
+
+  private final LongAdder newMessageNotifications = new LongAdder();
+
+  public InMemoryPushNotificationManager() {
+    super(null, null, null, null, null, null);
+  }
+
+  @Override
+  public CompletableFuture<Optional<SendPushNotificationResult>> sendNewMessageNotification(final Account destination,
+      final byte destinationDeviceId,
+      final boolean urgent) {
+
+    newMessageNotifications.increment();
+    return CompletableFuture.completedFuture(Optional.empty());
+  }
+
+  public long getNewMessageNotifications() {
+    return newMessageNotifications.sum();
+  }
+}
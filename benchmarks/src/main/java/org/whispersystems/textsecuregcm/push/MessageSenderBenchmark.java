@@ -0,0 +1,148 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.push;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.InvalidMessageException;
+import org.signal.libsignal.protocol.InvalidVersionException;
+import org.signal.libsignal.protocol.SealedSenderMultiRecipientMessage;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.controllers.MultiRecipientMismatchedDevicesException;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
+import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
+import org.whispersystems.textsecuregcm.identity.ServiceIdentifier;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.BenchmarkEnvelopes;
+import org.whispersystems.textsecuregcm.storage.InMemoryMessagesCache;
+import org.whispersystems.textsecuregcm.storage.InMemoryMessagesDynamoDb;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
+import org.whispersystems.textsecuregcm.tests.util.FakeDynamicConfigurationManager;
+import org.whispersystems.textsecuregcm.tests.util.MultiRecipientMessageHelper;
+import org.whispersystems.textsecuregcm.tests.util.SynchronousExecutorService;
+import org.whispersystems.textsecuregcm.tests.util.TestRecipient;
+
+/**
+ * Measures the server-side cost of accepting messages for delivery, from content length validation through insertion
+ * into (in-memory stand-ins for) message queues.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessageSenderBenchmark {
+
+  @Param({"1", "100", "1000"})
+  private int recipientCount;
+
+  @Param({"3"})
+  private int devicesPerRecipient;
+
+  @Param({"4096"})
+  private int contentSize;
+
+  @Param({"true", "false"})
+  private boolean destinationDevicesPresent;
+
+  private MessageSender messageSender;
+
+  private List<MessageProtos.Envelope> individualMessages;
+
+  private SealedSenderMultiRecipientMessage multiRecipientMessage;
+  private Map<SealedSenderMultiRecipientMessage.Recipient, Account> resolvedRecipients;
+
+  @Setup
+  public void setUp() throws IOException, InvalidMessageException, InvalidVersionException {
+    final MessagesManager messagesManager = new MessagesManager(new InMemoryMessagesDynamoDb(),
+        new InMemoryMessagesCache(destinationDevicesPresent),
+        // Reports are only stored for messages with a known sender; all of the messages sent here are sealed-sender
+        null,
+        new SynchronousExecutorService(),
+        Clock.systemUTC());
+
+    messageSender = new MessageSender(messagesManager,
+        new InMemoryPushNotificationManager(),
+        new ExperimentEnrollmentManager(new FakeDynamicConfigurationManager<>(new DynamicConfiguration())));
+
+    individualMessages = new ArrayList<>(devicesPerRecipient);
+
+    for (int i = 0; i < devicesPerRecipient; i++) {
+      individualMessages.add(BenchmarkEnvelopes.generateEnvelope(contentSize, true));
+    }
+
+    final List<TestRecipient> testRecipients = new ArrayList<>(recipientCount);
+    final Map<UUID, Account> accountsByIdentifier = new HashMap<>(recipientCount);
+
+    for (int i = 0; i < recipientCount; i++) {
+      final Account account = new Account();
+      account.setUuid(UUID.randomUUID());
+
+      final byte[] deviceIds = new byte[devicesPerRecipient];
+      final int[] registrationIds = new int[devicesPerRecipient];
+
+      for (int d = 0; d < devicesPerRecipient; d++) {
+        deviceIds[d] = (byte) (d + 1);
+        registrationIds[d] = ThreadLocalRandom.current().nextInt(1, 0x3fff);
+
+        account.addDevice(DevicesHelper.createDevice(deviceIds[d], 0, registrationIds[d]));
+      }
+
+      final byte[] perRecipientKeyMaterial = new byte[48];
+      ThreadLocalRandom.current().nextBytes(perRecipientKeyMaterial);
+
+      testRecipients.add(new TestRecipient(new AciServiceIdentifier(account.getUuid()), deviceIds, registrationIds,
+          perRecipientKeyMaterial));
+
+      accountsByIdentifier.put(account.getUuid(), account);
+    }
+
+    multiRecipientMessage = SealedSenderMultiRecipientMessage.parse(
+        MultiRecipientMessageHelper.generateMultiRecipientMessage(testRecipients, contentSize));
+
+    resolvedRecipients = new HashMap<>(recipientCount);
+    multiRecipientMessage.getRecipients().forEach((serviceId, recipient) ->
+        resolvedRecipients.put(recipient,
+            accountsByIdentifier.get(ServiceIdentifier.fromLibsignal(serviceId).uuid())));
+  }
+
+  @Benchmark
+  public void validateIndividualMessageContentLength() throws MessageTooLargeException {
+    MessageSender.validateIndividualMessageContentLength(individualMessages, false, null);
+  }
+
+  @Benchmark
+  public void sendMultiRecipientMessage() throws MultiRecipientMismatchedDevicesException, MessageTooLargeException {
+    messageSender.sendMultiRecipientMessage(multiRecipientMessage,
+        resolvedRecipients,
+        System.currentTimeMillis(),
+        false,
+        false,
+        true,
+        null).join();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.google.protobuf.ByteString;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
+
+/**
+ * Generates envelopes that resemble the messages the server handles in production.
+ */
+public final class BenchmarkEnvelopes {
+
+  private BenchmarkEnvelopes() {
+  }
+
+  /**
+   * Generates an "expanded" envelope (i.e. with string representations of UUID-like fields) like the ones produced by
+   * {@code MessageController}.
+   *
+   * @param contentSize the size, in bytes, of the (random) envelope content
+   * @param sealedSender if {@code true}, the envelope will not have any sender information
+   *
+   * @return a new, randomly-generated envelope
+   */
+  public static MessageProtos.Envelope generateEnvelope(final int contentSize, final boolean sealedSender) {
+    final byte[] content = new byte[contentSize];
+    ThreadLocalRandom.current().nextBytes(content);
+
+    final long timestamp = System.currentTimeMillis();
+
+    final MessageProtos.Envelope.Builder builder = MessageProtos.Envelope.newBuilder()
+        .setType(sealedSender ? MessageProtos.Envelope.Type.UNIDENTIFIED_SENDER : MessageProtos.Envelope.Type.CIPHERTEXT)
+        .setClientTimestamp(timestamp)
+        .setServerTimestamp(timestamp)
+        .setServerGuid(UUID.randomUUID().toString())
+        .setDestinationServiceId(new AciServiceIdentifier(UUID.randomUUID()).toServiceIdentifierString())
+        .setContent(ByteString.copyFrom(content))
+        .setUrgent(true);
+
+    if (!sealedSender) {
+      builder.setSourceServiceId(new AciServiceIdentifier(UUID.randomUUID()).toServiceIdentifierString())
+          .setSourceDevice(1);
+    }
+
+    return builder.build();
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EnvelopeUtilBenchmark {
+
+  @Param({"256", "4096", "65536"})
+  private int contentSize;
+
+  @Param({"true", "false"})
+  private boolean sealedSender;
+
+  private MessageProtos.Envelope expandedEnvelope;
+  private MessageProtos.Envelope compressedEnvelope;
+
+  @Setup
+  public void setUp() {
+    expandedEnvelope = BenchmarkEnvelopes.generateEnvelope(contentSize, sealedSender);
+    compressedEnvelope = EnvelopeUtil.compress(expandedEnvelope);
+  }
+
+  @Benchmark
+  public MessageProtos.Envelope compress() {
+    return EnvelopeUtil.compress(expandedEnvelope);
+  }
+
+  @Benchmark
+  public MessageProtos.Envelope expand() {
+    return EnvelopeUtil.expand(compressedEnvelope);
+  }
+}
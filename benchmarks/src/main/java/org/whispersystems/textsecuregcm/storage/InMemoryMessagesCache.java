@@ -0,0 +1,83 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import org.signal.libsignal.protocol.SealedSenderMultiRecipientMessage;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.tests.util.SynchronousExecutorService;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A stand-in for {@link MessagesCache} that performs all of the local work of preparing a message for insertion (adding
+ * a GUID, compressing the envelope, and serializing it along with its queue keys), but never contacts Redis.
+ * Serialized messages are counted and then discarded so that long benchmark runs don't accumulate unbounded state.
+ */
+public class InMemoryMessagesCache extends MessagesCache {
+
+  private final boolean destinationDevicesPresent;
+
+  private final LongAdder insertedMessages = new LongAdder();
+  private final LongAdder insertedBytes = new LongAdder();
+
+  /**
+   * @param destinationDevicesPresent the presence state to report for every destination device; if {@code false},
+   * callers will generally attempt to send push notifications for inserted messages
+   */
+  public InMemoryMessagesCache(final boolean destinationDevicesPresent) throws IOException {
+    super(null, Schedulers.immediate(), new SynchronousExecutorService(), Clock.systemUTC());
+
+    this.destinationDevicesPresent = destinationDevicesPresent;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> insert(final UUID messageGuid,
+      final UUID destinationAccountIdentifier,
+      final byte destinationDeviceId,
+      final MessageProtos.Envelope message) {
+
+    final MessageProtos.Envelope messageWithGuid = message.toBuilder().setServerGuid(messageGuid.toString()).build();
+
+    final byte[] queueKey = getMessageQueueKey(destinationAccountIdentifier, destinationDeviceId);
+    final byte[] serializedMessage = EnvelopeUtil.compress(messageWithGuid).toByteArray();
+
+    insertedMessages.increment();
+    insertedBytes.add(queueKey.length + serializedMessage.length);
+
+    return CompletableFuture.completedFuture(destinationDevicesPresent);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> insertSharedMultiRecipientMessagePayload(
+      final SealedSenderMultiRecipientMessage sealedSenderMultiRecipientMessage) {
+
+    final byte[] sharedMrmKey = getSharedMrmKey(UUID.randomUUID());
+    long bytes = sharedMrmKey.length + sealedSenderMultiRecipientMessage.serialized().length;
+
+    for (final var serviceIdAndRecipient : sealedSenderMultiRecipientMessage.getRecipients().entrySet()) {
+      for (final byte deviceId : serviceIdAndRecipient.getValue().getDevices()) {
+        bytes += getSharedMrmViewKey(serviceIdAndRecipient.getKey(), deviceId).length;
+        bytes += sealedSenderMultiRecipientMessage.serializedRecipientView(serviceIdAndRecipient.getValue()).length;
+      }
+    }
+
+    insertedBytes.add(bytes);
+
+    return CompletableFuture.completedFuture(sharedMrmKey);
+  }
+
+  public long getInsertedMessages() {
+    return insertedMessages.sum();
+  }
+
+  public long getInsertedBytes() {
+    return insertedBytes.sum();
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import org.reactivestreams.Publisher;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.tests.util.SynchronousExecutorService;
+import reactor.core.publisher.Flux;
+
+/**
+ * A stand-in for {@link MessagesDynamoDb} that never contacts DynamoDB. Stored messages are serialized as they would be
+ * for DynamoDB, counted, and discarded; the stand-in always reports that no messages have been persisted.
+ */
+public class InMemoryMessagesDynamoDb extends MessagesDynamoDb {
+
+  private final LongAdder storedMessages = new LongAdder();
+
+  public InMemoryMessagesDynamoDb() {
+    super(null, null, "messages", Duration.ofDays(30), new SynchronousExecutorService());
+  }
+
+  @Override
+  public CompletableFuture<Void> storeAsync(final List<SerializedEnvelope> messages, final UUID destinationAccountUuid,
+      final Device destinationDevice) {
+
+    storedMessages.add(messages.size());
+    return CompletableFuture.completedFuture(null);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> mayHaveMessages(final UUID accountIdentifier, final Device device) {
+    return CompletableFuture.completedFuture(false);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> mayHaveUrgentMessages(final UUID accountIdentifier, final Device device) {
+    return CompletableFuture.completedFuture(false);
+  }
+
+  @Override
+  public Publisher<MessageProtos.Envelope> load(final UUID destinationAccountUuid, final Device device,
+      final Integer limit) {
+
+    return Flux.empty();
+  }
+
+  public long getStoredMessages() {
+    return storedMessages.sum();
+  }
+}
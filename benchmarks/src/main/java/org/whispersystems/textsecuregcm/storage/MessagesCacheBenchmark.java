@@ -0,0 +1,59 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+
+/**
+ * Measures the cost of turning the bytes stored in a Redis message queue back into an envelope that can be delivered to
+ * a client, and of reading just the fields needed to persist those bytes to DynamoDB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessagesCacheBenchmark {
+
+  @Param({"256", "4096", "65536"})
+  private int contentSize;
+
+  @Param({"true", "false"})
+  private boolean sealedSender;
+
+  private byte[] serializedEnvelope;
+
+  @Setup
+  public void setUp() {
+    // Messages are stored in their "compressed" form in Redis
+    serializedEnvelope =
+        EnvelopeUtil.compress(BenchmarkEnvelopes.generateEnvelope(contentSize, sealedSender)).toByteArray();
+  }
+
+  @Benchmark
+  public MessageProtos.Envelope parseEnvelope() throws InvalidProtocolBufferException {
+    return MessagesCache.parseEnvelope(serializedEnvelope);
+  }
+
+  @Benchmark
+  public SerializedEnvelope parseSerializedEnvelope() throws InvalidProtocolBufferException {
+    return SerializedEnvelope.parse(serializedEnvelope);
+  }
+}
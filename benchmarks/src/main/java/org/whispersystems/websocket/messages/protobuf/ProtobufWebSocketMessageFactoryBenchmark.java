@@ -0,0 +1,85 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.websocket.messages.protobuf;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.websocket.messages.InvalidMessageException;
+import org.whispersystems.websocket.messages.WebSocketRequestMessage;
+import org.whispersystems.websocket.messages.WebSocketResponseMessage;
+
+/**
+ * Measures the cost of encoding and decoding the websocket frames exchanged for every delivered message: the server's
+ * "deliver message" request and the client's acknowledgement, plus a client request and the server's response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProtobufWebSocketMessageFactoryBenchmark {
+
+  @Param({"256", "4096", "65536"})
+  private int bodySize;
+
+  private final ProtobufWebSocketMessageFactory messageFactory = new ProtobufWebSocketMessageFactory();
+
+  private static final List<String> DELIVERY_HEADERS = List.of("X-Signal-Key: false", "X-Signal-Timestamp: 1700000000000");
+  private static final List<String> RESPONSE_HEADERS = List.of("Content-Type: application/json");
+
+  private byte[] body;
+
+  private byte[] serializedRequest;
+  private byte[] serializedResponse;
+
+  @Setup
+  public void setUp() {
+    body = new byte[bodySize];
+    ThreadLocalRandom.current().nextBytes(body);
+
+    serializedRequest = messageFactory.createRequest(Optional.of(ThreadLocalRandom.current().nextLong()),
+        "PUT", "/api/v1/message", DELIVERY_HEADERS, Optional.of(body)).toByteArray();
+
+    serializedResponse = messageFactory.createResponse(ThreadLocalRandom.current().nextLong(), 200, "OK",
+        RESPONSE_HEADERS, Optional.of(body)).toByteArray();
+  }
+
+  @Benchmark
+  public byte[] encodeRequest() {
+    return messageFactory.createRequest(Optional.of(17L), "PUT", "/api/v1/message", DELIVERY_HEADERS, Optional.of(body))
+        .toByteArray();
+  }
+
+  @Benchmark
+  public byte[] encodeResponse() {
+    return messageFactory.createResponse(17L, 200, "OK", RESPONSE_HEADERS, Optional.of(body))
+        .toByteArray();
+  }
+
+  @Benchmark
+  public WebSocketRequestMessage decodeRequest() throws InvalidMessageException {
+    return messageFactory.parseMessage(serializedRequest, 0, serializedRequest.length).getRequestMessage();
+  }
+
+  @Benchmark
+  public WebSocketResponseMessage decodeResponse() throws InvalidMessageException {
+    return messageFactory.parseMessage(serializedResponse, 0, serializedResponse.length).getResponseMessage();
+  }
+}
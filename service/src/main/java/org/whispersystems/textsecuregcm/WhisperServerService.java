@@ -220,6 +220,7 @@ import org.whispersystems.textsecuregcm.storage.ClientPublicKeys;
 import org.whispersystems.textsecuregcm.storage.ClientPublicKeysManager;
 import org.whispersystems.textsecuregcm.storage.ClientReleaseManager;
 import org.whispersystems.textsecuregcm.storage.ClientReleases;
+import org.whispersystems.textsecuregcm.storage.DeviceLastSeenUpdater;
 import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 import org.whispersystems.textsecuregcm.storage.IssuedReceiptsManager;
 import org.whispersystems.textsecuregcm.storage.KeysManager;
@@ -525,6 +526,10 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         .scheduledExecutorService(name(getClass(), "remoteStorageRetry-%d")).threads(1).build();
     ScheduledExecutorService registrationIdentityTokenRefreshExecutor = environment.lifecycle()
         .scheduledExecutorService(name(getClass(), "registrationIdentityTokenRefresh-%d")).threads(1).build();
+    ScheduledExecutorService pushNotificationCoalescingExecutor = environment.lifecycle()
+        .scheduledExecutorService(name(getClass(), "pushNotificationCoalescing-%d")).threads(1).build();
+    ScheduledExecutorService deviceLastSeenUpdaterExecutor = environment.lifecycle()
+        .scheduledExecutorService(name(getClass(), "deviceLastSeenUpdater-%d")).threads(1).build();
 
     Scheduler messageDeliveryScheduler = Schedulers.fromExecutorService(
         ExecutorServiceMetrics.monitor(Metrics.globalRegistry,
@@ -656,7 +661,8 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster,
         apnSender, fcmSender, accountsManager, 0, 0);
     PushNotificationManager pushNotificationManager =
-        new PushNotificationManager(accountsManager, apnSender, fcmSender, pushNotificationScheduler);
+        new PushNotificationManager(accountsManager, apnSender, fcmSender, pushNotificationScheduler,
+            dynamicConfigurationManager, pushNotificationCoalescingExecutor);
     WebSocketConnectionEventManager webSocketConnectionEventManager =
         new WebSocketConnectionEventManager(accountsManager, pushNotificationManager, messagesCluster, clientEventExecutor, asyncOperationQueueingExecutor);
     RateLimiters rateLimiters = RateLimiters.create(dynamicConfigurationManager, rateLimitersCluster);
@@ -688,7 +694,9 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         accountsManager);
     reportMessageManager.addListener(reportedMessageMetricsListener);
 
-    final AccountAuthenticator accountAuthenticator = new AccountAuthenticator(accountsManager);
+    final DeviceLastSeenUpdater deviceLastSeenUpdater =
+        new DeviceLastSeenUpdater(accountsManager, deviceLastSeenUpdaterExecutor, Duration.ofSeconds(1));
+    final AccountAuthenticator accountAuthenticator = new AccountAuthenticator(accountsManager, deviceLastSeenUpdater);
 
     final MessageSender messageSender = new MessageSender(messagesManager, pushNotificationManager, experimentEnrollmentManager);
     final ReceiptSender receiptSender = new ReceiptSender(accountsManager, messageSender, receiptSenderExecutor);
@@ -755,6 +763,7 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
 
     environment.lifecycle().manage(apnSender);
     environment.lifecycle().manage(pushNotificationScheduler);
+    environment.lifecycle().manage(pushNotificationManager);
     environment.lifecycle().manage(provisioningManager);
     environment.lifecycle().manage(disconnectionRequestManager);
     environment.lifecycle().manage(webSocketConnectionEventManager);
@@ -764,6 +773,7 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     environment.lifecycle().manage(clientReleaseManager);
     environment.lifecycle().manage(virtualThreadPinEventMonitor);
     environment.lifecycle().manage(accountsManager);
+    environment.lifecycle().manage(deviceLastSeenUpdater);
 
     final GcsAttachmentGenerator gcsAttachmentGenerator = new GcsAttachmentGenerator(
         config.getGcpAttachmentsConfiguration().domain(),
@@ -24,6 +24,7 @@ import org.whispersystems.textsecuregcm.identity.IdentityType;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.DeviceLastSeenUpdater;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.Util;
 
@@ -44,17 +45,25 @@ public class AccountAuthenticator implements Authenticator<BasicCredentials, Aut
   @VisibleForTesting
   static final char DEVICE_ID_SEPARATOR = '.';
 
+  private static final long VERIFIED_CREDENTIAL_CACHE_MAX_SIZE = 100_000;
+  private static final Duration VERIFIED_CREDENTIAL_CACHE_TTL = Duration.ofMinutes(5);
+
   private final AccountsManager accountsManager;
+  private final DeviceLastSeenUpdater deviceLastSeenUpdater;
   private final Clock clock;
+  private final VerifiedCredentialCache verifiedCredentialCache;
 
-  public AccountAuthenticator(AccountsManager accountsManager) {
-    this(accountsManager, Clock.systemUTC());
+  public AccountAuthenticator(AccountsManager accountsManager, DeviceLastSeenUpdater deviceLastSeenUpdater) {
+    this(accountsManager, deviceLastSeenUpdater, Clock.systemUTC());
   }
 
   @VisibleForTesting
-  public AccountAuthenticator(AccountsManager accountsManager, Clock clock) {
+  public AccountAuthenticator(AccountsManager accountsManager, DeviceLastSeenUpdater deviceLastSeenUpdater, Clock clock) {
     this.accountsManager = accountsManager;
+    this.deviceLastSeenUpdater = deviceLastSeenUpdater;
     this.clock = clock;
+    this.verifiedCredentialCache =
+        new VerifiedCredentialCache(VERIFIED_CREDENTIAL_CACHE_MAX_SIZE, VERIFIED_CREDENTIAL_CACHE_TTL);
   }
 
   static Pair<String, Byte> getIdentifierAndDeviceId(final String basicUsername) {
@@ -104,9 +113,11 @@ public class AccountAuthenticator implements Authenticator<BasicCredentials, Aut
       }
 
       SaltedTokenHash deviceSaltedTokenHash = device.get().getAuthTokenHash();
-      if (deviceSaltedTokenHash.verify(basicCredentials.getPassword())) {
+      if (verifiedCredentialCache.verify(accountUuid, deviceId, deviceSaltedTokenHash, basicCredentials.getPassword())) {
         succeeded = true;
-        Account authenticatedAccount = updateLastSeen(account.get(), device.get());
+        updateLastSeen(account.get(), device.get());
+
+        Account authenticatedAccount = account.get();
         if (deviceSaltedTokenHash.getVersion() != SaltedTokenHash.CURRENT_VERSION) {
           OLD_TOKEN_VERSION_COUNTER.increment();
           authenticatedAccount = accountsManager.updateDeviceAuthentication(
@@ -137,7 +148,7 @@ public class AccountAuthenticator implements Authenticator<BasicCredentials, Aut
   }
 
   @VisibleForTesting
-  public Account updateLastSeen(Account account, Device device) {
+  public void updateLastSeen(Account account, Device device) {
     // compute a non-negative integer between 0 and 86400.
     long n = Util.ensureNonNegativeLong(account.getUuid().getLeastSignificantBits());
     final long lastSeenOffsetSeconds = n % ChronoUnit.DAYS.getDuration().toSeconds();
@@ -155,9 +166,9 @@ public class AccountAuthenticator implements Authenticator<BasicCredentials, Aut
       Metrics.summary(DAYS_SINCE_LAST_SEEN_DISTRIBUTION_NAME, IS_PRIMARY_DEVICE_TAG, String.valueOf(device.isPrimary()))
           .record(Duration.ofMillis(todayInMillisWithOffset - device.getLastSeen()).toDays());
 
-      return accountsManager.updateDeviceLastSeen(account, device, Util.todayInMillis(clock));
+      // the write happens in the background; we deliberately leave the authenticated account untouched so that any
+      // update this request makes to the account doesn't write the new last-seen time ahead of the updater
+      deviceLastSeenUpdater.updateLastSeen(account.getUuid(), device.getId(), Util.todayInMillis(clock));
     }
-
-    return account;
   }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * A local, size-bounded cache of recently-verified device credentials. Verifying a password against a
+ * {@link SaltedTokenHash} requires a key derivation, and clients may authenticate with the same credentials many times
+ * in quick succession; this cache lets us skip the derivation for credentials we've verified recently.
+ * <p>
+ * Entries are keyed by an HMAC (under a random, per-instance key) of the account identifier, device ID, presented
+ * password, and the stored hash and salt, and so never contain plaintext credentials. Because the stored hash is part
+ * of the key, changing a device's credentials or replacing a device makes previously-cached entries unreachable on every
+ * server without any explicit invalidation. Only successful verifications are cached, and only current-version
+ * (V2) hashes are eligible.
+ */
+class VerifiedCredentialCache {
+
+  private final HashFunction credentialHashFunction;
+  private final Cache<HashCode, Boolean> verifiedCredentials;
+
+  private static final int HMAC_KEY_LENGTH = 32;
+
+  private static final Counter HIT_COUNTER = Metrics.counter(name(VerifiedCredentialCache.class, "hit"));
+  private static final Counter MISS_COUNTER = Metrics.counter(name(VerifiedCredentialCache.class, "miss"));
+
+  VerifiedCredentialCache(final long maxSize, final Duration timeToLive) {
+    final byte[] hmacKey = new byte[HMAC_KEY_LENGTH];
+    new SecureRandom().nextBytes(hmacKey);
+
+    this.credentialHashFunction = Hashing.hmacSha256(hmacKey);
+
+    this.verifiedCredentials = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(timeToLive)
+        .build();
+  }
+
+  /**
+   * Checks whether the given password matches the given stored credentials, consulting the cache of recently-verified
+   * credentials first.
+   *
+   * @param accountIdentifier the identifier of the account to which the device belongs
+   * @param deviceId the ID of the device whose credentials are being checked
+   * @param saltedTokenHash the device's stored credentials
+   * @param password the password presented by the client
+   *
+   * @return {@code true} if the password matches the stored credentials or {@code false} otherwise
+   */
+  boolean verify(final UUID accountIdentifier,
+      final byte deviceId,
+      final SaltedTokenHash saltedTokenHash,
+      final String password) {
+
+    if (saltedTokenHash.getVersion() != SaltedTokenHash.Version.V2) {
+      return saltedTokenHash.verify(password);
+    }
+
+    final HashCode credentialHash = credentialHashFunction.newHasher()
+        .putLong(accountIdentifier.getMostSignificantBits())
+        .putLong(accountIdentifier.getLeastSignificantBits())
+        .putByte(deviceId)
+        .putInt(password.length())
+        .putString(password, StandardCharsets.UTF_8)
+        .putInt(saltedTokenHash.hash().length())
+        .putString(saltedTokenHash.hash(), StandardCharsets.UTF_8)
+        .putString(saltedTokenHash.salt(), StandardCharsets.UTF_8)
+        .hash();
+
+    if (verifiedCredentials.getIfPresent(credentialHash) != null) {
+      HIT_COUNTER.increment();
+      return true;
+    }
+
+    MISS_COUNTER.increment();
+
+    final boolean verified = saltedTokenHash.verify(password);
+
+    if (verified) {
+      verifiedCredentials.put(credentialHash, true);
+    }
+
+    return verified;
+  }
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+/**
+ * Controls how accounts are encoded when written to the shared Redis account cache. Servers can always read both
+ * encodings, so binary writes should only be enabled once every server understands the binary encoding.
+ *
+ * @param writeBinary whether accounts should be written to the cache in the compact binary encoding rather than JSON
+ */
+public record DynamicAccountCacheEncodingConfiguration(boolean writeBinary) {
+}
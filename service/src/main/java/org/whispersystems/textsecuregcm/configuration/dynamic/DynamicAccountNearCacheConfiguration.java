@@ -0,0 +1,15 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+/**
+ * Controls whether accounts read from the shared Redis account cache are also held in a short-lived, in-process
+ * near-cache.
+ *
+ * @param enabled whether account lookups by identifier should consult and populate the near-cache
+ */
+public record DynamicAccountNearCacheConfiguration(boolean enabled) {
+}
@@ -66,6 +66,19 @@ public class DynamicConfiguration {
   @Valid
   DynamicRestDeprecationConfiguration restDeprecation = new DynamicRestDeprecationConfiguration(Map.of());
 
+  @JsonProperty
+  @Valid
+  DynamicPushNotificationCoalescingConfiguration pushNotificationCoalescing =
+      new DynamicPushNotificationCoalescingConfiguration();
+
+  @JsonProperty
+  @Valid
+  DynamicAccountNearCacheConfiguration accountNearCache = new DynamicAccountNearCacheConfiguration(false);
+
+  @JsonProperty
+  @Valid
+  DynamicAccountCacheEncodingConfiguration accountCacheEncoding = new DynamicAccountCacheEncodingConfiguration(false);
+
   public Optional<DynamicExperimentEnrollmentConfiguration> getExperimentEnrollmentConfiguration(
       final String experimentName) {
     return Optional.ofNullable(experiments.get(experimentName));
@@ -116,4 +129,16 @@ public class DynamicConfiguration {
     return restDeprecation;
   }
 
+  public DynamicPushNotificationCoalescingConfiguration getPushNotificationCoalescingConfiguration() {
+    return pushNotificationCoalescing;
+  }
+
+  public DynamicAccountNearCacheConfiguration getAccountNearCacheConfiguration() {
+    return accountNearCache;
+  }
+
+  public DynamicAccountCacheEncodingConfiguration getAccountCacheEncodingConfiguration() {
+    return accountCacheEncoding;
+  }
+
 }
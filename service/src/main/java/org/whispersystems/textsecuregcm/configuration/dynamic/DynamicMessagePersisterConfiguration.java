@@ -7,6 +7,7 @@ package org.whispersystems.textsecuregcm.configuration.dynamic;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
 
 public class DynamicMessagePersisterConfiguration {
 
@@ -19,6 +20,19 @@ public class DynamicMessagePersisterConfiguration {
   @JsonProperty
   private double trimOversizedQueueExtraRoomRatio = 1.5;
 
+  /**
+   * The maximum number of workers that may persist queues from a single Redis shard at the same time
+   */
+  @JsonProperty
+  private int maxConcurrencyPerShard = 4;
+
+  /**
+   * If the average time to write a batch of messages to DynamoDB exceeds this target, persisters will back off and
+   * reduce their per-shard concurrency
+   */
+  @JsonProperty
+  private Duration persistLatencyTarget = Duration.ofMillis(250);
+
   public DynamicMessagePersisterConfiguration() {}
 
   @VisibleForTesting
@@ -35,4 +49,12 @@ public class DynamicMessagePersisterConfiguration {
     return trimOversizedQueueExtraRoomRatio;
   }
 
+  public int getMaxConcurrencyPerShard() {
+    return maxConcurrencyPerShard;
+  }
+
+  public Duration getPersistLatencyTarget() {
+    return persistLatencyTarget;
+  }
+
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+import java.time.Duration;
+import javax.annotation.Nullable;
+
+/**
+ * Controls how "new message" push notifications for the same device are coalesced. After a notification is sent to a
+ * device, further notifications of the same urgency for that device are held until the window closes, at which point a
+ * single notification is sent in their place. A zero-length window disables coalescing.
+ *
+ * @param urgentWindow the coalescing window for urgent notifications
+ * @param nonUrgentWindow the coalescing window for non-urgent notifications
+ */
+public record DynamicPushNotificationCoalescingConfiguration(@Nullable Duration urgentWindow,
+                                                             @Nullable Duration nonUrgentWindow) {
+
+  public DynamicPushNotificationCoalescingConfiguration {
+    if (urgentWindow == null) {
+      urgentWindow = Duration.ZERO;
+    }
+
+    if (nonUrgentWindow == null) {
+      nonUrgentWindow = Duration.ZERO;
+    }
+  }
+
+  public DynamicPushNotificationCoalescingConfiguration() {
+    this(Duration.ZERO, Duration.ZERO);
+  }
+}
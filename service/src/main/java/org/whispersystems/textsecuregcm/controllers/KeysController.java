@@ -40,6 +40,7 @@ import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -388,43 +389,41 @@ public class KeysController {
     }
 
     final List<Device> devices = parseDeviceId(deviceId, target);
+    final List<Byte> deviceIds = devices.stream().map(Device::getId).toList();
     final List<PreKeyResponseItem> responseItems = new ArrayList<>(devices.size());
 
-    final List<CompletableFuture<Void>> tasks = devices.stream().map(device -> {
-          final CompletableFuture<Optional<ECPreKey>> unsignedEcPreKeyFuture =
-              keysManager.takeEC(targetIdentifier.uuid(), device.getId());
+    final CompletableFuture<Map<Byte, Optional<ECPreKey>>> unsignedEcPreKeysFuture =
+        keysManager.takeEC(targetIdentifier.uuid(), deviceIds);
 
-          final CompletableFuture<Optional<ECSignedPreKey>> signedEcPreKeyFuture =
-              keysManager.getEcSignedPreKey(targetIdentifier.uuid(), device.getId());
+    final CompletableFuture<Map<Byte, Optional<ECSignedPreKey>>> signedEcPreKeysFuture =
+        keysManager.getEcSignedPreKeys(targetIdentifier.uuid(), deviceIds);
 
-          final CompletableFuture<Optional<KEMSignedPreKey>> pqPreKeyFuture =
-              keysManager.takePQ(targetIdentifier.uuid(), device.getId());
+    final CompletableFuture<Map<Byte, Optional<KEMSignedPreKey>>> pqPreKeysFuture =
+        keysManager.takePQ(targetIdentifier.uuid(), deviceIds);
 
-          return CompletableFuture.allOf(unsignedEcPreKeyFuture, signedEcPreKeyFuture, pqPreKeyFuture)
-              .thenAccept(ignored -> {
-                final KEMSignedPreKey pqPreKey = pqPreKeyFuture.join().orElse(null);
-                final ECPreKey unsignedEcPreKey = unsignedEcPreKeyFuture.join().orElse(null);
-                final ECSignedPreKey signedEcPreKey = signedEcPreKeyFuture.join().orElse(null);
+    CompletableFuture.allOf(unsignedEcPreKeysFuture, signedEcPreKeysFuture, pqPreKeysFuture).join();
 
-                Metrics.counter(GET_KEYS_COUNTER_NAME, Tags.of(
-                        UserAgentTagUtil.getPlatformTag(userAgent),
-                        Tag.of(IDENTITY_TYPE_TAG_NAME, targetIdentifier.identityType().name()),
-                        Tag.of("oneTimeEcKeyAvailable", String.valueOf(unsignedEcPreKey != null)),
-                        Tag.of("pqKeyAvailable", String.valueOf(pqPreKey != null))))
-                    .increment();
+    for (final Device device : devices) {
+      final KEMSignedPreKey pqPreKey = pqPreKeysFuture.join().getOrDefault(device.getId(), Optional.empty()).orElse(null);
+      final ECPreKey unsignedEcPreKey =
+          unsignedEcPreKeysFuture.join().getOrDefault(device.getId(), Optional.empty()).orElse(null);
+      final ECSignedPreKey signedEcPreKey =
+          signedEcPreKeysFuture.join().getOrDefault(device.getId(), Optional.empty()).orElse(null);
 
-                if (signedEcPreKey != null || unsignedEcPreKey != null || pqPreKey != null) {
-                  final int registrationId = device.getRegistrationId(targetIdentifier.identityType());
+      Metrics.counter(GET_KEYS_COUNTER_NAME, Tags.of(
+              UserAgentTagUtil.getPlatformTag(userAgent),
+              Tag.of(IDENTITY_TYPE_TAG_NAME, targetIdentifier.identityType().name()),
+              Tag.of("oneTimeEcKeyAvailable", String.valueOf(unsignedEcPreKey != null)),
+              Tag.of("pqKeyAvailable", String.valueOf(pqPreKey != null))))
+          .increment();
 
-                  responseItems.add(
-                      new PreKeyResponseItem(device.getId(), registrationId, signedEcPreKey, unsignedEcPreKey,
-                          pqPreKey));
-                }
-              });
-        })
-        .toList();
+      if (signedEcPreKey != null || unsignedEcPreKey != null || pqPreKey != null) {
+        final int registrationId = device.getRegistrationId(targetIdentifier.identityType());
 
-    CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        responseItems.add(
+            new PreKeyResponseItem(device.getId(), registrationId, signedEcPreKey, unsignedEcPreKey, pqPreKey));
+      }
+    }
 
     final IdentityKey identityKey = target.getIdentityKey(targetIdentifier.identityType());
 
@@ -4,17 +4,22 @@
  */
 package org.whispersystems.textsecuregcm.grpc.net;
 
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
 import com.southernstorm.noise.protocol.CipherState;
 import com.southernstorm.noise.protocol.CipherStatePair;
 import com.southernstorm.noise.protocol.Noise;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufUtil;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.CoalescingBufferQueue;
 import io.netty.util.ReferenceCountUtil;
-import io.netty.util.concurrent.PromiseCombiner;
+import java.nio.channels.ClosedChannelException;
+import javax.annotation.Nullable;
 import javax.crypto.BadPaddingException;
 import javax.crypto.ShortBufferException;
 import org.slf4j.Logger;
@@ -22,17 +27,44 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A bidirectional {@link io.netty.channel.ChannelHandler} that  decrypts inbound messages, and encrypts outbound
- * messages
+ * messages.
+ * <p>
+ * Outbound plaintext is queued until the channel is flushed (or until a full noise packet's worth of plaintext is
+ * waiting) and then encrypted into as few noise packets as possible. The plaintext we send is an HTTP/2 byte stream,
+ * so write boundaries need not be preserved across noise packets.
  */
 public class NoiseHandler extends ChannelDuplexHandler {
 
   private static final Logger log = LoggerFactory.getLogger(NoiseHandler.class);
   private final CipherStatePair cipherStatePair;
 
+  @Nullable
+  private CoalescingBufferQueue pendingWrites;
+  private int framesSinceLastFlush = 0;
+
+  // Leave room for a 16-byte AEAD tag
+  private static final int MAX_PLAINTEXT_LENGTH = Noise.MAX_PACKET_LEN - 16;
+
+  private static final DistributionSummary FRAMES_PER_FLUSH_DISTRIBUTION = DistributionSummary
+      .builder(name(NoiseHandler.class, "framesPerFlush"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .register(Metrics.globalRegistry);
+
+  private static final String BYTES_COPIED_COUNTER_NAME = name(NoiseHandler.class, "bytesCopied");
+  private static final Counter INBOUND_BYTES_COPIED_COUNTER =
+      Metrics.counter(BYTES_COPIED_COUNTER_NAME, "direction", "inbound");
+  private static final Counter OUTBOUND_BYTES_COPIED_COUNTER =
+      Metrics.counter(BYTES_COPIED_COUNTER_NAME, "direction", "outbound");
+
   NoiseHandler(CipherStatePair cipherStatePair) {
     this.cipherStatePair = cipherStatePair;
   }
 
+  @Override
+  public void handlerAdded(final ChannelHandlerContext context) {
+    pendingWrites = new CoalescingBufferQueue(context.channel());
+  }
+
   @Override
   public void channelRead(final ChannelHandlerContext context, final Object message) throws Exception {
     try {
@@ -40,9 +72,7 @@ public class NoiseHandler extends ChannelDuplexHandler {
         if (frame.readableBytes() > Noise.MAX_PACKET_LEN) {
           throw new NoiseException("Invalid noise message length " + frame.readableBytes());
         }
-        // We've read this frame off the wire, and so it's most likely a direct buffer that's not backed by an array.
-        // We'll need to copy it to a heap buffer.
-        handleInboundDataMessage(context, ByteBufUtil.getBytes(frame));
+        handleInboundDataMessage(context, frame);
       } else {
         // Anything except ByteBufs should have been filtered out of the pipeline by now; treat this as an error
         throw new IllegalArgumentException("Unexpected message in pipeline: " + message);
@@ -52,52 +82,60 @@ public class NoiseHandler extends ChannelDuplexHandler {
     }
   }
 
-
-  private void handleInboundDataMessage(final ChannelHandlerContext context, final byte[] frameBytes)
+  private void handleInboundDataMessage(final ChannelHandlerContext context, final ByteBuf frame)
       throws ShortBufferException, BadPaddingException {
     final CipherState cipherState = cipherStatePair.getReceiver();
-    // Overwrite the ciphertext with the plaintext to avoid an extra allocation for a dedicated plaintext buffer
-    final int plaintextLength = cipherState.decryptWithAd(null,
-        frameBytes, 0,
-        frameBytes, 0,
-        frameBytes.length);
-
-    // Forward the decrypted plaintext along
-    context.fireChannelRead(Unpooled.wrappedBuffer(frameBytes, 0, plaintextLength));
-  }
+    final int ciphertextLength = frame.readableBytes();
 
-  @Override
-  public void write(final ChannelHandlerContext context, final Object message, final ChannelPromise promise)
-      throws Exception {
-    if (message instanceof ByteBuf byteBuf) {
-      try {
-        // TODO Buffer/consolidate Noise writes to avoid sending a bazillion tiny (or empty) frames
-        final CipherState cipherState = cipherStatePair.getSender();
+    if (frame.hasArray()) {
+      // Overwrite the ciphertext with the plaintext to avoid an extra allocation for a dedicated plaintext buffer
+      final byte[] frameBytes = frame.array();
+      final int offset = frame.arrayOffset() + frame.readerIndex();
+      final int plaintextLength =
+          cipherState.decryptWithAd(null, frameBytes, offset, frameBytes, offset, ciphertextLength);
+
+      // Forward the decrypted plaintext along
+      context.fireChannelRead(frame.retainedSlice(frame.readerIndex(), plaintextLength));
+    } else {
+      // We've read this frame off the wire, and so it's most likely a direct buffer that's not backed by an array.
+      // We'll need to copy it to a (pooled) heap buffer before we can decrypt it in place.
+      final ByteBuf plaintext = context.alloc().heapBuffer(ciphertextLength);
 
-        // Server message might not fit in a single noise packet, break it up into as many chunks as we need
-        final PromiseCombiner pc = new PromiseCombiner(context.executor());
-        while (byteBuf.isReadable()) {
-          final ByteBuf plaintext = byteBuf.readSlice(Math.min(
-              // need room for a 16-byte AEAD tag
-              Noise.MAX_PACKET_LEN - 16,
-              byteBuf.readableBytes()));
+      try {
+        frame.readBytes(plaintext, ciphertextLength);
+        INBOUND_BYTES_COPIED_COUNTER.increment(ciphertextLength);
+
+        final byte[] plaintextBytes = plaintext.array();
+        final int offset = plaintext.arrayOffset() + plaintext.readerIndex();
+        final int plaintextLength =
+            cipherState.decryptWithAd(null, plaintextBytes, offset, plaintextBytes, offset, ciphertextLength);
+
+        plaintext.writerIndex(plaintext.readerIndex() + plaintextLength);
+      } catch (final Exception e) {
+        plaintext.release();
+        throw e;
+      }
 
-          final int plaintextLength = plaintext.readableBytes();
+      // Forward the decrypted plaintext along
+      context.fireChannelRead(plaintext);
+    }
+  }
 
-          // We've read these bytes from a local connection; although that likely means they're backed by a heap array, the
-          // buffer is read-only and won't grant us access to the underlying array. Instead, we need to copy the bytes to a
-          // mutable array. We also want to encrypt in place, so we allocate enough extra space for the trailing MAC.
-          final byte[] noiseBuffer = new byte[plaintext.readableBytes() + cipherState.getMACLength()];
-          plaintext.readBytes(noiseBuffer, 0, plaintext.readableBytes());
+  @Override
+  public void write(final ChannelHandlerContext context, final Object message, final ChannelPromise promise) {
+    if (message instanceof ByteBuf byteBuf) {
+      if (!byteBuf.isReadable()) {
+        // Don't bother sending (or queueing) an empty noise packet
+        byteBuf.release();
+        promise.trySuccess();
+        return;
+      }
 
-          // Overwrite the plaintext with the ciphertext to avoid an extra allocation for a dedicated ciphertext buffer
-          cipherState.encryptWithAd(null, noiseBuffer, 0, noiseBuffer, 0, plaintextLength);
+      pendingWrites.add(byteBuf, promise);
 
-          pc.add(context.write(Unpooled.wrappedBuffer(noiseBuffer)));
-        }
-        pc.finish(promise);
-      } finally {
-        ReferenceCountUtil.release(byteBuf);
+      // Don't wait for a flush to send frames we know will be full anyway
+      while (pendingWrites.readableBytes() >= MAX_PLAINTEXT_LENGTH) {
+        writeFrame(context, MAX_PLAINTEXT_LENGTH);
       }
     } else {
       if (!(message instanceof OutboundCloseErrorMessage)) {
@@ -105,12 +143,80 @@ public class NoiseHandler extends ChannelDuplexHandler {
         // that get issued in response to exceptions)
         log.warn("Unexpected object in pipeline: {}", message);
       }
+
+      // Preserve ordering with respect to any plaintext we've already accepted
+      writePendingFrames(context);
       context.write(message, promise);
     }
   }
 
+  @Override
+  public void flush(final ChannelHandlerContext context) {
+    writePendingFrames(context);
+
+    if (framesSinceLastFlush > 0) {
+      FRAMES_PER_FLUSH_DISTRIBUTION.record(framesSinceLastFlush);
+      framesSinceLastFlush = 0;
+    }
+
+    context.flush();
+  }
+
+  @Override
+  public void close(final ChannelHandlerContext context, final ChannelPromise promise) {
+    // Like the channel's own outbound buffer, we discard (rather than send) anything that hasn't been flushed on close
+    releasePendingWrites();
+    context.close(promise);
+  }
+
+  private void writePendingFrames(final ChannelHandlerContext context) {
+    while (!pendingWrites.isEmpty()) {
+      writeFrame(context, Math.min(MAX_PLAINTEXT_LENGTH, pendingWrites.readableBytes()));
+    }
+  }
+
+  private void writeFrame(final ChannelHandlerContext context, final int plaintextLength) {
+    final ChannelPromise framePromise = context.newPromise();
+    final ByteBuf plaintext = pendingWrites.remove(context.alloc(), plaintextLength, framePromise);
+    final CipherState cipherState = cipherStatePair.getSender();
+
+    // Plaintext buffers we get from the local connection are frequently read-only and won't grant us access to their
+    // underlying arrays. We copy the plaintext into a pooled heap buffer with enough extra space for the trailing MAC
+    // and encrypt in place.
+    final ByteBuf noiseBuffer = context.alloc().heapBuffer(plaintextLength + cipherState.getMACLength());
+
+    try {
+      noiseBuffer.writeBytes(plaintext);
+      OUTBOUND_BYTES_COPIED_COUNTER.increment(plaintextLength);
+
+      final byte[] noiseBytes = noiseBuffer.array();
+      final int offset = noiseBuffer.arrayOffset() + noiseBuffer.readerIndex();
+
+      // Overwrite the plaintext with the ciphertext to avoid an extra allocation for a dedicated ciphertext buffer
+      final int ciphertextLength = cipherState.encryptWithAd(null, noiseBytes, offset, noiseBytes, offset, plaintextLength);
+      noiseBuffer.writerIndex(noiseBuffer.readerIndex() + ciphertextLength);
+    } catch (final ShortBufferException e) {
+      noiseBuffer.release();
+      framePromise.setFailure(e);
+      return;
+    } finally {
+      plaintext.release();
+    }
+
+    context.write(noiseBuffer, framePromise);
+    framesSinceLastFlush += 1;
+  }
+
+  private void releasePendingWrites() {
+    if (pendingWrites != null && !pendingWrites.isEmpty()) {
+      pendingWrites.releaseAndFailAll(new ClosedChannelException());
+    }
+  }
+
   @Override
   public void handlerRemoved(ChannelHandlerContext var1) {
+    releasePendingWrites();
+
     if (cipherStatePair != null) {
       cipherStatePair.destroy();
     }
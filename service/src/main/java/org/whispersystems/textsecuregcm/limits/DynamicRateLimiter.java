@@ -12,9 +12,12 @@ import io.micrometer.core.instrument.Metrics;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
@@ -32,9 +35,23 @@ public class DynamicRateLimiter implements RateLimiter {
   private final FaultTolerantRedisClusterClient cluster;
 
   private final Counter limitExceededCounter;
+  private final Counter localTierDeniedCounter;
 
   private final Clock clock;
 
+  private final LocalTokenBuckets localTokenBuckets =
+      new LocalTokenBuckets(LOCAL_TOKEN_BUCKETS_MAX_SIZE, LOCAL_TOKEN_BUCKET_IDLE_EXPIRATION);
+
+  private volatile long clearGenerationRefreshedMillis = -1;
+  private volatile boolean localTierDisabled = false;
+  private final AtomicReference<CompletableFuture<Void>> clearGenerationRefreshFuture = new AtomicReference<>();
+
+  private static final int LOCAL_TOKEN_BUCKETS_MAX_SIZE = 10_000;
+  private static final Duration LOCAL_TOKEN_BUCKET_IDLE_EXPIRATION = Duration.ofMinutes(10);
+
+  // Local denials are only trusted if this server has checked for clears made through other servers at least this
+  // recently; this bounds how long a key cleared elsewhere may still be denied here
+  private static final Duration CLEAR_GENERATION_MAX_AGE = Duration.ofSeconds(1);
 
   public DynamicRateLimiter(
       final String name,
@@ -48,18 +65,28 @@ public class DynamicRateLimiter implements RateLimiter {
     this.cluster = requireNonNull(cluster);
     this.clock = requireNonNull(clock);
     this.limitExceededCounter = Metrics.counter(MetricsUtil.name(getClass(), "exceeded"), "rateLimiterName", name);
+    this.localTierDeniedCounter =
+        Metrics.counter(MetricsUtil.name(getClass(), "localTierDenied"), "rateLimiterName", name);
   }
 
   @Override
   public void validate(final String key, final int amount) throws RateLimitExceededException {
     final RateLimiterConfig config = config();
+
+    final long localDeficitPermitsAmount = getLocalDeficit(config, key, amount);
+    if (localDeficitPermitsAmount > 0) {
+      localTierDeniedCounter.increment();
+      limitExceededCounter.increment();
+      throw new RateLimitExceededException(getRetryAfter(config, localDeficitPermitsAmount));
+    }
+
     try {
       final long deficitPermitsAmount = executeValidateScript(config, key, amount, true);
+      updateLocalTokenBucket(config, key, amount, deficitPermitsAmount);
+
       if (deficitPermitsAmount > 0) {
         limitExceededCounter.increment();
-        final Duration retryAfter = Duration.ofMillis(
-            (long) Math.ceil((double) deficitPermitsAmount / config.leakRatePerMillis()));
-        throw new RateLimitExceededException(retryAfter);
+        throw new RateLimitExceededException(getRetryAfter(config, deficitPermitsAmount));
       }
     } catch (final Exception e) {
       if (e instanceof RateLimitExceededException rateLimitExceededException) {
@@ -76,15 +103,33 @@ public class DynamicRateLimiter implements RateLimiter {
   public CompletionStage<Void> validateAsync(final String key, final int amount) {
     final RateLimiterConfig config = config();
 
+    return getLocalDeficitAsync(config, key, amount)
+        .thenCompose(localDeficitPermitsAmount -> {
+          if (localDeficitPermitsAmount > 0) {
+            localTierDeniedCounter.increment();
+            limitExceededCounter.increment();
+            return CompletableFuture.failedFuture(
+                new RateLimitExceededException(getRetryAfter(config, localDeficitPermitsAmount)));
+          }
+
+          return validateSharedBucketAsync(config, key, amount);
+        });
+  }
+
+  private CompletionStage<Void> validateSharedBucketAsync(final RateLimiterConfig config,
+      final String key,
+      final int amount) {
+
     return executeValidateScriptAsync(config, key, amount, true)
         .thenCompose(deficitPermitsAmount -> {
+          updateLocalTokenBucket(config, key, amount, deficitPermitsAmount);
+
           if (deficitPermitsAmount == 0) {
             return CompletableFuture.completedFuture((Void) null);
           }
           limitExceededCounter.increment();
-          final Duration retryAfter = Duration.ofMillis(
-              (long) Math.ceil((double) deficitPermitsAmount / config.leakRatePerMillis()));
-          return CompletableFuture.failedFuture(new RateLimitExceededException(retryAfter));
+          return CompletableFuture.failedFuture(
+              new RateLimitExceededException(getRetryAfter(config, deficitPermitsAmount)));
         })
         .exceptionally(throwable -> {
           if (ExceptionUtils.unwrap(throwable) instanceof RateLimitExceededException rateLimitExceededException) {
@@ -102,6 +147,12 @@ public class DynamicRateLimiter implements RateLimiter {
   @Override
   public boolean hasAvailablePermits(final String key, final int permits) {
     final RateLimiterConfig config = config();
+
+    if (getLocalDeficit(config, key, permits) > 0) {
+      localTierDeniedCounter.increment();
+      return false;
+    }
+
     try {
       final long deficitPermitsAmount = executeValidateScript(config, key, permits, false);
       return deficitPermitsAmount == 0;
@@ -117,24 +168,54 @@ public class DynamicRateLimiter implements RateLimiter {
   @Override
   public CompletionStage<Boolean> hasAvailablePermitsAsync(final String key, final int amount) {
     final RateLimiterConfig config = config();
-    return executeValidateScriptAsync(config, key, amount, false)
-        .thenApply(deficitPermitsAmount -> deficitPermitsAmount == 0)
-        .exceptionally(throwable -> {
-          if (config.failOpen()) {
-            return true;
+
+    return getLocalDeficitAsync(config, key, amount)
+        .thenCompose(localDeficitPermitsAmount -> {
+          if (localDeficitPermitsAmount > 0) {
+            localTierDeniedCounter.increment();
+            return CompletableFuture.completedFuture(false);
           }
-          throw ExceptionUtils.wrap(throwable);
+
+          return executeValidateScriptAsync(config, key, amount, false)
+              .thenApply(deficitPermitsAmount -> deficitPermitsAmount == 0)
+              .exceptionally(throwable -> {
+                if (config.failOpen()) {
+                  return true;
+                }
+                throw ExceptionUtils.wrap(throwable);
+              });
         });
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If the local tier is enabled, clearing a bucket also advances this rate limiter's clear generation so that other
+   * servers discard any local buckets that might still deny requests for the cleared key.
+   */
   @Override
   public void clear(final String key) {
-    cluster.useCluster(connection -> connection.sync().del(bucketName(name, key)));
+    final boolean advanceClearGeneration = config().localTier() != RateLimiterConfig.LocalTier.DISABLED;
+
+    localTokenBuckets.clear(key);
+    cluster.useCluster(connection -> {
+      connection.sync().del(bucketName(name, key));
+
+      if (advanceClearGeneration) {
+        connection.sync().incr(clearGenerationKey(name));
+      }
+    });
   }
 
   @Override
   public CompletionStage<Void> clearAsync(final String key) {
-    return cluster.withCluster(connection -> connection.async().del(bucketName(name, key)))
+    final boolean advanceClearGeneration = config().localTier() != RateLimiterConfig.LocalTier.DISABLED;
+
+    localTokenBuckets.clear(key);
+    return cluster.withCluster(connection -> connection.async().del(bucketName(name, key))
+            .thenCompose(ignored -> advanceClearGeneration
+                ? connection.async().incr(clearGenerationKey(name)).thenRun(Util.NOOP)
+                : CompletableFuture.completedFuture(null)))
         .thenRun(Util.NOOP);
   }
 
@@ -143,6 +224,121 @@ public class DynamicRateLimiter implements RateLimiter {
     return configResolver.get();
   }
 
+  private long getLocalDeficit(final RateLimiterConfig config, final String key, final int amount) {
+    return getLocalDeficitIfCurrent(config, key, amount).orElseGet(() -> {
+      // We can't tell whether the key has been cleared elsewhere, and we don't want to block on Redis just to deny a
+      // request; defer to the shared bucket this time and let later requests use the refreshed clear generation
+      refreshClearGenerationAsync();
+      return 0L;
+    });
+  }
+
+  private CompletableFuture<Long> getLocalDeficitAsync(final RateLimiterConfig config,
+      final String key,
+      final int amount) {
+
+    return getLocalDeficitIfCurrent(config, key, amount)
+        .map(CompletableFuture::completedFuture)
+        .orElseGet(() -> refreshClearGenerationAsync()
+            .thenApply(ignored -> localTokenBuckets.getDeficit(key, config, amount, clock.millis()))
+            .exceptionally(ignored -> 0L));
+  }
+
+  /**
+   * Returns the local deficit for the given request if the local tier allows it or if the local tier's knowledge of
+   * clears made through other servers is current.
+   *
+   * @return the local deficit, or empty if the local tier would deny the request but the clear generation must be
+   * refreshed before the local tier can be trusted
+   */
+  private Optional<Long> getLocalDeficitIfCurrent(final RateLimiterConfig config, final String key, final int amount) {
+    if (config.localTier() == RateLimiterConfig.LocalTier.DISABLED) {
+      if (!localTierDisabled) {
+        // Clears don't advance the clear generation while the local tier is disabled, so anything left over from before
+        // it was disabled can't be trusted if it's enabled again
+        localTierDisabled = true;
+        localTokenBuckets.clearAll();
+      }
+
+      return Optional.of(0L);
+    }
+
+    localTierDisabled = false;
+
+    final long localDeficitPermitsAmount = localTokenBuckets.getDeficit(key, config, amount, clock.millis());
+
+    if (localDeficitPermitsAmount == 0 || isClearGenerationCurrent()) {
+      return Optional.of(localDeficitPermitsAmount);
+    }
+
+    return Optional.empty();
+  }
+
+  private boolean isClearGenerationCurrent() {
+    final long refreshedMillis = clearGenerationRefreshedMillis;
+    return refreshedMillis >= 0 && clock.millis() - refreshedMillis < CLEAR_GENERATION_MAX_AGE.toMillis();
+  }
+
+  private CompletableFuture<Void> refreshClearGenerationAsync() {
+    final CompletableFuture<Void> refreshFuture = new CompletableFuture<>();
+    final CompletableFuture<Void> inFlightRefreshFuture = clearGenerationRefreshFuture.compareAndExchange(null, refreshFuture);
+
+    if (inFlightRefreshFuture != null) {
+      return inFlightRefreshFuture;
+    }
+
+    try {
+      cluster.withCluster(connection -> connection.async().get(clearGenerationKey(name)))
+          .thenAccept(this::setClearGeneration)
+          .whenComplete((ignored, throwable) -> {
+            clearGenerationRefreshFuture.set(null);
+
+            if (throwable != null) {
+              refreshFuture.completeExceptionally(throwable);
+            } else {
+              refreshFuture.complete(null);
+            }
+          });
+    } catch (final Exception e) {
+      clearGenerationRefreshFuture.set(null);
+      refreshFuture.completeExceptionally(e);
+    }
+
+    return refreshFuture;
+  }
+
+  private void setClearGeneration(@Nullable final String clearGeneration) {
+    localTokenBuckets.setClearGeneration(clearGeneration != null ? Long.parseLong(clearGeneration) : 0);
+    clearGenerationRefreshedMillis = clock.millis();
+  }
+
+  private void updateLocalTokenBucket(final RateLimiterConfig config,
+      final String key,
+      final int amount,
+      final long deficitPermitsAmount) {
+
+    switch (config.localTier()) {
+      case DISABLED -> {
+      }
+      case DENY_ONLY -> {
+        if (deficitPermitsAmount > 0) {
+          localTokenBuckets.recordDenied(key, config, amount, deficitPermitsAmount, clock.millis());
+        }
+      }
+      case CONSERVATIVE -> {
+        if (deficitPermitsAmount > 0) {
+          localTokenBuckets.recordDenied(key, config, amount, deficitPermitsAmount, clock.millis());
+        } else {
+          localTokenBuckets.recordGranted(key, config, amount, clock.millis());
+        }
+      }
+    }
+  }
+
+  private static Duration getRetryAfter(final RateLimiterConfig config, final long deficitPermitsAmount) {
+    return Duration.ofMillis((long) Math.ceil((double) deficitPermitsAmount / config.leakRatePerMillis()));
+  }
+
   private long executeValidateScript(final RateLimiterConfig config, final String key, final int amount, final boolean applyChanges) {
     final List<String> keys = List.of(bucketName(name, key));
     final List<String> arguments = List.of(
@@ -170,4 +366,8 @@ public class DynamicRateLimiter implements RateLimiter {
   private static String bucketName(final String name, final String key) {
     return "leaky_bucket::" + name + "::" + key;
   }
+
+  private static String clearGenerationKey(final String name) {
+    return "leaky_bucket_clear_generation::" + name;
+  }
 }
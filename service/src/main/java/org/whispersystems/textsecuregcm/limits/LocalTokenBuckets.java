@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A bounded, in-process cache of token buckets that track an upper bound on the permits available in a rate limiter's
+ * shared buckets in Redis. Buckets follow the same refill rules as {@code validate_rate_limit.lua}; a key with no local
+ * bucket is treated as having a full bucket. Entries are evicted when the cache is full or after a period of inactivity, which
+ * only ever makes the local tier more permissive.
+ * <p>
+ * Individual buckets are immutable and updated with compare-and-set, so checks never block one another.
+ * <p>
+ * Clearing a shared bucket through any server advances the rate limiter's "clear generation" in Redis. Local buckets
+ * are only meaningful within a single generation, and all of them are discarded when a newer generation is observed.
+ *
+ * @see RateLimiterConfig.LocalTier
+ */
+class LocalTokenBuckets {
+
+  private final Cache<String, AtomicReference<Bucket>> buckets;
+
+  private long clearGeneration = 0;
+
+  private record Bucket(double permits, long lastUpdateMillis) {
+
+    double availablePermits(final RateLimiterConfig config, final long currentTimeMillis) {
+      return Math.min(config.bucketSize(),
+          permits + (Math.max(0, currentTimeMillis - lastUpdateMillis) * config.leakRatePerMillis()));
+    }
+  }
+
+  LocalTokenBuckets(final int maxSize, final Duration idleExpiration) {
+    this.buckets = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterAccess(idleExpiration)
+        .build();
+  }
+
+  /**
+   * Returns the number of permits by which the local bucket for the given key falls short of the requested amount.
+   *
+   * @return the local deficit, or 0 if the local bucket may hold enough permits and the shared bucket must be checked
+   */
+  long getDeficit(final String key, final RateLimiterConfig config, final int amount, final long currentTimeMillis) {
+    final AtomicReference<Bucket> bucketReference = buckets.getIfPresent(key);
+
+    if (bucketReference == null) {
+      return 0;
+    }
+
+    final long availablePermits = (long) Math.floor(bucketReference.get().availablePermits(config, currentTimeMillis));
+    return Math.max(0, amount - availablePermits);
+  }
+
+  /**
+   * Spends permits granted by the shared bucket from the local bucket for the given key.
+   */
+  void recordGranted(final String key, final RateLimiterConfig config, final int amount, final long currentTimeMillis) {
+    update(key, config, currentTimeMillis, availablePermits -> Math.max(0, availablePermits - amount));
+  }
+
+  /**
+   * Lowers the local bucket for the given key to the number of permits the shared bucket reported having available when
+   * it denied a request.
+   */
+  void recordDenied(final String key,
+      final RateLimiterConfig config,
+      final int amount,
+      final long deficit,
+      final long currentTimeMillis) {
+
+    update(key, config, currentTimeMillis, availablePermits -> Math.min(availablePermits, Math.max(0, amount - deficit)));
+  }
+
+  void clear(final String key) {
+    buckets.invalidate(key);
+  }
+
+  void clearAll() {
+    buckets.invalidateAll();
+  }
+
+  /**
+   * Discards all local buckets if the given clear generation differs from the last one observed.
+   *
+   * @param clearGeneration the rate limiter's current clear generation as reported by Redis
+   */
+  synchronized void setClearGeneration(final long clearGeneration) {
+    if (clearGeneration != this.clearGeneration) {
+      this.clearGeneration = clearGeneration;
+      buckets.invalidateAll();
+    }
+  }
+
+  private void update(final String key,
+      final RateLimiterConfig config,
+      final long currentTimeMillis,
+      final DoubleUnaryOperator permitsFunction) {
+
+    final AtomicReference<Bucket> bucketReference = buckets.get(key,
+        ignored -> new AtomicReference<>(new Bucket(config.bucketSize(), currentTimeMillis)));
+
+    bucketReference.updateAndGet(bucket -> new Bucket(
+        permitsFunction.applyAsDouble(bucket.availablePermits(config, currentTimeMillis)),
+        Math.max(bucket.lastUpdateMillis(), currentTimeMillis)));
+  }
+}
@@ -8,8 +8,55 @@ package org.whispersystems.textsecuregcm.limits;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.AssertTrue;
 import java.time.Duration;
+import javax.annotation.Nullable;
 
-public record RateLimiterConfig(int bucketSize, Duration permitRegenerationDuration, boolean failOpen) {
+/**
+ * @param bucketSize the maximum number of permits in a bucket
+ * @param permitRegenerationDuration the time needed to regenerate a single permit
+ * @param failOpen whether requests should be allowed if the rate limiter's backing store is unavailable
+ * @param localTier whether and how this rate limiter should check a local, in-process copy of its buckets before
+ * checking the shared bucket in Redis; defaults to {@link LocalTier#DISABLED}
+ */
+public record RateLimiterConfig(int bucketSize,
+                                Duration permitRegenerationDuration,
+                                boolean failOpen,
+                                @Nullable LocalTier localTier) {
+
+  /**
+   * A local bucket only ever sees a subset of the requests its shared counterpart in Redis sees, and so always holds at
+   * least as many permits as the shared bucket. Local buckets may therefore be used to deny requests without a round
+   * trip to Redis, but never to allow them. A key cleared through another server may continue to be denied locally for
+   * up to about a second.
+   */
+  public enum LocalTier {
+
+    /**
+     * Every check goes to Redis.
+     */
+    DISABLED,
+
+    /**
+     * Local buckets only learn from denials reported by Redis, and deny further requests for the same key without
+     * consulting Redis until enough permits have regenerated.
+     */
+    DENY_ONLY,
+
+    /**
+     * In addition to learning from denials, local buckets also spend the permits this server has been granted, so keys
+     * that exhaust their allowance through a single server are denied without consulting Redis.
+     */
+    CONSERVATIVE
+  }
+
+  public RateLimiterConfig {
+    if (localTier == null) {
+      localTier = LocalTier.DISABLED;
+    }
+  }
+
+  public RateLimiterConfig(final int bucketSize, final Duration permitRegenerationDuration, final boolean failOpen) {
+    this(bucketSize, permitRegenerationDuration, failOpen, LocalTier.DISABLED);
+  }
 
   public double leakRatePerMillis() {
     return 1.0 / (permitRegenerationDuration.toNanos() / 1e6);
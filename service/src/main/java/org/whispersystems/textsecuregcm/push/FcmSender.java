@@ -9,6 +9,7 @@ import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
@@ -23,14 +24,20 @@ import io.micrometer.core.instrument.Timer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.GoogleApiUtil;
+import org.whispersystems.textsecuregcm.util.Pair;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.concurrent.Queues;
 
 public class FcmSender implements PushNotificationSender {
 
@@ -38,6 +45,13 @@ public class FcmSender implements PushNotificationSender {
   private final FirebaseMessaging firebaseMessagingClient;
 
   private static final Timer SEND_NOTIFICATION_TIMER = Metrics.timer(name(FcmSender.class, "sendNotification"));
+  private static final Timer SEND_BATCH_TIMER = Metrics.timer(name(FcmSender.class, "sendBatch"));
+
+  private static final SendPushNotificationResult ACCEPTED_RESULT =
+      new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty());
+
+  @VisibleForTesting
+  static final int MAX_SEND_EACH_MESSAGES = 500;
 
   private static final Logger logger = LoggerFactory.getLogger(FcmSender.class);
 
@@ -78,6 +92,55 @@ public class FcmSender implements PushNotificationSender {
 
   @Override
   public CompletableFuture<SendPushNotificationResult> sendNotification(PushNotification pushNotification) {
+    final Timer.Sample sample = Timer.start();
+
+    return GoogleApiUtil.toCompletableFuture(firebaseMessagingClient.sendAsync(buildMessage(pushNotification)), executor)
+        .whenComplete((ignored, throwable) -> sample.stop(SEND_NOTIFICATION_TIMER))
+        .thenApply(ignored -> ACCEPTED_RESULT)
+        .exceptionally(ExceptionUtils.exceptionallyHandler(FirebaseMessagingException.class, FcmSender::getResult));
+  }
+
+  /**
+   * Sends notifications via FCM's "send each" API in batches of up to {@value MAX_SEND_EACH_MESSAGES} messages, with
+   * at most {@code maxConcurrency} batches in flight at any time.
+   */
+  @Override
+  public Flux<Pair<PushNotification, SendPushNotificationResult>> sendNotifications(
+      final List<PushNotification> pushNotifications, final int maxConcurrency) {
+
+    return Flux.fromIterable(Lists.partition(pushNotifications, MAX_SEND_EACH_MESSAGES))
+        .flatMapDelayError(batch -> Mono.fromFuture(() -> sendBatch(batch))
+                .flatMapIterable(results -> IntStream.range(0, batch.size())
+                    .mapToObj(i -> new Pair<>(batch.get(i), results.get(i)))
+                    .toList()),
+            Math.max(1, maxConcurrency), Queues.XS_BUFFER_SIZE);
+  }
+
+  private CompletableFuture<List<SendPushNotificationResult>> sendBatch(final List<PushNotification> pushNotifications) {
+    final Timer.Sample sample = Timer.start();
+
+    final List<Message> messages;
+
+    try {
+      messages = pushNotifications.stream().map(FcmSender::buildMessage).toList();
+    } catch (final RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return GoogleApiUtil.toCompletableFuture(firebaseMessagingClient.sendEachAsync(messages), executor)
+        .whenComplete((ignored, throwable) -> sample.stop(SEND_BATCH_TIMER))
+        .thenApply(batchResponse -> batchResponse.getResponses().stream()
+            .map(sendResponse -> sendResponse.isSuccessful() ? ACCEPTED_RESULT : getResult(sendResponse.getException()))
+            .toList())
+        .exceptionally(ExceptionUtils.exceptionallyHandler(FirebaseMessagingException.class,
+            firebaseMessagingException -> {
+              // The whole batch failed for the same reason
+              final SendPushNotificationResult result = getResult(firebaseMessagingException);
+              return pushNotifications.stream().map(ignored -> result).toList();
+            }));
+  }
+
+  private static Message buildMessage(final PushNotification pushNotification) {
     Message.Builder builder = Message.builder()
         .setToken(pushNotification.deviceToken())
         .setAndroidConfig(AndroidConfig.builder()
@@ -93,29 +156,24 @@ public class FcmSender implements PushNotificationSender {
 
     builder.putData(key, pushNotification.data() != null ? pushNotification.data() : "");
 
-    final Timer.Sample sample = Timer.start();
+    return builder.build();
+  }
 
-    return GoogleApiUtil.toCompletableFuture(firebaseMessagingClient.sendAsync(builder.build()), executor)
-        .whenComplete((ignored, throwable) -> sample.stop(SEND_NOTIFICATION_TIMER))
-        .thenApply(ignored -> new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty()))
-        .exceptionally(ExceptionUtils.exceptionallyHandler(FirebaseMessagingException.class,
-            firebaseMessagingException -> {
-              final String errorCode;
+  private static SendPushNotificationResult getResult(final FirebaseMessagingException firebaseMessagingException) {
+    final String errorCode;
 
-              if (firebaseMessagingException.getMessagingErrorCode() != null) {
-                errorCode = firebaseMessagingException.getMessagingErrorCode().name();
-              } else if (firebaseMessagingException.getHttpResponse() != null) {
-                errorCode = "http" + firebaseMessagingException.getHttpResponse().getStatusCode();
-              } else {
-                logger.warn("Received an FCM exception with no error code", firebaseMessagingException);
-                errorCode = "unknown";
-              }
+    if (firebaseMessagingException.getMessagingErrorCode() != null) {
+      errorCode = firebaseMessagingException.getMessagingErrorCode().name();
+    } else if (firebaseMessagingException.getHttpResponse() != null) {
+      errorCode = "http" + firebaseMessagingException.getHttpResponse().getStatusCode();
+    } else {
+      logger.warn("Received an FCM exception with no error code", firebaseMessagingException);
+      errorCode = "unknown";
+    }
 
-              final boolean unregistered =
-                  firebaseMessagingException.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED;
+    final boolean unregistered =
+        firebaseMessagingException.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED;
 
-              return new SendPushNotificationResult(false, Optional.of(errorCode), unregistered, Optional.empty());
-            }));
+    return new SendPushNotificationResult(false, Optional.of(errorCode), unregistered, Optional.empty());
   }
 }
-
@@ -328,7 +328,8 @@ public class MessageSender {
         : Optional.empty();
   }
 
-  private static void validateIndividualMessageContentLength(final Iterable<Envelope> messages,
+  @VisibleForTesting
+  static void validateIndividualMessageContentLength(final Iterable<Envelope> messages,
       final boolean isSyncMessage,
       @Nullable final String userAgent) throws MessageTooLargeException {
 
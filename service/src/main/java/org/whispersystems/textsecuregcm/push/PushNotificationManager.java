@@ -8,49 +8,120 @@ package org.whispersystems.textsecuregcm.push;
 import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.lifecycle.Managed;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPushNotificationCoalescingConfiguration;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 import org.whispersystems.textsecuregcm.util.Pair;
 
-public class PushNotificationManager {
+public class PushNotificationManager implements Managed {
 
   private final AccountsManager accountsManager;
   private final APNSender apnSender;
   private final FcmSender fcmSender;
   private final PushNotificationScheduler pushNotificationScheduler;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private final ScheduledExecutorService coalescingExecutor;
+
+  // "New message" notifications for a device that arrive while a coalescing window is open for that device are held
+  // here; at most one held notification per device and urgency is sent when the window closes
+  private final Map<CoalescingKey, CoalescingWindow> coalescingWindows = new ConcurrentHashMap<>();
+
+  // Once stopped, notifications are no longer held because nothing would close their windows
+  private volatile boolean stopped = false;
 
   private static final String SENT_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "sentPushNotification");
   private static final String FAILED_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "failedPushNotification");
   private static final String DEVICE_TOKEN_UNREGISTERED_COUNTER_NAME = name(PushNotificationManager.class, "deviceTokenUnregistered");
 
+  private static final String SUPPRESSED_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "suppressedPushNotification");
+  private static final String COALESCING_DELAY_TIMER_NAME = name(PushNotificationManager.class, "coalescingDelay");
+  private static final String URGENT_TAG_NAME = "urgent";
+
   private static final Logger logger = LoggerFactory.getLogger(PushNotificationManager.class);
 
+  private record CoalescingKey(UUID accountIdentifier, byte deviceId, boolean urgent) {
+  }
+
+  private static class CoalescingWindow {
+
+    // The most recent notification held during this window, if any
+    private final AtomicReference<PushNotification> heldNotification = new AtomicReference<>();
+
+    // The time at which the first notification still held in this window arrived
+    private volatile long firstHeldNanos;
+  }
+
   public PushNotificationManager(final AccountsManager accountsManager,
       final APNSender apnSender,
       final FcmSender fcmSender,
-      final PushNotificationScheduler pushNotificationScheduler) {
+      final PushNotificationScheduler pushNotificationScheduler,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
+      final ScheduledExecutorService coalescingExecutor) {
 
     this.accountsManager = accountsManager;
     this.apnSender = apnSender;
     this.fcmSender = fcmSender;
     this.pushNotificationScheduler = pushNotificationScheduler;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.coalescingExecutor = coalescingExecutor;
+  }
+
+  @Override
+  public void stop() {
+    stopped = true;
+
+    // Hand any held notifications to the push notification scheduler so they survive this instance; this needs only a
+    // quick write to the push scheduling cluster, and the scheduler resolves the destination again when it sends
+    final List<CompletableFuture<?>> flushFutures = new ArrayList<>();
+
+    for (final CoalescingKey coalescingKey : coalescingWindows.keySet()) {
+      @Nullable final CoalescingWindow coalescingWindow = coalescingWindows.remove(coalescingKey);
+      @Nullable final PushNotification heldNotification =
+          coalescingWindow != null ? coalescingWindow.heldNotification.getAndSet(null) : null;
+
+      if (heldNotification != null) {
+        final CompletableFuture<?> flushFuture = heldNotification.urgent()
+            ? pushNotificationScheduler.scheduleDelayedNotification(heldNotification.destination(),
+                heldNotification.destinationDevice(), Duration.ZERO)
+            : sendNotification(heldNotification);
+
+        flushFutures.add(flushFuture.whenComplete(logErrors()).exceptionally(ignored -> null));
+      }
+    }
+
+    CompletableFuture.allOf(flushFutures.toArray(CompletableFuture[]::new)).join();
   }
 
   public CompletableFuture<Optional<SendPushNotificationResult>> sendNewMessageNotification(final Account destination, final byte destinationDeviceId, final boolean urgent) throws NotPushRegisteredException {
     final Device device = destination.getDevice(destinationDeviceId).orElseThrow(NotPushRegisteredException::new);
     final Pair<String, PushNotification.TokenType> tokenAndType = getToken(device);
 
-    return sendNotification(new PushNotification(tokenAndType.first(), tokenAndType.second(),
+    return sendCoalescedNotification(new PushNotification(tokenAndType.first(), tokenAndType.second(),
         PushNotification.NotificationType.NOTIFICATION, null, destination, device, urgent));
   }
 
@@ -82,6 +153,16 @@ public class PushNotificationManager {
 
   public void handleMessagesRetrieved(final Account account, final Device device, final String userAgent) {
     pushNotificationScheduler.cancelScheduledNotifications(account, device).whenComplete(logErrors());
+
+    // The device has just retrieved its messages, so there's no need to wake it up for any that arrived earlier
+    for (final boolean urgent : new boolean[] { true, false }) {
+      final CoalescingWindow coalescingWindow =
+          coalescingWindows.get(new CoalescingKey(account.getUuid(), device.getId(), urgent));
+
+      if (coalescingWindow != null && coalescingWindow.heldNotification.getAndSet(null) != null) {
+        Metrics.counter(SUPPRESSED_NOTIFICATION_COUNTER_NAME, URGENT_TAG_NAME, String.valueOf(urgent)).increment();
+      }
+    }
   }
 
   @VisibleForTesting
@@ -99,6 +180,125 @@ public class PushNotificationManager {
     return tokenAndType;
   }
 
+  /**
+   * Sends a "new message" notification unless a coalescing window is open for the destination device, in which case the
+   * notification is held and sent (in place of any other notifications held for the same device) when the window
+   * closes. Sending a notification opens a new window for the destination device.
+   *
+   * @return a future that yields the result of sending the notification if it was sent immediately or empty if the
+   * notification was scheduled or held
+   */
+  @VisibleForTesting
+  CompletableFuture<Optional<SendPushNotificationResult>> sendCoalescedNotification(
+      final PushNotification pushNotification) {
+
+    final DynamicPushNotificationCoalescingConfiguration coalescingConfiguration =
+        dynamicConfigurationManager.getConfiguration().getPushNotificationCoalescingConfiguration();
+
+    final Duration window = pushNotification.urgent()
+        ? coalescingConfiguration.urgentWindow()
+        : coalescingConfiguration.nonUrgentWindow();
+
+    if (stopped || !window.isPositive()
+        || pushNotification.destination() == null || pushNotification.destinationDevice() == null) {
+      return sendNotification(pushNotification);
+    }
+
+    final CoalescingKey coalescingKey = new CoalescingKey(pushNotification.destination().getUuid(),
+        pushNotification.destinationDevice().getId(),
+        pushNotification.urgent());
+
+    final AtomicBoolean openedWindow = new AtomicBoolean(false);
+
+    coalescingWindows.compute(coalescingKey, (ignored, existingWindow) -> {
+      if (existingWindow == null) {
+        openedWindow.set(true);
+        return new CoalescingWindow();
+      }
+
+      if (existingWindow.heldNotification.getAndSet(pushNotification) == null) {
+        existingWindow.firstHeldNanos = System.nanoTime();
+      } else {
+        // The previously-held notification has been replaced and will never be sent
+        Metrics.counter(SUPPRESSED_NOTIFICATION_COUNTER_NAME, URGENT_TAG_NAME, String.valueOf(pushNotification.urgent()))
+            .increment();
+      }
+
+      return existingWindow;
+    });
+
+    if (openedWindow.get()) {
+      scheduleCloseCoalescingWindow(coalescingKey, window);
+      return sendNotification(pushNotification);
+    }
+
+    return CompletableFuture.completedFuture(Optional.empty());
+  }
+
+  private void scheduleCloseCoalescingWindow(final CoalescingKey coalescingKey, final Duration window) {
+    coalescingExecutor.schedule(() -> closeCoalescingWindow(coalescingKey, window),
+        window.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Closes the coalescing window for the given device. If any notifications were held while the window was open, the
+   * most recent one is sent to the device's current push token and a new window is opened in its place.
+   */
+  private void closeCoalescingWindow(final CoalescingKey coalescingKey, final Duration window) {
+    final AtomicReference<PushNotification> notificationToSend = new AtomicReference<>();
+
+    coalescingWindows.computeIfPresent(coalescingKey, (ignored, coalescingWindow) -> {
+      @Nullable final PushNotification heldNotification = coalescingWindow.heldNotification.getAndSet(null);
+
+      if (heldNotification == null) {
+        return null;
+      }
+
+      Timer.builder(COALESCING_DELAY_TIMER_NAME)
+          .tags(URGENT_TAG_NAME, String.valueOf(coalescingKey.urgent()))
+          .publishPercentiles(0.5, 0.75, 0.95, 0.99, 0.999)
+          .register(Metrics.globalRegistry)
+          .record(System.nanoTime() - coalescingWindow.firstHeldNanos, TimeUnit.NANOSECONDS);
+
+      notificationToSend.set(heldNotification);
+      return coalescingWindow;
+    });
+
+    if (notificationToSend.get() != null) {
+      scheduleCloseCoalescingWindow(coalescingKey, window);
+      sendHeldNotification(notificationToSend.get()).whenComplete(logErrors());
+    }
+  }
+
+  /**
+   * Sends a notification that was held in a coalescing window. The account may have changed (for example, the device
+   * may have a new push token or may have been removed) since the notification was held, so the destination is read
+   * again before sending.
+   *
+   * @return a future that yields the result of sending the notification or empty if the notification was scheduled or
+   * if the destination device no longer exists or can no longer receive push notifications
+   */
+  private CompletableFuture<Optional<SendPushNotificationResult>> sendHeldNotification(
+      final PushNotification heldNotification) {
+
+    return accountsManager.getByAccountIdentifierAsync(heldNotification.destination().getUuid())
+        .thenCompose(maybeAccount -> maybeAccount
+            .flatMap(account -> account.getDevice(heldNotification.destinationDevice().getId())
+                .flatMap(device -> {
+                  try {
+                    final Pair<String, PushNotification.TokenType> tokenAndType = getToken(device);
+
+                    return Optional.of(new PushNotification(tokenAndType.first(), tokenAndType.second(),
+                        heldNotification.notificationType(), heldNotification.data(), account, device,
+                        heldNotification.urgent()));
+                  } catch (final NotPushRegisteredException e) {
+                    return Optional.empty();
+                  }
+                }))
+            .map(this::sendNotification)
+            .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())));
+  }
+
   @VisibleForTesting
   CompletableFuture<Optional<SendPushNotificationResult>> sendNotification(final PushNotification pushNotification) {
     if (!pushNotification.urgent()) {
@@ -19,13 +19,16 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.BiFunction;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +40,7 @@ import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.RedisClusterUtil;
 import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public class PushNotificationScheduler implements Managed {
@@ -111,32 +115,43 @@ public class PushNotificationScheduler implements Managed {
     @VisibleForTesting
     long processScheduledBackgroundNotifications(PushNotification.TokenType tokenType, final int slot) {
       return processScheduledNotifications(getPendingBackgroundNotificationQueueKey(tokenType, slot),
-          (account, device) -> sendBackgroundNotification(tokenType, account, device));
+          accountsAndDevices -> sendBackgroundNotifications(tokenType, accountsAndDevices, maxConcurrency));
     }
 
 
     @VisibleForTesting
     long processScheduledDelayedNotifications(final int slot) {
       return processScheduledNotifications(getDelayedNotificationQueueKey(slot),
-          PushNotificationScheduler.this::sendDelayedNotification);
+          accountsAndDevices -> sendDelayedNotifications(accountsAndDevices, maxConcurrency));
     }
 
+    /**
+     * Processes due notifications from the given queue a page at a time, with up to {@code maxConcurrency} pages in
+     * flight. For each page, accounts are resolved once per distinct account, notifications are handed to the senders
+     * as a batch, and all successfully-sent notifications are removed from the queue with a single command.
+     *
+     * @param queueKey the queue from which to read due notifications
+     * @param sendNotificationsFunction a function that sends notifications to a page of devices and emits the devices
+     *                                  whose notifications were sent
+     *
+     * @return the number of notifications sent and removed from the queue
+     */
     private long processScheduledNotifications(final String queueKey,
-        final BiFunction<Account, Device, CompletableFuture<Void>> sendNotificationFunction) {
+        final Function<List<Pair<Account, Device>>, Flux<Pair<Account, Device>>> sendNotificationsFunction) {
 
       final long currentTimeMillis = clock.millis();
       final AtomicLong processedNotifications = new AtomicLong(0);
 
       pushSchedulingCluster.useCluster(
           connection -> connection.reactive().zrangebyscore(queueKey, Range.create(0, currentTimeMillis))
-              .flatMap(encodedAciAndDeviceId -> Mono.fromFuture(
-                  () -> getAccountAndDeviceFromPairString(encodedAciAndDeviceId)), maxConcurrency)
-              .flatMap(Mono::justOrEmpty)
-              .flatMap(accountAndDevice -> Mono.fromFuture(
-                          () -> sendNotificationFunction.apply(accountAndDevice.first(), accountAndDevice.second()))
-                      .then(Mono.defer(() -> connection.reactive().zrem(queueKey, encodeAciAndDeviceId(accountAndDevice.first(), accountAndDevice.second()))))
-                      .doOnSuccess(ignored -> processedNotifications.incrementAndGet()),
-                  maxConcurrency)
+              .buffer(PAGE_SIZE)
+              .flatMap(encodedAcisAndDeviceIds -> getAccountsAndDevices(encodedAcisAndDeviceIds)
+                  .flatMapMany(sendNotificationsFunction)
+                  .map(accountAndDevice -> encodeAciAndDeviceId(accountAndDevice.first(), accountAndDevice.second()))
+                  .collectList()
+                  .filter(sent -> !sent.isEmpty())
+                  .flatMap(sent -> connection.reactive().zrem(queueKey, sent.toArray(String[]::new))
+                      .doOnSuccess(ignored -> processedNotifications.addAndGet(sent.size()))), maxConcurrency)
               .then()
               .block());
 
@@ -279,52 +294,116 @@ public class PushNotificationScheduler implements Managed {
 
   @VisibleForTesting
   CompletableFuture<Void> sendBackgroundNotification(PushNotification.TokenType tokenType, final Account account, final Device device) {
-    final String pushToken = getPushToken(tokenType, device);
-    if (StringUtils.isBlank(pushToken)) {
-      return CompletableFuture.completedFuture(null);
-    }
+    return sendBackgroundNotifications(tokenType, List.of(new Pair<>(account, device)), 1)
+        .then()
+        .toFuture();
+  }
+
+  private Flux<Pair<Account, Device>> sendBackgroundNotifications(final PushNotification.TokenType tokenType,
+      final List<Pair<Account, Device>> accountsAndDevices,
+      final int maxConcurrency) {
 
     final PushNotificationSender sender = switch (tokenType) {
       case FCM -> fcmSender;
       case APN -> apnSender;
     };
 
+    // Devices without a token have nothing to send and are considered done
+    final Flux<Pair<Account, Device>> devicesWithoutTokens = Flux.fromIterable(accountsAndDevices)
+        .filter(accountAndDevice -> StringUtils.isBlank(getPushToken(tokenType, accountAndDevice.second())));
+
     // It's okay for the "last notification" timestamp to expire after the "cooldown" period has elapsed; a missing
     // timestamp and a timestamp older than the period are functionally equivalent.
-    return pushSchedulingCluster.withCluster(connection -> connection.async().set(
-        getLastBackgroundNotificationTimestampKey(account, device),
-        String.valueOf(clock.millis()), new SetArgs().ex(BACKGROUND_NOTIFICATION_PERIOD)))
-        .thenCompose(ignored -> sender.sendNotification(new PushNotification(pushToken, tokenType, PushNotification.NotificationType.NOTIFICATION, null, account, device, false)))
-        .thenAccept(response -> Metrics.counter(BACKGROUND_NOTIFICATION_SENT_COUNTER_NAME,
-                ACCEPTED_TAG, String.valueOf(response.accepted()))
-            .increment())
-        .toCompletableFuture();
+    final Flux<Pair<Account, Device>> sentNotifications = Flux.fromIterable(accountsAndDevices)
+        .filter(accountAndDevice -> StringUtils.isNotBlank(getPushToken(tokenType, accountAndDevice.second())))
+        .flatMap(accountAndDevice -> Mono.fromCompletionStage(() -> pushSchedulingCluster.withCluster(connection ->
+                    connection.async().set(
+                        getLastBackgroundNotificationTimestampKey(accountAndDevice.first(), accountAndDevice.second()),
+                        String.valueOf(clock.millis()), new SetArgs().ex(BACKGROUND_NOTIFICATION_PERIOD))))
+                .thenReturn(accountAndDevice)
+                .onErrorResume(throwable -> {
+                  logger.warn("Failed to update last background notification timestamp", throwable);
+                  return Mono.empty();
+                }),
+            maxConcurrency)
+        .collectList()
+        .flatMapMany(accountsAndDevicesToNotify -> sendNotifications(sender,
+            accountsAndDevicesToNotify.stream()
+                .map(accountAndDevice -> new PushNotification(getPushToken(tokenType, accountAndDevice.second()),
+                    tokenType,
+                    PushNotification.NotificationType.NOTIFICATION,
+                    null,
+                    accountAndDevice.first(),
+                    accountAndDevice.second(),
+                    false))
+                .toList(),
+            maxConcurrency,
+            (device, response) -> Metrics.counter(BACKGROUND_NOTIFICATION_SENT_COUNTER_NAME,
+                    ACCEPTED_TAG, String.valueOf(response.accepted()))
+                .increment()));
+
+    return Flux.concat(devicesWithoutTokens, sentNotifications);
   }
 
-  @VisibleForTesting
-  CompletableFuture<Void> sendDelayedNotification(final Account account, final Device device) {
-    if (StringUtils.isAllBlank(device.getApnId(), device.getGcmId())) {
-      return CompletableFuture.completedFuture(null);
-    }
-
-    final boolean isApnsDevice = StringUtils.isNotBlank(device.getApnId());
-
-    final PushNotification pushNotification = new PushNotification(
-        isApnsDevice ? device.getApnId() : device.getGcmId(),
-        isApnsDevice ? PushNotification.TokenType.APN : PushNotification.TokenType.FCM,
-        PushNotification.NotificationType.NOTIFICATION,
-        null,
-        account,
-        device,
-        true);
-
-    final PushNotificationSender pushNotificationSender = isApnsDevice ? apnSender : fcmSender;
+  private Flux<Pair<Account, Device>> sendDelayedNotifications(final List<Pair<Account, Device>> accountsAndDevices,
+      final int maxConcurrency) {
+
+    // Devices without a token have nothing to send and are considered done
+    final Flux<Pair<Account, Device>> devicesWithoutTokens = Flux.fromIterable(accountsAndDevices)
+        .filter(accountAndDevice ->
+            StringUtils.isAllBlank(accountAndDevice.second().getApnId(), accountAndDevice.second().getGcmId()));
+
+    final Map<Boolean, List<Pair<Account, Device>>> accountsAndDevicesByApnsDevice = accountsAndDevices.stream()
+        .filter(accountAndDevice ->
+            !StringUtils.isAllBlank(accountAndDevice.second().getApnId(), accountAndDevice.second().getGcmId()))
+        .collect(Collectors.partitioningBy(accountAndDevice ->
+            StringUtils.isNotBlank(accountAndDevice.second().getApnId())));
+
+    final Flux<Pair<Account, Device>> sentNotifications = Flux.fromIterable(accountsAndDevicesByApnsDevice.entrySet())
+        .filter(entry -> !entry.getValue().isEmpty())
+        .flatMap(entry -> {
+          final boolean isApnsDevice = entry.getKey();
+
+          return sendNotifications(isApnsDevice ? apnSender : fcmSender,
+              entry.getValue().stream()
+                  .map(accountAndDevice -> new PushNotification(
+                      isApnsDevice ? accountAndDevice.second().getApnId() : accountAndDevice.second().getGcmId(),
+                      isApnsDevice ? PushNotification.TokenType.APN : PushNotification.TokenType.FCM,
+                      PushNotification.NotificationType.NOTIFICATION,
+                      null,
+                      accountAndDevice.first(),
+                      accountAndDevice.second(),
+                      true))
+                  .toList(),
+              maxConcurrency,
+              (device, response) -> Metrics.counter(DELAYED_NOTIFICATION_SENT_COUNTER_NAME,
+                      TOKEN_TYPE_TAG, getTokenType(device),
+                      ACCEPTED_TAG, String.valueOf(response.accepted()))
+                  .increment());
+        });
+
+    return Flux.concat(devicesWithoutTokens, sentNotifications);
+  }
 
-    return pushNotificationSender.sendNotification(pushNotification)
-        .thenAccept(response -> Metrics.counter(DELAYED_NOTIFICATION_SENT_COUNTER_NAME,
-            TOKEN_TYPE_TAG, getTokenType(device),
-            ACCEPTED_TAG, String.valueOf(response.accepted()))
-            .increment());
+  /**
+   * Sends a batch of notifications with the given sender and emits the destinations of the notifications that were sent
+   * (whether or not they were accepted by the upstream service). Notifications that could not be sent are logged and
+   * left for a future attempt.
+   */
+  private static Flux<Pair<Account, Device>> sendNotifications(final PushNotificationSender sender,
+      final List<PushNotification> pushNotifications,
+      final int maxConcurrency,
+      final BiConsumer<Device, SendPushNotificationResult> resultConsumer) {
+
+    return sender.sendNotifications(pushNotifications, maxConcurrency)
+        .doOnNext(notificationAndResult ->
+            resultConsumer.accept(notificationAndResult.first().destinationDevice(), notificationAndResult.second()))
+        .map(notificationAndResult -> new Pair<>(notificationAndResult.first().destination(),
+            notificationAndResult.first().destinationDevice()))
+        .onErrorResume(throwable -> {
+          logger.warn("Failed to send scheduled notifications", throwable);
+          return Flux.empty();
+        });
   }
 
   @VisibleForTesting
@@ -353,13 +432,24 @@ public class PushNotificationScheduler implements Managed {
     return new Pair<>(aci, deviceId);
   }
 
-  @VisibleForTesting
-  CompletableFuture<Optional<Pair<Account, Device>>> getAccountAndDeviceFromPairString(final String endpoint) {
-    final Pair<UUID, Byte> aciAndDeviceId = decodeAciAndDeviceId(endpoint);
-
-    return accountsManager.getByAccountIdentifierAsync(aciAndDeviceId.first())
-        .thenApply(maybeAccount -> maybeAccount
-            .flatMap(account -> account.getDevice(aciAndDeviceId.second()).map(device -> new Pair<>(account, device))));
+  /**
+   * Resolves a page of encoded ACI/device ID pairs to accounts and devices with a single bulk account lookup.
+   * Pairs that refer to accounts or devices that no longer exist are omitted from the results.
+   */
+  private Mono<List<Pair<Account, Device>>> getAccountsAndDevices(final List<String> encodedAcisAndDeviceIds) {
+    final List<Pair<UUID, Byte>> acisAndDeviceIds = encodedAcisAndDeviceIds.stream()
+        .map(PushNotificationScheduler::decodeAciAndDeviceId)
+        .toList();
+
+    return Mono.fromFuture(() -> accountsManager.getByAccountIdentifiersAsync(acisAndDeviceIds.stream()
+            .map(Pair::first)
+            .toList()))
+        .map(accountsByAci -> acisAndDeviceIds.stream()
+            .flatMap(aciAndDeviceId -> accountsByAci.getOrDefault(aciAndDeviceId.first(), Optional.empty())
+                .flatMap(account -> account.getDevice(aciAndDeviceId.second())
+                    .map(device -> new Pair<>(account, device)))
+                .stream())
+            .toList());
   }
 
   @VisibleForTesting
@@ -5,9 +5,35 @@
 
 package org.whispersystems.textsecuregcm.push;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import org.whispersystems.textsecuregcm.util.Pair;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.concurrent.Queues;
 
 public interface PushNotificationSender {
 
   CompletableFuture<SendPushNotificationResult> sendNotification(PushNotification notification);
+
+  /**
+   * Sends a batch of notifications. By default, notifications are sent individually with at most
+   * {@code maxConcurrency} sends in flight at any time; senders with a native batch API may override this method.
+   * Nothing is sent until the returned publisher is subscribed.
+   *
+   * @param notifications the notifications to send
+   * @param maxConcurrency the maximum number of sends to have in flight at any time
+   *
+   * @return a publisher that emits each notification that was sent along with the result of sending it, in no
+   * particular order; if any notification could not be sent, the publisher fails once the results for all other
+   * notifications have been emitted
+   */
+  default Flux<Pair<PushNotification, SendPushNotificationResult>> sendNotifications(
+      final List<PushNotification> notifications, final int maxConcurrency) {
+
+    return Flux.fromIterable(notifications)
+        .flatMapDelayError(notification -> Mono.fromFuture(() -> sendNotification(notification))
+                .map(result -> new Pair<>(notification, result)),
+            Math.max(1, maxConcurrency), Queues.XS_BUFFER_SIZE);
+  }
 }
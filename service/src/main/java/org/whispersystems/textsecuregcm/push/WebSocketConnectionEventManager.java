@@ -6,6 +6,7 @@
 package org.whispersystems.textsecuregcm.push;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.cluster.SlotHash;
@@ -15,6 +16,7 @@ import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,8 +29,11 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,7 +69,10 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
   private final AccountsManager accountsManager;
   private final PushNotificationManager pushNotificationManager;
   private final FaultTolerantRedisClusterClient clusterClient;
-  private final Executor listenerEventExecutor;
+
+  // Listener events for any single device are dispatched in order, but events for different devices may be dispatched
+  // in parallel
+  private final Executor[] listenerEventExecutorStripes;
 
   // Note that this MUST be a single-threaded executor; its function is to process tasks that should usually be
   // non-blocking, but can rarely block, and do so in the order in which those tasks were submitted.
@@ -75,6 +83,9 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
 
   private final Map<AccountAndDeviceIdentifier, WebSocketConnectionEventListener> listenersByAccountAndDeviceIdentifier;
 
+  // The number of subscribe/unsubscribe operations that have been enqueued, but have not yet completed
+  private final AtomicInteger pendingSubscriptionOperations;
+
   private final UUID serverId = UUID.randomUUID();
 
   private final byte[] CLIENT_CONNECTED_EVENT_BYTES = ClientEvent.newBuilder()
@@ -96,9 +107,19 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
   private static final Counter MESSAGE_AVAILABLE_WITHOUT_LISTENER_COUNTER =
       Metrics.counter(MetricsUtil.name(WebSocketConnectionEventManager.class, "messageAvailableWithoutListener"));
 
+  private static final Timer LISTENER_EVENT_DISPATCH_LAG_TIMER = Timer.builder(
+          MetricsUtil.name(WebSocketConnectionEventManager.class, "listenerEventDispatchLag"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99, 0.999)
+      .register(Metrics.globalRegistry);
+
   private static final String LISTENER_GAUGE_NAME =
       MetricsUtil.name(WebSocketConnectionEventManager.class, "listeners");
 
+  private static final String PENDING_SUBSCRIPTION_OPERATIONS_GAUGE_NAME =
+      MetricsUtil.name(WebSocketConnectionEventManager.class, "pendingSubscriptionOperations");
+
+  private static final int LISTENER_EVENT_EXECUTOR_STRIPES = 256;
+
   private static final Logger logger = LoggerFactory.getLogger(WebSocketConnectionEventManager.class);
 
   @VisibleForTesting
@@ -115,11 +136,19 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
     this.pushNotificationManager = pushNotificationManager;
 
     this.clusterClient = clusterClient;
-    this.listenerEventExecutor = listenerEventExecutor;
     this.asyncOperationQueueingExecutor = asyncOperationQueueingExecutor;
 
+    this.listenerEventExecutorStripes = new Executor[LISTENER_EVENT_EXECUTOR_STRIPES];
+
+    for (int i = 0; i < listenerEventExecutorStripes.length; i++) {
+      listenerEventExecutorStripes[i] = MoreExecutors.newSequentialExecutor(listenerEventExecutor);
+    }
+
     this.listenersByAccountAndDeviceIdentifier =
         Metrics.gaugeMapSize(LISTENER_GAUGE_NAME, Tags.empty(), new ConcurrentHashMap<>());
+
+    this.pendingSubscriptionOperations =
+        Metrics.gauge(PENDING_SUBSCRIPTION_OPERATIONS_GAUGE_NAME, new AtomicInteger(0));
   }
 
   @Override
@@ -161,6 +190,9 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
       throw new IllegalStateException("WebSocket connection event manager not started");
     }
 
+    final AccountAndDeviceIdentifier accountAndDeviceIdentifier =
+        new AccountAndDeviceIdentifier(accountIdentifier, deviceId);
+
     final byte[] eventChannel = getClientEventChannel(accountIdentifier, deviceId);
     final AtomicReference<WebSocketConnectionEventListener> displacedListener = new AtomicReference<>();
     final AtomicReference<CompletionStage<Void>> subscribeFuture = new AtomicReference<>();
@@ -175,11 +207,10 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
     // This provides a mechanism to make sure that we enqueue subscription/unsubscription operations in the same order
     // as adding/removing listeners from the map and helps us avoid races and conflicts. Note that the enqueued
     // operation is asynchronous; we're not blocking on it in the scope of the `compute` operation.
-    listenersByAccountAndDeviceIdentifier.compute(new AccountAndDeviceIdentifier(accountIdentifier, deviceId),
+    listenersByAccountAndDeviceIdentifier.compute(accountAndDeviceIdentifier,
         (key, existingListener) -> {
-          subscribeFuture.set(CompletableFuture.supplyAsync(() -> pubSubConnection.withPubSubConnection(connection ->
-                  connection.async().ssubscribe(eventChannel)), asyncOperationQueueingExecutor)
-              .thenCompose(Function.identity()));
+          subscribeFuture.set(enqueueSubscriptionOperation(() -> pubSubConnection.withPubSubConnection(connection ->
+              connection.async().ssubscribe(eventChannel))));
 
           if (existingListener != null) {
             displacedListener.set(existingListener);
@@ -189,7 +220,7 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
         });
 
     if (displacedListener.get() != null) {
-      listenerEventExecutor.execute(() -> displacedListener.get().handleConnectionDisplaced(true));
+      dispatchListenerEvent(accountAndDeviceIdentifier, () -> displacedListener.get().handleConnectionDisplaced(true));
     }
 
     return subscribeFuture.get()
@@ -232,10 +263,9 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
     // operation is asynchronous; we're not blocking on it in the scope of the `compute` operation.
     listenersByAccountAndDeviceIdentifier.compute(new AccountAndDeviceIdentifier(accountIdentifier, deviceId),
         (ignored, existingListener) -> {
-          unsubscribeFuture.set(CompletableFuture.supplyAsync(() -> pubSubConnection.withPubSubConnection(connection ->
-                      connection.async().sunsubscribe(getClientEventChannel(accountIdentifier, deviceId)))
-                  .thenRun(Util.NOOP), asyncOperationQueueingExecutor)
-              .thenCompose(Function.identity()));
+          unsubscribeFuture.set(enqueueSubscriptionOperation(() -> pubSubConnection.withPubSubConnection(connection ->
+                  connection.async().sunsubscribe(getClientEventChannel(accountIdentifier, deviceId)))
+              .thenRun(Util.NOOP)));
 
           return null;
         });
@@ -286,15 +316,48 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
               }
             });
 
-    // Issue one resubscription command per affected slot
+    // Issue one resubscription command per affected slot; don't wait for one slot's command to finish before issuing
+    // the next
     eventChannelsBySlot.forEach((slot, eventChannels) -> {
       if (pubSubConnection != null) {
-        pubSubConnection.usePubSubConnection(connection ->
-            connection.sync().ssubscribe(eventChannels.toArray(byte[][]::new)));
+        pubSubConnection.withPubSubConnection(connection ->
+                connection.async().ssubscribe(eventChannels.toArray(byte[][]::new)))
+            .whenComplete((ignored, throwable) -> {
+              if (throwable != null) {
+                logger.warn("Failed to resubscribe to {} channels in slot {}", eventChannels.size(), slot, throwable);
+              }
+            });
       }
     });
   }
 
+  /**
+   * Enqueues a subscribe or unsubscribe operation on the async operation queue. Callers must enqueue operations for a
+   * device from within a {@code compute} operation on {@link #listenersByAccountAndDeviceIdentifier} so that operations
+   * are issued in the same order as listeners are added and removed.
+   *
+   * @param operation the operation to issue once all previously-enqueued operations have been issued
+   *
+   * @return a future that completes when the operation has completed
+   */
+  private <T> CompletableFuture<T> enqueueSubscriptionOperation(final Supplier<CompletionStage<T>> operation) {
+    pendingSubscriptionOperations.incrementAndGet();
+
+    return CompletableFuture.supplyAsync(operation, asyncOperationQueueingExecutor)
+        .thenCompose(Function.identity())
+        .whenComplete((ignored, throwable) -> pendingSubscriptionOperations.decrementAndGet());
+  }
+
+  private void dispatchListenerEvent(final AccountAndDeviceIdentifier accountAndDeviceIdentifier, final Runnable event) {
+    final long enqueuedNanos = System.nanoTime();
+
+    listenerEventExecutorStripes[Math.floorMod(accountAndDeviceIdentifier.hashCode(), listenerEventExecutorStripes.length)]
+        .execute(() -> {
+          LISTENER_EVENT_DISPATCH_LAG_TIMER.record(System.nanoTime() - enqueuedNanos, TimeUnit.NANOSECONDS);
+          event.run();
+        });
+  }
+
   /**
    * Unsubscribes for notifications for the given account and device identifier if and only if no listener is registered
    * for that account and device identifier.
@@ -305,7 +368,7 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
     listenersByAccountAndDeviceIdentifier.compute(accountAndDeviceIdentifier, (ignored, existingListener) -> {
       if (existingListener == null && pubSubConnection != null) {
         // Enqueue, but do not block on, an "unsubscribe" operation
-        asyncOperationQueueingExecutor.execute(() -> pubSubConnection.usePubSubConnection(connection ->
+        enqueueSubscriptionOperation(() -> pubSubConnection.withPubSubConnection(connection ->
             connection.async().sunsubscribe(getClientEventChannel(accountAndDeviceIdentifier.accountIdentifier(),
                 accountAndDeviceIdentifier.deviceId()))));
       }
@@ -333,24 +396,24 @@ public class WebSocketConnectionEventManager extends RedisClusterPubSubAdapter<b
 
     if (listener != null) {
       switch (clientEvent.getEventCase()) {
-        case NEW_MESSAGE_AVAILABLE -> listener.handleNewMessageAvailable();
+        case NEW_MESSAGE_AVAILABLE -> dispatchListenerEvent(accountAndDeviceIdentifier, listener::handleNewMessageAvailable);
 
         case CLIENT_CONNECTED -> {
           // Only act on new connections to other event manager instances; we'll learn about displacements in THIS
           // instance when we update the listener map in `handleClientConnected`
           if (!this.serverId.equals(UUIDUtil.fromByteString(clientEvent.getClientConnected().getServerId()))) {
-            listenerEventExecutor.execute(() -> listener.handleConnectionDisplaced(true));
+            dispatchListenerEvent(accountAndDeviceIdentifier, () -> listener.handleConnectionDisplaced(true));
           }
         }
 
-        case MESSAGES_PERSISTED -> listenerEventExecutor.execute(listener::handleMessagesPersisted);
+        case MESSAGES_PERSISTED -> dispatchListenerEvent(accountAndDeviceIdentifier, listener::handleMessagesPersisted);
 
         default -> logger.warn("Unexpected client event type: {}", clientEvent.getClass());
       }
     } else {
       PUB_SUB_EVENT_WITHOUT_LISTENER_COUNTER.increment();
 
-      listenerEventExecutor.execute(() -> unsubscribeIfMissingListener(accountAndDeviceIdentifier));
+      dispatchListenerEvent(accountAndDeviceIdentifier, () -> unsubscribeIfMissingListener(accountAndDeviceIdentifier));
 
       if (clientEvent.getEventCase() == ClientEvent.EventCase.NEW_MESSAGE_AVAILABLE) {
         MESSAGE_AVAILABLE_WITHOUT_LISTENER_COUNTER.increment();
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.signal.libsignal.protocol.IdentityKey;
+import org.signal.libsignal.protocol.InvalidKeyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.util.ByteArrayBase64UrlAdapter;
+import org.whispersystems.textsecuregcm.util.DeviceNameByteArrayAdapter;
+import org.whispersystems.textsecuregcm.util.IdentityKeyAdapter;
+import org.whispersystems.textsecuregcm.util.SystemMapper;
+
+/**
+ * Encodes and decodes accounts stored in the shared Redis account cache.
+ * <p>
+ * Accounts may be cached either as JSON (the original encoding) or as a versioned binary encoding. Binary entries
+ * begin with a single format version byte followed by a CBOR document using the same field mapping as the JSON
+ * encoding; repeated strings (notably the field names of each device) are written once and referenced thereafter.
+ * Fields that the JSON encoding writes as base64 text (byte arrays and identity keys) are written as native CBOR byte
+ * strings instead. Because the binary encoding otherwise shares its field mapping with the JSON encoding, changes to
+ * {@link Account} or {@link Device} need no corresponding codec changes unless they introduce a new text adapter for
+ * binary data. JSON entries always begin with <code>{</code>, so entries in either encoding can be read regardless of
+ * which encoding is currently being written.
+ */
+final class AccountCacheCodec {
+
+  enum Format {
+    JSON,
+    CBOR
+  }
+
+  @VisibleForTesting
+  static final byte CBOR_FORMAT_VERSION = 0x01;
+
+  private static final ObjectWriter JSON_WRITER = SystemMapper.jsonMapper()
+      .writer(SystemMapper.excludingField(Account.class, List.of("uuid")));
+
+  private static final ObjectReader JSON_READER = SystemMapper.jsonMapper().readerFor(Account.class);
+
+  private static final ObjectMapper CBOR_MAPPER = SystemMapper.configureMapper(new CBORMapper(CBORFactory.builder()
+          .enable(CBORGenerator.Feature.STRINGREF)
+          .build()))
+      .setAnnotationIntrospector(new BinaryFieldAnnotationIntrospector());
+
+  private static final ObjectWriter CBOR_WRITER =
+      CBOR_MAPPER.writer(SystemMapper.excludingField(Account.class, List.of("uuid")));
+
+  private static final ObjectReader CBOR_READER = CBOR_MAPPER.readerFor(Account.class);
+
+  private static final String ENCODED_BYTES_DISTRIBUTION_NAME = name(AccountCacheCodec.class, "encodedBytes");
+  private static final String ENCODE_TIMER_NAME = name(AccountCacheCodec.class, "encode");
+  private static final String DECODE_TIMER_NAME = name(AccountCacheCodec.class, "decode");
+  private static final String FORMAT_TAG_NAME = "format";
+
+  private static final Logger logger = LoggerFactory.getLogger(AccountCacheCodec.class);
+
+  private AccountCacheCodec() {
+  }
+
+  /**
+   * Encodes the given account for storage in the account cache. Account identifiers are not included in the encoded
+   * form and must be supplied when decoding.
+   *
+   * @param account the account to encode
+   * @param format the encoding to use
+   *
+   * @return the encoded account
+   *
+   * @throws IOException if the account could not be encoded
+   */
+  static byte[] encode(final Account account, final Format format) throws IOException {
+    final Timer.Sample sample = Timer.start();
+
+    final byte[] encodedAccount = switch (format) {
+      case JSON -> JSON_WRITER.writeValueAsBytes(account);
+      case CBOR -> {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+        outputStream.write(CBOR_FORMAT_VERSION);
+        CBOR_WRITER.writeValue(outputStream, account);
+
+        yield outputStream.toByteArray();
+      }
+    };
+
+    sample.stop(Metrics.timer(ENCODE_TIMER_NAME, FORMAT_TAG_NAME, format.name()));
+
+    DistributionSummary.builder(ENCODED_BYTES_DISTRIBUTION_NAME)
+        .tags(FORMAT_TAG_NAME, format.name())
+        .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+        .register(Metrics.globalRegistry)
+        .record(encodedAccount.length);
+
+    return encodedAccount;
+  }
+
+  /**
+   * Decodes an account read from the account cache in either encoding.
+   *
+   * @param encodedAccount the encoded account; may be {@code null} or empty if no account was cached
+   * @param uuid the identifier of the cached account
+   *
+   * @return the decoded account, or empty if no account was cached or the cached account could not be decoded
+   */
+  static Optional<Account> decode(@Nullable final byte[] encodedAccount, final UUID uuid) {
+    if (encodedAccount == null || encodedAccount.length == 0) {
+      return Optional.empty();
+    }
+
+    final Format format = getFormat(encodedAccount);
+    final Timer.Sample sample = Timer.start();
+
+    try {
+      final Account account = switch (format) {
+        case JSON -> JSON_READER.readValue(encodedAccount);
+        case CBOR -> CBOR_READER.readValue(encodedAccount, 1, encodedAccount.length - 1);
+      };
+
+      account.setUuid(uuid);
+
+      if (account.getPhoneNumberIdentifier() == null) {
+        logger.warn("Account {} loaded from Redis is missing a PNI", uuid);
+      }
+
+      return Optional.of(account);
+    } catch (final IOException e) {
+      logger.warn("Deserialization error", e);
+      return Optional.empty();
+    } finally {
+      sample.stop(Metrics.timer(DECODE_TIMER_NAME, FORMAT_TAG_NAME, format.name()));
+    }
+  }
+
+  @VisibleForTesting
+  static Format getFormat(final byte[] encodedAccount) {
+    return encodedAccount[0] == CBOR_FORMAT_VERSION ? Format.CBOR : Format.JSON;
+  }
+
+  /**
+   * Swaps the base64 text adapters named in {@link Account} and {@link Device} field annotations for binary
+   * equivalents. Byte arrays fall back to Jackson's default handling, which CBOR writes as native byte strings.
+   */
+  private static class BinaryFieldAnnotationIntrospector extends JacksonAnnotationIntrospector {
+
+    private static final Set<Class<?>> BASE64_SERIALIZERS =
+        Set.of(ByteArrayBase64UrlAdapter.Serializing.class, DeviceNameByteArrayAdapter.Serializer.class);
+
+    private static final Set<Class<?>> BASE64_DESERIALIZERS =
+        Set.of(ByteArrayBase64UrlAdapter.Deserializing.class, DeviceNameByteArrayAdapter.Deserializer.class);
+
+    @Override
+    public Object findSerializer(final Annotated annotated) {
+      final Object serializer = super.findSerializer(annotated);
+
+      if (serializer == IdentityKeyAdapter.Serializer.class) {
+        return BinaryIdentityKeySerializer.class;
+      }
+
+      return serializer != null && BASE64_SERIALIZERS.contains(serializer) ? null : serializer;
+    }
+
+    @Override
+    public Object findDeserializer(final Annotated annotated) {
+      final Object deserializer = super.findDeserializer(annotated);
+
+      if (deserializer == IdentityKeyAdapter.Deserializer.class) {
+        return BinaryIdentityKeyDeserializer.class;
+      }
+
+      return deserializer != null && BASE64_DESERIALIZERS.contains(deserializer) ? null : deserializer;
+    }
+  }
+
+  private static class BinaryIdentityKeySerializer extends JsonSerializer<IdentityKey> {
+
+    @Override
+    public void serialize(final IdentityKey identityKey,
+        final JsonGenerator jsonGenerator,
+        final SerializerProvider serializers) throws IOException {
+
+      jsonGenerator.writeBinary(identityKey.serialize());
+    }
+  }
+
+  private static class BinaryIdentityKeyDeserializer extends JsonDeserializer<IdentityKey> {
+
+    @Override
+    public IdentityKey deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+      final byte[] identityKeyBytes = parser.getBinaryValue();
+
+      if (identityKeyBytes.length == 0) {
+        return null;
+      }
+
+      try {
+        return new IdentityKey(identityKeyBytes);
+      } catch (final InvalidKeyException e) {
+        throw new JsonParseException(parser, "Could not interpret identity key bytes as an EC public key", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local, size-bounded cache of encoded accounts, keyed by account identifier, that sits in front of the shared
+ * Redis account cache. Entries are invalidated when any server writes an account to (or removes an account from) the
+ * shared cache by way of messages on a Redis pub/sub channel, and expire after a short time to live regardless to
+ * bound staleness if an invalidation message is lost.
+ * <p>
+ * This cache holds the same encoded accounts stored in Redis rather than {@link Account} instances because accounts are
+ * mutable and callers routinely modify the instances they're given; each cache hit still yields a freshly-decoded
+ * account.
+ * <p>
+ * A load that overlaps an invalidation for the same account may have read a value that has since been replaced, so
+ * such loads are not cached.
+ */
+class AccountNearCache {
+
+  private final Clock clock;
+
+  private final Cache<UUID, byte[]> cache;
+  private final Cache<UUID, Long> invalidationTimesNanos;
+
+  @VisibleForTesting
+  static final String INVALIDATION_CHANNEL = "account_near_cache_invalidation";
+
+  private static final char INVALIDATION_MESSAGE_SEPARATOR = ':';
+
+  private static final Counter HIT_COUNTER = Metrics.counter(name(AccountNearCache.class, "hit"));
+  private static final Counter MISS_COUNTER = Metrics.counter(name(AccountNearCache.class, "miss"));
+  private static final Counter INVALIDATED_ENTRY_COUNTER =
+      Metrics.counter(name(AccountNearCache.class, "invalidatedEntry"));
+  private static final Counter SKIPPED_STALE_LOAD_COUNTER =
+      Metrics.counter(name(AccountNearCache.class, "skippedStaleLoad"));
+  private static final Timer INVALIDATION_LAG_TIMER = Timer.builder(name(AccountNearCache.class, "invalidationLag"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .register(Metrics.globalRegistry);
+
+  private static final Logger logger = LoggerFactory.getLogger(AccountNearCache.class);
+
+  AccountNearCache(final long maxSize, final Duration timeToLive, final Clock clock) {
+    this.clock = clock;
+
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(timeToLive)
+        .build();
+
+    // Loads take far less time than an entry's time to live; we only need to remember invalidations long enough to
+    // catch loads that were already in flight when the invalidation arrived
+    this.invalidationTimesNanos = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(timeToLive)
+        .build();
+  }
+
+  /**
+   * Returns the cached encoded account for the given account identifier, if present.
+   *
+   * @param accountIdentifier the identifier of the account to retrieve
+   *
+   * @return the cached encoded account, or empty if the account is not cached
+   */
+  Optional<byte[]> getIfPresent(final UUID accountIdentifier) {
+    final Optional<byte[]> maybeEncodedAccount = Optional.ofNullable(cache.getIfPresent(accountIdentifier));
+    (maybeEncodedAccount.isPresent() ? HIT_COUNTER : MISS_COUNTER).increment();
+
+    return maybeEncodedAccount;
+  }
+
+  /**
+   * Returns a token identifying the start of a load from the shared cache; callers must pass the token to
+   * {@link #put(UUID, byte[], long)} when the load completes.
+   *
+   * @return a token identifying the start of a load
+   */
+  long startLoad() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Caches the given encoded account unless the account was invalidated after the load that produced it started.
+   *
+   * @param accountIdentifier the identifier of the loaded account
+   * @param encodedAccount the encoded account loaded from the shared cache; empty values are not cached
+   * @param loadStartToken the token returned by {@link #startLoad()} before the load began
+   */
+  void put(final UUID accountIdentifier, @Nullable final byte[] encodedAccount, final long loadStartToken) {
+    if (encodedAccount == null || encodedAccount.length == 0) {
+      return;
+    }
+
+    final Long invalidationTimeNanos = invalidationTimesNanos.getIfPresent(accountIdentifier);
+
+    if (invalidationTimeNanos != null && invalidationTimeNanos - loadStartToken >= 0) {
+      SKIPPED_STALE_LOAD_COUNTER.increment();
+      return;
+    }
+
+    cache.put(accountIdentifier, encodedAccount);
+  }
+
+  /**
+   * Discards any cached copy of the given account.
+   *
+   * @param accountIdentifier the identifier of the account to invalidate
+   */
+  void invalidate(final UUID accountIdentifier) {
+    invalidationTimesNanos.put(accountIdentifier, System.nanoTime());
+
+    if (cache.asMap().remove(accountIdentifier) != null) {
+      INVALIDATED_ENTRY_COUNTER.increment();
+    }
+  }
+
+  /**
+   * Builds a message to be published to {@link #INVALIDATION_CHANNEL} to invalidate the given account on all servers.
+   *
+   * @param accountIdentifier the identifier of the account to invalidate
+   *
+   * @return an invalidation message for the given account
+   */
+  String buildInvalidationMessage(final UUID accountIdentifier) {
+    return accountIdentifier.toString() + INVALIDATION_MESSAGE_SEPARATOR + clock.millis();
+  }
+
+  /**
+   * Handles an invalidation message received from {@link #INVALIDATION_CHANNEL}.
+   *
+   * @param message the message received from the invalidation channel
+   */
+  void handleInvalidationMessage(final String message) {
+    final int separatorIndex = message.indexOf(INVALIDATION_MESSAGE_SEPARATOR);
+
+    try {
+      if (separatorIndex < 0) {
+        invalidate(UUID.fromString(message));
+      } else {
+        invalidate(UUID.fromString(message.substring(0, separatorIndex)));
+
+        final long publishedMillis = Long.parseLong(message.substring(separatorIndex + 1));
+        INVALIDATION_LAG_TIMER.record(Duration.ofMillis(Math.max(0, clock.millis() - publishedMillis)));
+      }
+    } catch (final IllegalArgumentException e) {
+      logger.warn("Could not parse account near cache invalidation message: {}", message);
+    }
+  }
+}
@@ -108,6 +108,7 @@ public class Accounts {
   private static final Timer GET_BY_USERNAME_LINK_HANDLE_TIMER = Metrics.timer(name(Accounts.class, "getByUsernameLinkHandle"));
   private static final Timer GET_BY_PNI_TIMER = Metrics.timer(name(Accounts.class, "getByPni"));
   private static final Timer GET_BY_UUID_TIMER = Metrics.timer(name(Accounts.class, "getByUuid"));
+  private static final Timer GET_BY_UUIDS_TIMER = Metrics.timer(name(Accounts.class, "getByUuids"));
   private static final Timer DELETE_TIMER = Metrics.timer(name(Accounts.class, "delete"));
   private static final String USERNAME_HOLD_ADDED_COUNTER_NAME = name(Accounts.class, "usernameHoldAdded");
 
@@ -1174,6 +1175,28 @@ public class Accounts {
         .toCompletableFuture();
   }
 
+  /**
+   * Retrieves the accounts with the given identifiers using as few {@code BatchGetItem} requests as possible.
+   *
+   * @param uuids the identifiers of the accounts to retrieve
+   *
+   * @return a future that yields a map of account identifiers to accounts; identifiers for which no account exists are
+   * absent from the map
+   */
+  @Nonnull
+  public CompletableFuture<Map<UUID, Account>> getByAccountIdentifiersAsync(final Collection<UUID> uuids) {
+    return AsyncTimerUtil.record(GET_BY_UUIDS_TIMER, () -> Flux.fromIterable(uuids)
+            .distinct()
+            .map(uuid -> Map.of(KEY_ACCOUNT_UUID, AttributeValues.fromUUID(uuid)))
+            .buffer(DynamoDbBatchOperations.DYNAMO_DB_MAX_BATCH_GET_SIZE)
+            .flatMap(keys -> DynamoDbBatchOperations.batchGetItems(dynamoDbAsyncClient, accountsTableName, keys))
+            .flatMapIterable(items -> items)
+            .map(Accounts::fromItem)
+            .collectMap(Account::getUuid)
+            .toFuture())
+        .toCompletableFuture();
+  }
+
   public Optional<UUID> findRecentlyDeletedAccountIdentifier(final UUID phoneNumberIdentifier) {
     final GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
         .tableName(deletedAccountsTableName)
@@ -9,13 +9,11 @@ import static com.codahale.metrics.MetricRegistry.name;
 import static java.util.Objects.requireNonNull;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.SetArgs;
-import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import io.lettuce.core.pubsub.RedisPubSubAdapter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
@@ -37,6 +35,7 @@ import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -103,11 +102,13 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   private static final Timer getByUsernameHashTimer = Metrics.timer(name(AccountsManager.class, "getByUsernameHash"));
   private static final Timer getByUsernameLinkHandleTimer = Metrics.timer(name(AccountsManager.class, "getByUsernameLinkHandle"));
   private static final Timer getByUuidTimer = Metrics.timer(name(AccountsManager.class, "getByUuid"));
+  private static final Timer getByUuidsTimer = Metrics.timer(name(AccountsManager.class, "getByUuids"));
   private static final Timer deleteTimer = Metrics.timer(name(AccountsManager.class, "delete"));
 
   private static final Timer redisSetTimer = Metrics.timer(name(AccountsManager.class, "redisSet"));
   private static final Timer redisPniGetTimer = Metrics.timer(name(AccountsManager.class, "redisPniGet"));
   private static final Timer redisUuidGetTimer = Metrics.timer(name(AccountsManager.class, "redisUuidGet"));
+  private static final Timer redisUuidsGetTimer = Metrics.timer(name(AccountsManager.class, "redisUuidsGet"));
   private static final Timer redisDeleteTimer = Metrics.timer(name(AccountsManager.class, "redisDelete"));
 
   private static final String CREATE_COUNTER_NAME       = name(AccountsManager.class, "createCounter");
@@ -134,6 +135,7 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   private final Executor accountLockExecutor;
   private final ScheduledExecutorService messagesPollExecutor;
   private final Clock clock;
+  private final AccountNearCache accountNearCache;
   private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
 
   private final Key verificationTokenKey;
@@ -163,9 +165,6 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   private static final String RESTORE_ACCOUNT_REQUEST_PREFIX = "restore_account::";
   private static final String RESTORE_ACCOUNT_REQUEST_KEYSPACE_PATTERN = "__keyspace@0__:" + RESTORE_ACCOUNT_REQUEST_PREFIX + "*";
 
-  private static final ObjectWriter ACCOUNT_REDIS_JSON_WRITER = SystemMapper.jsonMapper()
-      .writer(SystemMapper.excludingField(Account.class, List.of("uuid")));
-
   private static final Duration MESSAGE_POLL_INTERVAL = Duration.ofSeconds(1);
   private static final Duration MAX_SERVER_CLOCK_DRIFT = Duration.ofSeconds(5);
 
@@ -175,6 +174,9 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   // the owner.
   private static final long CACHE_TTL_SECONDS = Duration.ofDays(2).toSeconds();
 
+  private static final long ACCOUNT_NEAR_CACHE_MAX_SIZE = 10_000;
+  private static final Duration ACCOUNT_NEAR_CACHE_TTL = Duration.ofSeconds(5);
+
   private static final Duration USERNAME_HASH_RESERVATION_TTL_MINUTES = Duration.ofMinutes(5);
 
   private static final int MAX_UPDATE_ATTEMPTS = 10;
@@ -235,6 +237,7 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
     this.messagesPollExecutor = messagesPollExecutor;
     this.clock = requireNonNull(clock);
     this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.accountNearCache = new AccountNearCache(ACCOUNT_NEAR_CACHE_MAX_SIZE, ACCOUNT_NEAR_CACHE_TTL, clock);
 
     this.verificationTokenKey = new SecretKeySpec(linkDeviceSecret, LINK_DEVICE_VERIFICATION_TOKEN_ALGORITHM);
 
@@ -254,6 +257,7 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
       connection.addListener(this);
       connection.sync().psubscribe(LINKED_DEVICE_KEYSPACE_PATTERN, TRANSFER_ARCHIVE_KEYSPACE_PATTERN,
           RESTORE_ACCOUNT_REQUEST_KEYSPACE_PATTERN);
+      connection.sync().subscribe(AccountNearCache.INVALIDATION_CHANNEL);
     });
   }
 
@@ -261,6 +265,7 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   public void stop() {
     pubSubConnection.usePubSubConnection(connection -> {
       connection.sync().punsubscribe();
+      connection.sync().unsubscribe();
       connection.removeListener(this);
     });
   }
@@ -395,6 +400,9 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
 
     redisSet(account);
 
+    // A re-registration may reuse an existing account identifier
+    invalidateAccountNearCache(account.getUuid());
+
     Tags tags = Tags.of(UserAgentTagUtil.getPlatformTag(userAgent),
         Tag.of("type", accountCreationType),
         Tag.of("hasPushToken", String.valueOf(
@@ -973,24 +981,31 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   }
 
   /**
-   * Specialized version of {@link #updateDevice(Account, byte, Consumer)} that minimizes potentially contentious and
-   * redundant updates of {@code device.lastSeen}
+   * Asynchronously advances the last-seen times of any number of an account's devices in a single update. Devices that
+   * no longer exist or whose last-seen time is already at or beyond the given time are left unchanged, and no write is
+   * made if no device would change.
+   *
+   * @param account the account whose devices should be updated
+   * @param lastSeenByDeviceId a map of device IDs to new last-seen times
+   *
+   * @return a future that yields the updated account when the update is complete
    */
-  public Account updateDeviceLastSeen(Account account, Device device, final long lastSeen) {
-    return update(account, a -> {
+  public CompletableFuture<Account> updateDevicesLastSeenAsync(final Account account,
+      final Map<Byte, Long> lastSeenByDeviceId) {
 
-      final Optional<Device> maybeDevice = a.getDevice(device.getId());
-
-      return maybeDevice.map(d -> {
-        if (d.getLastSeen() >= lastSeen) {
-          return false;
-        }
+    return updateAsync(account, a -> {
+      boolean modified = false;
 
-        d.setLastSeen(lastSeen);
+      for (final Map.Entry<Byte, Long> entry : lastSeenByDeviceId.entrySet()) {
+        final Optional<Device> maybeDevice = a.getDevice(entry.getKey());
 
-        return true;
+        if (maybeDevice.isPresent() && maybeDevice.get().getLastSeen() < entry.getValue()) {
+          maybeDevice.get().setLastSeen(entry.getValue());
+          modified = true;
+        }
+      }
 
-      }).orElse(false);
+      return modified;
     });
   }
 
@@ -1019,6 +1034,9 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
 
       redisSet(updatedAccount);
 
+      // Readers may have reloaded the pre-update account into their near-caches while the update was in flight
+      invalidateAccountNearCache(uuid);
+
       return updatedAccount;
     });
   }
@@ -1039,6 +1057,11 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
               MAX_UPDATE_ATTEMPTS);
         })
         .thenCompose(updatedAccount -> redisSetAsync(updatedAccount).thenApply(ignored -> updatedAccount))
+        // Readers may have reloaded the pre-update account into their near-caches while the update was in flight
+        .thenApply(updatedAccount -> {
+          invalidateAccountNearCache(updatedAccount.getUuid());
+          return updatedAccount;
+        })
         .whenComplete((ignored, throwable) -> timerSample.stop(updateTimer));
   }
 
@@ -1240,6 +1263,48 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
     );
   }
 
+  /**
+   * Retrieves the accounts with the given identifiers in bulk. Cached accounts are fetched from the account cache in a
+   * single multi-key read, and any accounts not found in the cache are fetched from the accounts table in batches and
+   * then written back to the cache.
+   *
+   * @param accountIdentifiers the identifiers of the accounts to retrieve
+   *
+   * @return a future that yields a map of each distinct given account identifier to the corresponding account, or to
+   * empty if no account exists with that identifier
+   */
+  public CompletableFuture<Map<UUID, Optional<Account>>> getByAccountIdentifiersAsync(
+      final Collection<UUID> accountIdentifiers) {
+
+    final Set<UUID> uniqueAccountIdentifiers = new HashSet<>(accountIdentifiers);
+    final Timer.Sample sample = Timer.start();
+
+    return redisGetByAccountIdentifiersAsync(uniqueAccountIdentifiers)
+        .thenCompose(accountsFromRedis -> {
+          final Set<UUID> missedAccountIdentifiers = new HashSet<>(uniqueAccountIdentifiers);
+          missedAccountIdentifiers.removeAll(accountsFromRedis.keySet());
+
+          if (missedAccountIdentifiers.isEmpty()) {
+            return CompletableFuture.completedFuture(accountsFromRedis);
+          }
+
+          return accounts.getByAccountIdentifiersAsync(missedAccountIdentifiers)
+              .thenCompose(accountsFromAccounts -> CompletableFuture.allOf(accountsFromAccounts.values().stream()
+                      .map(this::redisSetAsync)
+                      .toArray(CompletableFuture[]::new))
+                  .thenApply(ignored -> {
+                    final Map<UUID, Account> combinedAccounts = new HashMap<>(accountsFromRedis);
+                    combinedAccounts.putAll(accountsFromAccounts);
+
+                    return combinedAccounts;
+                  }));
+        })
+        .thenApply(accountsByIdentifier -> uniqueAccountIdentifiers.stream()
+            .collect(Collectors.toMap(Function.identity(),
+                accountIdentifier -> Optional.ofNullable(accountsByIdentifier.get(accountIdentifier)))))
+        .whenComplete((ignored, throwable) -> sample.stop(getByUuidsTimer));
+  }
+
   public UUID getPhoneNumberIdentifier(String e164) {
     return phoneNumberIdentifiers.getPhoneNumberIdentifier(e164).join();
   }
@@ -1324,40 +1389,51 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
     return "Account3::" + uuid.toString();
   }
 
+  private byte[] getAccountEntityKeyBytes(final UUID uuid) {
+    return getAccountEntityKey(uuid).getBytes(StandardCharsets.UTF_8);
+  }
+
   private void redisSet(Account account) {
     redisSetTimer.record(() -> {
       try {
-        final String accountJson = writeRedisAccountJson(account);
+        final byte[] encodedAccount = encodeRedisAccount(account);
 
-        cacheCluster.useCluster(connection -> {
-          final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
+        cacheCluster.useCluster(connection ->
+            connection.sync().setex(getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
+                account.getUuid().toString()));
 
-          commands.setex(getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
-              account.getUuid().toString());
-          commands.setex(getAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, accountJson);
-        });
-      } catch (JsonProcessingException e) {
+        cacheCluster.useBinaryCluster(connection ->
+            connection.sync().setex(getAccountEntityKeyBytes(account.getUuid()), CACHE_TTL_SECONDS, encodedAccount));
+      } catch (final IOException e) {
         throw new IllegalStateException(e);
       }
     });
   }
 
   private CompletableFuture<Void> redisSetAsync(final Account account) {
-    final String accountJson;
+    final byte[] encodedAccount;
 
     try {
-      accountJson = writeRedisAccountJson(account);
-    } catch (final JsonProcessingException e) {
+      encodedAccount = encodeRedisAccount(account);
+    } catch (final IOException e) {
       throw new UncheckedIOException(e);
     }
 
-    return cacheCluster.withCluster(connection -> CompletableFuture.allOf(
-        connection.async().setex(
-                getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
-                account.getUuid().toString())
-            .toCompletableFuture(),
-        connection.async().setex(getAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, accountJson)
-            .toCompletableFuture()));
+    return CompletableFuture.allOf(
+            cacheCluster.withCluster(connection -> connection.async().setex(
+                    getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS,
+                    account.getUuid().toString())
+                .toCompletableFuture()),
+            cacheCluster.withBinaryCluster(connection -> connection.async()
+                .setex(getAccountEntityKeyBytes(account.getUuid()), CACHE_TTL_SECONDS, encodedAccount)
+                .toCompletableFuture()));
+  }
+
+  private byte[] encodeRedisAccount(final Account account) throws IOException {
+    return AccountCacheCodec.encode(account,
+        dynamicConfigurationManager.getConfiguration().getAccountCacheEncodingConfiguration().writeBinary()
+            ? AccountCacheCodec.Format.CBOR
+            : AccountCacheCodec.Format.JSON);
   }
 
   private Optional<Account> checkRedisThenAccounts(
@@ -1427,11 +1503,28 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   }
 
   private Optional<Account> redisGetByAccountIdentifier(UUID uuid) {
+    final boolean accountNearCacheEnabled = isAccountNearCacheEnabled();
+
+    if (accountNearCacheEnabled) {
+      final Optional<Account> maybeCachedAccount = accountNearCache.getIfPresent(uuid)
+          .flatMap(encodedAccount -> AccountCacheCodec.decode(encodedAccount, uuid));
+
+      if (maybeCachedAccount.isPresent()) {
+        return maybeCachedAccount;
+      }
+    }
+
     return redisUuidGetTimer.record(() -> {
       try {
-        final String json = cacheCluster.withCluster(connection -> connection.sync().get(getAccountEntityKey(uuid)));
+        final long loadStartToken = accountNearCache.startLoad();
+        final byte[] encodedAccount =
+            cacheCluster.withBinaryCluster(connection -> connection.sync().get(getAccountEntityKeyBytes(uuid)));
+
+        if (accountNearCacheEnabled) {
+          accountNearCache.put(uuid, encodedAccount, loadStartToken);
+        }
 
-        return parseAccountJson(json, uuid);
+        return AccountCacheCodec.decode(encodedAccount, uuid);
       } catch (final RedisException e) {
         logger.warn("Redis failure", e);
         return Optional.empty();
@@ -1440,8 +1533,27 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
   }
 
   private CompletableFuture<Optional<Account>> redisGetByAccountIdentifierAsync(final UUID uuid) {
-    return cacheCluster.withCluster(connection -> connection.async().get(getAccountEntityKey(uuid)))
-        .thenApply(accountJson -> parseAccountJson(accountJson, uuid))
+    final boolean accountNearCacheEnabled = isAccountNearCacheEnabled();
+
+    if (accountNearCacheEnabled) {
+      final Optional<Account> maybeCachedAccount = accountNearCache.getIfPresent(uuid)
+          .flatMap(encodedAccount -> AccountCacheCodec.decode(encodedAccount, uuid));
+
+      if (maybeCachedAccount.isPresent()) {
+        return CompletableFuture.completedFuture(maybeCachedAccount);
+      }
+    }
+
+    final long loadStartToken = accountNearCache.startLoad();
+
+    return cacheCluster.withBinaryCluster(connection -> connection.async().get(getAccountEntityKeyBytes(uuid)))
+        .thenApply(encodedAccount -> {
+          if (accountNearCacheEnabled) {
+            accountNearCache.put(uuid, encodedAccount, loadStartToken);
+          }
+
+          return AccountCacheCodec.decode(encodedAccount, uuid);
+        })
         .exceptionally(throwable -> {
           logger.warn("Failed to retrieve account from Redis", throwable);
           return Optional.empty();
@@ -1449,37 +1561,67 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
         .toCompletableFuture();
   }
 
-  @VisibleForTesting
-  static Optional<Account> parseAccountJson(@Nullable final String accountJson, final UUID uuid) {
-    try {
-      if (StringUtils.isNotBlank(accountJson)) {
-        Account account = SystemMapper.jsonMapper().readValue(accountJson, Account.class);
-        account.setUuid(uuid);
+  private CompletableFuture<Map<UUID, Account>> redisGetByAccountIdentifiersAsync(final Set<UUID> accountIdentifiers) {
+    final boolean accountNearCacheEnabled = isAccountNearCacheEnabled();
 
-        if (account.getPhoneNumberIdentifier() == null) {
-          logger.warn("Account {} loaded from Redis is missing a PNI", uuid);
-        }
+    final Map<UUID, Account> accountsByIdentifier = new HashMap<>();
+    final List<UUID> uncachedAccountIdentifiers = new ArrayList<>();
 
-        return Optional.of(account);
-      }
+    for (final UUID accountIdentifier : accountIdentifiers) {
+      final Optional<Account> maybeCachedAccount = accountNearCacheEnabled
+          ? accountNearCache.getIfPresent(accountIdentifier)
+              .flatMap(encodedAccount -> AccountCacheCodec.decode(encodedAccount, accountIdentifier))
+          : Optional.empty();
 
-      return Optional.empty();
-    } catch (final IOException e) {
-      logger.warn("Deserialization error", e);
-      return Optional.empty();
+      maybeCachedAccount.ifPresentOrElse(account -> accountsByIdentifier.put(accountIdentifier, account),
+          () -> uncachedAccountIdentifiers.add(accountIdentifier));
     }
-  }
 
-  @VisibleForTesting
-  static String writeRedisAccountJson(final Account account) throws JsonProcessingException {
-    return ACCOUNT_REDIS_JSON_WRITER.writeValueAsString(account);
+    if (uncachedAccountIdentifiers.isEmpty()) {
+      return CompletableFuture.completedFuture(accountsByIdentifier);
+    }
+
+    final long loadStartToken = accountNearCache.startLoad();
+    final byte[][] keys = uncachedAccountIdentifiers.stream()
+        .map(this::getAccountEntityKeyBytes)
+        .toArray(byte[][]::new);
+
+    final Timer.Sample sample = Timer.start();
+
+    // The cluster client splits multi-key commands by slot, issues the per-slot MGETs concurrently, and returns values in
+    // the same order as the given keys
+    return cacheCluster.withBinaryCluster(connection -> connection.async().mget(keys))
+        .thenApply(keyValues -> {
+          for (int i = 0; i < keyValues.size(); i++) {
+            final UUID accountIdentifier = uncachedAccountIdentifiers.get(i);
+            final byte[] encodedAccount = keyValues.get(i).getValueOrElse(null);
+
+            if (accountNearCacheEnabled) {
+              accountNearCache.put(accountIdentifier, encodedAccount, loadStartToken);
+            }
+
+            AccountCacheCodec.decode(encodedAccount, accountIdentifier)
+                .ifPresent(account -> accountsByIdentifier.put(accountIdentifier, account));
+          }
+
+          return accountsByIdentifier;
+        })
+        .exceptionally(throwable -> {
+          logger.warn("Failed to retrieve accounts from Redis", throwable);
+          return accountsByIdentifier;
+        })
+        .whenComplete((ignored, throwable) -> sample.stop(redisUuidsGetTimer))
+        .toCompletableFuture();
   }
 
   private void redisDelete(final Account account) {
-    redisDeleteTimer.record(() ->
-        cacheCluster.useCluster(connection ->
-            connection.sync().del(getAccountMapKey(account.getPhoneNumberIdentifier().toString()),
-                getAccountEntityKey(account.getUuid()))));
+    redisDeleteTimer.record(() -> {
+      cacheCluster.useCluster(connection ->
+          connection.sync().del(getAccountMapKey(account.getPhoneNumberIdentifier().toString()),
+              getAccountEntityKey(account.getUuid())));
+
+      invalidateAccountNearCache(account.getUuid());
+    });
   }
 
   private CompletableFuture<Void> redisDeleteAsync(final Account account) {
@@ -1493,7 +1635,26 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
     return cacheCluster.withCluster(connection -> connection.async().del(keysToDelete))
         .toCompletableFuture()
         .whenComplete((ignoredResult, ignoredException) -> sample.stop(redisDeleteTimer))
-        .thenRun(Util.NOOP);
+        .thenRun(() -> invalidateAccountNearCache(account.getUuid()));
+  }
+
+  private boolean isAccountNearCacheEnabled() {
+    return dynamicConfigurationManager.getConfiguration().getAccountNearCacheConfiguration().enabled();
+  }
+
+  /**
+   * Discards any copy of the given account held in this server's near-cache and notifies all other servers to do the
+   * same. Invalidations are published regardless of whether the near-cache is enabled on this server so that servers on
+   * which it is enabled (for example, because they picked up a configuration change first) never miss changes made
+   * through servers on which it isn't. Callers should only invalidate accounts that have actually changed (as opposed
+   * to, say, accounts that have just been loaded into the shared cache after a miss) to avoid flooding the invalidation
+   * channel.
+   */
+  private void invalidateAccountNearCache(final UUID accountIdentifier) {
+    accountNearCache.invalidate(accountIdentifier);
+
+    pubSubRedisClient.useConnection(connection -> connection.async()
+        .publish(AccountNearCache.INVALIDATION_CHANNEL, accountNearCache.buildInvalidationMessage(accountIdentifier)));
   }
 
   public CompletableFuture<Optional<DeviceInfo>> waitForNewLinkedDevice(
@@ -1715,6 +1876,13 @@ public class AccountsManager extends RedisPubSubAdapter<String, String> implemen
     return future;
   }
 
+  @Override
+  public void message(final String channel, final String message) {
+    if (AccountNearCache.INVALIDATION_CHANNEL.equals(channel)) {
+      accountNearCache.handleInvalidationMessage(message);
+    }
+  }
+
   @Override
   public void message(final String pattern, final String channel, final String message) {
     if (LINKED_DEVICE_KEYSPACE_PATTERN.equals(pattern) && "set".equalsIgnoreCase(message)) {
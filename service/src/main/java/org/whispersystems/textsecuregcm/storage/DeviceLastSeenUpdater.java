@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Buffers device last-seen updates and writes them in the background. Updates for the same account that arrive between
+ * flushes are merged so that each account receives at most one write per flush regardless of how many of its devices
+ * were seen, and callers never wait on (or retry) account updates themselves.
+ * <p>
+ * Buffered updates are lost if the server stops abruptly; that's acceptable because last-seen times are coarse (they're
+ * truncated to the day) and the next authentication from an affected device will simply request the update again.
+ */
+public class DeviceLastSeenUpdater implements Managed {
+
+  private final AccountsManager accountsManager;
+  private final ScheduledExecutorService scheduledExecutorService;
+  private final Duration flushInterval;
+
+  private final Map<UUID, Map<Byte, Long>> pendingLastSeenByAccount = new ConcurrentHashMap<>();
+
+  @Nullable
+  private ScheduledFuture<?> flushFuture;
+
+  private static final int MAX_CONCURRENCY = 16;
+
+  private static final Counter BUFFERED_UPDATE_COUNTER =
+      Metrics.counter(name(DeviceLastSeenUpdater.class, "bufferedUpdate"));
+  private static final Counter ACCOUNT_UPDATE_COUNTER =
+      Metrics.counter(name(DeviceLastSeenUpdater.class, "accountUpdate"));
+  private static final Counter ACCOUNT_UPDATE_ERROR_COUNTER =
+      Metrics.counter(name(DeviceLastSeenUpdater.class, "accountUpdateError"));
+
+  private static final Logger logger = LoggerFactory.getLogger(DeviceLastSeenUpdater.class);
+
+  public DeviceLastSeenUpdater(final AccountsManager accountsManager,
+      final ScheduledExecutorService scheduledExecutorService,
+      final Duration flushInterval) {
+
+    this.accountsManager = accountsManager;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.flushInterval = flushInterval;
+  }
+
+  @Override
+  public void start() throws Exception {
+    flushFuture = scheduledExecutorService.scheduleWithFixedDelay(() -> {
+          try {
+            flush().join();
+          } catch (final Exception e) {
+            logger.warn("Failed to flush device last-seen updates", e);
+          }
+        },
+        flushInterval.toMillis(),
+        flushInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    if (flushFuture != null) {
+      flushFuture.cancel(false);
+    }
+
+    flush().join();
+  }
+
+  /**
+   * Schedules an update of the given device's last-seen time. If an update for the same device is already pending, the
+   * later of the two times wins.
+   * <p>
+   * Callers will usually keep requesting the same update until it has been written, so requests that would not change
+   * a pending update return without taking any locks.
+   *
+   * @param accountIdentifier the identifier of the account to which the device belongs
+   * @param deviceId the ID of the device that was seen
+   * @param lastSeen the device's new last-seen time, in milliseconds since the epoch
+   *
+   * @return {@code true} if the update was buffered or {@code false} if an update at least as recent was already
+   * pending for the given device
+   */
+  public boolean updateLastSeen(final UUID accountIdentifier, final byte deviceId, final long lastSeen) {
+    @Nullable final Map<Byte, Long> pendingLastSeenByDevice = pendingLastSeenByAccount.get(accountIdentifier);
+
+    if (pendingLastSeenByDevice != null && pendingLastSeenByDevice.getOrDefault(deviceId, 0L) >= lastSeen) {
+      return false;
+    }
+
+    pendingLastSeenByAccount.compute(accountIdentifier, (ignored, existingLastSeenByDevice) -> {
+      final Map<Byte, Long> lastSeenByDevice =
+          existingLastSeenByDevice != null ? existingLastSeenByDevice : new ConcurrentHashMap<>();
+
+      lastSeenByDevice.merge(deviceId, lastSeen, Math::max);
+
+      return lastSeenByDevice;
+    });
+
+    BUFFERED_UPDATE_COUNTER.increment();
+
+    return true;
+  }
+
+  /**
+   * Writes all pending last-seen updates, one account update per account.
+   *
+   * @return a future that completes when all pending updates have been written (or have failed)
+   */
+  @VisibleForTesting
+  CompletableFuture<Void> flush() {
+    return Flux.fromIterable(pendingLastSeenByAccount.keySet())
+        .flatMap(accountIdentifier -> Mono.justOrEmpty(pendingLastSeenByAccount.remove(accountIdentifier))
+            .flatMap(lastSeenByDevice -> Mono.fromFuture(() -> writeLastSeen(accountIdentifier, lastSeenByDevice))),
+            MAX_CONCURRENCY)
+        .then()
+        .toFuture();
+  }
+
+  private CompletableFuture<Void> writeLastSeen(final UUID accountIdentifier, final Map<Byte, Long> lastSeenByDevice) {
+    return accountsManager.getByAccountIdentifierAsync(accountIdentifier)
+        .thenCompose(maybeAccount -> maybeAccount
+            .map(account -> accountsManager.updateDevicesLastSeenAsync(account, lastSeenByDevice)
+                .thenRun(ACCOUNT_UPDATE_COUNTER::increment))
+            .orElse(CompletableFuture.completedFuture(null)))
+        .exceptionally(throwable -> {
+          ACCOUNT_UPDATE_ERROR_COUNTER.increment();
+          logger.warn("Failed to update device last-seen times for {}", accountIdentifier, throwable);
+
+          return null;
+        });
+  }
+}
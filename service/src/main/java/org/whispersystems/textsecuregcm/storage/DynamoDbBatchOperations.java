@@ -0,0 +1,191 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+import static org.whispersystems.textsecuregcm.storage.AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.reactivestreams.Publisher;
+import org.whispersystems.textsecuregcm.util.NoStackTraceRuntimeException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Issues DynamoDB batch requests and retries whatever DynamoDB leaves unprocessed (usually because of throttling) with
+ * bounded, jittered exponential backoff. Requests that still have unprocessed items once retries are exhausted fail
+ * with an {@link UnprocessedItemsException}.
+ */
+final class DynamoDbBatchOperations {
+
+  /**
+   * The maximum number of keys DynamoDB accepts in a single {@code BatchGetItem} request.
+   */
+  static final int DYNAMO_DB_MAX_BATCH_GET_SIZE = 100;
+
+  @VisibleForTesting
+  static final int BATCH_WRITE_CONCURRENCY = 8;
+
+  @VisibleForTesting
+  static final int MAX_BATCH_RETRIES = 10;
+
+  private static final Duration MIN_BACKOFF = Duration.ofMillis(25);
+  private static final Duration MAX_BACKOFF = Duration.ofSeconds(2);
+
+  private static final String UNPROCESSED_KEYS_COUNTER_NAME = name(DynamoDbBatchOperations.class, "batchGetUnprocessedKeys");
+  private static final String THROTTLED_WRITE_COUNTER_NAME = name(DynamoDbBatchOperations.class, "batchWriteThrottled");
+  private static final String UNPROCESSED_ITEMS_COUNTER_NAME = name(DynamoDbBatchOperations.class, "batchWriteUnprocessedItems");
+  private static final String TABLE_TAG_NAME = "table";
+
+  @VisibleForTesting
+  static class UnprocessedItemsException extends NoStackTraceRuntimeException {
+
+    UnprocessedItemsException() {
+      super("Batch request left unprocessed items");
+    }
+  }
+
+  private DynamoDbBatchOperations() {
+  }
+
+  /**
+   * Retrieves the items with the given keys from a single table with a consistent-read {@code BatchGetItem} request,
+   * retrying any unprocessed keys.
+   *
+   * @param dynamoDbAsyncClient the client with which to issue requests
+   * @param tableName the name of the table from which to read items
+   * @param keys the keys of the items to retrieve; must not contain more than {@link #DYNAMO_DB_MAX_BATCH_GET_SIZE} keys
+   *
+   * @return a publisher that yields all items that exist for the given keys, in no particular order, or fails if some
+   * keys remain unprocessed after all retries
+   */
+  static Mono<List<Map<String, AttributeValue>>> batchGetItems(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final List<Map<String, AttributeValue>> keys) {
+
+    // Each subscription needs its own view of which keys remain and which items have been retrieved
+    return Mono.defer(() -> {
+      final AtomicReference<List<Map<String, AttributeValue>>> remainingKeys = new AtomicReference<>(keys);
+      final List<Map<String, AttributeValue>> items = new ArrayList<>(keys.size());
+
+      return Mono.defer(() -> Mono.fromFuture(() -> dynamoDbAsyncClient.batchGetItem(BatchGetItemRequest.builder()
+                  .requestItems(Map.of(tableName, KeysAndAttributes.builder()
+                      .keys(remainingKeys.get())
+                      .consistentRead(true)
+                      .build()))
+                  .build()))
+              .doOnNext(response -> {
+                items.addAll(response.responses().getOrDefault(tableName, List.of()));
+
+                final KeysAndAttributes unprocessedKeys = response.unprocessedKeys().get(tableName);
+
+                if (unprocessedKeys != null && unprocessedKeys.hasKeys() && !unprocessedKeys.keys().isEmpty()) {
+                  Metrics.counter(UNPROCESSED_KEYS_COUNTER_NAME, TABLE_TAG_NAME, tableName)
+                      .increment(unprocessedKeys.keys().size());
+
+                  remainingKeys.set(unprocessedKeys.keys());
+                  throw new UnprocessedItemsException();
+                }
+              }))
+          .retryWhen(retrySpec())
+          .thenReturn(items);
+    });
+  }
+
+  /**
+   * Writes the given requests to a single table in batches of up to {@link AbstractDynamoDbStore#DYNAMO_DB_MAX_BATCH_SIZE}
+   * requests. Up to {@link #BATCH_WRITE_CONCURRENCY} batches are written in parallel, and unprocessed items in each
+   * batch are retried. Batch writes may not contain more than one request for the same item, so callers must make sure
+   * that no two requests within a batch refer to the same item.
+   *
+   * @param dynamoDbAsyncClient the client with which to issue requests
+   * @param tableName the name of the table to which to write items
+   * @param writeRequests the put or delete requests to write
+   * @param timerName the name of the timer with which to measure individual batch write attempts
+   *
+   * @return a publisher that completes when all requests have been written or fails if any batch could not be written
+   * completely
+   */
+  static Mono<Void> batchWriteItems(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final Publisher<WriteRequest> writeRequests,
+      final String timerName) {
+
+    return Flux.from(writeRequests)
+        .buffer(DYNAMO_DB_MAX_BATCH_SIZE)
+        .flatMap(batch -> writeBatch(dynamoDbAsyncClient, tableName, batch, timerName), BATCH_WRITE_CONCURRENCY)
+        .then();
+  }
+
+  private static Mono<Void> writeBatch(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName,
+      final List<WriteRequest> writeRequests,
+      final String timerName) {
+
+    final AtomicReference<Map<String, List<WriteRequest>>> remainingItems =
+        new AtomicReference<>(Map.of(tableName, writeRequests));
+
+    final AtomicBoolean firstAttempt = new AtomicBoolean(true);
+
+    return Mono.defer(() -> {
+          final Timer.Sample sample = Timer.start();
+          final Tags tags = Tags.of("firstAttempt", String.valueOf(firstAttempt.getAndSet(false)));
+
+          return Mono.fromFuture(() -> dynamoDbAsyncClient.batchWriteItem(BatchWriteItemRequest.builder()
+                  .requestItems(remainingItems.get())
+                  .build()))
+              .doOnError(throwable -> {
+                sample.stop(Metrics.timer(timerName, tags.and("outcome", "error")));
+
+                if (throwable instanceof AwsServiceException awsServiceException
+                    && awsServiceException.isThrottlingException()) {
+                  Metrics.counter(THROTTLED_WRITE_COUNTER_NAME, TABLE_TAG_NAME, tableName).increment();
+                }
+              })
+              .doOnNext(response -> {
+                sample.stop(Metrics.timer(timerName, tags.and("outcome", "success")));
+
+                if (response.hasUnprocessedItems() && !response.unprocessedItems().isEmpty()) {
+                  Metrics.counter(THROTTLED_WRITE_COUNTER_NAME, TABLE_TAG_NAME, tableName).increment();
+                  Metrics.counter(UNPROCESSED_ITEMS_COUNTER_NAME, TABLE_TAG_NAME, tableName)
+                      .increment(response.unprocessedItems().values().stream().mapToInt(List::size).sum());
+
+                  remainingItems.set(response.unprocessedItems());
+                  throw new UnprocessedItemsException();
+                }
+              });
+        })
+        .retryWhen(retrySpec())
+        .then();
+  }
+
+  private static RetryBackoffSpec retrySpec() {
+    return Retry.backoff(MAX_BATCH_RETRIES, MIN_BACKOFF)
+        .maxBackoff(MAX_BACKOFF)
+        .filter(throwable -> throwable instanceof UnprocessedItemsException
+            || (throwable instanceof AwsServiceException awsServiceException
+            && awsServiceException.isThrottlingException()))
+        .onRetryExhaustedThrow((spec, retrySignal) -> retrySignal.failure());
+  }
+}
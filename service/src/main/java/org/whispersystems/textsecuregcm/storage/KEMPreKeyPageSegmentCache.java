@@ -0,0 +1,156 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+/**
+ * A local, size-bounded cache of contiguous runs ("segments") of serialized keys from {@link KEMPreKeyPage KEM pre-key
+ * pages} stored in S3. When a key is taken from a page, the cache reads the whole segment containing that key with a
+ * single ranged read so that subsequent takes from the same page on this server can be served from memory.
+ * <p>
+ * The cache never decides which key a caller receives; callers must claim an index through the page's descriptor in
+ * DynamoDB before reading the key at that index, so single-use semantics are unaffected. Pages are immutable once
+ * written and page IDs are never reused, so cached segments can never be stale. Because page indexes only ever move
+ * forward, a segment is discarded as soon as its last key or any key in the following segment has been claimed, and
+ * all segments expire after a fixed period regardless.
+ *
+ * @see PagedSingleUseKEMPreKeyStore
+ */
+class KEMPreKeyPageSegmentCache {
+
+  private final S3AsyncClient s3AsyncClient;
+  private final String bucketName;
+  private final int keysPerSegment;
+
+  private final AsyncCache<SegmentKey, byte[]> segments;
+
+  private static final Counter HIT_COUNTER = Metrics.counter(name(KEMPreKeyPageSegmentCache.class, "hit"));
+  private static final Counter MISS_COUNTER = Metrics.counter(name(KEMPreKeyPageSegmentCache.class, "miss"));
+
+  private record SegmentKey(String s3Key, int segmentIndex) {
+  }
+
+  KEMPreKeyPageSegmentCache(final S3AsyncClient s3AsyncClient,
+      final String bucketName,
+      final int keysPerSegment,
+      final long maxSizeBytes,
+      final Duration timeToLive) {
+
+    if (keysPerSegment < 1) {
+      throw new IllegalArgumentException("Segments must contain at least one key");
+    }
+
+    this.s3AsyncClient = s3AsyncClient;
+    this.bucketName = bucketName;
+    this.keysPerSegment = keysPerSegment;
+
+    this.segments = Caffeine.newBuilder()
+        .maximumWeight(maxSizeBytes)
+        .<SegmentKey, byte[]>weigher((segmentKey, segment) -> segment.length)
+        .expireAfterWrite(timeToLive)
+        .buildAsync();
+  }
+
+  /**
+   * Returns the serialized key at the given index of a page, reading the segment that contains the key from S3 if it
+   * is not already cached.
+   *
+   * @param s3Key the S3 key of the page
+   * @param format the format of the page
+   * @param index the index of the key within the page; callers must have already claimed this index
+   * @param numKeys the total number of keys in the page
+   *
+   * @return a future that yields a read-only buffer containing exactly the serialized key at the given index
+   */
+  CompletableFuture<ByteBuffer> getSerializedKey(final String s3Key,
+      final int format,
+      final int index,
+      final int numKeys) {
+
+    if (index < 0 || index >= numKeys) {
+      throw new IllegalArgumentException("Index " + index + " out of bounds for page with " + numKeys + " keys");
+    }
+
+    final int segmentIndex = index / keysPerSegment;
+    final int firstIndexInSegment = segmentIndex * keysPerSegment;
+    final int lastIndexInSegment = Math.min(firstIndexInSegment + keysPerSegment, numKeys) - 1;
+
+    // Indexes only move forward, so nobody will need keys from the previous segment again
+    if (segmentIndex > 0) {
+      segments.synchronous().invalidate(new SegmentKey(s3Key, segmentIndex - 1));
+    }
+
+    final SegmentKey segmentKey = new SegmentKey(s3Key, segmentIndex);
+    final CompletableFuture<byte[]> cachedSegment = segments.getIfPresent(segmentKey);
+
+    final CompletableFuture<byte[]> segmentFuture;
+
+    if (cachedSegment != null) {
+      HIT_COUNTER.increment();
+      segmentFuture = cachedSegment;
+    } else {
+      segmentFuture = segments.get(segmentKey, (ignored, executor) -> {
+        MISS_COUNTER.increment();
+        return readSegment(s3Key, format, firstIndexInSegment, lastIndexInSegment);
+      });
+    }
+
+    if (index == lastIndexInSegment) {
+      segments.synchronous().invalidate(segmentKey);
+    }
+
+    final KEMPreKeyPage.KeyLocation segmentStart = KEMPreKeyPage.keyLocation(format, firstIndexInSegment);
+    final KEMPreKeyPage.KeyLocation keyLocation = KEMPreKeyPage.keyLocation(format, index);
+
+    return segmentFuture.thenApply(segment ->
+        ByteBuffer.wrap(segment, keyLocation.start() - segmentStart.start(), keyLocation.length())
+            .slice()
+            .asReadOnlyBuffer());
+  }
+
+  private CompletableFuture<byte[]> readSegment(final String s3Key,
+      final int format,
+      final int firstIndex,
+      final int lastIndex) {
+
+    final KEMPreKeyPage.KeyLocation firstKeyLocation = KEMPreKeyPage.keyLocation(format, firstIndex);
+    final KEMPreKeyPage.KeyLocation lastKeyLocation = KEMPreKeyPage.keyLocation(format, lastIndex);
+    final int expectedLength = lastKeyLocation.getEndInclusive() - firstKeyLocation.getStartInclusive() + 1;
+
+    return s3AsyncClient.getObject(GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            // An RFC9110 range header, inclusive on both ends
+            // https://www.rfc-editor.org/rfc/rfc9110.html#section-14.1.2
+            .range("bytes=%s-%s".formatted(firstKeyLocation.getStartInclusive(), lastKeyLocation.getEndInclusive()))
+            .build(), AsyncResponseTransformer.toBytes())
+        .thenApply(responseBytes -> {
+          final byte[] segment = responseBytes.asByteArrayUnsafe();
+
+          if (segment.length != expectedLength) {
+            throw new CompletionException(new IOException(
+                "Invalid response to ranged read; requested %d bytes, got %d for %s"
+                    .formatted(expectedLength, segment.length, s3Key)));
+          }
+
+          return segment;
+        });
+  }
+}
@@ -6,7 +6,10 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import io.micrometer.core.instrument.Metrics;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -16,6 +19,9 @@ import org.whispersystems.textsecuregcm.entities.KEMSignedPreKey;
 import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
 
 public class KeysManager {
@@ -119,37 +125,100 @@ public class KeysManager {
     return ecPreKeys.take(identifier, deviceId);
   }
 
+  /**
+   * Takes a single-use EC pre-key for each of the given devices.
+   *
+   * @return a future that yields a map of device IDs to an optional single-use EC pre-key for each of the given devices
+   *
+   * @see #takeEC(UUID, byte)
+   */
+  public CompletableFuture<Map<Byte, Optional<ECPreKey>>> takeEC(final UUID identifier,
+      final Collection<Byte> deviceIds) {
+
+    return ecPreKeys.take(identifier, deviceIds);
+  }
+
   public CompletableFuture<Optional<KEMSignedPreKey>> takePQ(final UUID identifier, final byte deviceId) {
     final boolean enrolledInPagedKeys = experimentEnrollmentManager.isEnrolled(identifier, PAGED_KEYS_EXPERIMENT_NAME);
-    return tagTakePQ(pagedPqPreKeys.take(identifier, deviceId), PQSource.PAGE, enrolledInPagedKeys)
-        .thenCompose(maybeSingleUsePreKey -> maybeSingleUsePreKey
-              .map(ignored -> CompletableFuture.completedFuture(maybeSingleUsePreKey))
-              .orElseGet(() -> tagTakePQ(pqPreKeys.take(identifier, deviceId), PQSource.ROW, enrolledInPagedKeys)))
+    return takeSingleUsePQ(identifier, deviceId, enrolledInPagedKeys)
         .thenCompose(maybeSingleUsePreKey -> maybeSingleUsePreKey
             .map(singleUsePreKey -> CompletableFuture.completedFuture(maybeSingleUsePreKey))
             .orElseGet(() -> tagTakePQ(pqLastResortKeys.find(identifier, deviceId), PQSource.LAST_RESORT, enrolledInPagedKeys)));
   }
 
+  /**
+   * Takes a KEM pre-key for each of the given devices. Single-use keys are taken for all devices concurrently, and
+   * last-resort keys for all devices that have no single-use keys remaining are then fetched in a single batch read.
+   *
+   * @return a future that yields a map of device IDs to an optional KEM pre-key for each of the given devices
+   *
+   * @see #takePQ(UUID, byte)
+   */
+  public CompletableFuture<Map<Byte, Optional<KEMSignedPreKey>>> takePQ(final UUID identifier,
+      final Collection<Byte> deviceIds) {
+
+    final boolean enrolledInPagedKeys = experimentEnrollmentManager.isEnrolled(identifier, PAGED_KEYS_EXPERIMENT_NAME);
+
+    return Flux.fromIterable(deviceIds)
+        .distinct()
+        .flatMap(deviceId -> Mono.fromFuture(() -> takeSingleUsePQ(identifier, deviceId, enrolledInPagedKeys))
+            .map(maybeSingleUsePreKey -> Tuples.of(deviceId, maybeSingleUsePreKey)))
+        .collectMap(Tuple2::getT1, Tuple2::getT2)
+        .toFuture()
+        .thenCompose(singleUsePreKeysByDeviceId -> {
+          final List<Byte> deviceIdsWithoutSingleUsePreKeys = singleUsePreKeysByDeviceId.entrySet().stream()
+              .filter(entry -> entry.getValue().isEmpty())
+              .map(Map.Entry::getKey)
+              .toList();
+
+          if (deviceIdsWithoutSingleUsePreKeys.isEmpty()) {
+            return CompletableFuture.completedFuture(singleUsePreKeysByDeviceId);
+          }
+
+          return pqLastResortKeys.find(identifier, deviceIdsWithoutSingleUsePreKeys)
+              .thenApply(lastResortKeysByDeviceId -> {
+                final Map<Byte, Optional<KEMSignedPreKey>> preKeysByDeviceId = new HashMap<>(singleUsePreKeysByDeviceId);
+
+                lastResortKeysByDeviceId.forEach((deviceId, maybeLastResortKey) -> preKeysByDeviceId.put(deviceId,
+                    tagTakePQ(maybeLastResortKey, PQSource.LAST_RESORT, enrolledInPagedKeys)));
+
+                return preKeysByDeviceId;
+              });
+        });
+  }
+
+  private CompletableFuture<Optional<KEMSignedPreKey>> takeSingleUsePQ(final UUID identifier,
+      final byte deviceId,
+      final boolean enrolledInPagedKeys) {
+
+    return tagTakePQ(pagedPqPreKeys.take(identifier, deviceId), PQSource.PAGE, enrolledInPagedKeys)
+        .thenCompose(maybeSingleUsePreKey -> maybeSingleUsePreKey
+            .map(ignored -> CompletableFuture.completedFuture(maybeSingleUsePreKey))
+            .orElseGet(() -> tagTakePQ(pqPreKeys.take(identifier, deviceId), PQSource.ROW, enrolledInPagedKeys)));
+  }
+
   private enum PQSource {
     PAGE,
     ROW,
     LAST_RESORT
   }
   private CompletableFuture<Optional<KEMSignedPreKey>> tagTakePQ(CompletableFuture<Optional<KEMSignedPreKey>> prekey, final PQSource source, final boolean enrolledInPagedKeys) {
-    return prekey.thenApply(maybeSingleUsePreKey -> {
-      final Optional<String> maybeSourceTag = maybeSingleUsePreKey
-          // If we found a PK, use this source tag
-          .map(ignore -> source.name())
-          // If we didn't and this is our last resort, we didn't find a PK
-          .or(() -> source == PQSource.LAST_RESORT ? Optional.of("absent") : Optional.empty());
-      maybeSourceTag.ifPresent(sourceTag -> {
-        Metrics.counter(TAKE_PQ_NAME,
-                "source", sourceTag,
-                "enrolled", Boolean.toString(enrolledInPagedKeys))
-            .increment();
-      });
-      return maybeSingleUsePreKey;
+    return prekey.thenApply(maybeSingleUsePreKey -> tagTakePQ(maybeSingleUsePreKey, source, enrolledInPagedKeys));
+  }
+
+  private Optional<KEMSignedPreKey> tagTakePQ(final Optional<KEMSignedPreKey> maybeSingleUsePreKey, final PQSource source, final boolean enrolledInPagedKeys) {
+    final Optional<String> maybeSourceTag = maybeSingleUsePreKey
+        // If we found a PK, use this source tag
+        .map(ignore -> source.name())
+        // If we didn't and this is our last resort, we didn't find a PK
+        .or(() -> source == PQSource.LAST_RESORT ? Optional.of("absent") : Optional.empty());
+    maybeSourceTag.ifPresent(sourceTag -> {
+      Metrics.counter(TAKE_PQ_NAME,
+              "source", sourceTag,
+              "enrolled", Boolean.toString(enrolledInPagedKeys))
+          .increment();
     });
+    return maybeSingleUsePreKey;
   }
 
   public CompletableFuture<Optional<KEMSignedPreKey>> getLastResort(final UUID identifier, final byte deviceId) {
@@ -160,6 +229,12 @@ public class KeysManager {
     return ecSignedPreKeys.find(identifier, deviceId);
   }
 
+  public CompletableFuture<Map<Byte, Optional<ECSignedPreKey>>> getEcSignedPreKeys(final UUID identifier,
+      final Collection<Byte> deviceIds) {
+
+    return ecSignedPreKeys.find(identifier, deviceIds);
+  }
+
   public CompletableFuture<Integer> getEcCount(final UUID identifier, final byte deviceId) {
     return ecPreKeys.getCount(identifier, deviceId);
   }
@@ -15,18 +15,24 @@ import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.auth.DisconnectionRequestManager;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagePersisterConfiguration;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
 import org.whispersystems.textsecuregcm.identity.IdentityType;
@@ -53,6 +59,10 @@ public class MessagePersister implements Managed {
   private final Thread[] workerThreads;
   private volatile boolean running;
 
+  private final Clock clock;
+  private final Map<String, MessagePersisterShard> shards = new ConcurrentHashMap<>();
+  private volatile Instant shardsRefreshed = Instant.EPOCH;
+
   private static final String OVERSIZED_QUEUE_COUNTER_NAME = name(MessagePersister.class, "persistQueueOversized");
   private static final String PERSISTED_MESSAGE_COUNTER_NAME = name(MessagePersister.class, "persistMessage");
   private static final String PERSISTED_BYTES_COUNTER_NAME = name(MessagePersister.class, "persistBytes");
@@ -71,6 +81,11 @@ public class MessagePersister implements Managed {
 
   private static final String QUEUE_SIZE_DISTRIBUTION_SUMMARY_NAME = name(MessagePersister.class, "queueSize");
 
+  private static final String SHARD_BACKLOG_GAUGE_NAME = name(MessagePersister.class, "shardBacklog");
+  private static final String SHARD_CONCURRENCY_GAUGE_NAME = name(MessagePersister.class, "shardConcurrency");
+
+  private static final Duration SHARD_REFRESH_INTERVAL = Duration.ofMinutes(1);
+
   static final int QUEUE_BATCH_LIMIT = 100;
   static final int MESSAGE_BATCH_LIMIT = 100;
 
@@ -89,6 +104,21 @@ public class MessagePersister implements Managed {
       final Duration persistDelay,
       final int dedicatedProcessWorkerThreadCount) {
 
+    this(messagesCache, messagesManager, accountsManager, dynamicConfigurationManager, experimentEnrollmentManager,
+        disconnectionRequestManager, persistDelay, dedicatedProcessWorkerThreadCount, Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  MessagePersister(final MessagesCache messagesCache,
+      final MessagesManager messagesManager,
+      final AccountsManager accountsManager,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
+      final ExperimentEnrollmentManager experimentEnrollmentManager,
+      final DisconnectionRequestManager disconnectionRequestManager,
+      final Duration persistDelay,
+      final int dedicatedProcessWorkerThreadCount,
+      final Clock clock) {
+
     this.messagesCache = messagesCache;
     this.messagesManager = messagesManager;
     this.accountsManager = accountsManager;
@@ -97,6 +127,7 @@ public class MessagePersister implements Managed {
     this.disconnectionRequestManager = disconnectionRequestManager;
     this.persistDelay = persistDelay;
     this.workerThreads = new Thread[dedicatedProcessWorkerThreadCount];
+    this.clock = clock;
 
     for (int i = 0; i < workerThreads.length; i++) {
       workerThreads[i] = new Thread(() -> {
@@ -104,7 +135,7 @@ public class MessagePersister implements Managed {
           if (dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration()
               .isPersistenceEnabled()) {
             try {
-              final int queuesPersisted = persistNextQueues(Instant.now());
+              final int queuesPersisted = persistNextQueues();
               QUEUE_COUNT_DISTRIBUTION_SUMMARY.record(queuesPersisted);
 
               if (queuesPersisted == 0) {
@@ -129,6 +160,7 @@ public class MessagePersister implements Managed {
 
   @Override
   public void start() {
+    refreshShards();
     running = true;
 
     for (final Thread workerThread : workerThreads) {
@@ -149,11 +181,105 @@ public class MessagePersister implements Managed {
     }
   }
 
+  /**
+   * Persists queues from the next slot of a shard that has spare capacity, preferring shards with the largest estimated
+   * backlog per active worker. If no shard has spare capacity, persists nothing. If the cluster topology is unknown,
+   * falls back to persisting queues from the next slot in the cluster-wide rotation.
+   *
+   * @return the number of queues persisted
+   */
+  private int persistNextQueues() {
+    if (clock.instant().isAfter(shardsRefreshed.plus(SHARD_REFRESH_INTERVAL))) {
+      refreshShards();
+    }
+
+    if (shards.values().stream().allMatch(shard -> shard.getSlots().isEmpty())) {
+      return persistNextQueues(clock.instant());
+    }
+
+    final Optional<MessagePersisterShard> maybeShard = acquireShard();
+
+    if (maybeShard.isEmpty()) {
+      return 0;
+    }
+
+    final MessagePersisterShard shard = maybeShard.get();
+
+    try {
+      return persistNextQueues(shard, clock.instant());
+    } finally {
+      shard.release();
+    }
+  }
+
+  private Optional<MessagePersisterShard> acquireShard() {
+    final List<MessagePersisterShard> candidates = shards.values().stream()
+        .filter(shard -> shard.getInFlight() < shard.getConcurrencyLimit())
+        .sorted(Comparator.comparingDouble(
+            (MessagePersisterShard shard) -> shard.getEstimatedBacklog() / (shard.getInFlight() + 1)).reversed())
+        .toList();
+
+    for (final MessagePersisterShard shard : candidates) {
+      if (shard.tryAcquire()) {
+        return Optional.of(shard);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  @VisibleForTesting
+  synchronized void refreshShards() {
+    final Map<String, List<Integer>> slotsByShard = messagesCache.getSlotsByShard();
+
+    if (!slotsByShard.isEmpty()) {
+      // Keep shard state (and the gauges that observe it) for shards we already know about, and leave any shards that
+      // have disappeared from the topology in place with no slots so they're never selected
+      shards.values().stream()
+          .filter(shard -> !slotsByShard.containsKey(shard.getName()))
+          .forEach(MessagePersisterShard::clearSlots);
+
+      slotsByShard.forEach((shardName, slots) -> shards.computeIfAbsent(shardName, ignored -> {
+            final MessagePersisterShard shard = new MessagePersisterShard(shardName, slots);
+            final Tags tags = Tags.of("shard", shardName);
+
+            Metrics.gauge(SHARD_BACKLOG_GAUGE_NAME, tags, shard, MessagePersisterShard::getEstimatedBacklog);
+            Metrics.gauge(SHARD_CONCURRENCY_GAUGE_NAME, tags, shard, MessagePersisterShard::getConcurrencyLimit);
+
+            return shard;
+          })
+          .setSlots(slots));
+    }
+
+    shardsRefreshed = clock.instant();
+  }
+
+  @VisibleForTesting
+  Optional<MessagePersisterShard> getShard(final String shardName) {
+    return Optional.ofNullable(shards.get(shardName));
+  }
+
   @VisibleForTesting
   int persistNextQueues(final Instant currentTime) {
     final int slot = messagesCache.getNextSlotToPersist();
-    final String shard = messagesCache.shardForSlot(slot);
+    return persistQueues(slot, messagesCache.shardForSlot(slot), currentTime);
+  }
+
+  @VisibleForTesting
+  int persistNextQueues(final MessagePersisterShard shard, final Instant currentTime) {
+    final int slot = messagesCache.getNextSlotToPersist(shard.getName(), shard.getSlots());
+    final int queuesPersisted = persistQueues(slot, shard.getName(), currentTime);
+
+    final DynamicMessagePersisterConfiguration configuration =
+        dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration();
 
+    shard.recordPass(queuesPersisted, configuration.getPersistLatencyTarget(),
+        Math.min(configuration.getMaxConcurrencyPerShard(), workerThreads.length));
+
+    return queuesPersisted;
+  }
+
+  private int persistQueues(final int slot, final String shard, final Instant currentTime) {
     List<String> queuesToPersist;
     int queuesPersisted = 0;
 
@@ -212,14 +338,14 @@ public class MessagePersister implements Managed {
 
     try {
       int messageCount = 0;
-      List<MessageProtos.Envelope> messages;
+      List<SerializedEnvelope> messages;
 
       int consecutiveEmptyCacheRemovals = 0;
 
       do {
         messages = messagesCache.getMessagesToPersist(accountUuid, deviceId, MESSAGE_BATCH_LIMIT);
 
-        final int urgentMessageCount = (int) messages.stream().filter(MessageProtos.Envelope::getUrgent).count();
+        final int urgentMessageCount = (int) messages.stream().filter(SerializedEnvelope::urgent).count();
         final int nonUrgentMessageCount = messages.size() - urgentMessageCount;
 
         final Tags tags = Tags.of(platformTag, Tag.of("shard", shard));
@@ -227,9 +353,17 @@ public class MessagePersister implements Managed {
         Metrics.counter(PERSISTED_MESSAGE_COUNTER_NAME, tags.and("urgent", "true")).increment(urgentMessageCount);
         Metrics.counter(PERSISTED_MESSAGE_COUNTER_NAME, tags.and("urgent", "false")).increment(nonUrgentMessageCount);
         Metrics.counter(PERSISTED_BYTES_COUNTER_NAME, tags)
-            .increment(messages.stream().mapToInt(MessageProtos.Envelope::getSerializedSize).sum());
+            .increment(messages.stream().mapToInt(SerializedEnvelope::serializedSize).sum());
+
+        // Only time the DynamoDB write; the cache removal that follows says nothing about write capacity
+        final Consumer<Duration> storeLatencyListener = messages.isEmpty()
+            ? ignored -> {}
+            : storeLatency -> getShard(shard)
+                .ifPresent(messagePersisterShard -> messagePersisterShard.recordWriteLatency(storeLatency));
+
+        int messagesRemovedFromCache =
+            messagesManager.persistMessages(accountUuid, device, messages, storeLatencyListener);
 
-        int messagesRemovedFromCache = messagesManager.persistMessages(accountUuid, device, messages);
         messageCount += messages.size();
 
         if (messagesRemovedFromCache == 0) {
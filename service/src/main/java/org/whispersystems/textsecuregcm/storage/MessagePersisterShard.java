@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks persistence state for a single Redis shard: the slots it serves, how many workers are currently persisting
+ * queues from it, and an adaptive limit on that number. The limit grows while scanning the shard's slots keeps turning
+ * up queues to persist and shrinks when the shard is idle or when writes to DynamoDB slow down.
+ */
+class MessagePersisterShard {
+
+  private final String name;
+
+  private volatile List<Integer> slots;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int concurrencyLimit = 1;
+
+  // Exponentially-weighted moving averages of the number of queues found per slot and of DynamoDB write latency
+  private double queuesPerSlot;
+  private double writeLatencyNanos;
+
+  private static final double SMOOTHING_FACTOR = 0.2;
+
+  MessagePersisterShard(final String name, final List<Integer> slots) {
+    this.name = name;
+    this.slots = List.copyOf(slots);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  List<Integer> getSlots() {
+    return slots;
+  }
+
+  void setSlots(final List<Integer> slots) {
+    this.slots = List.copyOf(slots);
+  }
+
+  void clearSlots() {
+    this.slots = Collections.emptyList();
+  }
+
+  /**
+   * Attempts to reserve a worker for this shard.
+   *
+   * @return {@code true} if the shard has slots to persist and is below its current concurrency limit, in which case
+   * the caller must eventually call {@link #release()}, or {@code false} otherwise
+   */
+  boolean tryAcquire() {
+    if (slots.isEmpty()) {
+      return false;
+    }
+
+    int current;
+
+    do {
+      current = inFlight.get();
+
+      if (current >= concurrencyLimit) {
+        return false;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+
+    return true;
+  }
+
+  void release() {
+    inFlight.decrementAndGet();
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  int getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  synchronized void recordWriteLatency(final Duration latency) {
+    writeLatencyNanos = writeLatencyNanos == 0
+        ? latency.toNanos()
+        : (SMOOTHING_FACTOR * latency.toNanos()) + ((1 - SMOOTHING_FACTOR) * writeLatencyNanos);
+  }
+
+  /**
+   * Records the outcome of a single pass over one of this shard's slots and adjusts the shard's concurrency limit. The
+   * limit is halved if DynamoDB writes are slower than the given target; otherwise, it rises by one while the average
+   * slot holds at least one queue per permitted worker and falls by one once it holds fewer than that.
+   *
+   * @param queuesFound the number of queues found ready for persistence in the slot
+   * @param latencyTarget the target average latency for writes to DynamoDB
+   * @param maxConcurrency the upper bound for this shard's concurrency limit
+   */
+  synchronized void recordPass(final int queuesFound, final Duration latencyTarget, final int maxConcurrency) {
+    queuesPerSlot = (SMOOTHING_FACTOR * queuesFound) + ((1 - SMOOTHING_FACTOR) * queuesPerSlot);
+
+    final int limit;
+
+    if (writeLatencyNanos > latencyTarget.toNanos()) {
+      limit = concurrencyLimit / 2;
+    } else if (queuesPerSlot >= concurrencyLimit) {
+      limit = concurrencyLimit + 1;
+    } else if (queuesPerSlot < concurrencyLimit - 1) {
+      limit = concurrencyLimit - 1;
+    } else {
+      limit = concurrencyLimit;
+    }
+
+    concurrencyLimit = Math.max(1, Math.min(limit, maxConcurrency));
+  }
+
+  /**
+   * Estimates the number of queues on this shard that are ready to be persisted.
+   *
+   * @return the average number of queues found per slot multiplied by the number of slots served by this shard
+   */
+  synchronized double getEstimatedBacklog() {
+    return queuesPerSlot * slots.size();
+  }
+}
@@ -15,7 +15,9 @@ import io.lettuce.core.Range;
 import io.lettuce.core.ScoredValue;
 import io.lettuce.core.ZAddArgs;
 import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Timer;
@@ -36,6 +38,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import org.reactivestreams.Publisher;
 import org.signal.libsignal.protocol.SealedSenderMultiRecipientMessage;
 import org.signal.libsignal.protocol.ServiceId;
@@ -125,12 +128,16 @@ public class MessagesCache {
   private final MessagesCacheRemoveQueueScript removeQueueScript;
   private final MessagesCacheGetQueuesToPersistScript getQueuesToPersistScript;
   private final MessagesCacheRemoveRecipientViewFromMrmDataScript removeRecipientViewFromMrmDataScript;
+
+  private final SharedMrmDataCache sharedMrmDataCache;
   private final MessagesCacheUnlockQueueScript unlockQueueScript;
 
   private final Timer insertTimer = Metrics.timer(name(MessagesCache.class, "insert"));
   private final Timer insertSharedMrmPayloadTimer = Metrics.timer(name(MessagesCache.class, "insertSharedMrmPayload"));
   private final Timer getMessagesTimer = Metrics.timer(name(MessagesCache.class, "get"));
   private final Timer getQueuesToPersistTimer = Metrics.timer(name(MessagesCache.class, "getQueuesToPersist"));
+  private final DistributionSummary readAheadPageSizeDistributionSummary =
+      Metrics.summary(name(MessagesCache.class, "readAheadPageSize"));
   private final Timer removeByGuidTimer = Metrics.timer(name(MessagesCache.class, "removeByGuid"));
   private final Timer removeRecipientViewTimer = Metrics.timer(name(MessagesCache.class, "removeRecipientView"));
   private final Timer clearQueueTimer = Metrics.timer(name(MessagesCache.class, "clear"));
@@ -159,8 +166,26 @@ public class MessagesCache {
   private static final String GET_FLUX_NAME = MetricsUtil.name(MessagesCache.class, "get");
   private static final int PAGE_SIZE = 100;
 
+  // When draining a queue for delivery, we fetch up to this many pages ahead of the page currently being delivered
+  @VisibleForTesting
+  static final int READ_AHEAD_PAGES = 2;
+
+  // The approximate upper bound on envelope bytes held in memory per queue drain, including pages fetched ahead
+  @VisibleForTesting
+  static final int READ_AHEAD_MEMORY_BUDGET_BYTES = 2 * 1024 * 1024;
+
+  @VisibleForTesting
+  static final int MIN_READ_AHEAD_PAGE_SIZE = 10;
+
+  @VisibleForTesting
+  static final int MAX_READ_AHEAD_PAGE_SIZE = 500;
+
   private static final int REMOVE_MRM_RECIPIENT_VIEW_CONCURRENCY = 8;
 
+  // Shared MRM payloads are immutable, so the TTL only bounds how long we hold payloads for messages already delivered
+  private static final long SHARED_MRM_DATA_CACHE_MAX_SIZE_BYTES = 64 * 1024 * 1024;
+  private static final Duration SHARED_MRM_DATA_CACHE_TTL = Duration.ofSeconds(30);
+
   private static final Logger logger = LoggerFactory.getLogger(MessagesCache.class);
 
   public MessagesCache(final FaultTolerantRedisClusterClient redisCluster,
@@ -212,6 +237,9 @@ public class MessagesCache {
     this.getQueuesToPersistScript = getQueuesToPersistScript;
     this.removeRecipientViewFromMrmDataScript = removeRecipientViewFromMrmDataScript;
     this.unlockQueueScript = unlockQueueScript;
+
+    this.sharedMrmDataCache =
+        new SharedMrmDataCache(redisCluster, SHARED_MRM_DATA_CACHE_MAX_SIZE_BYTES, SHARED_MRM_DATA_CACHE_TTL);
   }
 
   public CompletableFuture<Boolean> insert(final UUID messageGuid,
@@ -302,7 +330,12 @@ public class MessagesCache {
         clock.millis() - MAX_EPHEMERAL_MESSAGE_DELAY.toMillis();
 
     final Flux<MessageProtos.Envelope> allMessages = getAllMessages(destinationUuid, destinationDevice,
-        earliestAllowableEphemeralTimestamp, PAGE_SIZE)
+        earliestAllowableEphemeralTimestamp, PAGE_SIZE, READ_AHEAD_PAGES, queueItems -> {
+          final int pageSize = getReadAheadPageSize(queueItems);
+          readAheadPageSizeDistributionSummary.record(pageSize);
+
+          return pageSize;
+        })
         .publish()
         // We expect exactly three subscribers to this base flux:
         // 1. the websocket that delivers messages to clients
@@ -316,14 +349,14 @@ public class MessagesCache {
         .filter(Predicate.not(envelope ->
             isStaleEphemeralMessage(envelope, earliestAllowableEphemeralTimestamp) || isStaleMrmMessage(envelope)));
 
-    final Flux<MessageProtos.Envelope> staleEphemeralMessages = allMessages
-        .filter(envelope -> isStaleEphemeralMessage(envelope, earliestAllowableEphemeralTimestamp));
-    discardStaleMessages(destinationUuid, destinationDevice, staleEphemeralMessages, staleEphemeralMessagesCounter, "ephemeral");
+    final Flux<UUID> staleEphemeralMessageGuids = allMessages
+        .filter(envelope -> isStaleEphemeralMessage(envelope, earliestAllowableEphemeralTimestamp))
+        .map(envelope -> UUID.fromString(envelope.getServerGuid()));
+    discardStaleMessages(destinationUuid, destinationDevice, staleEphemeralMessageGuids, staleEphemeralMessagesCounter, "ephemeral");
 
-    final Flux<MessageProtos.Envelope> staleMrmMessages = allMessages.filter(MessagesCache::isStaleMrmMessage)
-        // clearing the sharedMrmKey prevents unnecessary calls to update the shared MRM data
-        .map(envelope -> envelope.toBuilder().clearSharedMrmKey().build());
-    discardStaleMessages(destinationUuid, destinationDevice, staleMrmMessages, staleMrmMessagesCounter, "mrm");
+    final Flux<UUID> staleMrmMessageGuids = allMessages.filter(MessagesCache::isStaleMrmMessage)
+        .map(envelope -> UUID.fromString(envelope.getServerGuid()));
+    discardStaleMessages(destinationUuid, destinationDevice, staleMrmMessageGuids, staleMrmMessagesCounter, "mrm");
 
     return messagesToPublish.name(GET_FLUX_NAME)
         .tap(Micrometer.metrics(Metrics.globalRegistry));
@@ -350,9 +383,8 @@ public class MessagesCache {
   }
 
   private void discardStaleMessages(final UUID destinationUuid, final byte destinationDevice,
-      Flux<MessageProtos.Envelope> staleMessages, final Counter counter, final String context) {
-    staleMessages
-        .map(e -> UUID.fromString(e.getServerGuid()))
+      Flux<UUID> staleMessageGuids, final Counter counter, final String context) {
+    staleMessageGuids
         .buffer(PAGE_SIZE)
         .subscribeOn(messageDeletionScheduler)
         .subscribe(messageGuids ->
@@ -365,19 +397,40 @@ public class MessagesCache {
   Flux<MessageProtos.Envelope> getAllMessages(final UUID destinationUuid, final byte destinationDevice,
       final long earliestAllowableEphemeralTimestamp, final int pageSize) {
 
+    return getAllMessages(destinationUuid, destinationDevice, earliestAllowableEphemeralTimestamp, pageSize, 1,
+        ignored -> pageSize);
+  }
+
+  /**
+   * Fetches all messages in the given queue, page by page.
+   *
+   * @param destinationUuid the account identifier for the queue
+   * @param destinationDevice the device identifier for the queue
+   * @param earliestAllowableEphemeralTimestamp the timestamp before which ephemeral messages are considered stale
+   * @param initialPageSize the number of messages to fetch in the first page
+   * @param readAheadPages the number of pages to fetch ahead of the page currently being consumed
+   * @param nextPageSize a function that chooses the size of the next page given the raw items of the last page
+   *
+   * @return a publisher of all messages in the queue
+   */
+  private Flux<MessageProtos.Envelope> getAllMessages(final UUID destinationUuid, final byte destinationDevice,
+      final long earliestAllowableEphemeralTimestamp, final int initialPageSize, final int readAheadPages,
+      final ToIntFunction<List<byte[]>> nextPageSize) {
+
     // fetch messages by page
-    return getNextMessagePage(destinationUuid, destinationDevice, -1, pageSize)
+    return getNextMessagePage(destinationUuid, destinationDevice, -1, initialPageSize)
         .expand(queueItemsAndLastMessageId -> {
           // expand() is breadth-first, so each page will be published in order
           if (queueItemsAndLastMessageId.first().isEmpty()) {
             return Mono.empty();
           }
 
-          return getNextMessagePage(destinationUuid, destinationDevice, queueItemsAndLastMessageId.second(), pageSize);
+          return getNextMessagePage(destinationUuid, destinationDevice, queueItemsAndLastMessageId.second(),
+              nextPageSize.applyAsInt(queueItemsAndLastMessageId.first()));
         })
-        .limitRate(1)
-        // we want to ensure we don’t accidentally block the Lettuce/netty i/o executors
-        .publishOn(messageDeliveryScheduler)
+        // we want to ensure we don’t accidentally block the Lettuce/netty i/o executors; the prefetch here also bounds
+        // how many pages we'll fetch before the pages already fetched have been consumed
+        .publishOn(messageDeliveryScheduler, readAheadPages)
         .map(Pair::first)
         .concatMap(queueItems -> {
 
@@ -410,7 +463,38 @@ public class MessagesCache {
           }
 
           return Flux.mergeSequential(envelopes);
-        });
+        }, 1);
+  }
+
+  /**
+   * Chooses a page size for the next page of a queue drain such that the pages fetched ahead of the current page fit
+   * within {@link #READ_AHEAD_MEMORY_BUDGET_BYTES}, assuming the next page's envelopes are about the same size as the
+   * last page's. How quickly pages are consumed (and therefore fetched) is governed by downstream demand, which for
+   * websocket delivery is in turn bounded by the number of messages awaiting acknowledgement from the client.
+   *
+   * @param queueItems the raw items (alternating envelopes and message IDs) from the last page
+   *
+   * @return the number of messages to fetch in the next page
+   */
+  @VisibleForTesting
+  static int getReadAheadPageSize(final List<byte[]> queueItems) {
+    long envelopeBytes = 0;
+
+    for (int i = 0; i < queueItems.size() - 1; i += 2) {
+      envelopeBytes += queueItems.get(i).length;
+    }
+
+    final int envelopeCount = queueItems.size() / 2;
+
+    if (envelopeCount == 0 || envelopeBytes == 0) {
+      return PAGE_SIZE;
+    }
+
+    // In addition to the pages fetched ahead, we hold the page being delivered and one page queued for delivery
+    final long pageBudgetBytes = READ_AHEAD_MEMORY_BUDGET_BYTES / (READ_AHEAD_PAGES + 2);
+    final long averageEnvelopeBytes = Math.max(1, envelopeBytes / envelopeCount);
+
+    return Math.clamp(pageBudgetBytes / averageEnvelopeBytes, MIN_READ_AHEAD_PAGE_SIZE, MAX_READ_AHEAD_PAGE_SIZE);
   }
 
   /**
@@ -432,29 +516,35 @@ public class MessagesCache {
         // the message might be addressed to the account's PNI, so use the service ID from the envelope
         ServiceIdentifier.valueOf(mrmMessage.getDestinationServiceId()), destinationDevice);
 
-    return Mono.from(redisCluster.withBinaryClusterReactive(
-            conn -> conn.reactive().hmget(key, "data".getBytes(StandardCharsets.UTF_8), sharedMrmViewKey)
-                .collectList()
-                .publishOn(messageDeliveryScheduler)))
-        .<MessageProtos.Envelope>handle((mrmDataAndView, sink) -> {
-          try {
-            assert mrmDataAndView.size() == 2;
+    // The shared payload is the same for every recipient and comes from a local cache; only the (much smaller)
+    // recipient view needs to come from Redis for each message
+    final Mono<Optional<byte[]>> sharedDataMono =
+        Mono.fromFuture(() -> sharedMrmDataCache.get(mrmMessage.getSharedMrmKey()));
 
-            if (mrmDataAndView.getFirst().isEmpty()) {
+    final Mono<Optional<byte[]>> recipientViewMono = Mono.from(redisCluster.withBinaryClusterReactive(
+            conn -> conn.reactive().hget(key, sharedMrmViewKey)))
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty());
+
+    return Mono.zip(sharedDataMono, recipientViewMono)
+        .publishOn(messageDeliveryScheduler)
+        .<MessageProtos.Envelope>handle((sharedDataAndView, sink) -> {
+          try {
+            if (sharedDataAndView.getT1().isEmpty()) {
               // shared data is missing
               //noinspection ReactiveStreamsThrowInOperator
               throw new MrmDataMissingException(MrmDataMissingException.Type.SHARED);
             }
 
-            if (mrmDataAndView.getLast().isEmpty()) {
+            if (sharedDataAndView.getT2().isEmpty()) {
               // recipient's view is missing
               //noinspection ReactiveStreamsThrowInOperator
               throw new MrmDataMissingException(MrmDataMissingException.Type.RECIPIENT_VIEW);
             }
 
             final byte[] content = SealedSenderMultiRecipientMessage.messageForRecipient(
-                mrmDataAndView.getFirst().getValue(),
-                mrmDataAndView.getLast().getValue());
+                sharedDataAndView.getT1().get(),
+                sharedDataAndView.getT2().get());
 
             sink.next(mrmMessage.toBuilder()
                 .clearSharedMrmKey()
@@ -571,7 +661,7 @@ public class MessagesCache {
         .toFuture();
   }
 
-  List<MessageProtos.Envelope> getMessagesToPersist(final UUID accountUuid, final byte destinationDevice,
+  List<SerializedEnvelope> getMessagesToPersist(final UUID accountUuid, final byte destinationDevice,
       final int limit) {
 
     final Timer.Sample sample = Timer.start();
@@ -579,25 +669,46 @@ public class MessagesCache {
     final List<byte[]> messages = redisCluster.withBinaryCluster(connection ->
         connection.sync().zrange(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
 
-    final Flux<MessageProtos.Envelope> allMessages = parseAndFetchMrms(Flux.fromIterable(messages), destinationDevice);
+    // Most messages can be persisted exactly as they're stored in the cache; only messages whose content lives in
+    // shared multi-recipient message data need to be fully parsed and rebuilt
+    final List<SerializedEnvelope> allMessages = Flux.fromIterable(messages)
+        .mapNotNull(message -> {
+          try {
+            return SerializedEnvelope.parse(message);
+          } catch (final InvalidProtocolBufferException e) {
+            logger.warn("Failed to parse envelope", e);
+            return null;
+          }
+        })
+        .concatMap(message -> message.sharedMrmKey() != null
+            ? parseAndFetchMrms(Flux.just(message.serialized()), destinationDevice).map(SerializedEnvelope::fromEnvelope)
+            : Mono.just(message))
+        .collectList()
+        .block(Duration.ofSeconds(5));
+
+    final List<SerializedEnvelope> messagesToPersist = new ArrayList<>(allMessages.size());
+    final List<UUID> ephemeralMessageGuids = new ArrayList<>();
+    final List<UUID> staleMrmMessageGuids = new ArrayList<>();
+
+    for (final SerializedEnvelope message : allMessages) {
+      if (message.ephemeral()) {
+        ephemeralMessageGuids.add(message.serverGuid());
+      } else if (STALE_MRM_KEY.equals(message.sharedMrmKey())) {
+        staleMrmMessageGuids.add(message.serverGuid());
+      } else {
+        messagesToPersist.add(message);
+      }
+    }
 
-    final Flux<MessageProtos.Envelope> messagesToPersist = allMessages
-        .filter(Predicate.not(envelope ->
-            envelope.getEphemeral() || isStaleMrmMessage(envelope)));
+    discardStaleMessages(accountUuid, destinationDevice, Flux.fromIterable(ephemeralMessageGuids),
+        staleEphemeralMessagesCounter, "ephemeral");
 
-    final Flux<MessageProtos.Envelope> ephemeralMessages = allMessages
-        .filter(MessageProtos.Envelope::getEphemeral);
-    discardStaleMessages(accountUuid, destinationDevice, ephemeralMessages, staleEphemeralMessagesCounter, "ephemeral");
+    discardStaleMessages(accountUuid, destinationDevice, Flux.fromIterable(staleMrmMessageGuids),
+        staleMrmMessagesCounter, "mrm");
 
-    final Flux<MessageProtos.Envelope> staleMrmMessages = allMessages.filter(MessagesCache::isStaleMrmMessage)
-        // clearing the sharedMrmKey prevents unnecessary calls to update the shared MRM data
-        .map(envelope -> envelope.toBuilder().clearSharedMrmKey().build());
-    discardStaleMessages(accountUuid, destinationDevice, staleMrmMessages, staleMrmMessagesCounter, "mrm");
+    sample.stop(getMessagesTimer);
 
-    return messagesToPersist
-        .collectList()
-        .doOnTerminate(() -> sample.stop(getMessagesTimer))
-        .block(Duration.ofSeconds(5));
+    return messagesToPersist;
   }
 
   private Flux<MessageProtos.Envelope> parseAndFetchMrms(final Flux<byte[]> serializedMessages, final byte destinationDevice) {
@@ -682,6 +793,50 @@ public class MessagesCache {
         % SlotHash.SLOT_COUNT);
   }
 
+  /**
+   * Returns the hash slots served by each upstream node in the cluster, keyed by the same shard name reported by
+   * {@link #shardForSlot(int)}.
+   *
+   * @return a map of shard names to the (sorted) slots served by each shard; empty if the cluster topology could not
+   * be retrieved
+   */
+  Map<String, List<Integer>> getSlotsByShard() {
+    try {
+      return redisCluster.withBinaryCluster(connection -> {
+        final Map<String, List<Integer>> slotsByShard = new HashMap<>();
+
+        for (final RedisClusterNode node : connection.getPartitions()) {
+          if (node.is(RedisClusterNode.NodeFlag.UPSTREAM) && !node.getSlots().isEmpty()) {
+            slotsByShard.computeIfAbsent(node.getUri().getHost(), ignored -> new ArrayList<>()).addAll(node.getSlots());
+          }
+        }
+
+        slotsByShard.values().forEach(Collections::sort);
+        return slotsByShard;
+      });
+    } catch (final Throwable t) {
+      logger.warn("Failed to retrieve cluster topology", t);
+      return Collections.emptyMap();
+    }
+  }
+
+  /**
+   * Advances the persistence cursor for the given shard, returning the next slot on that shard whose queues should be
+   * persisted. Cursors are stored in Redis so that multiple persister instances walk each shard's slots together
+   * rather than repeatedly visiting the same slots.
+   *
+   * @param shard the name of the shard
+   * @param slots the slots served by the shard
+   *
+   * @return the next slot on the given shard to persist
+   */
+  int getNextSlotToPersist(final String shard, final List<Integer> slots) {
+    final long cursor =
+        redisCluster.withCluster(connection -> connection.sync().incr(getShardPersistCursorKey(shard)));
+
+    return slots.get((int) Math.floorMod(cursor, (long) slots.size()));
+  }
+
   List<String> getQueuesToPersist(final int slot, final Instant maxTime, final int limit) {
     return getQueuesToPersistTimer.record(() -> getQueuesToPersistScript.execute(slot, maxTime, limit));
   }
@@ -701,6 +856,11 @@ public class MessagesCache {
     unlockQueueScript.execute(accountUuid, deviceId);
   }
 
+  @VisibleForTesting
+  static String getShardPersistCursorKey(final String shard) {
+    return NEXT_SLOT_TO_PERSIST_KEY + "::" + shard;
+  }
+
   static byte[] getMessageQueueKey(final UUID accountUuid, final byte deviceId) {
     return ("user_queue::{" + accountUuid.toString() + "::" + deviceId + "}").getBytes(StandardCharsets.UTF_8);
   }
@@ -753,7 +913,8 @@ public class MessagesCache {
     return Byte.parseByte(queueName.substring(queueName.lastIndexOf("::") + 2, queueName.lastIndexOf('}')));
   }
 
-  private static MessageProtos.Envelope parseEnvelope(final byte[] envelopeBytes)
+  @VisibleForTesting
+  static MessageProtos.Envelope parseEnvelope(final byte[] envelopeBytes)
       throws InvalidProtocolBufferException {
 
     return EnvelopeUtil.expand(MessageProtos.Envelope.parseFrom(envelopeBytes));
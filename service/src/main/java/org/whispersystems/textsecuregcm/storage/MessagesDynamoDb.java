@@ -14,13 +14,13 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 import org.reactivestreams.Publisher;
@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
@@ -37,6 +38,7 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
@@ -63,6 +65,10 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
   private static final String KEY_ENVELOPE_BYTES = "EB";
 
   private final Timer storeTimer = timer(name(getClass(), "store"));
+  private final Timer deleteMessagesTimer = timer(name(getClass(), "deleteMessages"));
+
+  private static final String STORE_BATCH_TIMER_NAME = name(MessagesDynamoDb.class, "storeBatch");
+  private static final String DELETE_BATCH_TIMER_NAME = name(MessagesDynamoDb.class, "deleteBatch");
 
   private final DynamoDbAsyncClient dbAsyncClient;
   private final String tableName;
@@ -86,33 +92,92 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
 
   public void store(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid,
       final Device destinationDevice) {
-    storeTimer.record(() -> writeInBatches(messages, (messageBatch) -> storeBatch(messageBatch, destinationAccountUuid, destinationDevice)));
+
+    storeSerialized(messages.stream().map(SerializedEnvelope::fromEnvelope).toList(),
+        destinationAccountUuid, destinationDevice);
   }
 
-  private void storeBatch(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid,
+  public void storeSerialized(final List<SerializedEnvelope> messages, final UUID destinationAccountUuid,
       final Device destinationDevice) {
-    if (messages.size() > DYNAMO_DB_MAX_BATCH_SIZE) {
-      throw new IllegalArgumentException("Maximum batch size of " + DYNAMO_DB_MAX_BATCH_SIZE + " exceeded with " + messages.size() + " messages");
+
+    try {
+      storeAsync(messages, destinationAccountUuid, destinationDevice).join();
+    } catch (final CompletionException e) {
+      // Callers (and the message persister in particular) expect DynamoDB exceptions to propagate unwrapped
+      if (ExceptionUtils.unwrap(e) instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+
+      throw e;
     }
+  }
+
+  /**
+   * Stores the given messages in parallel batches of up to {@link #DYNAMO_DB_MAX_BATCH_SIZE} messages, retrying any
+   * items DynamoDB leaves unprocessed (see {@link DynamoDbBatchOperations}). Messages are stored exactly as serialized.
+   *
+   * @param messages the messages to store
+   * @param destinationAccountUuid the identifier of the destination account
+   * @param destinationDevice the destination device
+   *
+   * @return a future that completes when all messages have been stored or fails if any batch could not be written
+   * completely
+   */
+  public CompletableFuture<Void> storeAsync(final List<SerializedEnvelope> messages,
+      final UUID destinationAccountUuid,
+      final Device destinationDevice) {
 
+    final Timer.Sample sample = Timer.start();
     final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
-    List<WriteRequest> writeItems = new ArrayList<>();
-    for (MessageProtos.Envelope message : messages) {
-      final UUID messageUuid = UUID.fromString(message.getServerGuid());
-
-      final ImmutableMap.Builder<String, AttributeValue> item = ImmutableMap.<String, AttributeValue>builder()
-          .put(KEY_PARTITION, partitionKey)
-          .put(KEY_SORT, convertSortKey(message.getServerTimestamp(), messageUuid))
-          .put(LOCAL_INDEX_MESSAGE_UUID_KEY_SORT, convertLocalIndexMessageUuidSortKey(messageUuid))
-          .put(KEY_TTL, AttributeValues.fromLong(getTtlForMessage(message)))
-          .put(KEY_ENVELOPE_BYTES, AttributeValue.builder().b(SdkBytes.fromByteArray(EnvelopeUtil.compress(message).toByteArray())).build());
-
-      writeItems.add(WriteRequest.builder().putRequest(PutRequest.builder()
-          .item(item.build())
-          .build()).build());
-    }
 
-    executeTableWriteItemsUntilComplete(Map.of(tableName, writeItems));
+    return DynamoDbBatchOperations.batchWriteItems(dbAsyncClient, tableName,
+            Flux.fromIterable(messages).map(message -> buildWriteRequest(message, partitionKey)),
+            STORE_BATCH_TIMER_NAME)
+        .toFuture()
+        .whenComplete((ignored, throwable) -> sample.stop(storeTimer));
+  }
+
+  /**
+   * Deletes the given messages in batches of up to {@link #DYNAMO_DB_MAX_BATCH_SIZE} messages, writing batches in
+   * parallel and retrying unprocessed items just as {@link #storeAsync(List, UUID, Device)} does. Unlike
+   * {@link #deleteMessage(UUID, Device, UUID, long)}, batched deletes do not return the deleted items, and deleting a
+   * message that does not exist is not an error.
+   *
+   * @param destinationAccountUuid the identifier of the destination account
+   * @param destinationDevice the destination device
+   * @param serverTimestampsByGuid the server timestamps of the messages to delete, keyed by message GUID
+   *
+   * @return a future that completes when all messages have been deleted or fails if any batch could not be written
+   * completely
+   */
+  public CompletableFuture<Void> deleteMessages(final UUID destinationAccountUuid,
+      final Device destinationDevice,
+      final Map<UUID, Long> serverTimestampsByGuid) {
+
+    final Timer.Sample sample = Timer.start();
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
+
+    return DynamoDbBatchOperations.batchWriteItems(dbAsyncClient, tableName,
+            Flux.fromIterable(serverTimestampsByGuid.entrySet())
+                .map(entry -> WriteRequest.builder().deleteRequest(DeleteRequest.builder()
+                    .key(Map.of(KEY_PARTITION, partitionKey, KEY_SORT, convertSortKey(entry.getValue(), entry.getKey())))
+                    .build()).build()),
+            DELETE_BATCH_TIMER_NAME)
+        .toFuture()
+        .whenComplete((ignored, throwable) -> sample.stop(deleteMessagesTimer));
+  }
+
+  private WriteRequest buildWriteRequest(final SerializedEnvelope message, final AttributeValue partitionKey) {
+    final ImmutableMap.Builder<String, AttributeValue> item = ImmutableMap.<String, AttributeValue>builder()
+        .put(KEY_PARTITION, partitionKey)
+        .put(KEY_SORT, convertSortKey(message.serverTimestamp(), message.serverGuid()))
+        .put(LOCAL_INDEX_MESSAGE_UUID_KEY_SORT, convertLocalIndexMessageUuidSortKey(message.serverGuid()))
+        .put(KEY_TTL, AttributeValues.fromLong(getTtlForMessage(message.serverTimestamp())))
+        .put(KEY_ENVELOPE_BYTES, AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(message.serialized())).build());
+
+    return WriteRequest.builder().putRequest(PutRequest.builder()
+        .item(item.build())
+        .build()).build();
   }
 
   public CompletableFuture<Boolean> mayHaveMessages(final UUID accountIdentifier, final Device device) {
@@ -227,11 +292,11 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
   static MessageProtos.Envelope convertItemToEnvelope(final Map<String, AttributeValue> item)
       throws InvalidProtocolBufferException {
 
-    return EnvelopeUtil.expand(MessageProtos.Envelope.parseFrom(item.get(KEY_ENVELOPE_BYTES).b().asByteArray()));
+    return EnvelopeUtil.expand(MessageProtos.Envelope.parseFrom(item.get(KEY_ENVELOPE_BYTES).b().asByteArrayUnsafe()));
   }
 
-  private long getTtlForMessage(MessageProtos.Envelope message) {
-    return message.getServerTimestamp() / 1000 + timeToLive.getSeconds();
+  private long getTtlForMessage(final long serverTimestamp) {
+    return serverTimestamp / 1000 + timeToLive.getSeconds();
   }
 
   private static AttributeValue convertPartitionKey(final UUID destinationAccountUuid, final Device destinationDevice) {
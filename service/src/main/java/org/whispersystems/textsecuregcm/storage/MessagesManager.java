@@ -10,7 +10,10 @@ import com.google.protobuf.ByteString;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,6 +24,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
@@ -263,24 +267,68 @@ public class MessagesManager {
   }
 
   /**
+   * Deletes a batch of messages for a single device. All messages are removed from the message cache with a single
+   * operation, and any messages not found in the cache are then deleted from DynamoDB in batches.
+   *
+   * @param destinationUuid the identifier of the destination account
+   * @param destinationDevice the destination device
+   * @param serverTimestampsByGuid the server timestamps of the messages to delete, keyed by message GUID
+   *
+   * @return a future that yields a result for each requested message GUID; the result contains the removed message if
+   * it was found in the message cache, and is empty if the message was instead deleted from DynamoDB (batched DynamoDB
+   * deletes do not return deleted items) or did not exist at all
+   */
+  public CompletableFuture<Map<UUID, Optional<RemovedMessage>>> delete(final UUID destinationUuid,
+      final Device destinationDevice,
+      final Map<UUID, Long> serverTimestampsByGuid) {
+
+    if (serverTimestampsByGuid.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    return messagesCache.remove(destinationUuid, destinationDevice.getId(), List.copyOf(serverTimestampsByGuid.keySet()))
+        .thenComposeAsync(removedMessages -> {
+          final Map<UUID, Optional<RemovedMessage>> results = new HashMap<>(serverTimestampsByGuid.size());
+          serverTimestampsByGuid.keySet().forEach(guid -> results.put(guid, Optional.empty()));
+          removedMessages.forEach(removed -> results.put(removed.serverGuid(), Optional.of(removed)));
+
+          final Map<UUID, Long> notInCache = serverTimestampsByGuid.entrySet().stream()
+              .filter(entry -> results.get(entry.getKey()).isEmpty())
+              .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+          if (notInCache.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+          }
+
+          return messagesDynamoDb.deleteMessages(destinationUuid, destinationDevice, notInCache)
+              .thenApply(ignored -> results);
+        }, messageDeletionExecutor);
+  }
+
+  /**
+   * @param storeLatencyListener receives the time taken to write the messages to DynamoDB, excluding their removal from
+   * the cache
+   *
    * @return the number of messages successfully removed from the cache.
    */
   public int persistMessages(
       final UUID destinationUuid,
       final Device destinationDevice,
-      final List<Envelope> messages) {
+      final List<SerializedEnvelope> messages,
+      final Consumer<Duration> storeLatencyListener) {
 
-    messagesDynamoDb.store(messages, destinationUuid, destinationDevice);
+    final long storeStartNanos = System.nanoTime();
+    messagesDynamoDb.storeSerialized(messages, destinationUuid, destinationDevice);
+    storeLatencyListener.accept(Duration.ofNanos(System.nanoTime() - storeStartNanos));
 
-    final List<UUID> messageGuids = messages.stream().map(message -> UUID.fromString(message.getServerGuid()))
-        .collect(Collectors.toList());
+    final List<UUID> messageGuids = messages.stream().map(SerializedEnvelope::serverGuid).toList();
     int messagesRemovedFromCache = 0;
     try {
       messagesRemovedFromCache = messagesCache.remove(destinationUuid, destinationDevice.getId(), messageGuids)
           .get(30, TimeUnit.SECONDS).size();
       PERSIST_MESSAGE_COUNTER.increment(messages.size());
       PERSIST_MESSAGE_BYTES_COUNTER.increment(messages.stream()
-          .mapToInt(Envelope::getSerializedSize)
+          .mapToInt(SerializedEnvelope::serializedSize)
           .sum());
 
     } catch (InterruptedException | ExecutionException | TimeoutException e) {
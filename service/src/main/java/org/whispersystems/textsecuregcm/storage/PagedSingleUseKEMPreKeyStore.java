@@ -7,11 +7,13 @@ package org.whispersystems.textsecuregcm.storage;
 
 import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Comparator;
 import java.util.List;
@@ -32,7 +34,6 @@ import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
-import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
@@ -44,7 +45,6 @@ import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
@@ -65,6 +65,7 @@ public class PagedSingleUseKEMPreKeyStore {
   private final S3AsyncClient s3AsyncClient;
   private final String tableName;
   private final String bucketName;
+  private final KEMPreKeyPageSegmentCache pageSegmentCache;
 
   private final Timer getKeyCountTimer = Metrics.timer(name(getClass(), "getCount"));
   private final Timer storeKeyBatchTimer = Metrics.timer(name(getClass(), "storeKeyBatch"));
@@ -86,15 +87,32 @@ public class PagedSingleUseKEMPreKeyStore {
   static final String ATTR_PAGE_NUM_KEYS = "N";
   static final String ATTR_PAGE_FORMAT_VERSION = "F";
 
+  // Each segment holds about 13 KiB of keys
+  private static final int PAGE_SEGMENT_CACHE_KEYS_PER_SEGMENT = 8;
+  private static final long PAGE_SEGMENT_CACHE_MAX_SIZE_BYTES = 32 * 1024 * 1024;
+  private static final Duration PAGE_SEGMENT_CACHE_TTL = Duration.ofMinutes(1);
+
   public PagedSingleUseKEMPreKeyStore(
       final DynamoDbAsyncClient dynamoDbAsyncClient,
       final S3AsyncClient s3AsyncClient,
       final String tableName,
       final String bucketName) {
+    this(dynamoDbAsyncClient, s3AsyncClient, tableName, bucketName, new KEMPreKeyPageSegmentCache(s3AsyncClient,
+        bucketName, PAGE_SEGMENT_CACHE_KEYS_PER_SEGMENT, PAGE_SEGMENT_CACHE_MAX_SIZE_BYTES, PAGE_SEGMENT_CACHE_TTL));
+  }
+
+  @VisibleForTesting
+  PagedSingleUseKEMPreKeyStore(
+      final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final S3AsyncClient s3AsyncClient,
+      final String tableName,
+      final String bucketName,
+      final KEMPreKeyPageSegmentCache pageSegmentCache) {
     this.s3AsyncClient = s3AsyncClient;
     this.dynamoDbAsyncClient = dynamoDbAsyncClient;
     this.tableName = tableName;
     this.bucketName = bucketName;
+    this.pageSegmentCache = pageSegmentCache;
   }
 
   /**
@@ -185,12 +203,13 @@ public class PagedSingleUseKEMPreKeyStore {
           final int index = AttributeValues.getInt(updateItemResponse.attributes(), ATTR_PAGE_IDX, -1);
           final UUID pageId = AttributeValues.getUUID(updateItemResponse.attributes(), ATTR_PAGE_ID, null);
           final int format = AttributeValues.getInt(updateItemResponse.attributes(), ATTR_PAGE_FORMAT_VERSION, -1);
-          if (index < 0 || format < 0 || pageId == null) {
+          final int numKeys = AttributeValues.getInt(updateItemResponse.attributes(), ATTR_PAGE_NUM_KEYS, -1);
+          if (index < 0 || format < 0 || pageId == null || index >= numKeys) {
             throw new CompletionException(
                 new IOException("unexpected page descriptor " + updateItemResponse.attributes()));
           }
 
-          return readPreKeyAtIndexFromS3(identifier, deviceId, pageId, format, index).thenApply(Optional::of);
+          return readPreKeyAtIndex(identifier, deviceId, pageId, format, index, numKeys).thenApply(Optional::of);
         })
         // If this check fails, it means that the item did not exist, or its index was already at the last key. Either
         // way, there are no keys left so we return empty
@@ -403,25 +422,17 @@ public class PagedSingleUseKEMPreKeyStore {
         .thenRun(Util.NOOP);
   }
 
-  private CompletableFuture<KEMSignedPreKey> readPreKeyAtIndexFromS3(
-      final UUID identifier, final byte deviceId, final UUID pageId, final int format, final int index) {
-    final KEMPreKeyPage.KeyLocation keyLocation = KEMPreKeyPage.keyLocation(format, index);
-    return s3AsyncClient.getObject(GetObjectRequest.builder()
-            .bucket(bucketName)
-            .key(s3Key(identifier, deviceId, pageId))
-            // An RFC9110 range header, inclusive on both ends
-            // https://www.rfc-editor.org/rfc/rfc9110.html#section-14.1.2
-            .range("bytes=%s-%s".formatted(keyLocation.getStartInclusive(), keyLocation.getEndInclusive()))
-            .build(), AsyncResponseTransformer.toBytes())
-        .thenApply(bytes -> {
-          final ByteBuffer serialized = bytes.asByteBuffer();
-          if (serialized.remaining() != keyLocation.length()) {
-            log.error("Unexpected ranged read response, requested {} got {} for offset {} in page {}",
-                keyLocation.length(), serialized.remaining(), keyLocation, s3Key(identifier, deviceId, pageId));
-            throw new CompletionException(new IOException("Invalid response to ranged read"));
-          }
+  private CompletableFuture<KEMSignedPreKey> readPreKeyAtIndex(final UUID identifier,
+      final byte deviceId,
+      final UUID pageId,
+      final int format,
+      final int index,
+      final int numKeys) {
+
+    return pageSegmentCache.getSerializedKey(s3Key(identifier, deviceId, pageId), format, index, numKeys)
+        .thenApply(serialized -> {
           try {
-            return KEMPreKeyPage.deserializeKey(format, bytes.asByteBuffer());
+            return KEMPreKeyPage.deserializeKey(format, serialized);
           } catch (InvalidKeyException e) {
             throw new CompletionException(new IOException(e));
           }
@@ -7,6 +7,8 @@ package org.whispersystems.textsecuregcm.storage;
 
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,6 +16,7 @@ import java.util.concurrent.CompletableFuture;
 import org.whispersystems.textsecuregcm.entities.SignedPreKey;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
+import reactor.core.publisher.Flux;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.Delete;
@@ -43,6 +46,10 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
 
   private final Timer storeSingleKeyTimer = Metrics.timer(MetricsUtil.name(getClass(), "storeSingleKey"));
 
+  private final String findKeysTimerName = MetricsUtil.name(getClass(), "findKeys");
+
+  private final String findKeysKeyCounterName = MetricsUtil.name(getClass(), "findKeysKey");
+
   private final String findKeyTimerName = MetricsUtil.name(getClass(), "findKey");
 
   public RepeatedUseSignedPreKeyStore(final DynamoDbAsyncClient dynamoDbAsyncClient, final String tableName) {
@@ -114,6 +121,48 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
     return findFuture;
   }
 
+  /**
+   * Finds repeated-use pre-keys for several devices associated with the same account/identity in a single batch read.
+   *
+   * @param identifier the identifier for the account/identity with which the target devices are associated
+   * @param deviceIds the identifiers for the devices within the given account/identity
+   *
+   * @return a future that yields a map of device IDs to an optional signed pre-key for each of the given devices; the
+   * optional is empty if no key could be found for the device
+   */
+  public CompletableFuture<Map<Byte, Optional<K>>> find(final UUID identifier, final Collection<Byte> deviceIds) {
+    final Timer.Sample sample = Timer.start();
+
+    return Flux.fromIterable(deviceIds)
+        .distinct()
+        .map(deviceId -> getPrimaryKey(identifier, deviceId))
+        .buffer(DynamoDbBatchOperations.DYNAMO_DB_MAX_BATCH_GET_SIZE)
+        .flatMap(keys -> DynamoDbBatchOperations.batchGetItems(dynamoDbAsyncClient, tableName, keys))
+        .flatMapIterable(items -> items)
+        .collectMap(item -> (byte) AttributeValues.getInt(item, KEY_DEVICE_ID, -1), this::getPreKeyFromItem)
+        .map(preKeysByDeviceId -> {
+          final Map<Byte, Optional<K>> maybePreKeysByDeviceId = new HashMap<>();
+          deviceIds.forEach(deviceId ->
+              maybePreKeysByDeviceId.put(deviceId, Optional.ofNullable(preKeysByDeviceId.get(deviceId))));
+
+          return maybePreKeysByDeviceId;
+        })
+        .toFuture()
+        .whenComplete((maybePreKeysByDeviceId, throwable) -> {
+          final long keysPresent = maybePreKeysByDeviceId != null
+              ? maybePreKeysByDeviceId.values().stream().filter(Optional::isPresent).count()
+              : 0;
+
+          final long keysAbsent = maybePreKeysByDeviceId != null ? maybePreKeysByDeviceId.size() - keysPresent : 0;
+
+          Metrics.counter(findKeysKeyCounterName, "keyPresent", "true").increment(keysPresent);
+          Metrics.counter(findKeysKeyCounterName, "keyPresent", "false").increment(keysAbsent);
+
+          sample.stop(Metrics.timer(findKeysTimerName,
+              "allKeysPresent", String.valueOf(maybePreKeysByDeviceId != null && keysAbsent == 0)));
+        });
+  }
+
   protected static Map<String, AttributeValue> getPrimaryKey(final UUID identifier, final byte deviceId) {
     return Map.of(
         KEY_ACCOUNT_UUID, getPartitionKey(identifier),
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.util.UUIDUtil;
+
+/**
+ * A serialized envelope paired with the few fields the message persistence pipeline needs to inspect. The message cache
+ * and DynamoDB both store envelopes in the same "compressed" form (see {@link EnvelopeUtil#compress}), so most messages
+ * can move from one to the other as opaque bytes; envelopes only need to be fully parsed and re-serialized when their
+ * contents actually change, as is the case for multi-recipient messages whose content lives in a shared payload.
+ *
+ * @param serialized the serialized, compressed envelope
+ * @param serverGuid the envelope's server-assigned GUID
+ * @param serverTimestamp the envelope's server timestamp, in milliseconds since the epoch
+ * @param urgent whether the envelope is marked as urgent
+ * @param ephemeral whether the envelope is marked as ephemeral
+ * @param sharedMrmKey the key for the envelope's shared multi-recipient message payload, or {@code null} if the
+ * envelope does not refer to a shared payload
+ */
+public record SerializedEnvelope(byte[] serialized,
+                                 UUID serverGuid,
+                                 long serverTimestamp,
+                                 boolean urgent,
+                                 boolean ephemeral,
+                                 @Nullable ByteString sharedMrmKey) {
+
+  private static final int SERVER_GUID_TAG =
+      (MessageProtos.Envelope.SERVER_GUID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  private static final int SERVER_GUID_BINARY_TAG =
+      (MessageProtos.Envelope.SERVER_GUID_BINARY_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  private static final int SERVER_TIMESTAMP_TAG =
+      (MessageProtos.Envelope.SERVER_TIMESTAMP_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+
+  private static final int URGENT_TAG =
+      (MessageProtos.Envelope.URGENT_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+
+  private static final int EPHEMERAL_TAG =
+      (MessageProtos.Envelope.EPHEMERAL_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+
+  private static final int SHARED_MRM_KEY_TAG =
+      (MessageProtos.Envelope.SHARED_MRM_KEY_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  /**
+   * Reads the fields of interest from a serialized envelope without parsing (or copying) any of its other fields.
+   *
+   * @param serialized the serialized envelope; may be in either compressed or expanded form
+   *
+   * @return a serialized envelope wrapping the given bytes
+   *
+   * @throws InvalidProtocolBufferException if the given bytes are not a valid serialized envelope or if the envelope
+   * has no server GUID
+   */
+  public static SerializedEnvelope parse(final byte[] serialized) throws InvalidProtocolBufferException {
+    final CodedInputStream input = CodedInputStream.newInstance(serialized);
+
+    UUID serverGuid = null;
+    long serverTimestamp = 0;
+    boolean urgent = true;
+    boolean ephemeral = false;
+    ByteString sharedMrmKey = null;
+
+    try {
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        switch (tag) {
+          case SERVER_GUID_TAG -> serverGuid = UUID.fromString(input.readStringRequireUtf8());
+          case SERVER_GUID_BINARY_TAG -> serverGuid = UUIDUtil.fromByteString(input.readBytes());
+          case SERVER_TIMESTAMP_TAG -> serverTimestamp = input.readUInt64();
+          case URGENT_TAG -> urgent = input.readBool();
+          case EPHEMERAL_TAG -> ephemeral = input.readBool();
+          case SHARED_MRM_KEY_TAG -> sharedMrmKey = input.readBytes();
+          default -> input.skipField(tag);
+        }
+      }
+    } catch (final InvalidProtocolBufferException e) {
+      throw e;
+    } catch (final IOException | IllegalArgumentException e) {
+      throw new InvalidProtocolBufferException(e.getMessage());
+    }
+
+    if (serverGuid == null) {
+      throw new InvalidProtocolBufferException("Envelope has no server GUID");
+    }
+
+    return new SerializedEnvelope(serialized, serverGuid, serverTimestamp, urgent, ephemeral, sharedMrmKey);
+  }
+
+  /**
+   * Serializes the given envelope in compressed form.
+   *
+   * @param envelope the envelope to serialize
+   *
+   * @return a serialized envelope containing the given envelope in compressed form
+   */
+  public static SerializedEnvelope fromEnvelope(final MessageProtos.Envelope envelope) {
+    return new SerializedEnvelope(EnvelopeUtil.compress(envelope).toByteArray(),
+        UUID.fromString(envelope.getServerGuid()),
+        envelope.getServerTimestamp(),
+        envelope.getUrgent(),
+        envelope.getEphemeral(),
+        envelope.hasSharedMrmKey() ? envelope.getSharedMrmKey() : null);
+  }
+
+  /**
+   * Fully parses this envelope.
+   *
+   * @return the parsed envelope in expanded form
+   *
+   * @throws InvalidProtocolBufferException if this envelope's serialized form could not be parsed
+   */
+  public MessageProtos.Envelope toEnvelope() throws InvalidProtocolBufferException {
+    return EnvelopeUtil.expand(MessageProtos.Envelope.parseFrom(serialized));
+  }
+
+  public int serializedSize() {
+    return serialized.length;
+  }
+}
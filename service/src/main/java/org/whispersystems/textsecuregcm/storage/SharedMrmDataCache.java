@@ -0,0 +1,85 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
+
+/**
+ * A local, size-bounded cache of shared multi-recipient message payloads, keyed by shared MRM key. When a
+ * multi-recipient message is delivered to many devices, each device needs its own recipient view, but all of them need
+ * the same (comparatively large) shared payload; this cache lets each server fetch the shared payload from Redis once
+ * per expiration period rather than once per recipient device.
+ * <p>
+ * Shared payloads never change once written, so serving a cached payload is always safe. Payloads that are missing
+ * from Redis are not cached, and concurrent requests for the same payload share a single Redis request.
+ *
+ * @see MessagesCache#insertSharedMultiRecipientMessagePayload(org.signal.libsignal.protocol.SealedSenderMultiRecipientMessage)
+ */
+class SharedMrmDataCache {
+
+  private final FaultTolerantRedisClusterClient redisCluster;
+  private final AsyncCache<ByteString, byte[]> cache;
+
+  private static final byte[] SHARED_DATA_FIELD = "data".getBytes(StandardCharsets.UTF_8);
+
+  private static final Counter HIT_COUNTER = Metrics.counter(name(SharedMrmDataCache.class, "hit"));
+  private static final Counter MISS_COUNTER = Metrics.counter(name(SharedMrmDataCache.class, "miss"));
+  private static final String EVICTED_BYTES_COUNTER_NAME = name(SharedMrmDataCache.class, "evictedBytes");
+
+  SharedMrmDataCache(final FaultTolerantRedisClusterClient redisCluster,
+      final long maxSizeBytes,
+      final Duration timeToLive) {
+
+    this.redisCluster = redisCluster;
+
+    this.cache = Caffeine.newBuilder()
+        .maximumWeight(maxSizeBytes)
+        .<ByteString, byte[]>weigher((sharedMrmKey, sharedData) -> sharedMrmKey.size() + sharedData.length)
+        .expireAfterWrite(timeToLive)
+        .evictionListener((sharedMrmKey, sharedData, cause) -> {
+          if (sharedData != null) {
+            Metrics.counter(EVICTED_BYTES_COUNTER_NAME, "cause", cause.name()).increment(sharedData.length);
+          }
+        })
+        .buildAsync();
+  }
+
+  /**
+   * Returns the shared payload for the given shared MRM key, fetching it from Redis if it is not already cached.
+   *
+   * @param sharedMrmKey the key of the shared multi-recipient message data
+   *
+   * @return a future that yields the shared payload, or empty if no payload exists for the given key
+   */
+  CompletableFuture<Optional<byte[]>> get(final ByteString sharedMrmKey) {
+    final CompletableFuture<byte[]> cachedSharedData = cache.getIfPresent(sharedMrmKey);
+
+    if (cachedSharedData != null) {
+      HIT_COUNTER.increment();
+      return cachedSharedData.thenApply(Optional::ofNullable);
+    }
+
+    return cache.get(sharedMrmKey, (key, executor) -> {
+          MISS_COUNTER.increment();
+
+          // A null value means the payload doesn't exist; Caffeine won't retain entries whose futures yield null
+          return redisCluster.withBinaryCluster(connection ->
+              connection.async().hget(key.toByteArray(), SHARED_DATA_FIELD)).toCompletableFuture();
+        })
+        .thenApply(Optional::ofNullable);
+  }
+}
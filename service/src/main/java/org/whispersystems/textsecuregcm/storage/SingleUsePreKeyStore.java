@@ -14,25 +14,35 @@ import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.whispersystems.textsecuregcm.entities.PreKey;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
 import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 /**
  * A single-use pre-key store stores single-use pre-keys of a specific type. Keys returned by a single-use pre-key
@@ -50,7 +60,6 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
   private final String tableName;
 
   private final Timer getKeyCountTimer = Metrics.timer(name(getClass(), "getCount"));
-  private final Timer storeKeyTimer = Metrics.timer(name(getClass(), "storeKey"));
   private final Timer storeKeyBatchTimer = Metrics.timer(name(getClass(), "storeKeyBatch"));
   private final Timer deleteForDeviceTimer = Metrics.timer(name(getClass(), "deleteForDevice"));
   private final Timer deleteForAccountTimer = Metrics.timer(name(getClass(), "deleteForAccount"));
@@ -70,6 +79,7 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
       .register(Metrics.globalRegistry);
 
   private final String takeKeyTimerName = name(getClass(), "takeKey");
+  private final String writeBatchTimerName = name(getClass(), "writeBatch");
   private static final String KEY_PRESENT_TAG_NAME = "keyPresent";
 
   static final String KEY_ACCOUNT_UUID = "U";
@@ -85,7 +95,11 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
 
   /**
    * Stores a batch of single-use pre-keys for a specific device. All previously-stored keys for the device are cleared
-   * before storing new keys.
+   * as part of storing new keys.
+   * <p>
+   * Old keys are removed and new keys are written together with batch writes. Old keys that share a key ID with a new
+   * key are simply overwritten, and deletions are ordered ahead of insertions so old keys are generally removed before
+   * new keys become visible.
    *
    * @param identifier the identifier for the account/identity with which the target device is associated
    * @param deviceId the identifier for the device within the given account/identity
@@ -96,28 +110,52 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
    */
   public CompletableFuture<Void> store(final UUID identifier, final byte deviceId, final List<K> preKeys) {
     final Timer.Sample sample = Timer.start();
+    final AttributeValue partitionKey = getPartitionKey(identifier);
 
-    return Mono.fromFuture(() -> delete(identifier, deviceId))
-        .thenMany(
-            Flux.fromIterable(preKeys)
-                .sort(Comparator.comparing(preKey -> preKey.keyId()))
-                .zipWith(Flux.range(0, preKeys.size()).map(i -> preKeys.size() - i))
-                .flatMap(preKeyAndRemainingCount -> Mono.fromFuture(() ->
-                        store(identifier, deviceId, preKeyAndRemainingCount.getT1(), preKeyAndRemainingCount.getT2())),
-                    DYNAMO_DB_MAX_BATCH_SIZE))
-        .then()
-        .toFuture()
-        .thenRun(() -> sample.stop(storeKeyBatchTimer));
-  }
+    // Batch writes may not contain more than one request for the same item, so discard any keys with duplicate IDs
+    final List<K> sortedPreKeys = List.copyOf(preKeys.stream()
+        .collect(Collectors.toMap(PreKey::keyId, Function.identity(), (a, b) -> b, TreeMap::new))
+        .values());
 
-  private CompletableFuture<Void> store(final UUID identifier, final byte deviceId, final K preKey, final int remainingKeys) {
-    final Timer.Sample sample = Timer.start();
+    final List<WriteRequest> putRequests = new ArrayList<>(sortedPreKeys.size());
+    final Set<AttributeValue> newSortKeys = new HashSet<>(sortedPreKeys.size());
 
-    return dynamoDbAsyncClient.putItem(PutItemRequest.builder()
-            .tableName(tableName)
-            .item(getItemFromPreKey(identifier, deviceId, preKey, remainingKeys))
-            .build())
-        .thenRun(() -> sample.stop(storeKeyTimer));
+    for (int i = 0; i < sortedPreKeys.size(); i++) {
+      final K preKey = sortedPreKeys.get(i);
+
+      newSortKeys.add(getSortKey(deviceId, preKey.keyId()));
+      putRequests.add(WriteRequest.builder()
+          .putRequest(PutRequest.builder()
+              .item(getItemFromPreKey(identifier, deviceId, preKey, sortedPreKeys.size() - i))
+              .build())
+          .build());
+    }
+
+    final Flux<WriteRequest> deleteRequests = Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
+                .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
+                .expressionAttributeValues(Map.of(
+                    ":uuid", partitionKey,
+                    ":sortprefix", getSortKeyPrefix(deviceId)))
+                .projectionExpression(KEY_DEVICE_ID_KEY_ID)
+                .consistentRead(true)
+                .build())
+            .items())
+        .map(item -> item.get(KEY_DEVICE_ID_KEY_ID))
+        .filter(sortKey -> !newSortKeys.contains(sortKey))
+        .map(sortKey -> WriteRequest.builder()
+            .deleteRequest(DeleteRequest.builder()
+                .key(Map.of(
+                    KEY_ACCOUNT_UUID, partitionKey,
+                    KEY_DEVICE_ID_KEY_ID, sortKey))
+                .build())
+            .build());
+
+    return DynamoDbBatchOperations.batchWriteItems(dynamoDbAsyncClient, tableName,
+            deleteRequests.concatWith(Flux.fromIterable(putRequests)), writeBatchTimerName)
+        .toFuture()
+        .thenRun(() -> sample.stop(storeKeyBatchTimer));
   }
 
   /**
@@ -168,6 +206,26 @@ public abstract class SingleUsePreKeyStore<K extends PreKey<?>> {
         });
   }
 
+  /**
+   * Attempts to retrieve a single-use pre-key for each of several devices associated with the same account/identity.
+   * Lookups and removals for all devices are issued concurrently, and keys returned by this method carry the same
+   * single-use guarantee as keys returned by {@link #take(UUID, byte)}.
+   *
+   * @param identifier the identifier for the account/identity with which the target devices are associated
+   * @param deviceIds the identifiers for the devices within the given account/identity
+   *
+   * @return a future that yields a map of device IDs to an optional single-use pre-key for each of the given devices;
+   * the optional is empty if no single-use pre-keys are available for the device
+   */
+  public CompletableFuture<Map<Byte, Optional<K>>> take(final UUID identifier, final Collection<Byte> deviceIds) {
+    return Flux.fromIterable(deviceIds)
+        .distinct()
+        .flatMap(deviceId -> Mono.fromFuture(() -> take(identifier, deviceId))
+            .map(maybeKey -> Tuples.of(deviceId, maybeKey)))
+        .collectMap(Tuple2::getT1, Tuple2::getT2)
+        .toFuture();
+  }
+
   /**
    * Estimates the number of single-use pre-keys available for a given device.
 
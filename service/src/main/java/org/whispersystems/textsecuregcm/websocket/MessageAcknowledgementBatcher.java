@@ -0,0 +1,143 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+import org.whispersystems.textsecuregcm.identity.IdentityType;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.storage.RemovedMessage;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Collects acknowledgements of messages delivered to a single device and deletes the acknowledged messages in batches.
+ * A batch is flushed either when it reaches a maximum size or when a short window has elapsed since the first
+ * acknowledgement in the batch arrived, whichever comes first. Each acknowledgement still gets its own result.
+ */
+class MessageAcknowledgementBatcher {
+
+  private final MessagesManager messagesManager;
+  private final Account account;
+  private final Device device;
+  private final Duration batchWindow;
+  private final int maxBatchSize;
+
+  private Map<UUID, PendingAcknowledgement> pendingAcknowledgements = new HashMap<>();
+
+  @Nullable
+  private Disposable scheduledFlush;
+
+  private static final DistributionSummary BATCH_SIZE_DISTRIBUTION_SUMMARY = DistributionSummary
+      .builder(name(MessageAcknowledgementBatcher.class, "batchSize"))
+      .publishPercentileHistogram()
+      .register(Metrics.globalRegistry);
+
+  private record PendingAcknowledgement(long serverTimestamp, CompletableFuture<Optional<RemovedMessage>> future) {
+  }
+
+  MessageAcknowledgementBatcher(final MessagesManager messagesManager,
+      final Account account,
+      final Device device,
+      final Duration batchWindow,
+      final int maxBatchSize) {
+
+    this.messagesManager = messagesManager;
+    this.account = account;
+    this.device = device;
+    this.batchWindow = batchWindow;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Acknowledges delivery of the given message, scheduling it for deletion with the next batch.
+   *
+   * @param messageGuid the server GUID of the acknowledged message
+   * @param serverTimestamp the server timestamp of the acknowledged message
+   *
+   * @return a future that yields the result of deleting the message once its batch has been flushed; see
+   * {@link MessagesManager#delete(UUID, Device, Map)}
+   */
+  CompletableFuture<Optional<RemovedMessage>> acknowledge(final UUID messageGuid, final long serverTimestamp) {
+    final PendingAcknowledgement pendingAcknowledgement;
+    final boolean flushNow;
+
+    synchronized (this) {
+      final PendingAcknowledgement existing = pendingAcknowledgements.get(messageGuid);
+
+      if (existing != null) {
+        return existing.future();
+      }
+
+      pendingAcknowledgement = new PendingAcknowledgement(serverTimestamp, new CompletableFuture<>());
+      pendingAcknowledgements.put(messageGuid, pendingAcknowledgement);
+
+      flushNow = pendingAcknowledgements.size() >= maxBatchSize;
+
+      if (!flushNow && scheduledFlush == null) {
+        scheduledFlush = Mono.delay(batchWindow).subscribe(ignored -> flush());
+      }
+    }
+
+    if (flushNow) {
+      flush();
+    }
+
+    return pendingAcknowledgement.future();
+  }
+
+  /**
+   * Immediately deletes all messages acknowledged since the last flush.
+   */
+  void flush() {
+    final Map<UUID, PendingAcknowledgement> batch;
+
+    synchronized (this) {
+      if (scheduledFlush != null) {
+        scheduledFlush.dispose();
+        scheduledFlush = null;
+      }
+
+      if (pendingAcknowledgements.isEmpty()) {
+        return;
+      }
+
+      batch = pendingAcknowledgements;
+      pendingAcknowledgements = new HashMap<>();
+    }
+
+    BATCH_SIZE_DISTRIBUTION_SUMMARY.record(batch.size());
+
+    final Map<UUID, Long> serverTimestampsByGuid = new HashMap<>(batch.size());
+    batch.forEach((guid, pendingAcknowledgement) -> serverTimestampsByGuid.put(guid, pendingAcknowledgement.serverTimestamp()));
+
+    messagesManager.delete(account.getIdentifier(IdentityType.ACI), device, serverTimestampsByGuid)
+        .whenComplete((results, throwable) -> batch.forEach((guid, pendingAcknowledgement) -> {
+          if (throwable != null) {
+            pendingAcknowledgement.future().completeExceptionally(throwable);
+          } else {
+            pendingAcknowledgement.future().complete(results.getOrDefault(guid, Optional.empty()));
+          }
+        }));
+  }
+
+  @VisibleForTesting
+  synchronized int getPendingAcknowledgementCount() {
+    return pendingAcknowledgements.size();
+  }
+}
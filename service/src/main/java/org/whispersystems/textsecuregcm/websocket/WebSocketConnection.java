@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.websocket;
 import static com.codahale.metrics.MetricRegistry.name;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.CodedOutputStream;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
@@ -31,6 +32,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jetty.util.StaticException;
@@ -39,6 +42,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.controllers.MessageController;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
+import org.whispersystems.textsecuregcm.entities.MessageProtos.EnvelopeBatch;
 import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
 import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
 import org.whispersystems.textsecuregcm.identity.IdentityType;
@@ -90,6 +94,11 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
   private static final String MESSAGE_AVAILABLE_COUNTER_NAME = name(WebSocketConnection.class, "messagesAvailable");
   private static final String MESSAGES_PERSISTED_COUNTER_NAME = name(WebSocketConnection.class, "messagesPersisted");
 
+  private static final DistributionSummary MESSAGE_BATCH_SIZE_DISTRIBUTION = DistributionSummary
+      .builder(MetricsUtil.name(WebSocketConnection.class, "messageBatchSize"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .register(Metrics.globalRegistry);
+
   private static final String PRESENCE_MANAGER_TAG = "presenceManager";
   private static final String STATUS_CODE_TAG = "status";
   private static final String STATUS_MESSAGE_TAG = "message";
@@ -104,6 +113,17 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
   @VisibleForTesting
   static final int MESSAGE_SENDER_MAX_CONCURRENCY = 256;
 
+  @VisibleForTesting
+  static final int MESSAGE_BATCH_SENDER_MAX_CONCURRENCY = 8;
+
+  @VisibleForTesting
+  static final int MAX_MESSAGE_BATCH_ENVELOPES = 64;
+
+  @VisibleForTesting
+  static final int MAX_MESSAGE_BATCH_BYTES = 64 * 1024;
+
+  private static final Duration MESSAGE_BATCH_WINDOW = Duration.ofMillis(10);
+
   @VisibleForTesting
   static final int MAX_CONSECUTIVE_RETRIES = 5;
   private static final long RETRY_DELAY_MILLIS = 1_000;
@@ -113,6 +133,10 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
 
   private static final Duration CLOSE_WITH_PENDING_MESSAGES_NOTIFICATION_DELAY = Duration.ofMinutes(1);
 
+  private static final Duration ACKNOWLEDGEMENT_BATCH_WINDOW = Duration.ofMillis(10);
+
+  private static final int MAX_ACKNOWLEDGEMENT_BATCH_SIZE = 100;
+
   private static final Logger logger = LoggerFactory.getLogger(WebSocketConnection.class);
 
   private final ReceiptSender receiptSender;
@@ -146,6 +170,8 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
 
   private final ClientReleaseManager clientReleaseManager;
 
+  private final MessageAcknowledgementBatcher messageAcknowledgementBatcher;
+
   private enum StoredMessageState {
     EMPTY,
     CACHED_NEW_MESSAGES_AVAILABLE,
@@ -211,6 +237,12 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
     this.clientReleaseManager = clientReleaseManager;
     this.messageDeliveryLoopMonitor = messageDeliveryLoopMonitor;
     this.experimentEnrollmentManager = experimentEnrollmentManager;
+
+    this.messageAcknowledgementBatcher = new MessageAcknowledgementBatcher(messagesManager,
+        authenticatedAccount,
+        authenticatedDevice,
+        ACKNOWLEDGEMENT_BATCH_WINDOW,
+        MAX_ACKNOWLEDGEMENT_BATCH_SIZE);
   }
 
   public void start() {
@@ -233,6 +265,8 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
 
     client.close(1000, "OK");
 
+    messageAcknowledgementBatcher.flush();
+
     if (storedMessageState.get() != StoredMessageState.EMPTY) {
       pushNotificationScheduler.scheduleDelayedNotification(authenticatedAccount,
           authenticatedDevice,
@@ -256,47 +290,132 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
           if (throwable != null) {
             sendFailuresCounter.increment();
           } else {
-            messageMetrics.measureOutgoingMessageLatency(message.getServerTimestamp(),
-                "websocket",
-                authenticatedDevice.isPrimary(),
-                message.getUrgent(),
-                message.getEphemeral(),
-                client.getUserAgent(),
-                clientReleaseManager);
+            measureOutgoingMessageLatency(message);
           }
         }).thenCompose(response -> {
-          final CompletableFuture<Void> result;
           if (isSuccessResponse(response)) {
+            return handleMessageDelivered(message, storedMessageInfo);
+          } else {
+            recordNonSuccessResponse(response);
+            return CompletableFuture.completedFuture(null);
+          }
+        });
+  }
 
-            result = messagesManager.delete(authenticatedAccount.getIdentifier(IdentityType.ACI), authenticatedDevice,
-                    storedMessageInfo.guid(), storedMessageInfo.serverTimestamp())
-                .thenApply(ignored -> null);
+  /**
+   * Sends several messages to the client in a single request. Clients that accept batches acknowledge every message in
+   * the batch with a single response.
+   */
+  private CompletableFuture<Void> sendMessageBatch(final List<Envelope> messages) {
+    final EnvelopeBatch.Builder batchBuilder = EnvelopeBatch.newBuilder();
 
-            if (message.getType() != Envelope.Type.SERVER_DELIVERY_RECEIPT) {
-              recordMessageDeliveryDuration(message.getServerTimestamp(), authenticatedDevice);
-              sendDeliveryReceiptFor(message);
-            }
-          } else {
-              final List<Tag> tags = new ArrayList<>(
-                  List.of(
-                      Tag.of(STATUS_CODE_TAG, String.valueOf(response.getStatus())),
-                      UserAgentTagUtil.getPlatformTag(client.getUserAgent())
-                  ));
-
-              // TODO Remove this once we've identified the cause of message rejections from desktop clients
-              if (StringUtils.isNotBlank(response.getMessage())) {
-                tags.add(Tag.of(STATUS_MESSAGE_TAG, response.getMessage()));
-              }
+    for (final Envelope message : messages) {
+      // clear ephemeral field from the envelope
+      batchBuilder.addEnvelopes(message.toBuilder().clearEphemeral());
+      messageMetrics.measureAccountEnvelopeUuidMismatches(authenticatedAccount, message);
+    }
 
-              Metrics.counter(NON_SUCCESS_RESPONSE_COUNTER_NAME, tags).increment();
+    final byte[] body = batchBuilder.build().toByteArray();
 
-              result = CompletableFuture.completedFuture(null);
-            }
+    sendMessageCounter.increment(messages.size());
+    sentMessageCounter.add(messages.size());
+    bytesSentCounter.increment(body.length);
+    MESSAGE_BATCH_SIZE_DISTRIBUTION.record(messages.size());
 
-          return result;
+    // X-Signal-Key: false must be sent until Android stops assuming it missing means true
+    return client.sendRequest("PUT", "/api/v1/messages",
+            List.of(HeaderUtils.X_SIGNAL_KEY + ": false", HeaderUtils.getTimestampHeader()), Optional.of(body))
+        .whenComplete((ignored, throwable) -> {
+          if (throwable != null) {
+            sendFailuresCounter.increment();
+          } else {
+            messages.forEach(this::measureOutgoingMessageLatency);
+          }
+        }).thenCompose(response -> {
+          if (isSuccessResponse(response)) {
+            return CompletableFuture.allOf(messages.stream()
+                .map(message -> handleMessageDelivered(message,
+                    new StoredMessageInfo(UUID.fromString(message.getServerGuid()), message.getServerTimestamp())))
+                .toArray(CompletableFuture[]::new));
+          } else {
+            recordNonSuccessResponse(response);
+            return CompletableFuture.completedFuture(null);
+          }
         });
   }
 
+  /**
+   * Splits a list of messages into batches whose serialized size is at most {@link #MAX_MESSAGE_BATCH_BYTES}. Messages
+   * that are larger than the limit on their own are sent in batches of one.
+   */
+  @VisibleForTesting
+  static List<List<Envelope>> partitionMessageBatch(final List<Envelope> messages) {
+    final List<List<Envelope>> batches = new ArrayList<>();
+
+    List<Envelope> currentBatch = new ArrayList<>();
+    int currentBatchBytes = 0;
+
+    for (final Envelope message : messages) {
+      final int messageBytes =
+          CodedOutputStream.computeMessageSize(EnvelopeBatch.ENVELOPES_FIELD_NUMBER, message);
+
+      if (!currentBatch.isEmpty() && currentBatchBytes + messageBytes > MAX_MESSAGE_BATCH_BYTES) {
+        batches.add(currentBatch);
+        currentBatch = new ArrayList<>();
+        currentBatchBytes = 0;
+      }
+
+      currentBatch.add(message);
+      currentBatchBytes += messageBytes;
+    }
+
+    if (!currentBatch.isEmpty()) {
+      batches.add(currentBatch);
+    }
+
+    return batches;
+  }
+
+  private void measureOutgoingMessageLatency(final Envelope message) {
+    messageMetrics.measureOutgoingMessageLatency(message.getServerTimestamp(),
+        "websocket",
+        authenticatedDevice.isPrimary(),
+        message.getUrgent(),
+        message.getEphemeral(),
+        client.getUserAgent(),
+        clientReleaseManager);
+  }
+
+  private CompletableFuture<Void> handleMessageDelivered(final Envelope message,
+      final StoredMessageInfo storedMessageInfo) {
+
+    final CompletableFuture<Void> result =
+        messageAcknowledgementBatcher.acknowledge(storedMessageInfo.guid(), storedMessageInfo.serverTimestamp())
+            .thenApply(ignored -> null);
+
+    if (message.getType() != Envelope.Type.SERVER_DELIVERY_RECEIPT) {
+      recordMessageDeliveryDuration(message.getServerTimestamp(), authenticatedDevice);
+      sendDeliveryReceiptFor(message);
+    }
+
+    return result;
+  }
+
+  private void recordNonSuccessResponse(final WebSocketResponseMessage response) {
+    final List<Tag> tags = new ArrayList<>(
+        List.of(
+            Tag.of(STATUS_CODE_TAG, String.valueOf(response.getStatus())),
+            UserAgentTagUtil.getPlatformTag(client.getUserAgent())
+        ));
+
+    // TODO Remove this once we've identified the cause of message rejections from desktop clients
+    if (StringUtils.isNotBlank(response.getMessage())) {
+      tags.add(Tag.of(STATUS_MESSAGE_TAG, response.getMessage()));
+    }
+
+    Metrics.counter(NON_SUCCESS_RESPONSE_COUNTER_NAME, tags).increment();
+  }
+
   public static void recordMessageDeliveryDuration(long timestamp, Device messageDestinationDevice) {
     final long messageDeliveryDuration = System.currentTimeMillis() - timestamp;
     messageTime.record(messageDeliveryDuration);
@@ -408,7 +527,7 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
     final AtomicBoolean hasSentFirstMessage = new AtomicBoolean();
     final AtomicBoolean hasErrored = new AtomicBoolean();
 
-    final Disposable subscription = Flux.from(messages)
+    final Flux<Envelope> envelopes = Flux.from(messages)
         .name(SEND_MESSAGES_FLUX_NAME)
         .tap(Micrometer.metrics(Metrics.globalRegistry))
         .limitRate(MESSAGE_PUBLISHER_LIMIT_RATE)
@@ -420,21 +539,41 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
                 client.getUserAgent(),
                 "websocket");
           }
-        })
-        .flatMapSequential(envelope ->
-            Mono.fromFuture(() -> sendMessage(envelope)
-                    .orTimeout(sendFuturesTimeoutMillis, TimeUnit.MILLISECONDS))
-                .onErrorResume(
-                    // let the first error pass through to terminate the subscription
-                    e -> {
-                      final boolean firstError = !hasErrored.getAndSet(true);
-                      measureSendMessageErrors(e, firstError);
-
-                      return !firstError;
-                    },
-                    // otherwise just emit nothing
-                    e -> Mono.empty()
-                ), MESSAGE_SENDER_MAX_CONCURRENCY)
+        });
+
+    final Function<Supplier<CompletableFuture<Void>>, Mono<Void>> sendWithErrorHandling = send ->
+        Mono.fromFuture(() -> send.get()
+                .orTimeout(sendFuturesTimeoutMillis, TimeUnit.MILLISECONDS))
+            .onErrorResume(
+                // let the first error pass through to terminate the subscription
+                e -> {
+                  final boolean firstError = !hasErrored.getAndSet(true);
+                  measureSendMessageErrors(e, firstError);
+
+                  return !firstError;
+                },
+                // otherwise just emit nothing
+                e -> Mono.empty()
+            );
+
+    final Flux<Void> sentMessages;
+
+    if (client.shouldReceiveMessageBatches()) {
+      // Gather whatever messages are ready within a short window into batches, each of which gets sent as a single
+      // request (and a single pending response) instead of one request per message
+      sentMessages = envelopes
+          .filter(this::shouldDeliver)
+          .bufferTimeout(MAX_MESSAGE_BATCH_ENVELOPES, MESSAGE_BATCH_WINDOW, true)
+          .concatMapIterable(WebSocketConnection::partitionMessageBatch)
+          .flatMapSequential(batch -> sendWithErrorHandling.apply(() -> sendMessageBatch(batch)),
+              MESSAGE_BATCH_SENDER_MAX_CONCURRENCY);
+    } else {
+      sentMessages = envelopes
+          .flatMapSequential(envelope -> sendWithErrorHandling.apply(() -> sendMessage(envelope)),
+              MESSAGE_SENDER_MAX_CONCURRENCY);
+    }
+
+    final Disposable subscription = sentMessages
         .subscribeOn(messageDeliveryScheduler)
         .subscribe(
             // no additional consumer of values - it is Flux<Void> by now
@@ -472,15 +611,25 @@ public class WebSocketConnection implements WebSocketConnectionEventListener {
   }
 
   private CompletableFuture<Void> sendMessage(Envelope envelope) {
-    final UUID messageGuid = UUID.fromString(envelope.getServerGuid());
+    if (!shouldDeliver(envelope)) {
+      return CompletableFuture.completedFuture(null);
+    }
 
-    if (envelope.getStory() && !client.shouldDeliverStories()) {
-      messagesManager.delete(authenticatedAccount.getIdentifier(IdentityType.ACI), authenticatedDevice, messageGuid, envelope.getServerTimestamp());
+    return sendMessage(envelope,
+        new StoredMessageInfo(UUID.fromString(envelope.getServerGuid()), envelope.getServerTimestamp()));
+  }
 
-      return CompletableFuture.completedFuture(null);
-    } else {
-      return sendMessage(envelope, new StoredMessageInfo(messageGuid, envelope.getServerTimestamp()));
+  /**
+   * Checks whether the given message should be delivered to the client. Messages that the client doesn't want (i.e.
+   * stories for clients that don't accept stories) are acknowledged immediately.
+   */
+  private boolean shouldDeliver(final Envelope envelope) {
+    if (envelope.getStory() && !client.shouldDeliverStories()) {
+      messageAcknowledgementBatcher.acknowledge(UUID.fromString(envelope.getServerGuid()), envelope.getServerTimestamp());
+      return false;
     }
+
+    return true;
   }
 
   @Override
@@ -149,6 +149,8 @@ record CommandDependencies(
         .executorService(name(WhisperServerService.class, "remoteStorage-%d"))
         .minThreads(0).maxThreads(Integer.MAX_VALUE).workQueue(new SynchronousQueue<>())
         .keepAliveTime(io.dropwizard.util.Duration.seconds(60L)).build();
+    ScheduledExecutorService pushNotificationCoalescingExecutor = environment.lifecycle()
+        .scheduledExecutorService(name(WhisperServerService.class, "pushNotificationCoalescing-%d")).threads(1).build();
     ExecutorService apnSenderExecutor = environment.lifecycle().executorService(name(WhisperServerService.class, "apnSender-%d"))
         .maxThreads(1).minThreads(1).build();
     ExecutorService fcmSenderExecutor = environment.lifecycle().executorService(name(WhisperServerService.class, "fcmSender-%d"))
@@ -301,7 +303,8 @@ record CommandDependencies(
     PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster,
         apnSender, fcmSender, accountsManager, 0, 0);
     PushNotificationManager pushNotificationManager = new PushNotificationManager(accountsManager,
-        apnSender, fcmSender, pushNotificationScheduler);
+        apnSender, fcmSender, pushNotificationScheduler, dynamicConfigurationManager,
+        pushNotificationCoalescingExecutor);
     PushNotificationExperimentSamples pushNotificationExperimentSamples =
         new PushNotificationExperimentSamples(dynamoDbAsyncClient,
             configuration.getDynamoDbTables().getPushNotificationExperimentSamples().getTableName(),
@@ -314,6 +317,7 @@ record CommandDependencies(
         new DynamoDbRecoveryManager(accounts, phoneNumberIdentifiers);
 
     environment.lifecycle().manage(apnSender);
+    environment.lifecycle().manage(pushNotificationManager);
     environment.lifecycle().manage(disconnectionRequestManager);
     environment.lifecycle().manage(webSocketConnectionEventManager);
     environment.lifecycle().manage(new ManagedAwsCrt());
@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyByte;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -35,6 +36,7 @@ import org.whispersystems.textsecuregcm.identity.IdentityType;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.DeviceLastSeenUpdater;
 import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.TestClock;
@@ -47,6 +49,7 @@ class AccountAuthenticatorTest {
   private final long               currentTime  = today + 68_000_000L;
 
   private AccountsManager          accountsManager;
+  private DeviceLastSeenUpdater    deviceLastSeenUpdater;
   private AccountAuthenticator accountAuthenticator;
   private TestClock                clock;
   private Account                  acct1;
@@ -56,8 +59,9 @@ class AccountAuthenticatorTest {
   @BeforeEach
   void setup() {
     accountsManager = mock(AccountsManager.class);
+    deviceLastSeenUpdater = mock(DeviceLastSeenUpdater.class);
     clock = TestClock.now();
-    accountAuthenticator = new AccountAuthenticator(accountsManager, clock);
+    accountAuthenticator = new AccountAuthenticator(accountsManager, deviceLastSeenUpdater, clock);
 
     // We use static UUIDs here because the UUID affects the "date last seen" offset
     acct1 = AccountsHelper.generateTestAccount("+14088675309", UUID.fromString("c139cb3e-f70c-4460-b221-815e8bdf778f"), UUID.randomUUID(), List.of(generateTestDevice(yesterday)), null);
@@ -82,17 +86,14 @@ class AccountAuthenticatorTest {
     final Device device1 = acct1.getDevices().stream().findFirst().orElseThrow();
     final Device device2 = acct2.getDevices().stream().findFirst().orElseThrow();
 
-    final Account updatedAcct1 = accountAuthenticator.updateLastSeen(acct1, device1);
-    final Account updatedAcct2 = accountAuthenticator.updateLastSeen(acct2, device2);
+    accountAuthenticator.updateLastSeen(acct1, device1);
+    accountAuthenticator.updateLastSeen(acct2, device2);
 
-    verify(accountsManager, never()).updateDeviceLastSeen(eq(acct1), any(), anyLong());
-    verify(accountsManager).updateDeviceLastSeen(eq(acct2), eq(device2), anyLong());
+    verify(deviceLastSeenUpdater, never()).updateLastSeen(eq(acct1.getUuid()), anyByte(), anyLong());
+    verify(deviceLastSeenUpdater).updateLastSeen(acct2.getUuid(), device2.getId(), today);
 
     assertThat(device1.getLastSeen()).isEqualTo(yesterday);
-    assertThat(device2.getLastSeen()).isEqualTo(today);
-
-    assertThat(acct1).isSameAs(updatedAcct1);
-    assertThat(acct2).isNotSameAs(updatedAcct2);
+    assertThat(device2.getLastSeen()).isEqualTo(yesterday);
   }
 
   @Test
@@ -102,17 +103,14 @@ class AccountAuthenticatorTest {
     final Device device1 = acct1.getDevices().stream().findFirst().orElseThrow();
     final Device device2 = acct2.getDevices().stream().findFirst().orElseThrow();
 
-    final Account updatedAcct1 = accountAuthenticator.updateLastSeen(acct1, device1);
-    final Account updatedAcct2 = accountAuthenticator.updateLastSeen(acct2, device2);
+    accountAuthenticator.updateLastSeen(acct1, device1);
+    accountAuthenticator.updateLastSeen(acct2, device2);
 
-    verify(accountsManager, never()).updateDeviceLastSeen(eq(acct1), any(), anyLong());
-    verify(accountsManager, never()).updateDeviceLastSeen(eq(acct2), any(), anyLong());
+    verify(deviceLastSeenUpdater, never()).updateLastSeen(eq(acct1.getUuid()), anyByte(), anyLong());
+    verify(deviceLastSeenUpdater, never()).updateLastSeen(eq(acct2.getUuid()), anyByte(), anyLong());
 
     assertThat(device1.getLastSeen()).isEqualTo(yesterday);
     assertThat(device2.getLastSeen()).isEqualTo(yesterday);
-
-    assertThat(acct1).isSameAs(updatedAcct1);
-    assertThat(acct2).isSameAs(updatedAcct2);
   }
 
   @Test
@@ -122,17 +120,14 @@ class AccountAuthenticatorTest {
     final Device device1 = acct1.getDevices().stream().findFirst().orElseThrow();
     final Device device2 = acct2.getDevices().stream().findFirst().orElseThrow();
 
-    final Account updatedAcct1 = accountAuthenticator.updateLastSeen(acct1, device1);
-    final Account updatedAcct2 = accountAuthenticator.updateLastSeen(acct2, device2);
+    accountAuthenticator.updateLastSeen(acct1, device1);
+    accountAuthenticator.updateLastSeen(acct2, device2);
 
-    verify(accountsManager).updateDeviceLastSeen(eq(acct1), eq(device1), anyLong());
-    verify(accountsManager).updateDeviceLastSeen(eq(acct2), eq(device2), anyLong());
+    verify(deviceLastSeenUpdater).updateLastSeen(acct1.getUuid(), device1.getId(), today);
+    verify(deviceLastSeenUpdater).updateLastSeen(acct2.getUuid(), device2.getId(), today);
 
-    assertThat(device1.getLastSeen()).isEqualTo(today);
-    assertThat(device2.getLastSeen()).isEqualTo(today);
-
-    assertThat(updatedAcct1).isNotSameAs(acct1);
-    assertThat(updatedAcct2).isNotSameAs(acct2);
+    assertThat(device1.getLastSeen()).isEqualTo(yesterday);
+    assertThat(device2.getLastSeen()).isEqualTo(yesterday);
   }
 
   @Test
@@ -143,9 +138,9 @@ class AccountAuthenticatorTest {
 
     accountAuthenticator.updateLastSeen(oldAccount, device);
 
-    verify(accountsManager).updateDeviceLastSeen(eq(oldAccount), eq(device), anyLong());
+    verify(deviceLastSeenUpdater).updateLastSeen(oldAccount.getUuid(), device.getId(), today);
 
-    assertThat(device.getLastSeen()).isEqualTo(today);
+    assertThat(device.getLastSeen()).isEqualTo(oldTime);
   }
 
   @Test
@@ -168,6 +163,8 @@ class AccountAuthenticatorTest {
     when(device.getAuthTokenHash()).thenReturn(credentials);
     when(credentials.verify(password)).thenReturn(true);
     when(credentials.getVersion()).thenReturn(SaltedTokenHash.CURRENT_VERSION);
+    when(credentials.hash()).thenReturn("2.hash");
+    when(credentials.salt()).thenReturn("salt");
 
     final Optional<AuthenticatedDevice> maybeAuthenticatedAccount =
         accountAuthenticator.authenticate(new BasicCredentials(uuid.toString(), password));
@@ -198,6 +195,8 @@ class AccountAuthenticatorTest {
     when(device.getAuthTokenHash()).thenReturn(credentials);
     when(credentials.verify(password)).thenReturn(true);
     when(credentials.getVersion()).thenReturn(SaltedTokenHash.CURRENT_VERSION);
+    when(credentials.hash()).thenReturn("2.hash");
+    when(credentials.salt()).thenReturn("salt");
 
     final Optional<AuthenticatedDevice> maybeAuthenticatedAccount =
         accountAuthenticator.authenticate(new BasicCredentials(uuid + "." + deviceId, password));
@@ -229,6 +228,8 @@ class AccountAuthenticatorTest {
     when(authenticatedDevice.getAuthTokenHash()).thenReturn(credentials);
     when(credentials.verify(password)).thenReturn(true);
     when(credentials.getVersion()).thenReturn(SaltedTokenHash.CURRENT_VERSION);
+    when(credentials.hash()).thenReturn("2.hash");
+    when(credentials.salt()).thenReturn("salt");
 
     final String identifier;
     if (authenticatedDeviceIsPrimary) {
@@ -272,8 +273,7 @@ class AccountAuthenticatorTest {
     assertThat(maybeAuthenticatedAccount.orElseThrow().accountIdentifier()).isEqualTo(uuid);
     assertThat(maybeAuthenticatedAccount.orElseThrow().deviceId()).isEqualTo(device.getId());
     verify(accountsManager, times(1)).updateDeviceAuthentication(
-        any(), // this won't be 'account', because it'll already be updated by updateDeviceLastSeen
-        eq(device), any());
+        eq(account), eq(device), any());
   }
   @Test
   void testAuthenticateAccountNotFound() {
@@ -301,6 +301,8 @@ class AccountAuthenticatorTest {
     when(device.getAuthTokenHash()).thenReturn(credentials);
     when(credentials.verify(password)).thenReturn(true);
     when(credentials.getVersion()).thenReturn(SaltedTokenHash.CURRENT_VERSION);
+    when(credentials.hash()).thenReturn("2.hash");
+    when(credentials.salt()).thenReturn("salt");
 
     final Optional<AuthenticatedDevice> maybeAuthenticatedAccount =
         accountAuthenticator.authenticate(new BasicCredentials(uuid + "." + (deviceId + 1), password));
@@ -329,6 +331,8 @@ class AccountAuthenticatorTest {
     when(device.getAuthTokenHash()).thenReturn(credentials);
     when(credentials.verify(password)).thenReturn(true);
     when(credentials.getVersion()).thenReturn(SaltedTokenHash.CURRENT_VERSION);
+    when(credentials.hash()).thenReturn("2.hash");
+    when(credentials.salt()).thenReturn("salt");
 
     final String incorrectPassword = password + "incorrect";
 
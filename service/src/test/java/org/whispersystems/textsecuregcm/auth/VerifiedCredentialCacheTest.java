@@ -0,0 +1,88 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VerifiedCredentialCacheTest {
+
+  private VerifiedCredentialCache verifiedCredentialCache;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final byte DEVICE_ID = 1;
+  private static final String PASSWORD = "password";
+
+  @BeforeEach
+  void setUp() {
+    verifiedCredentialCache = new VerifiedCredentialCache(1024, Duration.ofMinutes(1));
+  }
+
+  @Test
+  void verifyCached() {
+    final SaltedTokenHash saltedTokenHash = spy(SaltedTokenHash.generateFor(PASSWORD));
+
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, PASSWORD));
+
+    verify(saltedTokenHash, times(1)).verify(PASSWORD);
+  }
+
+  @Test
+  void verifyIncorrectPasswordNotCached() {
+    final SaltedTokenHash saltedTokenHash = spy(SaltedTokenHash.generateFor(PASSWORD));
+    final String incorrectPassword = PASSWORD + "incorrect";
+
+    assertFalse(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, incorrectPassword));
+    assertFalse(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, incorrectPassword));
+
+    verify(saltedTokenHash, times(2)).verify(incorrectPassword);
+  }
+
+  @Test
+  void verifyChangedCredentials() {
+    final SaltedTokenHash originalSaltedTokenHash = SaltedTokenHash.generateFor(PASSWORD);
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, originalSaltedTokenHash, PASSWORD));
+
+    final SaltedTokenHash updatedSaltedTokenHash = spy(SaltedTokenHash.generateFor(PASSWORD + "updated"));
+
+    assertFalse(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, updatedSaltedTokenHash, PASSWORD));
+    verify(updatedSaltedTokenHash).verify(PASSWORD);
+  }
+
+  @Test
+  void verifyDifferentDevice() {
+    final SaltedTokenHash saltedTokenHash = spy(SaltedTokenHash.generateFor(PASSWORD));
+
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, (byte) (DEVICE_ID + 1), saltedTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(UUID.randomUUID(), DEVICE_ID, saltedTokenHash, PASSWORD));
+
+    verify(saltedTokenHash, times(3)).verify(PASSWORD);
+  }
+
+  @Test
+  void verifyV1NotCached() {
+    final SaltedTokenHash saltedTokenHash = mock(SaltedTokenHash.class);
+    when(saltedTokenHash.getVersion()).thenReturn(SaltedTokenHash.Version.V1);
+    when(saltedTokenHash.verify(PASSWORD)).thenReturn(true);
+
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, PASSWORD));
+    assertTrue(verifiedCredentialCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, PASSWORD));
+
+    verify(saltedTokenHash, times(2)).verify(PASSWORD);
+  }
+}
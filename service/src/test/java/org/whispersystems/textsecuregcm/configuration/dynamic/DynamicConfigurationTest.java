@@ -333,6 +333,24 @@ class DynamicConfigurationTest {
 
     assertThat(resetRateLimiterConfig.bucketSize()).isEqualTo(17);
     assertThat(resetRateLimiterConfig.permitRegenerationDuration()).isEqualTo(Duration.ofNanos(4_000));
+    assertThat(resetRateLimiterConfig.localTier()).isEqualTo(RateLimiterConfig.LocalTier.DISABLED);
+  }
+
+  @Test
+  void testParseLimitsLocalTier() throws JsonProcessingException {
+    final String limitsConfig = REQUIRED_CONFIG.concat("""
+        limits:
+          rateLimitReset:
+            bucketSize: 17
+            permitRegenerationDuration: PT0.000004S
+            localTier: CONSERVATIVE
+        """);
+
+    final RateLimiterConfig resetRateLimiterConfig =
+        DynamicConfigurationManager.parseConfiguration(limitsConfig, DynamicConfiguration.class).orElseThrow()
+            .getLimits().get(RateLimiters.For.RATE_LIMIT_RESET.id());
+
+    assertThat(resetRateLimiterConfig.localTier()).isEqualTo(RateLimiterConfig.LocalTier.CONSERVATIVE);
   }
 
   @Test
@@ -373,4 +391,29 @@ class DynamicConfigurationTest {
     }
   }
 
+  @Test
+  void testPushNotificationCoalescing() throws JsonProcessingException {
+    {
+      final String emptyConfigYaml = REQUIRED_CONFIG.concat("test: true");
+      final DynamicConfiguration emptyConfig =
+          DynamicConfigurationManager.parseConfiguration(emptyConfigYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertEquals(Duration.ZERO, emptyConfig.getPushNotificationCoalescingConfiguration().urgentWindow());
+      assertEquals(Duration.ZERO, emptyConfig.getPushNotificationCoalescingConfiguration().nonUrgentWindow());
+    }
+
+    {
+      final String coalescingYaml = REQUIRED_CONFIG.concat("""
+          pushNotificationCoalescing:
+            nonUrgentWindow: PT30S
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(coalescingYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertEquals(Duration.ZERO, config.getPushNotificationCoalescingConfiguration().urgentWindow());
+      assertEquals(Duration.ofSeconds(30), config.getPushNotificationCoalescingConfiguration().nonUrgentWindow());
+    }
+  }
+
 }
@@ -9,6 +9,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doThrow;
@@ -35,11 +36,15 @@ import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.glassfish.jersey.server.ServerProperties;
@@ -52,6 +57,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
 import org.signal.libsignal.protocol.IdentityKey;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
@@ -306,6 +312,28 @@ class KeysControllerTest {
 
     when(KEYS.getEcSignedPreKey(AuthHelper.VALID_PNI, AuthHelper.VALID_DEVICE.getId()))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(VALID_DEVICE_PNI_SIGNED_KEY)));
+
+    // Bulk lookups defer to the per-device stubs configured by each test
+    when(KEYS.takeEC(any(), anyCollection())).thenAnswer(answerPerDevice(KEYS::takeEC));
+    when(KEYS.takePQ(any(), anyCollection())).thenAnswer(answerPerDevice(KEYS::takePQ));
+    when(KEYS.getEcSignedPreKeys(any(), anyCollection())).thenAnswer(answerPerDevice(KEYS::getEcSignedPreKey));
+  }
+
+  private static <K> Answer<CompletableFuture<Map<Byte, Optional<K>>>> answerPerDevice(
+      final BiFunction<UUID, Byte, CompletableFuture<Optional<K>>> perDeviceFunction) {
+
+    return invocation -> {
+      final UUID identifier = invocation.getArgument(0);
+      final Collection<Byte> deviceIds = invocation.getArgument(1);
+      final Map<Byte, Optional<K>> preKeysByDeviceId = new HashMap<>();
+
+      for (final byte deviceId : deviceIds) {
+        final CompletableFuture<Optional<K>> maybePreKeyFuture = perDeviceFunction.apply(identifier, deviceId);
+        preKeysByDeviceId.put(deviceId, maybePreKeyFuture == null ? Optional.empty() : maybePreKeyFuture.join());
+      }
+
+      return CompletableFuture.completedFuture(preKeysByDeviceId);
+    };
   }
 
   @AfterEach
@@ -355,6 +383,9 @@ class KeysControllerTest {
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -379,6 +410,9 @@ class KeysControllerTest {
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -401,6 +435,9 @@ class KeysControllerTest {
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -422,6 +459,9 @@ class KeysControllerTest {
     verify(KEYS).takeEC(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).getEcSignedPreKey(EXISTS_PNI, SAMPLE_DEVICE_ID);
+    verify(KEYS).takeEC(eq(EXISTS_PNI), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_PNI), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_PNI), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -444,6 +484,9 @@ class KeysControllerTest {
     verify(KEYS).takeEC(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_PNI, SAMPLE_DEVICE_ID);
     verify(KEYS).getEcSignedPreKey(EXISTS_PNI, SAMPLE_DEVICE_ID);
+    verify(KEYS).takeEC(eq(EXISTS_PNI), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_PNI), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_PNI), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -480,6 +523,9 @@ class KeysControllerTest {
     verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+    verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -516,6 +562,9 @@ class KeysControllerTest {
       verify(KEYS).takeEC(EXISTS_UUID, SAMPLE_DEVICE_ID);
       verify(KEYS).takePQ(EXISTS_UUID, SAMPLE_DEVICE_ID);
       verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID);
+      verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+      verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+      verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     }
 
     verifyNoMoreInteractions(KEYS);
@@ -656,6 +705,9 @@ class KeysControllerTest {
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID2);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID3);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID4);
+    verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
@@ -735,6 +787,9 @@ class KeysControllerTest {
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID2);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID3);
     verify(KEYS).getEcSignedPreKey(EXISTS_UUID, SAMPLE_DEVICE_ID4);
+    verify(KEYS).takeEC(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).takePQ(eq(EXISTS_UUID), anyCollection());
+    verify(KEYS).getEcSignedPreKeys(eq(EXISTS_UUID), anyCollection());
     verifyNoMoreInteractions(KEYS);
   }
 
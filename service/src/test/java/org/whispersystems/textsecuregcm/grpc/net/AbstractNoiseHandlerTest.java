@@ -139,13 +139,17 @@ abstract class AbstractNoiseHandlerTest extends AbstractLeakDetectionTest {
     if (responseFrame == null) {
       return null;
     }
-    final byte[] plaintext = new byte[responseFrame.readableBytes() - 16];
-    final int read = clientCipherPair.getReceiver().decryptWithAd(null,
-        ByteBufUtil.getBytes(responseFrame), 0,
-        plaintext, 0,
-        responseFrame.readableBytes());
-    assertEquals(read, plaintext.length);
-    return plaintext;
+    try {
+      final byte[] plaintext = new byte[responseFrame.readableBytes() - 16];
+      final int read = clientCipherPair.getReceiver().decryptWithAd(null,
+          ByteBufUtil.getBytes(responseFrame), 0,
+          plaintext, 0,
+          responseFrame.readableBytes());
+      assertEquals(read, plaintext.length);
+      return plaintext;
+    } finally {
+      responseFrame.release();
+    }
   }
 
 
@@ -264,6 +268,48 @@ abstract class AbstractNoiseHandlerTest extends AbstractLeakDetectionTest {
     assertArrayEquals(plaintext, decryptedPlaintext);
   }
 
+  @Test
+  void channelReadDirectBuffer() throws Throwable {
+    final CipherStatePair clientCipherStatePair = doHandshake();
+    final byte[] plaintext = "ping".getBytes(StandardCharsets.UTF_8);
+    final byte[] ciphertext = new byte[plaintext.length + clientCipherStatePair.getSender().getMACLength()];
+    clientCipherStatePair.getSender().encryptWithAd(null, plaintext, 0, ciphertext, 0, plaintext.length);
+
+    final ByteBuf ciphertextFrame = Unpooled.directBuffer(ciphertext.length).writeBytes(ciphertext);
+    assertTrue(embeddedChannel.writeOneInbound(ciphertextFrame).await().isSuccess());
+    assertEquals(0, ciphertextFrame.refCnt());
+
+    final byte[] response = readNextPlaintext(clientCipherStatePair);
+    assertArrayEquals("pong".getBytes(StandardCharsets.UTF_8), response);
+  }
+
+  @Test
+  void writeCoalesced() throws Throwable {
+    final CipherStatePair clientCipherStatePair = doHandshake();
+
+    final ByteBuf firstPlaintextBuffer = Unpooled.wrappedBuffer("first".getBytes(StandardCharsets.UTF_8));
+    final ByteBuf emptyPlaintextBuffer = Unpooled.buffer(0);
+    final ByteBuf secondPlaintextBuffer = Unpooled.wrappedBuffer("second".getBytes(StandardCharsets.UTF_8));
+
+    final ChannelFuture firstWriteFuture = embeddedChannel.pipeline().write(firstPlaintextBuffer);
+    final ChannelFuture emptyWriteFuture = embeddedChannel.pipeline().write(emptyPlaintextBuffer);
+    final ChannelFuture secondWriteFuture = embeddedChannel.pipeline().write(secondPlaintextBuffer);
+
+    assertTrue(embeddedChannel.outboundMessages().isEmpty(), "Nothing should be written before a flush");
+
+    embeddedChannel.pipeline().flush();
+
+    assertTrue(firstWriteFuture.await().isSuccess());
+    assertTrue(emptyWriteFuture.await().isSuccess());
+    assertTrue(secondWriteFuture.await().isSuccess());
+    assertEquals(0, firstPlaintextBuffer.refCnt());
+    assertEquals(0, emptyPlaintextBuffer.refCnt());
+    assertEquals(0, secondPlaintextBuffer.refCnt());
+
+    assertArrayEquals("firstsecond".getBytes(StandardCharsets.UTF_8), readNextPlaintext(clientCipherStatePair));
+    assertTrue(embeddedChannel.outboundMessages().isEmpty());
+  }
+
   @Test
   void writeUnexpectedMessageType() throws Throwable {
     doHandshake();
@@ -6,6 +6,8 @@
 package org.whispersystems.textsecuregcm.limits;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -27,6 +29,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
@@ -270,4 +273,146 @@ class DynamicRateLimiterTest {
 
     assertThrows(RuntimeException.class, () -> rateLimiter.validate(key));
   }
+
+  @ParameterizedTest
+  @EnumSource(RateLimiterConfig.LocalTier.class)
+  void localTierDenied(final RateLimiterConfig.LocalTier localTier) {
+    final DynamicRateLimiter rateLimiter = new DynamicRateLimiter(
+        "test",
+        () -> new RateLimiterConfig(2, Duration.ofMinutes(1), false, localTier),
+        validateRateLimitScript,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        CLOCK);
+
+    final String key = RandomStringUtils.insecure().nextAlphanumeric(16);
+
+    assertDoesNotThrow(() -> rateLimiter.validate(key, 2));
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(key));
+
+    // The async path waits for the clear generation to be refreshed before trusting the local tier, so the
+    // synchronous checks below don't need to defer to the shared bucket
+    assertThrows(CompletionException.class, () -> rateLimiter.validateAsync(key).toCompletableFuture().join());
+
+    // Remove the shared bucket so that only the local tier can still deny the request
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().del("leaky_bucket::test::" + key));
+
+    if (localTier == RateLimiterConfig.LocalTier.DISABLED) {
+      assertDoesNotThrow(() -> rateLimiter.validate(key));
+    } else {
+      assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(key));
+      assertFalse(rateLimiter.hasAvailablePermits(key, 1));
+
+      final CompletionException completionException =
+          assertThrows(CompletionException.class, () -> rateLimiter.validateAsync(key).toCompletableFuture().join());
+
+      assertInstanceOf(RateLimitExceededException.class, completionException.getCause());
+
+      CLOCK.pin(CLOCK.instant().plus(Duration.ofMinutes(1)));
+      assertDoesNotThrow(() -> rateLimiter.validate(key));
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(RateLimiterConfig.LocalTier.class)
+  void localTierGranted(final RateLimiterConfig.LocalTier localTier) {
+    final DynamicRateLimiter rateLimiter = new DynamicRateLimiter(
+        "test",
+        () -> new RateLimiterConfig(2, Duration.ofMinutes(1), false, localTier),
+        validateRateLimitScript,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        CLOCK);
+
+    final String key = RandomStringUtils.insecure().nextAlphanumeric(16);
+
+    assertDoesNotThrow(() -> rateLimiter.validateAsync(key, 2).toCompletableFuture().join());
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync().del("leaky_bucket::test::" + key));
+
+    // Only the conservative tier spends granted permits locally
+    if (localTier == RateLimiterConfig.LocalTier.CONSERVATIVE) {
+      final CompletionException completionException =
+          assertThrows(CompletionException.class, () -> rateLimiter.validateAsync(key).toCompletableFuture().join());
+
+      assertInstanceOf(RateLimitExceededException.class, completionException.getCause());
+    } else {
+      assertDoesNotThrow(() -> rateLimiter.validateAsync(key).toCompletableFuture().join());
+    }
+  }
+
+  @Test
+  void localTierClear() {
+    final DynamicRateLimiter rateLimiter = new DynamicRateLimiter(
+        "test",
+        () -> new RateLimiterConfig(1, Duration.ofMinutes(1), false, RateLimiterConfig.LocalTier.CONSERVATIVE),
+        validateRateLimitScript,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        CLOCK);
+
+    final String key = RandomStringUtils.insecure().nextAlphanumeric(16);
+
+    assertDoesNotThrow(() -> rateLimiter.validate(key));
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(key));
+
+    rateLimiter.clear(key);
+
+    assertDoesNotThrow(() -> rateLimiter.validate(key));
+  }
+
+  @ParameterizedTest
+  @EnumSource(RateLimiterConfig.LocalTier.class)
+  void clearAdvancesClearGeneration(final RateLimiterConfig.LocalTier localTier) {
+    final String name = "test-clear-generation-" + localTier.name().toLowerCase();
+
+    final DynamicRateLimiter rateLimiter = new DynamicRateLimiter(
+        name,
+        () -> new RateLimiterConfig(1, Duration.ofMinutes(1), false, localTier),
+        validateRateLimitScript,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        CLOCK);
+
+    rateLimiter.clear(RandomStringUtils.insecure().nextAlphanumeric(16));
+    rateLimiter.clearAsync(RandomStringUtils.insecure().nextAlphanumeric(16)).toCompletableFuture().join();
+
+    final String clearGeneration = REDIS_CLUSTER_EXTENSION.getRedisCluster()
+        .withCluster(connection -> connection.sync().get("leaky_bucket_clear_generation::" + name));
+
+    // Nothing needs to hear about clears while the local tier is disabled
+    assertEquals(localTier == RateLimiterConfig.LocalTier.DISABLED ? null : "2", clearGeneration);
+  }
+
+  @Test
+  void localTierClearedByOtherServer() {
+    final DynamicRateLimiter rateLimiter = new DynamicRateLimiter(
+        "test-clear",
+        () -> new RateLimiterConfig(1, Duration.ofMinutes(1), false, RateLimiterConfig.LocalTier.DENY_ONLY),
+        validateRateLimitScript,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        CLOCK);
+
+    final DynamicRateLimiter otherServerRateLimiter = new DynamicRateLimiter(
+        "test-clear",
+        () -> new RateLimiterConfig(1, Duration.ofMinutes(1), false, RateLimiterConfig.LocalTier.DENY_ONLY),
+        validateRateLimitScript,
+        REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        CLOCK);
+
+    final String key = RandomStringUtils.insecure().nextAlphanumeric(16);
+
+    assertDoesNotThrow(() -> rateLimiter.validate(key));
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(key));
+
+    // The async path waits for the clear generation to be refreshed before trusting the local tier
+    final CompletionException completionException =
+        assertThrows(CompletionException.class, () -> rateLimiter.validateAsync(key).toCompletableFuture().join());
+
+    assertInstanceOf(RateLimitExceededException.class, completionException.getCause());
+
+    otherServerRateLimiter.clear(key);
+
+    // The local tier may keep denying a key cleared through another server until it next checks for clears
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(key));
+
+    CLOCK.pin(CLOCK.instant().plus(Duration.ofSeconds(1)));
+    assertDoesNotThrow(() -> rateLimiter.validateAsync(key).toCompletableFuture().join());
+  }
 }
@@ -7,27 +7,37 @@ package org.whispersystems.textsecuregcm.push;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.api.core.SettableApiFuture;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.whispersystems.textsecuregcm.tests.util.SynchronousExecutorService;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 class FcmSenderTest {
 
@@ -124,4 +134,57 @@ class FcmSenderTest {
     verify(firebaseMessaging).sendAsync(any(Message.class));
     assertTrue(completionException.getCause() instanceof IOException);
   }
+
+  @Test
+  void testSendMessages() {
+    final List<PushNotification> pushNotifications = IntStream.range(0, FcmSender.MAX_SEND_EACH_MESSAGES + 1)
+        .mapToObj(i -> new PushNotification("token" + i, PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true))
+        .toList();
+
+    final FirebaseMessagingException unregisteredException = mock(FirebaseMessagingException.class);
+    when(unregisteredException.getMessagingErrorCode()).thenReturn(MessagingErrorCode.UNREGISTERED);
+
+    final SendResponse successfulResponse = mock(SendResponse.class);
+    when(successfulResponse.isSuccessful()).thenReturn(true);
+
+    final SendResponse unregisteredResponse = mock(SendResponse.class);
+    when(unregisteredResponse.isSuccessful()).thenReturn(false);
+    when(unregisteredResponse.getException()).thenReturn(unregisteredException);
+
+    // The first message in each batch is unregistered
+    when(firebaseMessaging.sendEachAsync(any())).thenAnswer(invocation -> {
+      final List<Message> messages = invocation.getArgument(0);
+
+      final BatchResponse batchResponse = mock(BatchResponse.class);
+      when(batchResponse.getResponses()).thenReturn(IntStream.range(0, messages.size())
+          .mapToObj(i -> i == 0 ? unregisteredResponse : successfulResponse)
+          .toList());
+
+      final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+      sendFuture.set(batchResponse);
+
+      return sendFuture;
+    });
+
+    final Map<String, SendPushNotificationResult> resultsByToken =
+        fcmSender.sendNotifications(pushNotifications, 2)
+            .collectMap(notificationAndResult -> notificationAndResult.first().deviceToken(), Pair::second)
+            .block();
+
+    final ArgumentCaptor<List<Message>> messagesCaptor = ArgumentCaptor.captor();
+    verify(firebaseMessaging, times(2)).sendEachAsync(messagesCaptor.capture());
+    verify(firebaseMessaging, never()).sendAsync(any());
+
+    assertEquals(FcmSender.MAX_SEND_EACH_MESSAGES, messagesCaptor.getAllValues().get(0).size());
+    assertEquals(1, messagesCaptor.getAllValues().get(1).size());
+
+    assertNotNull(resultsByToken);
+    assertEquals(pushNotifications.size(), resultsByToken.size());
+
+    assertFalse(resultsByToken.get("token0").accepted());
+    assertEquals(Optional.of("UNREGISTERED"), resultsByToken.get("token0").errorCode());
+    assertTrue(resultsByToken.get("token0").unregistered());
+    assertTrue(resultsByToken.get("token1").accepted());
+    assertFalse(resultsByToken.get("token" + FcmSender.MAX_SEND_EACH_MESSAGES).accepted());
+  }
 }
@@ -5,7 +5,9 @@
 
 package org.whispersystems.textsecuregcm.push;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -15,18 +17,25 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.net.HttpHeaders;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junitpioneer.jupiter.cartesian.CartesianTest;
+import org.mockito.ArgumentCaptor;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPushNotificationCoalescingConfiguration;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
 
 class PushNotificationManagerTest {
@@ -35,6 +44,8 @@ class PushNotificationManagerTest {
   private APNSender apnSender;
   private FcmSender fcmSender;
   private PushNotificationScheduler pushNotificationScheduler;
+  private DynamicConfiguration dynamicConfiguration;
+  private ScheduledExecutorService coalescingExecutor;
 
   private PushNotificationManager pushNotificationManager;
 
@@ -44,11 +55,20 @@ class PushNotificationManagerTest {
     apnSender = mock(APNSender.class);
     fcmSender = mock(FcmSender.class);
     pushNotificationScheduler = mock(PushNotificationScheduler.class);
+    dynamicConfiguration = mock(DynamicConfiguration.class);
+    coalescingExecutor = mock(ScheduledExecutorService.class);
 
     AccountsHelper.setupMockUpdate(accountsManager);
 
+    @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
+        mock(DynamicConfigurationManager.class);
+
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+    when(dynamicConfiguration.getPushNotificationCoalescingConfiguration())
+        .thenReturn(new DynamicPushNotificationCoalescingConfiguration());
+
     pushNotificationManager = new PushNotificationManager(accountsManager, apnSender, fcmSender,
-        pushNotificationScheduler);
+        pushNotificationScheduler, dynamicConfigurationManager, coalescingExecutor);
   }
 
   @Test
@@ -313,4 +333,139 @@ class PushNotificationManagerTest {
 
     verify(pushNotificationScheduler).cancelScheduledNotifications(account, device);
   }
+
+  @Test
+  void sendNewMessageNotificationCoalesced() throws NotPushRegisteredException {
+    when(dynamicConfiguration.getPushNotificationCoalescingConfiguration())
+        .thenReturn(new DynamicPushNotificationCoalescingConfiguration(Duration.ofSeconds(5), Duration.ZERO));
+
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    final String deviceToken = "token";
+    final UUID accountIdentifier = UUID.randomUUID();
+
+    when(account.getUuid()).thenReturn(accountIdentifier);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn(deviceToken);
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    // The device gets a new push token while notifications are held
+    final Account updatedAccount = mock(Account.class);
+    final Device updatedDevice = mock(Device.class);
+
+    final String updatedDeviceToken = "updated-token";
+
+    when(updatedAccount.getUuid()).thenReturn(accountIdentifier);
+    when(updatedDevice.getId()).thenReturn(Device.PRIMARY_ID);
+    when(updatedDevice.getGcmId()).thenReturn(updatedDeviceToken);
+    when(updatedAccount.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(updatedDevice));
+
+    when(accountsManager.getByAccountIdentifierAsync(accountIdentifier))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(updatedAccount)));
+
+    when(fcmSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())));
+
+    final PushNotification urgentNotification = new PushNotification(deviceToken, PushNotification.TokenType.FCM,
+        PushNotification.NotificationType.NOTIFICATION, null, account, device, true);
+
+    when(pushNotificationScheduler.scheduleBackgroundNotification(PushNotification.TokenType.FCM, account, device))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    // The first urgent notification goes out immediately and opens a window; the next two are held and collapsed
+    assertTrue(pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true).join().isPresent());
+    assertTrue(pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true).join().isEmpty());
+    assertTrue(pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true).join().isEmpty());
+
+    // Non-urgent notifications have no window in this configuration
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, false);
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, false);
+
+    verify(fcmSender, times(1)).sendNotification(urgentNotification);
+    verify(pushNotificationScheduler, times(2))
+        .scheduleBackgroundNotification(PushNotification.TokenType.FCM, account, device);
+
+    final ArgumentCaptor<Runnable> closeWindowCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(coalescingExecutor).schedule(closeWindowCaptor.capture(), eq(5_000L), eq(TimeUnit.MILLISECONDS));
+
+    // Closing the window sends exactly one trailing notification to the device's current token and opens a new window
+    closeWindowCaptor.getValue().run();
+    verify(fcmSender, times(1)).sendNotification(urgentNotification);
+    verify(fcmSender).sendNotification(new PushNotification(updatedDeviceToken, PushNotification.TokenType.FCM,
+        PushNotification.NotificationType.NOTIFICATION, null, updatedAccount, updatedDevice, true));
+    verify(coalescingExecutor, times(2)).schedule(any(Runnable.class), anyLong(), any());
+
+    // Nothing was held during the second window, so closing it sends nothing and the next notification goes out
+    // immediately
+    closeWindowCaptor.getValue().run();
+    verify(fcmSender, times(2)).sendNotification(any());
+
+    assertTrue(pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true).join().isPresent());
+    verify(fcmSender, times(2)).sendNotification(urgentNotification);
+  }
+
+  @Test
+  void testStopSchedulesHeldNotifications() throws NotPushRegisteredException {
+    when(dynamicConfiguration.getPushNotificationCoalescingConfiguration())
+        .thenReturn(new DynamicPushNotificationCoalescingConfiguration(Duration.ofSeconds(5), Duration.ofSeconds(5)));
+
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(account.getUuid()).thenReturn(UUID.randomUUID());
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(fcmSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())));
+
+    when(pushNotificationScheduler.scheduleDelayedNotification(account, device, Duration.ZERO))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true);
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true);
+
+    verify(fcmSender, times(1)).sendNotification(any());
+
+    // The held notification should be handed to the scheduler rather than lost when the window's close task never runs
+    pushNotificationManager.stop();
+    verify(pushNotificationScheduler).scheduleDelayedNotification(account, device, Duration.ZERO);
+
+    // Notifications are no longer held once stopped
+    assertTrue(pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true).join().isPresent());
+    verify(fcmSender, times(2)).sendNotification(any());
+  }
+
+  @Test
+  void testHandleMessagesRetrievedDiscardsCoalescedNotifications() throws NotPushRegisteredException {
+    when(dynamicConfiguration.getPushNotificationCoalescingConfiguration())
+        .thenReturn(new DynamicPushNotificationCoalescingConfiguration(Duration.ofSeconds(5), Duration.ofSeconds(5)));
+
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(account.getUuid()).thenReturn(UUID.randomUUID());
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(fcmSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())));
+
+    when(pushNotificationScheduler.cancelScheduledNotifications(account, device))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true);
+    pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, true);
+    pushNotificationManager.handleMessagesRetrieved(account, device, HttpHeaders.USER_AGENT);
+
+    final ArgumentCaptor<Runnable> closeWindowCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(coalescingExecutor).schedule(closeWindowCaptor.capture(), anyLong(), any());
+
+    closeWindowCaptor.getValue().run();
+
+    verify(fcmSender, times(1)).sendNotification(any());
+  }
 }
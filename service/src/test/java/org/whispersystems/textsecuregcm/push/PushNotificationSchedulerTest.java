@@ -8,21 +8,32 @@ package org.whispersystems.textsecuregcm.push;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import io.lettuce.core.cluster.SlotHash;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,13 +42,17 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
 import org.whispersystems.textsecuregcm.identity.IdentityType;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisClusterClient;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.TestClock;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 class PushNotificationSchedulerTest {
 
@@ -47,6 +62,7 @@ class PushNotificationSchedulerTest {
   private Account account;
   private Device device;
 
+  private AccountsManager accountsManager;
   private APNSender apnSender;
   private FcmSender fcmSender;
   private TestClock clock;
@@ -74,10 +90,10 @@ class PushNotificationSchedulerTest {
     when(account.getNumber()).thenReturn(ACCOUNT_NUMBER);
     when(account.getDevice(DEVICE_ID)).thenReturn(Optional.of(device));
 
-    final AccountsManager accountsManager = mock(AccountsManager.class);
+    accountsManager = mock(AccountsManager.class);
     when(accountsManager.getByE164(ACCOUNT_NUMBER)).thenReturn(Optional.of(account));
-    when(accountsManager.getByAccountIdentifierAsync(ACCOUNT_UUID))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+    when(accountsManager.getByAccountIdentifiersAsync(List.of(ACCOUNT_UUID)))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(ACCOUNT_UUID, Optional.of(account))));
 
     apnSender = mock(APNSender.class);
     fcmSender = mock(FcmSender.class);
@@ -89,6 +105,9 @@ class PushNotificationSchedulerTest {
     when(fcmSender.sendNotification(any()))
         .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())));
 
+    when(apnSender.sendNotifications(anyList(), anyInt())).thenAnswer(sendEach(apnSender));
+    when(fcmSender.sendNotifications(anyList(), anyInt())).thenAnswer(sendEach(fcmSender));
+
     pushNotificationScheduler = new PushNotificationScheduler(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
         apnSender, fcmSender, accountsManager, clock, 1, 1);
   }
@@ -253,6 +272,80 @@ class PushNotificationSchedulerTest {
         pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(account, device));
   }
 
+  @Test
+  void testProcessScheduledDelayedNotificationsMultipleAccounts() {
+    final PushNotificationScheduler.NotificationWorker worker = pushNotificationScheduler.new NotificationWorker(1);
+    final int slot = SlotHash.getSlot(PushNotificationScheduler.getDelayedNotificationQueueKey(account, device));
+
+    final Pair<Account, Device> otherAccountAndDevice = buildAccountAndDeviceInSlot(slot, "other-apn-id");
+    final Account otherAccount = otherAccountAndDevice.first();
+    final Device otherDevice = otherAccountAndDevice.second();
+
+    // Both devices' notifications are in the same queue and therefore the same page
+    assertEquals(PushNotificationScheduler.getDelayedNotificationQueueKey(account, device),
+        PushNotificationScheduler.getDelayedNotificationQueueKey(otherAccount, otherDevice));
+
+    clock.pin(Instant.now());
+
+    pushNotificationScheduler.scheduleDelayedNotification(account, device, Duration.ofMinutes(1)).join();
+    pushNotificationScheduler.scheduleDelayedNotification(otherAccount, otherDevice, Duration.ofMinutes(1)).join();
+
+    clock.pin(clock.instant().plus(Duration.ofMinutes(1)));
+
+    assertEquals(2, worker.processScheduledDelayedNotifications(slot));
+
+    @SuppressWarnings("unchecked") final ArgumentCaptor<List<UUID>> accountIdentifiersCaptor =
+        ArgumentCaptor.forClass(List.class);
+
+    verify(accountsManager).getByAccountIdentifiersAsync(accountIdentifiersCaptor.capture());
+    assertEquals(Set.of(ACCOUNT_UUID, otherAccount.getUuid()), new HashSet<>(accountIdentifiersCaptor.getValue()));
+
+    final ArgumentCaptor<PushNotification> notificationCaptor = ArgumentCaptor.forClass(PushNotification.class);
+    verify(apnSender, times(2)).sendNotification(notificationCaptor.capture());
+
+    assertEquals(Set.of(APN_ID, "other-apn-id"), notificationCaptor.getAllValues().stream()
+        .map(PushNotification::deviceToken)
+        .collect(Collectors.toSet()));
+
+    assertEquals(Optional.empty(),
+        pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(account, device));
+
+    assertEquals(Optional.empty(),
+        pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(otherAccount, otherDevice));
+  }
+
+  @Test
+  void testProcessScheduledDelayedNotificationsSendFailure() {
+    final PushNotificationScheduler.NotificationWorker worker = pushNotificationScheduler.new NotificationWorker(1);
+    final int slot = SlotHash.getSlot(PushNotificationScheduler.getDelayedNotificationQueueKey(account, device));
+
+    final Pair<Account, Device> failingAccountAndDevice = buildAccountAndDeviceInSlot(slot, "failing-apn-id");
+    final Account failingAccount = failingAccountAndDevice.first();
+    final Device failingDevice = failingAccountAndDevice.second();
+
+    when(apnSender.sendNotification(argThat(pushNotification -> "failing-apn-id".equals(pushNotification.deviceToken()))))
+        .thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+    clock.pin(Instant.now());
+
+    pushNotificationScheduler.scheduleDelayedNotification(account, device, Duration.ofMinutes(1)).join();
+    pushNotificationScheduler.scheduleDelayedNotification(failingAccount, failingDevice, Duration.ofMinutes(1)).join();
+
+    final Optional<Instant> failingNotificationTimestamp =
+        pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(failingAccount, failingDevice);
+
+    clock.pin(clock.instant().plus(Duration.ofMinutes(1)));
+
+    // The notification that failed to send should stay queued for another attempt without holding up the other one
+    assertEquals(1, worker.processScheduledDelayedNotifications(slot));
+
+    assertEquals(Optional.empty(),
+        pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(account, device));
+
+    assertEquals(failingNotificationTimestamp,
+        pushNotificationScheduler.getNextScheduledDelayedNotificationTimestamp(failingAccount, failingDevice));
+  }
+
   @ParameterizedTest
   @CsvSource({
       "1, true",
@@ -280,4 +373,46 @@ class PushNotificationSchedulerTest {
       verifyNoInteractions(apnSender);
     }
   }
+
+  private Pair<Account, Device> buildAccountAndDeviceInSlot(final int slot, final String apnId) {
+    UUID accountIdentifier;
+
+    do {
+      accountIdentifier = UUID.randomUUID();
+    } while (SlotHash.getSlot(accountIdentifier + ":" + DEVICE_ID) != slot);
+
+    final Device device = mock(Device.class);
+    when(device.getId()).thenReturn(DEVICE_ID);
+    when(device.getApnId()).thenReturn(apnId);
+
+    final Account account = mock(Account.class);
+    when(account.getUuid()).thenReturn(accountIdentifier);
+    when(account.getIdentifier(IdentityType.ACI)).thenReturn(accountIdentifier);
+    when(account.getDevice(DEVICE_ID)).thenReturn(Optional.of(device));
+
+    final Map<UUID, Account> accountsByIdentifier = Map.of(ACCOUNT_UUID, this.account, accountIdentifier, account);
+
+    when(accountsManager.getByAccountIdentifiersAsync(any())).thenAnswer(invocation -> {
+      final List<UUID> requestedAccountIdentifiers = invocation.getArgument(0);
+
+      return CompletableFuture.completedFuture(requestedAccountIdentifiers.stream()
+          .distinct()
+          .collect(Collectors.toMap(Function.identity(),
+              requestedAccountIdentifier -> Optional.ofNullable(accountsByIdentifier.get(requestedAccountIdentifier)))));
+    });
+
+    return new Pair<>(account, device);
+  }
+
+  private static Answer<Flux<Pair<PushNotification, SendPushNotificationResult>>> sendEach(
+      final PushNotificationSender sender) {
+
+    return invocation -> {
+      final List<PushNotification> pushNotifications = invocation.getArgument(0);
+
+      return Flux.fromIterable(pushNotifications)
+          .flatMapDelayError(pushNotification -> Mono.fromFuture(() -> sender.sendNotification(pushNotification))
+              .map(result -> new Pair<>(pushNotification, result)), 1, 1);
+    };
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.whispersystems.textsecuregcm.identity.IdentityType;
+import org.whispersystems.textsecuregcm.util.TestRandomUtil;
+
+class AccountCacheCodecTest {
+
+  private byte[] originalJson;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.fromString("111111-1111-1111-1111-111111111111");
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (final InputStream inputStream = getClass().getResourceAsStream("AccountCacheCodecTest-testRoundTrip.json")) {
+      originalJson = Objects.requireNonNull(inputStream).readAllBytes();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(AccountCacheCodec.Format.class)
+  void testRoundTrip(final AccountCacheCodec.Format format) throws IOException {
+    final Account originalAccount = AccountCacheCodec.decode(originalJson, ACCOUNT_IDENTIFIER).orElseThrow();
+
+    // Exercise fields that the JSON encoding writes with base64 text adapters
+    originalAccount.setUsernameHash(TestRandomUtil.nextBytes(32));
+    originalAccount.getPrimaryDevice().setName(TestRandomUtil.nextBytes(16));
+
+    final byte[] encodedAccount = AccountCacheCodec.encode(originalAccount, format);
+    assertEquals(format, AccountCacheCodec.getFormat(encodedAccount));
+
+    final Account parsedAccount = AccountCacheCodec.decode(encodedAccount, originalAccount.getUuid()).orElseThrow();
+
+    assertEquals(originalAccount.getUuid(), parsedAccount.getUuid());
+    assertEquals(originalAccount.getPhoneNumberIdentifier(), parsedAccount.getPhoneNumberIdentifier());
+    assertEquals(originalAccount.getIdentityKey(IdentityType.ACI), parsedAccount.getIdentityKey(IdentityType.ACI));
+    assertEquals(originalAccount.getIdentityKey(IdentityType.PNI), parsedAccount.getIdentityKey(IdentityType.PNI));
+    assertEquals(originalAccount.getNumber(), parsedAccount.getNumber());
+    assertArrayEquals(originalAccount.getUsernameHash().orElseThrow(), parsedAccount.getUsernameHash().orElseThrow());
+    assertArrayEquals(originalAccount.getUnidentifiedAccessKey().orElseThrow(),
+        parsedAccount.getUnidentifiedAccessKey().orElseThrow());
+    assertEquals(originalAccount.isDiscoverableByPhoneNumber(), parsedAccount.isDiscoverableByPhoneNumber());
+    assertEquals(originalAccount.isUnrestrictedUnidentifiedAccess(), parsedAccount.isUnrestrictedUnidentifiedAccess());
+
+    assertEquals(originalAccount.getDevices().size(), parsedAccount.getDevices().size());
+
+    final Device originalDevice = originalAccount.getPrimaryDevice();
+    final Device parsedDevice = parsedAccount.getPrimaryDevice();
+
+    assertEquals(originalDevice.getId(), parsedDevice.getId());
+    assertArrayEquals(originalDevice.getName(), parsedDevice.getName());
+    assertEquals(originalDevice.getRegistrationId(IdentityType.ACI), parsedDevice.getRegistrationId(IdentityType.ACI));
+    assertEquals(originalDevice.getRegistrationId(IdentityType.PNI), parsedDevice.getRegistrationId(IdentityType.PNI));
+    assertEquals(originalDevice.getCapabilities(), parsedDevice.getCapabilities());
+    assertEquals(originalDevice.getFetchesMessages(), parsedDevice.getFetchesMessages());
+  }
+
+  @Test
+  void testCborSmallerThanJson() throws IOException {
+    final Account account = AccountCacheCodec.decode(originalJson, ACCOUNT_IDENTIFIER).orElseThrow();
+
+    final int jsonLength = AccountCacheCodec.encode(account, AccountCacheCodec.Format.JSON).length;
+    final int cborLength = AccountCacheCodec.encode(account, AccountCacheCodec.Format.CBOR).length;
+
+    assertTrue(cborLength < jsonLength, "CBOR encoding (" + cborLength + " bytes) should be smaller than JSON encoding ("
+        + jsonLength + " bytes)");
+  }
+
+  @Test
+  void testDecodeMissingOrMalformed() {
+    assertEquals(Optional.empty(), AccountCacheCodec.decode(null, ACCOUNT_IDENTIFIER));
+    assertEquals(Optional.empty(), AccountCacheCodec.decode(new byte[0], ACCOUNT_IDENTIFIER));
+    assertEquals(Optional.empty(),
+        AccountCacheCodec.decode("not json".getBytes(StandardCharsets.UTF_8), ACCOUNT_IDENTIFIER));
+    assertEquals(Optional.empty(),
+        AccountCacheCodec.decode(new byte[]{AccountCacheCodec.CBOR_FORMAT_VERSION, 0x7f}, ACCOUNT_IDENTIFIER));
+  }
+}
@@ -38,6 +38,8 @@ import org.signal.libsignal.protocol.IdentityKey;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.whispersystems.textsecuregcm.auth.DisconnectionRequestManager;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountCacheEncodingConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.AccountAttributes;
 import org.whispersystems.textsecuregcm.entities.ApnRegistrationId;
@@ -95,6 +97,10 @@ public class AccountCreationDeletionIntegrationTest {
 
     final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+    when(dynamicConfiguration.getAccountNearCacheConfiguration())
+        .thenReturn(new DynamicAccountNearCacheConfiguration(false));
+    when(dynamicConfiguration.getAccountCacheEncodingConfiguration())
+        .thenReturn(new DynamicAccountCacheEncodingConfiguration(false));
 
     final DynamoDbAsyncClient dynamoDbAsyncClient = DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient();
     keysManager = new KeysManager(
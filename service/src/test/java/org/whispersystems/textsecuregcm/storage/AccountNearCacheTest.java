@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.whispersystems.textsecuregcm.util.TestClock;
+
+class AccountNearCacheTest {
+
+  private AccountNearCache accountNearCache;
+
+  private static final byte[] ENCODED_ACCOUNT = "{\"number\": \"+14152222222\"}".getBytes(StandardCharsets.UTF_8);
+
+  @BeforeEach
+  void setUp() {
+    accountNearCache = new AccountNearCache(1024, Duration.ofMinutes(1), TestClock.now());
+  }
+
+  @Test
+  void putAndGet() {
+    final UUID accountIdentifier = UUID.randomUUID();
+
+    assertEquals(Optional.empty(), accountNearCache.getIfPresent(accountIdentifier));
+
+    accountNearCache.put(accountIdentifier, ENCODED_ACCOUNT, accountNearCache.startLoad());
+    assertEquals(Optional.of(ENCODED_ACCOUNT), accountNearCache.getIfPresent(accountIdentifier));
+  }
+
+  @Test
+  void putBlank() {
+    final UUID accountIdentifier = UUID.randomUUID();
+
+    accountNearCache.put(accountIdentifier, null, accountNearCache.startLoad());
+    accountNearCache.put(accountIdentifier, new byte[0], accountNearCache.startLoad());
+
+    assertEquals(Optional.empty(), accountNearCache.getIfPresent(accountIdentifier));
+  }
+
+  @Test
+  void putAfterConcurrentInvalidation() {
+    final UUID accountIdentifier = UUID.randomUUID();
+
+    final long loadStartToken = accountNearCache.startLoad();
+    accountNearCache.invalidate(accountIdentifier);
+    accountNearCache.put(accountIdentifier, ENCODED_ACCOUNT, loadStartToken);
+
+    assertEquals(Optional.empty(), accountNearCache.getIfPresent(accountIdentifier),
+        "Loads that overlap an invalidation should not be cached");
+
+    accountNearCache.put(accountIdentifier, ENCODED_ACCOUNT, accountNearCache.startLoad());
+    assertEquals(Optional.of(ENCODED_ACCOUNT), accountNearCache.getIfPresent(accountIdentifier));
+  }
+
+  @Test
+  void handleInvalidationMessage() {
+    final UUID accountIdentifier = UUID.randomUUID();
+    final UUID otherAccountIdentifier = UUID.randomUUID();
+
+    accountNearCache.put(accountIdentifier, ENCODED_ACCOUNT, accountNearCache.startLoad());
+    accountNearCache.put(otherAccountIdentifier, ENCODED_ACCOUNT, accountNearCache.startLoad());
+
+    accountNearCache.handleInvalidationMessage(accountNearCache.buildInvalidationMessage(accountIdentifier));
+
+    assertEquals(Optional.empty(), accountNearCache.getIfPresent(accountIdentifier));
+    assertTrue(accountNearCache.getIfPresent(otherAccountIdentifier).isPresent());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "not-a-uuid", "not-a-uuid:12345", "5d2a4f3c-6f3e-4b5e-9a1e-0c3c7d1e2f3a:not-a-timestamp"})
+  void handleMalformedInvalidationMessage(final String message) {
+    final UUID accountIdentifier = UUID.randomUUID();
+    accountNearCache.put(accountIdentifier, ENCODED_ACCOUNT, accountNearCache.startLoad());
+
+    accountNearCache.handleInvalidationMessage(message);
+
+    assertTrue(accountNearCache.getIfPresent(accountIdentifier).isPresent());
+  }
+}
@@ -10,9 +10,11 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
 import static org.mockito.ArgumentMatchers.anyList;
@@ -22,6 +24,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -33,22 +36,22 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -78,6 +81,8 @@ import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.whispersystems.textsecuregcm.auth.DisconnectionRequestManager;
 import org.whispersystems.textsecuregcm.auth.UnidentifiedAccessUtil;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountCacheEncodingConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevices;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevicesException;
@@ -132,6 +137,8 @@ class AccountsManagerTest {
   private RedisAsyncCommands<String, String> asyncCommands;
   private RedisAdvancedClusterCommands<String, String> clusterCommands;
   private RedisAdvancedClusterAsyncCommands<String, String> asyncClusterCommands;
+  private RedisAdvancedClusterCommands<byte[], byte[]> binaryClusterCommands;
+  private RedisAdvancedClusterAsyncCommands<byte[], byte[]> binaryAsyncClusterCommands;
   private AccountsManager accountsManager;
   private SecureValueRecovery2Client svr2Client;
   private DynamicConfiguration dynamicConfiguration;
@@ -177,6 +184,14 @@ class AccountsManagerTest {
     when(asyncClusterCommands.set(any(), any(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
     when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
+    //noinspection unchecked
+    binaryClusterCommands = mock(RedisAdvancedClusterCommands.class);
+
+    //noinspection unchecked
+    binaryAsyncClusterCommands = mock(RedisAdvancedClusterAsyncCommands.class);
+    when(binaryAsyncClusterCommands.get(any())).thenReturn(MockRedisFuture.completedFuture(null));
+    when(binaryAsyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
+
     when(accounts.updateAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
     when(accounts.updateTransactionallyAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
     when(accounts.delete(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
@@ -210,6 +225,10 @@ class AccountsManagerTest {
 
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
     when(dynamicConfiguration.getSvrStatusCodesToIgnoreForAccountDeletion()).thenReturn(Collections.emptyList());
+    when(dynamicConfiguration.getAccountNearCacheConfiguration())
+        .thenReturn(new DynamicAccountNearCacheConfiguration(false));
+    when(dynamicConfiguration.getAccountCacheEncodingConfiguration())
+        .thenReturn(new DynamicAccountCacheEncodingConfiguration(false));
 
     final AccountLockManager accountLockManager = mock(AccountLockManager.class);
 
@@ -241,6 +260,8 @@ class AccountsManagerTest {
     final FaultTolerantRedisClusterClient redisCluster = RedisClusterHelper.builder()
         .stringCommands(clusterCommands)
         .stringAsyncCommands(asyncClusterCommands)
+        .binaryCommands(binaryClusterCommands)
+        .binaryAsyncCommands(binaryAsyncClusterCommands)
         .build();
 
     when(disconnectionRequestManager.requestDisconnection(any())).thenReturn(CompletableFuture.completedFuture(null));
@@ -297,8 +318,8 @@ class AccountsManagerTest {
     final UUID pni = UUID.randomUUID();
 
     when(clusterCommands.get(eq("AccountMap::" + pni))).thenReturn(aci.toString());
-    when(clusterCommands.get(eq("Account3::" + aci))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}");
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(aci)))).thenReturn(
+        ("{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}").getBytes(StandardCharsets.UTF_8));
 
     assertTrue(accountsManager.getByServiceIdentifier(new AciServiceIdentifier(aci)).isPresent());
     assertTrue(accountsManager.getByServiceIdentifier(new PniServiceIdentifier(pni)).isPresent());
@@ -312,8 +333,8 @@ class AccountsManagerTest {
     final UUID pni = UUID.randomUUID();
 
     when(asyncClusterCommands.get(eq("AccountMap::" + pni))).thenReturn(MockRedisFuture.completedFuture(aci.toString()));
-    when(asyncClusterCommands.get(eq("Account3::" + aci))).thenReturn(MockRedisFuture.completedFuture(
-        "{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}"));
+    when(binaryAsyncClusterCommands.get(aryEq(getAccountEntityKey(aci)))).thenReturn(MockRedisFuture.completedFuture(
+        ("{\"number\": \"+14152222222\", \"pni\": \"" + pni + "\"}").getBytes(StandardCharsets.UTF_8)));
 
     when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
@@ -334,8 +355,8 @@ class AccountsManagerTest {
   void testGetAccountByUuidInCache() {
     UUID uuid = UUID.randomUUID();
 
-    when(clusterCommands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        ("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}").getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByAccountIdentifier(uuid);
 
@@ -344,7 +365,7 @@ class AccountsManagerTest {
     assertEquals(account.get().getUuid(), uuid);
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(clusterCommands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryClusterCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(clusterCommands);
 
     verifyNoInteractions(accounts);
@@ -354,8 +375,8 @@ class AccountsManagerTest {
   void testGetAccountByUuidInCacheAsync() {
     UUID uuid = UUID.randomUUID();
 
-    when(asyncClusterCommands.get(eq("Account3::" + uuid))).thenReturn(MockRedisFuture.completedFuture(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+    when(binaryAsyncClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(
+        ("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}").getBytes(StandardCharsets.UTF_8)));
 
     when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
@@ -366,20 +387,77 @@ class AccountsManagerTest {
     assertEquals(account.get().getUuid(), uuid);
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(asyncClusterCommands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryAsyncClusterCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(asyncClusterCommands);
 
     verifyNoInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountByUuidInNearCache() {
+    when(dynamicConfiguration.getAccountNearCacheConfiguration())
+        .thenReturn(new DynamicAccountNearCacheConfiguration(true));
+
+    final UUID uuid = UUID.randomUUID();
+
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        ("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}").getBytes(StandardCharsets.UTF_8));
+
+    final Account firstAccount = accountsManager.getByAccountIdentifier(uuid).orElseThrow();
+    final Account secondAccount = accountsManager.getByAccountIdentifierAsync(uuid).join().orElseThrow();
+
+    assertEquals("+14152222222", secondAccount.getNumber());
+    assertEquals(uuid, secondAccount.getUuid());
+    assertNotSame(firstAccount, secondAccount, "Near-cache hits should yield independent account instances");
+
+    verify(binaryClusterCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
+    verifyNoInteractions(binaryAsyncClusterCommands);
+
+    accountsManager.message(AccountNearCache.INVALIDATION_CHANNEL, uuid.toString());
+
+    assertTrue(accountsManager.getByAccountIdentifier(uuid).isPresent());
+    verify(binaryClusterCommands, times(2)).get(aryEq(getAccountEntityKey(uuid)));
+
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testNearCacheInvalidationPublishedOnlyForUpdates() {
+    when(dynamicConfiguration.getAccountNearCacheConfiguration())
+        .thenReturn(new DynamicAccountNearCacheConfiguration(true));
+
+    final UUID uuid = UUID.randomUUID();
+    final Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(),
+        new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    when(accounts.getByAccountIdentifierAsync(uuid)).thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+    // Filling the shared cache after a miss doesn't change the account and shouldn't notify other servers
+    accountsManager.getByAccountIdentifierAsync(uuid).join();
+    verify(asyncCommands, never()).publish(eq(AccountNearCache.INVALIDATION_CHANNEL), any());
+
+    final Account updatedAccount =
+        accountsManager.updateAsync(account, a -> a.setDiscoverableByPhoneNumber(false)).join();
+    verify(asyncCommands, atLeastOnce()).publish(eq(AccountNearCache.INVALIDATION_CHANNEL), any());
+
+    when(dynamicConfiguration.getAccountNearCacheConfiguration())
+        .thenReturn(new DynamicAccountNearCacheConfiguration(false));
+
+    clearInvocations(asyncCommands);
+
+    // Servers on which the near-cache is still enabled need to hear about changes made through this one
+    accountsManager.updateAsync(updatedAccount, a -> a.setDiscoverableByPhoneNumber(true)).join();
+    verify(asyncCommands, atLeastOnce()).publish(eq(AccountNearCache.INVALIDATION_CHANNEL), any());
+  }
+
   @Test
   void testGetAccountByPniInCache() {
     UUID uuid = UUID.randomUUID();
     UUID pni = UUID.randomUUID();
 
     when(clusterCommands.get(eq("AccountMap::" + pni))).thenReturn(uuid.toString());
-    when(clusterCommands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        ("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}").getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByPhoneNumberIdentifier(pni);
 
@@ -388,7 +466,7 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(clusterCommands).get(eq("AccountMap::" + pni));
-    verify(clusterCommands).get(eq("Account3::" + uuid));
+    verify(binaryClusterCommands).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(clusterCommands);
 
     verifyNoInteractions(accounts);
@@ -402,8 +480,8 @@ class AccountsManagerTest {
     when(asyncClusterCommands.get(eq("AccountMap::" + pni)))
         .thenReturn(MockRedisFuture.completedFuture(uuid.toString()));
 
-    when(asyncClusterCommands.get(eq("Account3::" + uuid))).thenReturn(MockRedisFuture.completedFuture(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"));
+    when(binaryAsyncClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(
+        ("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}").getBytes(StandardCharsets.UTF_8)));
 
     when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
 
@@ -414,7 +492,7 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
     verify(asyncClusterCommands).get(eq("AccountMap::" + pni));
-    verify(asyncClusterCommands).get(eq("Account3::" + uuid));
+    verify(binaryAsyncClusterCommands).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(asyncClusterCommands);
 
     verifyNoInteractions(accounts);
@@ -426,7 +504,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(clusterCommands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
     when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
@@ -434,9 +512,9 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(clusterCommands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryClusterCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verify(clusterCommands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(clusterCommands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryClusterCommands, times(1)).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(clusterCommands);
 
     verify(accounts, times(1)).getByAccountIdentifier(eq(uuid));
@@ -449,7 +527,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(asyncClusterCommands.get(eq("Account3::" + uuid))).thenReturn(MockRedisFuture.completedFuture(null));
+    when(binaryAsyncClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(null));
     when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
     when(accounts.getByAccountIdentifierAsync(eq(uuid)))
         .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
@@ -459,15 +537,63 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(asyncClusterCommands).get(eq("Account3::" + uuid));
+    verify(binaryAsyncClusterCommands).get(aryEq(getAccountEntityKey(uuid)));
     verify(asyncClusterCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncClusterCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryAsyncClusterCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(asyncClusterCommands);
 
     verify(accounts).getByAccountIdentifierAsync(eq(uuid));
     verifyNoMoreInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountsByUuids() {
+    final UUID cachedUuid = UUID.randomUUID();
+    final UUID uncachedUuid = UUID.randomUUID();
+    final UUID uncachedPni = UUID.randomUUID();
+    final UUID missingUuid = UUID.randomUUID();
+
+    final Account uncachedAccount = AccountsHelper.generateTestAccount("+14153333333", uncachedUuid, uncachedPni,
+        new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
+
+    final Map<UUID, byte[]> cachedValues = Map.of(cachedUuid,
+        ("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}").getBytes(StandardCharsets.UTF_8));
+
+    when(binaryAsyncClusterCommands.mget(any(byte[][].class))).thenAnswer(invocation -> {
+      final byte[][] keys = (byte[][]) invocation.getRawArguments()[0];
+
+      return MockRedisFuture.completedFuture(Arrays.stream(keys)
+          .map(key -> KeyValue.fromNullable(key, cachedValues.entrySet().stream()
+              .filter(entry -> Arrays.equals(key, getAccountEntityKey(entry.getKey())))
+              .map(Map.Entry::getValue)
+              .findFirst()
+              .orElse(null)))
+          .toList());
+    });
+
+    when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
+    when(accounts.getByAccountIdentifiersAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(uncachedUuid, uncachedAccount)));
+
+    final Map<UUID, Optional<Account>> retrievedAccounts =
+        accountsManager.getByAccountIdentifiersAsync(List.of(cachedUuid, uncachedUuid, missingUuid, cachedUuid)).join();
+
+    assertEquals(Set.of(cachedUuid, uncachedUuid, missingUuid), retrievedAccounts.keySet());
+    assertEquals("+14152222222", retrievedAccounts.get(cachedUuid).orElseThrow().getNumber());
+    assertEquals(cachedUuid, retrievedAccounts.get(cachedUuid).orElseThrow().getUuid());
+    assertSame(uncachedAccount, retrievedAccounts.get(uncachedUuid).orElseThrow());
+    assertTrue(retrievedAccounts.get(missingUuid).isEmpty());
+
+    verify(binaryAsyncClusterCommands, times(1)).mget(any(byte[][].class));
+    verify(binaryAsyncClusterCommands, never()).get(any());
+    verify(accounts).getByAccountIdentifiersAsync(Set.of(uncachedUuid, missingUuid));
+    verifyNoMoreInteractions(accounts);
+
+    verify(asyncClusterCommands).setex(eq("AccountMap::" + uncachedPni), anyLong(), eq(uncachedUuid.toString()));
+    verify(binaryAsyncClusterCommands).setex(aryEq(getAccountEntityKey(uncachedUuid)), anyLong(), any(byte[].class));
+    verifyNoMoreInteractions(asyncClusterCommands);
+  }
+
   @Test
   void testGetAccountByPniNotInCache() {
     UUID uuid = UUID.randomUUID();
@@ -485,7 +611,7 @@ class AccountsManagerTest {
 
     verify(clusterCommands).get(eq("AccountMap::" + pni));
     verify(clusterCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(clusterCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryClusterCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(clusterCommands);
 
     verify(accounts).getByPhoneNumberIdentifier(pni);
@@ -511,7 +637,7 @@ class AccountsManagerTest {
 
     verify(asyncClusterCommands).get(eq("AccountMap::" + pni));
     verify(asyncClusterCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncClusterCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryAsyncClusterCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(asyncClusterCommands);
 
     verify(accounts).getByPhoneNumberIdentifierAsync(pni);
@@ -539,7 +665,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(clusterCommands.get(eq("Account3::" + uuid))).thenThrow(new RedisException("Connection lost!"));
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenThrow(new RedisException("Connection lost!"));
     when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
@@ -547,9 +673,9 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(clusterCommands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryClusterCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verify(clusterCommands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(clusterCommands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryClusterCommands, times(1)).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(clusterCommands);
 
     verify(accounts, times(1)).getByAccountIdentifier(eq(uuid));
@@ -562,7 +688,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(asyncClusterCommands.get(eq("Account3::" + uuid)))
+    when(binaryAsyncClusterCommands.get(aryEq(getAccountEntityKey(uuid))))
         .thenReturn(MockRedisFuture.failedFuture(new RedisException("Connection lost!")));
 
     when(asyncClusterCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
@@ -575,9 +701,9 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(asyncClusterCommands).get(eq("Account3::" + uuid));
+    verify(binaryAsyncClusterCommands).get(aryEq(getAccountEntityKey(uuid)));
     verify(asyncClusterCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncClusterCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryAsyncClusterCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(asyncClusterCommands);
 
     verify(accounts).getByAccountIdentifierAsync(eq(uuid));
@@ -601,7 +727,7 @@ class AccountsManagerTest {
 
     verify(clusterCommands).get(eq("AccountMap::" + pni));
     verify(clusterCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(clusterCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryClusterCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(clusterCommands);
 
     verify(accounts).getByPhoneNumberIdentifier(pni);
@@ -630,7 +756,7 @@ class AccountsManagerTest {
 
     verify(asyncClusterCommands).get(eq("AccountMap::" + pni));
     verify(asyncClusterCommands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
-    verify(asyncClusterCommands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verify(binaryAsyncClusterCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(), any(byte[].class));
     verifyNoMoreInteractions(asyncClusterCommands);
 
     verify(accounts).getByPhoneNumberIdentifierAsync(pni);
@@ -643,7 +769,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(clusterCommands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
 
     when(accounts.getByAccountIdentifier(uuid)).thenReturn(
         Optional.of(AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH])));
@@ -669,7 +795,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(asyncClusterCommands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryAsyncClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
 
     when(accounts.getByAccountIdentifierAsync(uuid)).thenReturn(CompletableFuture.completedFuture(
         Optional.of(AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]))));
@@ -695,7 +821,7 @@ class AccountsManagerTest {
     UUID uuid = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
 
-    when(clusterCommands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryClusterCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
     when(accounts.getByAccountIdentifier(uuid)).thenReturn(Optional.empty())
         .thenReturn(Optional.of(account));
     when(accounts.create(any(), any())).thenThrow(ContestedOptimisticLockException.class);
@@ -1021,19 +1147,19 @@ class AccountsManagerTest {
 
   @ParameterizedTest
   @MethodSource
-  void testUpdateDeviceLastSeen(final boolean expectUpdate, final long initialLastSeen, final long updatedLastSeen) {
+  void testUpdateDevicesLastSeen(final boolean expectUpdate, final long initialLastSeen, final long updatedLastSeen) {
     final Account account = AccountsHelper.generateTestAccount("+14152222222", UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>(), new byte[UnidentifiedAccessUtil.UNIDENTIFIED_ACCESS_KEY_LENGTH]);
     final Device device = generateTestDevice(initialLastSeen);
     account.addDevice(device);
 
-    accountsManager.updateDeviceLastSeen(account, device, updatedLastSeen);
+    accountsManager.updateDevicesLastSeenAsync(account, Map.of(device.getId(), updatedLastSeen)).join();
 
     assertEquals(expectUpdate ? updatedLastSeen : initialLastSeen, device.getLastSeen());
-    verify(accounts, expectUpdate ? times(1) : never()).update(account);
+    verify(accounts, expectUpdate ? times(1) : never()).updateAsync(account);
   }
 
   @SuppressWarnings("unused")
-  private static Stream<Arguments> testUpdateDeviceLastSeen() {
+  private static Stream<Arguments> testUpdateDevicesLastSeen() {
     return Stream.of(
         Arguments.of(true, 1, 2),
         Arguments.of(false, 1, 1),
@@ -1478,47 +1604,14 @@ class AccountsManagerTest {
 
   }
 
-  @Test
-  void testJsonRoundTripSerialization() throws Exception {
-    String originalJson;
-    try (InputStream inputStream = getClass().getResourceAsStream(
-        "AccountsManagerTest-testJsonRoundTripSerialization.json")) {
-      Objects.requireNonNull(inputStream);
-      originalJson = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-    }
-
-    final Account originalAccount = AccountsManager.parseAccountJson(originalJson,
-        UUID.fromString("111111-1111-1111-1111-111111111111")).orElseThrow();
-
-    final String serialized = AccountsManager.writeRedisAccountJson(originalAccount);
-    final Account parsedAccount = AccountsManager.parseAccountJson(serialized, originalAccount.getUuid()).orElseThrow();
-
-    assertEquals(originalAccount.getUuid(), parsedAccount.getUuid());
-    assertEquals(originalAccount.getPhoneNumberIdentifier(), parsedAccount.getPhoneNumberIdentifier());
-    assertEquals(originalAccount.getIdentityKey(IdentityType.ACI), parsedAccount.getIdentityKey(IdentityType.ACI));
-    assertEquals(originalAccount.getIdentityKey(IdentityType.PNI), parsedAccount.getIdentityKey(IdentityType.PNI));
-    assertEquals(originalAccount.getNumber(), parsedAccount.getNumber());
-    assertArrayEquals(originalAccount.getUnidentifiedAccessKey().orElseThrow(),
-        parsedAccount.getUnidentifiedAccessKey().orElseThrow());
-    assertEquals(originalAccount.isDiscoverableByPhoneNumber(), parsedAccount.isDiscoverableByPhoneNumber());
-    assertEquals(originalAccount.isUnrestrictedUnidentifiedAccess(), parsedAccount.isUnrestrictedUnidentifiedAccess());
-
-    assertEquals(originalAccount.getDevices().size(), parsedAccount.getDevices().size());
-
-    final Device originalDevice = originalAccount.getPrimaryDevice();
-    final Device parsedDevice = parsedAccount.getPrimaryDevice();
-
-    assertEquals(originalDevice.getId(), parsedDevice.getId());
-    assertEquals(originalDevice.getRegistrationId(IdentityType.ACI), parsedDevice.getRegistrationId(IdentityType.ACI));
-    assertEquals(originalDevice.getRegistrationId(IdentityType.PNI), parsedDevice.getRegistrationId(IdentityType.PNI));
-    assertEquals(originalDevice.getCapabilities(), parsedDevice.getCapabilities());
-    assertEquals(originalDevice.getFetchesMessages(), parsedDevice.getFetchesMessages());
-  }
-
   private void setReservationHash(final Account account, final byte[] reservedUsernameHash) {
     account.setReservedUsernameHash(reservedUsernameHash);
   }
 
+  private static byte[] getAccountEntityKey(final UUID uuid) {
+    return ("Account3::" + uuid).getBytes(StandardCharsets.UTF_8);
+  }
+
   private static Device generateTestDevice(final long lastSeen) {
     final Device device = new Device();
     device.setId(Device.PRIMARY_ID);
@@ -326,6 +326,30 @@ class AccountsTest {
     verifyStoredState("+14152221111", uuidSecond, pniSecond, null, retrievedSecond.get(), accountSecond);
   }
 
+  @Test
+  void testRetrieveByAccountIdentifiers() {
+    final UUID uuidFirst = UUID.randomUUID();
+    final UUID pniFirst = UUID.randomUUID();
+    final Account accountFirst = generateAccount("+14151112222", uuidFirst, pniFirst, List.of(generateDevice(DEVICE_ID_1)));
+
+    final UUID uuidSecond = UUID.randomUUID();
+    final UUID pniSecond = UUID.randomUUID();
+    final Account accountSecond = generateAccount("+14152221111", uuidSecond, pniSecond, List.of(generateDevice(DEVICE_ID_1)));
+
+    createAccount(accountFirst);
+    createAccount(accountSecond);
+
+    final Map<UUID, Account> retrievedAccounts =
+        accounts.getByAccountIdentifiersAsync(List.of(uuidFirst, uuidSecond, uuidFirst, UUID.randomUUID())).join();
+
+    assertThat(retrievedAccounts).containsOnlyKeys(uuidFirst, uuidSecond);
+
+    verifyStoredState("+14151112222", uuidFirst, pniFirst, null, retrievedAccounts.get(uuidFirst), accountFirst);
+    verifyStoredState("+14152221111", uuidSecond, pniSecond, null, retrievedAccounts.get(uuidSecond), accountSecond);
+
+    assertThat(accounts.getByAccountIdentifiersAsync(List.of()).join()).isEmpty();
+  }
+
   @Test
   void testRetrieveNoPni() throws JsonProcessingException {
     final List<Device> devices = List.of(generateDevice(DEVICE_ID_1), generateDevice(DEVICE_ID_2));
@@ -34,6 +34,8 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.signal.libsignal.protocol.ecc.Curve;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.whispersystems.textsecuregcm.auth.DisconnectionRequestManager;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountCacheEncodingConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicAccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.entities.DeviceInfo;
 import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
@@ -92,6 +94,10 @@ public class AddRemoveDeviceIntegrationTest {
 
     final DynamicConfiguration dynamicConfiguration = mock(DynamicConfiguration.class);
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+    when(dynamicConfiguration.getAccountNearCacheConfiguration())
+        .thenReturn(new DynamicAccountNearCacheConfiguration(false));
+    when(dynamicConfiguration.getAccountCacheEncodingConfiguration())
+        .thenReturn(new DynamicAccountCacheEncodingConfiguration(false));
 
     clock = TestClock.pinned(Instant.now());
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DeviceLastSeenUpdaterTest {
+
+  private AccountsManager accountsManager;
+
+  private DeviceLastSeenUpdater deviceLastSeenUpdater;
+
+  @BeforeEach
+  void setUp() {
+    accountsManager = mock(AccountsManager.class);
+
+    when(accountsManager.updateDevicesLastSeenAsync(any(), anyMap()))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+
+    deviceLastSeenUpdater =
+        new DeviceLastSeenUpdater(accountsManager, mock(ScheduledExecutorService.class), Duration.ofSeconds(1));
+  }
+
+  @Test
+  void flush() {
+    final UUID accountIdentifier = UUID.randomUUID();
+    final Account account = mock(Account.class);
+
+    when(accountsManager.getByAccountIdentifierAsync(accountIdentifier))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+    assertTrue(deviceLastSeenUpdater.updateLastSeen(accountIdentifier, Device.PRIMARY_ID, 1));
+    assertTrue(deviceLastSeenUpdater.updateLastSeen(accountIdentifier, (byte) (Device.PRIMARY_ID + 1), 3));
+    assertTrue(deviceLastSeenUpdater.updateLastSeen(accountIdentifier, Device.PRIMARY_ID, 2));
+
+    // Updates that wouldn't change anything that's already pending are skipped
+    assertFalse(deviceLastSeenUpdater.updateLastSeen(accountIdentifier, Device.PRIMARY_ID, 2));
+    assertFalse(deviceLastSeenUpdater.updateLastSeen(accountIdentifier, Device.PRIMARY_ID, 1));
+
+    deviceLastSeenUpdater.flush().join();
+
+    verify(accountsManager)
+        .updateDevicesLastSeenAsync(account, Map.of(Device.PRIMARY_ID, 2L, (byte) (Device.PRIMARY_ID + 1), 3L));
+
+    // Everything pending was written by the previous flush
+    deviceLastSeenUpdater.flush().join();
+
+    verify(accountsManager).updateDevicesLastSeenAsync(any(), anyMap());
+  }
+
+  @Test
+  void flushAccountNotFound() {
+    final UUID accountIdentifier = UUID.randomUUID();
+
+    when(accountsManager.getByAccountIdentifierAsync(accountIdentifier))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+    deviceLastSeenUpdater.updateLastSeen(accountIdentifier, Device.PRIMARY_ID, 1);
+    deviceLastSeenUpdater.flush().join();
+
+    verify(accountsManager, never()).updateDevicesLastSeenAsync(any(), anyMap());
+  }
+
+  @Test
+  void flushUpdateFailed() {
+    final UUID failedAccountIdentifier = UUID.randomUUID();
+    final UUID accountIdentifier = UUID.randomUUID();
+    final Account failedAccount = mock(Account.class);
+    final Account account = mock(Account.class);
+
+    when(accountsManager.getByAccountIdentifierAsync(failedAccountIdentifier))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(failedAccount)));
+
+    when(accountsManager.getByAccountIdentifierAsync(accountIdentifier))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+    when(accountsManager.updateDevicesLastSeenAsync(eq(failedAccount), anyMap()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO")));
+
+    deviceLastSeenUpdater.updateLastSeen(failedAccountIdentifier, Device.PRIMARY_ID, 1);
+    deviceLastSeenUpdater.updateLastSeen(accountIdentifier, Device.PRIMARY_ID, 1);
+
+    // A failure to update one account should neither fail the flush nor prevent other accounts from being updated
+    deviceLastSeenUpdater.flush().join();
+
+    verify(accountsManager).updateDevicesLastSeenAsync(account, Map.of(Device.PRIMARY_ID, 1L));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.whispersystems.textsecuregcm.util.AttributeValues;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+class DynamoDbBatchOperationsTest {
+
+  private DynamoDbAsyncClient dynamoDbAsyncClient;
+
+  private static final String TABLE_NAME = "test";
+
+  private static final Map<String, AttributeValue> KEY_1 = Map.of("K", AttributeValues.fromInt(1));
+  private static final Map<String, AttributeValue> KEY_2 = Map.of("K", AttributeValues.fromInt(2));
+
+  @BeforeEach
+  void setUp() {
+    dynamoDbAsyncClient = mock(DynamoDbAsyncClient.class);
+  }
+
+  @Test
+  void batchGetItemsRetriesUnprocessedKeys() {
+    when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(KEY_1)))
+            .unprocessedKeys(Map.of(TABLE_NAME, KeysAndAttributes.builder().keys(KEY_2).build()))
+            .build()))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(KEY_2)))
+            .build()));
+
+    assertThat(DynamoDbBatchOperations.batchGetItems(dynamoDbAsyncClient, TABLE_NAME, List.of(KEY_1, KEY_2)).block())
+        .containsExactlyInAnyOrder(KEY_1, KEY_2);
+
+    final ArgumentCaptor<BatchGetItemRequest> requestCaptor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+    verify(dynamoDbAsyncClient, times(2)).batchGetItem(requestCaptor.capture());
+
+    assertThat(requestCaptor.getAllValues().get(0).requestItems().get(TABLE_NAME).keys()).containsExactly(KEY_1, KEY_2);
+    assertThat(requestCaptor.getAllValues().get(1).requestItems().get(TABLE_NAME).keys()).containsExactly(KEY_2);
+  }
+
+  @Test
+  void batchGetItemsResubscribe() {
+    when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(KEY_1)))
+            .unprocessedKeys(Map.of(TABLE_NAME, KeysAndAttributes.builder().keys(KEY_2).build()))
+            .build()))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(KEY_2)))
+            .build()))
+        .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .responses(Map.of(TABLE_NAME, List.of(KEY_1, KEY_2)))
+            .build()));
+
+    final Mono<List<Map<String, AttributeValue>>> batchGet =
+        DynamoDbBatchOperations.batchGetItems(dynamoDbAsyncClient, TABLE_NAME, List.of(KEY_1, KEY_2));
+
+    assertThat(batchGet.block()).containsExactlyInAnyOrder(KEY_1, KEY_2);
+
+    // A second subscription should start over with all keys and shouldn't see items from the first
+    assertThat(batchGet.block()).containsExactlyInAnyOrder(KEY_1, KEY_2);
+
+    final ArgumentCaptor<BatchGetItemRequest> requestCaptor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+    verify(dynamoDbAsyncClient, times(3)).batchGetItem(requestCaptor.capture());
+
+    assertThat(requestCaptor.getAllValues().get(2).requestItems().get(TABLE_NAME).keys()).containsExactly(KEY_1, KEY_2);
+  }
+
+  @Test
+  void batchGetItemsUnprocessedKeysExhausted() {
+    when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+            .unprocessedKeys(invocation.getArgument(0, BatchGetItemRequest.class).requestItems())
+            .build()));
+
+    final Exception exception = assertThrows(Exception.class,
+        () -> DynamoDbBatchOperations.batchGetItems(dynamoDbAsyncClient, TABLE_NAME, List.of(KEY_1)).block());
+
+    assertInstanceOf(DynamoDbBatchOperations.UnprocessedItemsException.class, exception);
+    verify(dynamoDbAsyncClient, times(DynamoDbBatchOperations.MAX_BATCH_RETRIES + 1))
+        .batchGetItem(any(BatchGetItemRequest.class));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.signal.libsignal.protocol.InvalidKeyException;
+import org.signal.libsignal.protocol.ecc.Curve;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.whispersystems.textsecuregcm.entities.KEMSignedPreKey;
+import org.whispersystems.textsecuregcm.tests.util.KeysHelper;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class KEMPreKeyPageSegmentCacheTest {
+
+  private S3AsyncClient s3AsyncClient;
+  private KEMPreKeyPageSegmentCache pageSegmentCache;
+
+  private static final ECKeyPair IDENTITY_KEY_PAIR = Curve.generateKeyPair();
+  private static final String S3_KEY = "page";
+  private static final int KEYS_PER_SEGMENT = 4;
+  private static final int NUM_KEYS = 10;
+
+  private static final List<KEMSignedPreKey> PRE_KEYS = IntStream.range(0, NUM_KEYS)
+      .mapToObj(keyId -> KeysHelper.signedKEMPreKey(keyId, IDENTITY_KEY_PAIR))
+      .toList();
+
+  @BeforeEach
+  void setUp() {
+    s3AsyncClient = mock(S3AsyncClient.class);
+    pageSegmentCache = new KEMPreKeyPageSegmentCache(s3AsyncClient, "bucket", KEYS_PER_SEGMENT, 1024 * 1024,
+        Duration.ofMinutes(1));
+  }
+
+  @Test
+  void getSerializedKey() throws InvalidKeyException {
+    final byte[] page = serializePage();
+
+    when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenAnswer(invocation -> {
+          final GetObjectRequest request = invocation.getArgument(0);
+          final String[] range = request.range().substring("bytes=".length()).split("-");
+          final int start = Integer.parseInt(range[0]);
+          final int endInclusive = Integer.parseInt(range[1]);
+
+          final byte[] segment = new byte[endInclusive - start + 1];
+          System.arraycopy(page, start, segment, 0, segment.length);
+
+          return CompletableFuture.completedFuture(
+              ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), segment));
+        });
+
+    for (int i = 0; i < NUM_KEYS; i++) {
+      final ByteBuffer serializedKey =
+          pageSegmentCache.getSerializedKey(S3_KEY, KEMPreKeyPage.FORMAT, i, NUM_KEYS).join();
+
+      assertEquals(PRE_KEYS.get(i), KEMPreKeyPage.deserializeKey(KEMPreKeyPage.FORMAT, serializedKey));
+    }
+
+    // Ten keys in segments of four should take exactly three reads
+    verify(s3AsyncClient, times(3)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+  }
+
+  @Test
+  void getSerializedKeyInvalidResponse() {
+    when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenReturn(CompletableFuture.completedFuture(
+            ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), new byte[16])));
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> pageSegmentCache.getSerializedKey(S3_KEY, KEMPreKeyPage.FORMAT, 0, NUM_KEYS).join());
+
+    assertInstanceOf(IOException.class, completionException.getCause());
+
+    // Failed reads must not be cached
+    assertThrows(CompletionException.class,
+        () -> pageSegmentCache.getSerializedKey(S3_KEY, KEMPreKeyPage.FORMAT, 1, NUM_KEYS).join());
+
+    verify(s3AsyncClient, times(2)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+  }
+
+  @Test
+  void getSerializedKeyOutOfBounds() {
+    assertThrows(IllegalArgumentException.class,
+        () -> pageSegmentCache.getSerializedKey(S3_KEY, KEMPreKeyPage.FORMAT, NUM_KEYS, NUM_KEYS));
+  }
+
+  private static byte[] serializePage() {
+    final ByteBuffer buffer = KEMPreKeyPage.serialize(KEMPreKeyPage.FORMAT, PRE_KEYS);
+    final byte[] page = new byte[buffer.remaining()];
+    buffer.get(page);
+
+    return page;
+  }
+}
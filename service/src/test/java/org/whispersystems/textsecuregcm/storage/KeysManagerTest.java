@@ -13,6 +13,7 @@ import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.jetbrains.annotations.NotNull;
@@ -185,6 +186,37 @@ class KeysManagerTest {
     assertEquals(0, keysManager.getPqCount(ACCOUNT_UUID, DEVICE_ID).join());
   }
 
+  @Test
+  void testTakeMultipleDevices() {
+    final byte deviceId2 = DEVICE_ID + 1;
+    final byte deviceId3 = DEVICE_ID + 2;
+
+    final ECPreKey ecPreKey = generateTestPreKey(1);
+    final KEMSignedPreKey kemPreKey = generateTestKEMSignedPreKey(1);
+    final KEMSignedPreKey lastResortKey2 = generateTestKEMSignedPreKey(1001);
+    final ECSignedPreKey ecSignedPreKey2 = generateTestECSignedPreKey(2);
+
+    keysManager.storeEcOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(ecPreKey)).join();
+    keysManager.storeKemOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(kemPreKey)).join();
+    keysManager.storePqLastResort(ACCOUNT_UUID, deviceId2, lastResortKey2).join();
+    keysManager.storeEcSignedPreKeys(ACCOUNT_UUID, deviceId2, ecSignedPreKey2).join();
+
+    final List<Byte> deviceIds = List.of(DEVICE_ID, deviceId2, deviceId3);
+
+    assertEquals(Map.of(DEVICE_ID, Optional.of(ecPreKey), deviceId2, Optional.empty(), deviceId3, Optional.empty()),
+        keysManager.takeEC(ACCOUNT_UUID, deviceIds).join());
+
+    assertEquals(Map.of(DEVICE_ID, Optional.of(kemPreKey), deviceId2, Optional.of(lastResortKey2), deviceId3, Optional.empty()),
+        keysManager.takePQ(ACCOUNT_UUID, deviceIds).join());
+
+    assertEquals(Map.of(DEVICE_ID, Optional.empty(), deviceId2, Optional.of(ecSignedPreKey2), deviceId3, Optional.empty()),
+        keysManager.getEcSignedPreKeys(ACCOUNT_UUID, deviceIds).join());
+
+    // Single-use keys must never be returned twice
+    assertEquals(Optional.empty(), keysManager.takeEC(ACCOUNT_UUID, deviceIds).join().get(DEVICE_ID));
+    assertEquals(Optional.empty(), keysManager.takePQ(ACCOUNT_UUID, deviceIds).join().get(DEVICE_ID));
+  }
+
   @Test
   void takeWithExistingExperimentalKey() {
     // Put a key in the new store, even though we're not in the experiment. This simulates a take when operating
@@ -150,10 +150,13 @@ class MessagePersisterIntegrationTest {
         expectedMessages.add(message);
       }
 
+      final int slot = SlotHash.getSlot(MessagesCache.getMessageQueueKey(account.getUuid(), Device.PRIMARY_ID));
+      final String shard = messagesCache.shardForSlot(slot);
+      final int slotIndex = messagesCache.getSlotsByShard().get(shard).indexOf(slot);
+
       REDIS_CLUSTER_EXTENSION.getRedisCluster()
-          .useCluster(connection -> connection.sync().set(MessagesCache.NEXT_SLOT_TO_PERSIST_KEY,
-              String.valueOf(
-                  SlotHash.getSlot(MessagesCache.getMessageQueueKey(account.getUuid(), Device.PRIMARY_ID)) - 1)));
+          .useCluster(connection -> connection.sync().set(MessagesCache.getShardPersistCursorKey(shard),
+              String.valueOf(slotIndex - 1)));
 
       final AtomicBoolean messagesPersisted = new AtomicBoolean(false);
 
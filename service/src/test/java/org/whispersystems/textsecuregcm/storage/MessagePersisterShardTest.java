@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MessagePersisterShardTest {
+
+  private MessagePersisterShard shard;
+
+  private static final Duration LATENCY_TARGET = Duration.ofMillis(100);
+  private static final int MAX_CONCURRENCY = 4;
+
+  @BeforeEach
+  void setUp() {
+    shard = new MessagePersisterShard("shard", List.of(1, 2, 3));
+  }
+
+  @Test
+  void tryAcquire() {
+    assertTrue(shard.tryAcquire());
+    assertFalse(shard.tryAcquire(), "Shards should start with a concurrency limit of 1");
+
+    shard.release();
+    assertTrue(shard.tryAcquire());
+  }
+
+  @Test
+  void tryAcquireNoSlots() {
+    shard.clearSlots();
+    assertFalse(shard.tryAcquire());
+  }
+
+  @Test
+  void recordPassBacklog() {
+    for (int i = 0; i < 100; i++) {
+      shard.recordPass(MessagePersister.QUEUE_BATCH_LIMIT, LATENCY_TARGET, MAX_CONCURRENCY);
+    }
+
+    assertEquals(MAX_CONCURRENCY, shard.getConcurrencyLimit());
+
+    for (int i = 0; i < 100; i++) {
+      shard.recordPass(0, LATENCY_TARGET, MAX_CONCURRENCY);
+    }
+
+    assertEquals(1, shard.getConcurrencyLimit());
+  }
+
+  @Test
+  void recordPassSlowWrites() {
+    for (int i = 0; i < 100; i++) {
+      shard.recordPass(MessagePersister.QUEUE_BATCH_LIMIT, LATENCY_TARGET, MAX_CONCURRENCY);
+    }
+
+    assertEquals(MAX_CONCURRENCY, shard.getConcurrencyLimit());
+
+    shard.recordWriteLatency(LATENCY_TARGET.multipliedBy(2));
+    shard.recordPass(MessagePersister.QUEUE_BATCH_LIMIT, LATENCY_TARGET, MAX_CONCURRENCY);
+
+    assertEquals(MAX_CONCURRENCY / 2, shard.getConcurrencyLimit());
+  }
+
+  @Test
+  void getEstimatedBacklog() {
+    assertEquals(0, shard.getEstimatedBacklog());
+
+    shard.recordPass(10, LATENCY_TARGET, MAX_CONCURRENCY);
+    assertTrue(shard.getEstimatedBacklog() > 0);
+  }
+}
@@ -127,15 +127,15 @@ class MessagePersisterTest {
 
     when(messagesManager.clear(any(UUID.class), anyByte())).thenReturn(CompletableFuture.completedFuture(null));
 
-    when(messagesManager.persistMessages(any(UUID.class), any(), any())).thenAnswer(invocation -> {
+    when(messagesManager.persistMessages(any(UUID.class), any(), any(), any())).thenAnswer(invocation -> {
       final UUID destinationUuid = invocation.getArgument(0);
       final Device destinationDevice = invocation.getArgument(1);
-      final List<MessageProtos.Envelope> messages = invocation.getArgument(2);
+      final List<SerializedEnvelope> messages = invocation.getArgument(2);
 
-      messagesDynamoDb.store(messages, destinationUuid, destinationDevice);
+      messagesDynamoDb.storeSerialized(messages, destinationUuid, destinationDevice);
 
-      for (final MessageProtos.Envelope message : messages) {
-        messagesCache.remove(destinationUuid, destinationDevice.getId(), UUID.fromString(message.getServerGuid())).get();
+      for (final SerializedEnvelope message : messages) {
+        messagesCache.remove(destinationUuid, destinationDevice.getId(), message.serverGuid()).get();
       }
 
       return messages.size();
@@ -171,9 +171,9 @@ class MessagePersisterTest {
 
     messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay()));
 
-    final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+    final ArgumentCaptor<List<SerializedEnvelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
 
-    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), eq(DESTINATION_ACCOUNT_UUID),
+    verify(messagesDynamoDb, atLeastOnce()).storeSerialized(messagesCaptor.capture(), eq(DESTINATION_ACCOUNT_UUID),
         eq(DESTINATION_DEVICE));
     assertEquals(messageCount, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
   }
@@ -190,7 +190,35 @@ class MessagePersisterTest {
 
     messagePersister.persistNextQueues(now);
 
-    verify(messagesDynamoDb, never()).store(any(), any(), any());
+    verify(messagesDynamoDb, never()).storeSerialized(any(), any(), any());
+  }
+
+  @Test
+  void testPersistNextQueuesForShard() {
+    final String queueName = new String(
+        MessagesCache.getMessageQueueKey(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID), StandardCharsets.UTF_8);
+    final int slot = SlotHash.getSlot(queueName);
+    final int messageCount = (MessagePersister.MESSAGE_BATCH_LIMIT * 3) + 7;
+    final Instant now = Instant.now();
+
+    insertMessages(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount, now);
+
+    messagePersister.refreshShards();
+
+    final String shardName = messagesCache.shardForSlot(slot);
+    final MessagePersisterShard shard = messagePersister.getShard(shardName).orElseThrow();
+    final int slotIndex = shard.getSlots().indexOf(slot);
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> connection.sync()
+        .set(MessagesCache.getShardPersistCursorKey(shardName), String.valueOf(slotIndex - 1)));
+
+    assertEquals(1, messagePersister.persistNextQueues(shard, now.plus(messagePersister.getPersistDelay())));
+
+    final ArgumentCaptor<List<SerializedEnvelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+
+    verify(messagesDynamoDb, atLeastOnce()).storeSerialized(messagesCaptor.capture(), eq(DESTINATION_ACCOUNT_UUID),
+        eq(DESTINATION_DEVICE));
+    assertEquals(messageCount, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
   }
 
   @Test
@@ -220,9 +248,9 @@ class MessagePersisterTest {
 
     messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay()));
 
-    final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+    final ArgumentCaptor<List<SerializedEnvelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
 
-    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), any(UUID.class), any());
+    verify(messagesDynamoDb, atLeastOnce()).storeSerialized(messagesCaptor.capture(), any(UUID.class), any());
     assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
   }
 
@@ -238,7 +266,7 @@ class MessagePersisterTest {
 
     doAnswer((Answer<Void>) invocation -> {
       throw new RuntimeException("OH NO.");
-        }).when(messagesDynamoDb).store(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE));
+        }).when(messagesDynamoDb).storeSerialized(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE));
 
     messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay()));
 
@@ -258,7 +286,7 @@ class MessagePersisterTest {
     setNextSlotToPersist(SlotHash.getSlot(queueName));
 
     // returning `0` indicates something not working correctly
-    when(messagesManager.persistMessages(any(UUID.class), any(), anyList())).thenReturn(0);
+    when(messagesManager.persistMessages(any(UUID.class), any(), anyList(), any())).thenReturn(0);
 
     assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
         assertThrows(MessagePersistenceException.class,
@@ -300,7 +328,7 @@ class MessagePersisterTest {
 
     when(destinationAccount.getDevices()).thenReturn(List.of(primary, activeA, inactiveB, inactiveC, activeD, destination));
 
-    when(messagesManager.persistMessages(any(UUID.class), any(), anyList())).thenThrow(ItemCollectionSizeLimitExceededException.builder().build());
+    when(messagesManager.persistMessages(any(UUID.class), any(), anyList(), any())).thenThrow(ItemCollectionSizeLimitExceededException.builder().build());
 
     assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
         messagePersister.persistQueue(destinationAccount, DESTINATION_DEVICE, "test"));
@@ -346,7 +374,7 @@ class MessagePersisterTest {
     when(primary.getFetchesMessages()).thenReturn(true);
     when(destinationAccount.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(primary));
 
-    when(messagesManager.persistMessages(any(UUID.class), any(), anyList()))
+    when(messagesManager.persistMessages(any(UUID.class), any(), anyList(), any()))
         .thenThrow(ItemCollectionSizeLimitExceededException.builder().build());
     when(messagesManager.getMessagesForDeviceReactive(DESTINATION_ACCOUNT_UUID, primary, false))
         .thenReturn(Flux.concat(
@@ -403,7 +431,7 @@ class MessagePersisterTest {
 
     when(destinationAccount.getDevices()).thenReturn(List.of(primary, activeA, inactiveB, inactiveC, activeD, destination));
 
-    when(messagesManager.persistMessages(any(UUID.class), any(), anyList())).thenThrow(ItemCollectionSizeLimitExceededException.builder().build());
+    when(messagesManager.persistMessages(any(UUID.class), any(), anyList(), any())).thenThrow(ItemCollectionSizeLimitExceededException.builder().build());
     when(accountsManager.removeDevice(destinationAccount, DESTINATION_DEVICE_ID)).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
 
     assertThrows(CompletionException.class, () -> messagePersister.persistQueue(destinationAccount, DESTINATION_DEVICE, "test"));
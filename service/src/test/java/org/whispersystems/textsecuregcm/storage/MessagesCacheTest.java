@@ -22,6 +22,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
@@ -63,6 +64,8 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.reactivestreams.Publisher;
 import org.signal.libsignal.protocol.SealedSenderMultiRecipientMessage;
@@ -277,6 +280,54 @@ class MessagesCacheTest {
       assertEquals(List.of(message2), get(DESTINATION_UUID, DESTINATION_DEVICE_ID, 1));
     }
 
+    @Test
+    void testGetMessagesReadAhead() {
+      final int messageCount = MessagesCache.MAX_READ_AHEAD_PAGE_SIZE * 2 + 17;
+
+      final List<MessageProtos.Envelope> expectedMessages = new ArrayList<>(messageCount);
+
+      for (int i = 0; i < messageCount; i++) {
+        final UUID messageGuid = UUID.randomUUID();
+        final MessageProtos.Envelope message = generateRandomMessage(messageGuid, true);
+
+        messagesCache.insert(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, message).join();
+        expectedMessages.add(message);
+      }
+
+      assertEquals(expectedMessages, get(DESTINATION_UUID, DESTINATION_DEVICE_ID, messageCount));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void getReadAheadPageSize(final int envelopeSize, final int envelopeCount, final int expectedPageSize) {
+      final List<byte[]> queueItems = new ArrayList<>(envelopeCount * 2);
+
+      for (int i = 0; i < envelopeCount; i++) {
+        queueItems.add(new byte[envelopeSize]);
+        queueItems.add(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+      }
+
+      assertEquals(expectedPageSize, MessagesCache.getReadAheadPageSize(queueItems));
+    }
+
+    private static List<Arguments> getReadAheadPageSize() {
+      final int pageBudgetBytes = MessagesCache.READ_AHEAD_MEMORY_BUDGET_BYTES / (MessagesCache.READ_AHEAD_PAGES + 2);
+
+      return List.of(
+          // Empty pages don't tell us anything about envelope sizes
+          Arguments.of(0, 0, 100),
+
+          // Small envelopes
+          Arguments.of(16, 100, MessagesCache.MAX_READ_AHEAD_PAGE_SIZE),
+
+          // Envelopes sized such that a page fits exactly within the budget
+          Arguments.of(pageBudgetBytes / 200, 100, 200),
+
+          // Very large envelopes
+          Arguments.of(pageBudgetBytes, 100, MessagesCache.MIN_READ_AHEAD_PAGE_SIZE)
+      );
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void testGetMessagesPublisher(final boolean expectStale) throws Exception {
@@ -551,7 +602,7 @@ class MessagesCacheTest {
 
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
-    void testGetMessagesToPersist(final boolean sharedMrmKeyPresent) {
+    void testGetMessagesToPersist(final boolean sharedMrmKeyPresent) throws InvalidProtocolBufferException {
 
       final UUID destinationUuid = UUID.randomUUID();
       final ServiceIdentifier destinationServiceId = new AciServiceIdentifier(destinationUuid);
@@ -581,7 +632,13 @@ class MessagesCacheTest {
           .build();
       messagesCache.insert(mrmMessageGuid, destinationUuid, deviceId, mrmMessage).join();
 
-      final List<MessageProtos.Envelope> messages = messagesCache.getMessagesToPersist(destinationUuid, deviceId, 100);
+      final List<MessageProtos.Envelope> messages = new ArrayList<>();
+
+      for (final SerializedEnvelope serializedEnvelope :
+          messagesCache.getMessagesToPersist(destinationUuid, deviceId, 100)) {
+
+        messages.add(serializedEnvelope.toEnvelope());
+      }
 
       if (!sharedMrmKeyPresent) {
         assertEquals(1, messages.size());
@@ -6,24 +6,38 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.reactivestreams.Publisher;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.storage.DynamoDbExtensionSchema.Tables;
@@ -31,6 +45,10 @@ import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
 import org.whispersystems.textsecuregcm.tests.util.MessageHelper;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 class MessagesDynamoDbTest {
 
@@ -148,6 +166,62 @@ class MessagesDynamoDbTest {
         .verify();
   }
 
+  @Test
+  void testStoreAsyncRetriesUnprocessedItems() {
+    final DynamoDbAsyncClient dynamoDbAsyncClient = mock(DynamoDbAsyncClient.class);
+
+    final MessagesDynamoDb messagesDynamoDb = new MessagesDynamoDb(DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        dynamoDbAsyncClient, Tables.MESSAGES.tableName(), Duration.ofDays(14), messageDeletionExecutorService);
+
+    final AtomicReference<List<WriteRequest>> unprocessedItems = new AtomicReference<>();
+
+    when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenAnswer(invocation -> {
+          final List<WriteRequest> writeRequests = invocation.getArgument(0, BatchWriteItemRequest.class)
+              .requestItems().get(Tables.MESSAGES.tableName());
+
+          unprocessedItems.set(writeRequests.subList(0, 1));
+
+          return CompletableFuture.completedFuture(BatchWriteItemResponse.builder()
+              .unprocessedItems(Map.of(Tables.MESSAGES.tableName(), writeRequests.subList(0, 1)))
+              .build());
+        })
+        .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+
+    messagesDynamoDb.storeAsync(
+            List.of(SerializedEnvelope.fromEnvelope(MESSAGE1), SerializedEnvelope.fromEnvelope(MESSAGE2)),
+            UUID.randomUUID(), DevicesHelper.createDevice(Device.PRIMARY_ID))
+        .join();
+
+    final ArgumentCaptor<BatchWriteItemRequest> requestCaptor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(dynamoDbAsyncClient, times(2)).batchWriteItem(requestCaptor.capture());
+
+    assertThat(requestCaptor.getAllValues().get(0).requestItems().get(Tables.MESSAGES.tableName())).hasSize(2);
+    assertThat(requestCaptor.getAllValues().get(1).requestItems().get(Tables.MESSAGES.tableName()))
+        .isEqualTo(unprocessedItems.get());
+  }
+
+  @Test
+  void testStoreAsyncUnprocessedItemsExhausted() {
+    final DynamoDbAsyncClient dynamoDbAsyncClient = mock(DynamoDbAsyncClient.class);
+
+    final MessagesDynamoDb messagesDynamoDb = new MessagesDynamoDb(DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        dynamoDbAsyncClient, Tables.MESSAGES.tableName(), Duration.ofDays(14), messageDeletionExecutorService);
+
+    when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(BatchWriteItemResponse.builder()
+            .unprocessedItems(invocation.getArgument(0, BatchWriteItemRequest.class).requestItems())
+            .build()));
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> messagesDynamoDb.storeAsync(List.of(SerializedEnvelope.fromEnvelope(MESSAGE1)), UUID.randomUUID(),
+            DevicesHelper.createDevice(Device.PRIMARY_ID)).join());
+
+    assertInstanceOf(DynamoDbBatchOperations.UnprocessedItemsException.class, completionException.getCause());
+    verify(dynamoDbAsyncClient, times(DynamoDbBatchOperations.MAX_BATCH_RETRIES + 1)).batchWriteItem(
+        any(BatchWriteItemRequest.class));
+  }
+
   @Test
   void testLimitedLoad() {
     final int messageCount = 200;
@@ -258,6 +332,33 @@ class MessagesDynamoDbTest {
         .isEmpty();
   }
 
+  @Test
+  void testDeleteMessages() throws Exception {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    final List<MessageProtos.Envelope> messages = IntStream.range(0, 60)
+        .mapToObj(i -> MESSAGE1.toBuilder()
+            .setServerGuid(UUID.randomUUID().toString())
+            .setServerTimestamp(MESSAGE1.getServerTimestamp() + i)
+            .build())
+        .toList();
+
+    messagesDynamoDb.store(messages, destinationUuid, primary);
+
+    final Map<UUID, Long> messagesToDelete = messages.subList(0, 50).stream()
+        .collect(Collectors.toMap(message -> UUID.fromString(message.getServerGuid()),
+            MessageProtos.Envelope::getServerTimestamp));
+
+    // Deleting messages that don't exist should not be an error
+    messagesToDelete.put(UUID.randomUUID(), MESSAGE1.getServerTimestamp());
+
+    messagesDynamoDb.deleteMessages(destinationUuid, primary, messagesToDelete).get(1, TimeUnit.SECONDS);
+
+    assertThat(load(destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .containsExactlyElementsOf(messages.subList(50, 60));
+  }
+
   private List<MessageProtos.Envelope> load(final UUID destinationUuid, final Device destinationDevice,
       final int count) {
     return Flux.from(messagesDynamoDb.load(destinationUuid, destinationDevice, count))
@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.storage;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -185,6 +186,53 @@ class MessagesManagerTest {
         any());
   }
 
+  @Test
+  void deleteBatch() {
+    final UUID accountIdentifier = UUID.randomUUID();
+    final Device device = mock(Device.class);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+
+    final UUID cachedMessageGuid = UUID.randomUUID();
+    final UUID persistedMessageGuid = UUID.randomUUID();
+
+    final RemovedMessage removedMessage = new RemovedMessage(Optional.empty(),
+        new AciServiceIdentifier(accountIdentifier), cachedMessageGuid, 1, 1, Envelope.Type.CIPHERTEXT);
+
+    when(messagesCache.remove(eq(accountIdentifier), eq(Device.PRIMARY_ID), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(removedMessage)));
+
+    when(messagesDynamoDb.deleteMessages(eq(accountIdentifier), eq(device), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    final Map<UUID, Optional<RemovedMessage>> results = messagesManager.delete(accountIdentifier, device,
+        Map.of(cachedMessageGuid, 1L, persistedMessageGuid, 2L)).join();
+
+    assertEquals(Map.of(cachedMessageGuid, Optional.of(removedMessage), persistedMessageGuid, Optional.empty()),
+        results);
+
+    verify(messagesDynamoDb).deleteMessages(accountIdentifier, device, Map.of(persistedMessageGuid, 2L));
+  }
+
+  @Test
+  void deleteBatchAllCached() {
+    final UUID accountIdentifier = UUID.randomUUID();
+    final Device device = mock(Device.class);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+
+    final UUID messageGuid = UUID.randomUUID();
+
+    final RemovedMessage removedMessage = new RemovedMessage(Optional.empty(),
+        new AciServiceIdentifier(accountIdentifier), messageGuid, 1, 1, Envelope.Type.CIPHERTEXT);
+
+    when(messagesCache.remove(eq(accountIdentifier), eq(Device.PRIMARY_ID), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(removedMessage)));
+
+    assertEquals(Map.of(messageGuid, Optional.of(removedMessage)),
+        messagesManager.delete(accountIdentifier, device, Map.of(messageGuid, 1L)).join());
+
+    verifyNoInteractions(messagesDynamoDb);
+  }
+
   @ParameterizedTest
   @CsvSource({
       "false, false, false",
@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.storage;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -38,6 +39,26 @@ abstract class RepeatedUseSignedPreKeyStoreTest<K extends SignedPreKey<?>> {
     assertEquals(Optional.of(signedPreKey), keys.find(identifier, deviceId).join());
   }
 
+  @Test
+  void findMultipleDevices() {
+    final RepeatedUseSignedPreKeyStore<K> keys = getKeyStore();
+
+    final UUID identifier = UUID.randomUUID();
+    final byte deviceId2 = 2;
+    final byte deviceId3 = 3;
+    final K signedPreKey = generateSignedPreKey();
+    final K signedPreKey2 = generateSignedPreKey();
+
+    keys.store(identifier, Device.PRIMARY_ID, signedPreKey).join();
+    keys.store(identifier, deviceId2, signedPreKey2).join();
+
+    assertEquals(Map.of(
+            Device.PRIMARY_ID, Optional.of(signedPreKey),
+            deviceId2, Optional.of(signedPreKey2),
+            deviceId3, Optional.empty()),
+        keys.find(identifier, List.of(Device.PRIMARY_ID, deviceId2, deviceId3)).join());
+  }
+
   @Test
   void buildTransactWriteItemForInsertion() {
     final RepeatedUseSignedPreKeyStore<K> keys = getKeyStore();
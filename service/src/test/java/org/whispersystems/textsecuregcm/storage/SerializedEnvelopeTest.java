@@ -0,0 +1,107 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.util.TestRandomUtil;
+
+class SerializedEnvelopeTest {
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void parse(final boolean compressed) throws InvalidProtocolBufferException {
+    final UUID serverGuid = UUID.randomUUID();
+
+    final MessageProtos.Envelope envelope = MessageProtos.Envelope.newBuilder()
+        .setType(MessageProtos.Envelope.Type.UNIDENTIFIED_SENDER)
+        .setServerGuid(serverGuid.toString())
+        .setServerTimestamp(1234567890L)
+        .setDestinationServiceId(UUID.randomUUID().toString())
+        .setContent(ByteString.copyFrom(TestRandomUtil.nextBytes(256)))
+        .setUrgent(false)
+        .setEphemeral(true)
+        .build();
+
+    final byte[] serialized = compressed
+        ? EnvelopeUtil.compress(envelope).toByteArray()
+        : envelope.toByteArray();
+
+    final SerializedEnvelope serializedEnvelope = SerializedEnvelope.parse(serialized);
+
+    assertArrayEquals(serialized, serializedEnvelope.serialized());
+    assertEquals(serverGuid, serializedEnvelope.serverGuid());
+    assertEquals(1234567890L, serializedEnvelope.serverTimestamp());
+    assertFalse(serializedEnvelope.urgent());
+    assertTrue(serializedEnvelope.ephemeral());
+    assertNull(serializedEnvelope.sharedMrmKey());
+    assertEquals(envelope, serializedEnvelope.toEnvelope());
+  }
+
+  @Test
+  void parseDefaults() throws InvalidProtocolBufferException {
+    final UUID serverGuid = UUID.randomUUID();
+    final ByteString sharedMrmKey = ByteString.copyFrom(TestRandomUtil.nextBytes(16));
+
+    final SerializedEnvelope serializedEnvelope = SerializedEnvelope.parse(MessageProtos.Envelope.newBuilder()
+        .setServerGuid(serverGuid.toString())
+        .setSharedMrmKey(sharedMrmKey)
+        .build()
+        .toByteArray());
+
+    assertEquals(serverGuid, serializedEnvelope.serverGuid());
+    assertEquals(0, serializedEnvelope.serverTimestamp());
+    assertTrue(serializedEnvelope.urgent());
+    assertFalse(serializedEnvelope.ephemeral());
+    assertEquals(sharedMrmKey, serializedEnvelope.sharedMrmKey());
+  }
+
+  @Test
+  void parseMissingServerGuid() {
+    final byte[] serialized = MessageProtos.Envelope.newBuilder()
+        .setServerTimestamp(1234567890L)
+        .build()
+        .toByteArray();
+
+    assertThrows(InvalidProtocolBufferException.class, () -> SerializedEnvelope.parse(serialized));
+  }
+
+  @Test
+  void parseInvalid() {
+    assertThrows(InvalidProtocolBufferException.class, () -> SerializedEnvelope.parse(new byte[]{(byte) 0xff}));
+  }
+
+  @Test
+  void fromEnvelope() throws InvalidProtocolBufferException {
+    final MessageProtos.Envelope envelope = MessageProtos.Envelope.newBuilder()
+        .setType(MessageProtos.Envelope.Type.CIPHERTEXT)
+        .setServerGuid(UUID.randomUUID().toString())
+        .setServerTimestamp(1234567890L)
+        .setSourceServiceId(UUID.randomUUID().toString())
+        .setContent(ByteString.copyFrom(TestRandomUtil.nextBytes(256)))
+        .build();
+
+    final SerializedEnvelope serializedEnvelope = SerializedEnvelope.fromEnvelope(envelope);
+
+    assertArrayEquals(EnvelopeUtil.compress(envelope).toByteArray(), serializedEnvelope.serialized());
+    assertEquals(UUID.fromString(envelope.getServerGuid()), serializedEnvelope.serverGuid());
+    assertEquals(envelope.getServerTimestamp(), serializedEnvelope.serverTimestamp());
+    assertTrue(serializedEnvelope.urgent());
+    assertEquals(envelope, serializedEnvelope.toEnvelope());
+  }
+}
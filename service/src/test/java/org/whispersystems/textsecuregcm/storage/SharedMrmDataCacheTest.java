@@ -0,0 +1,70 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.protobuf.ByteString;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.util.TestRandomUtil;
+
+class SharedMrmDataCacheTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private SharedMrmDataCache sharedMrmDataCache;
+
+  @BeforeEach
+  void setUp() {
+    sharedMrmDataCache =
+        new SharedMrmDataCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), 1024 * 1024, Duration.ofMinutes(1));
+  }
+
+  @Test
+  void get() {
+    final byte[] sharedMrmKey = MessagesCache.getSharedMrmKey(UUID.randomUUID());
+    final byte[] sharedData = TestRandomUtil.nextBytes(256);
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection ->
+        connection.sync().hset(sharedMrmKey, "data".getBytes(StandardCharsets.UTF_8), sharedData));
+
+    final Optional<byte[]> maybeSharedData = sharedMrmDataCache.get(ByteString.copyFrom(sharedMrmKey)).join();
+    assertTrue(maybeSharedData.isPresent());
+    assertArrayEquals(sharedData, maybeSharedData.get());
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection -> connection.sync().del(sharedMrmKey));
+
+    final Optional<byte[]> maybeCachedSharedData = sharedMrmDataCache.get(ByteString.copyFrom(sharedMrmKey)).join();
+    assertTrue(maybeCachedSharedData.isPresent(), "Shared data should be served from the local cache");
+    assertArrayEquals(sharedData, maybeCachedSharedData.get());
+  }
+
+  @Test
+  void getMissing() {
+    final byte[] sharedMrmKey = MessagesCache.getSharedMrmKey(UUID.randomUUID());
+
+    assertEquals(Optional.empty(), sharedMrmDataCache.get(ByteString.copyFrom(sharedMrmKey)).join());
+
+    final byte[] sharedData = TestRandomUtil.nextBytes(256);
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection ->
+        connection.sync().hset(sharedMrmKey, "data".getBytes(StandardCharsets.UTF_8), sharedData));
+
+    final Optional<byte[]> maybeSharedData = sharedMrmDataCache.get(ByteString.copyFrom(sharedMrmKey)).join();
+    assertTrue(maybeSharedData.isPresent(), "Missing shared data should not be cached");
+    assertArrayEquals(sharedData, maybeSharedData.get());
+  }
+}
@@ -51,6 +51,37 @@ abstract class SingleUsePreKeyStoreTest<K extends PreKey<?>> {
     assertEquals(Optional.of(sortedPreKeys.get(1)), preKeyStore.take(accountIdentifier, deviceId).join());
   }
 
+  @Test
+  void storeReplacesExistingKeys() {
+    final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
+
+    final UUID accountIdentifier = UUID.randomUUID();
+    final byte deviceId = 1;
+    final byte otherDeviceId = 2;
+
+    final List<K> oldPreKeys = new ArrayList<>();
+    final List<K> newPreKeys = new ArrayList<>();
+
+    // Old and new keys overlap in the middle of the key ID range
+    for (int i = 0; i < KEY_COUNT; i++) {
+      oldPreKeys.add(generatePreKey(i));
+      newPreKeys.add(generatePreKey(i + (KEY_COUNT / 2)));
+    }
+
+    preKeyStore.store(accountIdentifier, deviceId, oldPreKeys).join();
+    preKeyStore.store(accountIdentifier, otherDeviceId, List.of(generatePreKey(1))).join();
+    preKeyStore.store(accountIdentifier, deviceId, newPreKeys).join();
+
+    assertEquals(KEY_COUNT, preKeyStore.getCount(accountIdentifier, deviceId).join());
+    assertEquals(1, preKeyStore.getCount(accountIdentifier, otherDeviceId).join());
+
+    for (final K newPreKey : newPreKeys) {
+      assertEquals(Optional.of(newPreKey), preKeyStore.take(accountIdentifier, deviceId).join());
+    }
+
+    assertEquals(Optional.empty(), preKeyStore.take(accountIdentifier, deviceId).join());
+  }
+
   @Test
   void getCount() {
     final SingleUsePreKeyStore<K> preKeyStore = getPreKeyStore();
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2025 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.textsecuregcm.entities.MessageProtos;
+import org.whispersystems.textsecuregcm.identity.AciServiceIdentifier;
+import org.whispersystems.textsecuregcm.identity.IdentityType;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.storage.RemovedMessage;
+
+class MessageAcknowledgementBatcherTest {
+
+  private MessagesManager messagesManager;
+  private Device device;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final int MAX_BATCH_SIZE = 3;
+
+  private MessageAcknowledgementBatcher messageAcknowledgementBatcher;
+
+  @BeforeEach
+  void setUp() {
+    messagesManager = mock(MessagesManager.class);
+    device = mock(Device.class);
+
+    final Account account = mock(Account.class);
+    when(account.getIdentifier(IdentityType.ACI)).thenReturn(ACCOUNT_IDENTIFIER);
+
+    messageAcknowledgementBatcher = new MessageAcknowledgementBatcher(messagesManager, account, device,
+        Duration.ofMinutes(1), MAX_BATCH_SIZE);
+  }
+
+  @Test
+  void flushOnMaxBatchSize() {
+    final UUID cachedMessageGuid = UUID.randomUUID();
+    final UUID persistedMessageGuid = UUID.randomUUID();
+    final UUID thirdMessageGuid = UUID.randomUUID();
+
+    final RemovedMessage removedMessage = new RemovedMessage(Optional.empty(),
+        new AciServiceIdentifier(ACCOUNT_IDENTIFIER), cachedMessageGuid, 1, 1, MessageProtos.Envelope.Type.CIPHERTEXT);
+
+    when(messagesManager.delete(any(), any(), anyMap())).thenReturn(CompletableFuture.completedFuture(
+        Map.of(cachedMessageGuid, Optional.of(removedMessage),
+            persistedMessageGuid, Optional.empty(),
+            thirdMessageGuid, Optional.empty())));
+
+    final CompletableFuture<Optional<RemovedMessage>> cachedFuture =
+        messageAcknowledgementBatcher.acknowledge(cachedMessageGuid, 1);
+
+    final CompletableFuture<Optional<RemovedMessage>> persistedFuture =
+        messageAcknowledgementBatcher.acknowledge(persistedMessageGuid, 2);
+
+    assertSame(persistedFuture, messageAcknowledgementBatcher.acknowledge(persistedMessageGuid, 2),
+        "Repeated acknowledgements should share a result");
+
+    assertFalse(cachedFuture.isDone());
+    verify(messagesManager, never()).delete(any(), any(), anyMap());
+
+    messageAcknowledgementBatcher.acknowledge(thirdMessageGuid, 3);
+
+    verify(messagesManager).delete(ACCOUNT_IDENTIFIER, device,
+        Map.of(cachedMessageGuid, 1L, persistedMessageGuid, 2L, thirdMessageGuid, 3L));
+
+    assertEquals(Optional.of(removedMessage), cachedFuture.join());
+    assertEquals(Optional.empty(), persistedFuture.join());
+    assertEquals(0, messageAcknowledgementBatcher.getPendingAcknowledgementCount());
+  }
+
+  @Test
+  void flushOnBatchWindow() {
+    final Account account = mock(Account.class);
+    when(account.getIdentifier(IdentityType.ACI)).thenReturn(ACCOUNT_IDENTIFIER);
+
+    messageAcknowledgementBatcher = new MessageAcknowledgementBatcher(messagesManager, account, device,
+        Duration.ofMillis(10), MAX_BATCH_SIZE);
+
+    when(messagesManager.delete(any(), any(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Map.of()));
+
+    final UUID messageGuid = UUID.randomUUID();
+    final CompletableFuture<Optional<RemovedMessage>> future = messageAcknowledgementBatcher.acknowledge(messageGuid, 1);
+
+    verify(messagesManager, timeout(1_000)).delete(ACCOUNT_IDENTIFIER, device, Map.of(messageGuid, 1L));
+    assertEquals(Optional.empty(), future.join());
+  }
+
+  @Test
+  void flushFailure() {
+    when(messagesManager.delete(any(), any(), anyMap()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException()));
+
+    final CompletableFuture<Optional<RemovedMessage>> first =
+        messageAcknowledgementBatcher.acknowledge(UUID.randomUUID(), 1);
+
+    final CompletableFuture<Optional<RemovedMessage>> second =
+        messageAcknowledgementBatcher.acknowledge(UUID.randomUUID(), 2);
+
+    messageAcknowledgementBatcher.flush();
+
+    assertTrue(first.isCompletedExceptionally());
+    assertThrows(CompletionException.class, second::join);
+  }
+
+  @Test
+  void flushEmpty() {
+    messageAcknowledgementBatcher.flush();
+    verify(messagesManager, never()).delete(any(), any(), anyMap());
+  }
+}
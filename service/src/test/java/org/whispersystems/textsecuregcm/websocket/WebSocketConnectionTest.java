@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
@@ -20,10 +21,12 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
+import static org.whispersystems.textsecuregcm.entities.MessageProtos.EnvelopeBatch;
 
 import com.google.common.net.HttpHeaders;
 import com.google.protobuf.ByteString;
@@ -34,6 +37,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +56,7 @@ import org.eclipse.jetty.websocket.api.UpgradeRequest;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.stubbing.Answer;
 import org.whispersystems.textsecuregcm.auth.AccountAuthenticator;
 import org.whispersystems.textsecuregcm.auth.AuthenticatedDevice;
@@ -185,8 +190,8 @@ class WebSocketConnectionTest {
     when(accountsManager.getByE164("sender1")).thenReturn(Optional.of(sender1));
     when(accountsManager.getByE164("sender2")).thenReturn(Optional.empty());
 
-    when(messagesManager.delete(any(), any(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), any(), anyMap())).thenReturn(
+        CompletableFuture.completedFuture(Collections.emptyMap()));
 
     String userAgent = HttpHeaders.USER_AGENT;
 
@@ -219,8 +224,8 @@ class WebSocketConnectionTest {
     futures.get(0).completeExceptionally(new IOException());
     futures.get(2).completeExceptionally(new IOException());
 
-    verify(messagesManager, times(1)).delete(eq(accountUuid), eq(device),
-        eq(UUID.fromString(outgoingMessages.get(1).getServerGuid())), eq(outgoingMessages.get(1).getServerTimestamp()));
+    verify(messagesManager, timeout(1_000)).delete(eq(accountUuid), eq(device),
+        eq(Map.of(UUID.fromString(outgoingMessages.get(1).getServerGuid()), outgoingMessages.get(1).getServerTimestamp())));
     verify(receiptSender, times(1)).sendReceipt(eq(new AciServiceIdentifier(accountUuid)), eq(deviceId), eq(new AciServiceIdentifier(senderOneUuid)),
         eq(2222L));
 
@@ -240,6 +245,9 @@ class WebSocketConnectionTest {
     when(device.getId()).thenReturn(Device.PRIMARY_ID);
     when(client.isOpen()).thenReturn(true);
 
+    when(messagesManager.delete(any(), any(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
+
     when(messagesManager.getMessagesForDeviceReactive(eq(accountUuid), argThat(d -> d.getId() == Device.PRIMARY_ID), anyBoolean()))
         .thenReturn(Flux.empty())
         .thenReturn(Flux.just(createMessage(UUID.randomUUID(), UUID.randomUUID(), 1111, "first")))
@@ -331,8 +339,8 @@ class WebSocketConnectionTest {
     when(accountsManager.getByE164("sender1")).thenReturn(Optional.of(sender1));
     when(accountsManager.getByE164("sender2")).thenReturn(Optional.empty());
 
-    when(messagesManager.delete(any(), any(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), any(), anyMap())).thenReturn(
+        CompletableFuture.completedFuture(Collections.emptyMap()));
 
     String userAgent = HttpHeaders.USER_AGENT;
 
@@ -455,8 +463,8 @@ class WebSocketConnectionTest {
     when(messagesManager.getMessagesForDeviceReactive(accountUuid, device, false))
         .thenReturn(Flux.fromStream(Stream.concat(firstPageMessages.stream(), secondPageMessages.stream())));
 
-    when(messagesManager.delete(eq(accountUuid), eq(device), any(), any()))
-        .thenReturn(CompletableFuture.completedFuture(null));
+    when(messagesManager.delete(eq(accountUuid), eq(device), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
@@ -482,6 +490,80 @@ class WebSocketConnectionTest {
     verify(client).sendRequest(eq("PUT"), eq("/api/v1/queue/empty"), any(List.class), eq(Optional.empty()));
   }
 
+  @Test
+  void testProcessStoredMessagesBatched() throws InvalidProtocolBufferException {
+    final WebSocketClient client = mock(WebSocketClient.class);
+    final WebSocketConnection connection = webSocketConnection(client);
+
+    final UUID accountUuid = UUID.randomUUID();
+    when(account.getIdentifier(IdentityType.ACI)).thenReturn(accountUuid);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(client.isOpen()).thenReturn(true);
+    when(client.shouldReceiveMessageBatches()).thenReturn(true);
+
+    final List<Envelope> messages = List.of(
+        createMessage(UUID.randomUUID(), UUID.randomUUID(), 1111, "first"),
+        createMessage(UUID.randomUUID(), UUID.randomUUID(), 2222, "second").toBuilder().setEphemeral(true).build(),
+        createMessage(UUID.randomUUID(), UUID.randomUUID(), 3333, "third"));
+
+    when(messagesManager.getMessagesForDeviceReactive(accountUuid, device, false))
+        .thenReturn(Flux.fromIterable(messages));
+
+    when(messagesManager.delete(eq(accountUuid), eq(device), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
+
+    final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
+    when(successResponse.getStatus()).thenReturn(200);
+
+    final CountDownLatch queueEmptyLatch = new CountDownLatch(1);
+
+    when(client.sendRequest(eq("PUT"), eq("/api/v1/messages"), any(List.class), any(Optional.class)))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(successResponse));
+
+    when(client.sendRequest(eq("PUT"), eq("/api/v1/queue/empty"), any(List.class), eq(Optional.empty())))
+        .thenAnswer(invocation -> {
+          queueEmptyLatch.countDown();
+          return CompletableFuture.completedFuture(successResponse);
+        });
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      connection.processStoredMessages();
+      queueEmptyLatch.await();
+    });
+
+    @SuppressWarnings("unchecked") final ArgumentCaptor<Optional<byte[]>> bodyCaptor =
+        ArgumentCaptor.forClass(Optional.class);
+
+    verify(client).sendRequest(eq("PUT"), eq("/api/v1/messages"), any(List.class), bodyCaptor.capture());
+    verify(client, never()).sendRequest(eq("PUT"), eq("/api/v1/message"), any(List.class), any(Optional.class));
+
+    final EnvelopeBatch batch = EnvelopeBatch.parseFrom(bodyCaptor.getValue().orElseThrow());
+
+    assertEquals(messages.stream().map(message -> message.toBuilder().clearEphemeral().build()).toList(),
+        batch.getEnvelopesList());
+
+    verify(messagesManager, timeout(1_000)).delete(eq(accountUuid), eq(device),
+        argThat(guids -> guids.size() == messages.size()));
+  }
+
+  @Test
+  void testPartitionMessageBatch() {
+    final Envelope smallMessage = createMessage(UUID.randomUUID(), UUID.randomUUID(), 1111, "small");
+    final Envelope largeMessage = createMessage(UUID.randomUUID(), UUID.randomUUID(), 2222,
+        "a".repeat(WebSocketConnection.MAX_MESSAGE_BATCH_BYTES));
+    final Envelope halfMessage = createMessage(UUID.randomUUID(), UUID.randomUUID(), 3333,
+        "b".repeat(WebSocketConnection.MAX_MESSAGE_BATCH_BYTES / 2));
+
+    assertEquals(List.of(), WebSocketConnection.partitionMessageBatch(List.of()));
+
+    assertEquals(List.of(List.of(smallMessage, smallMessage)),
+        WebSocketConnection.partitionMessageBatch(List.of(smallMessage, smallMessage)));
+
+    // Oversized messages travel alone, and batches never exceed the byte limit
+    assertEquals(List.of(List.of(smallMessage), List.of(largeMessage), List.of(halfMessage), List.of(halfMessage, smallMessage)),
+        WebSocketConnection.partitionMessageBatch(List.of(smallMessage, largeMessage, halfMessage, halfMessage, smallMessage)));
+  }
+
   @Test
   void testProcessStoredMessagesMultiplePagesBackpressure() {
     final WebSocketClient client = mock(WebSocketClient.class);
@@ -510,8 +592,8 @@ class WebSocketConnectionTest {
     when(messagesManager.getMessagesForDeviceReactive(accountUuid, device, false))
         .thenReturn(allMessages);
 
-    when(messagesManager.delete(eq(accountUuid), eq(device), any(), any()))
-        .thenReturn(CompletableFuture.completedFuture(null));
+    when(messagesManager.delete(eq(accountUuid), eq(device), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
@@ -584,8 +666,8 @@ class WebSocketConnectionTest {
         .thenReturn(Flux.fromIterable(messages))
         .thenReturn(Flux.empty());
 
-    when(messagesManager.delete(eq(accountUuid), eq(device), any(UUID.class), any()))
-        .thenReturn(CompletableFuture.completedFuture(null));
+    when(messagesManager.delete(eq(accountUuid), eq(device), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
@@ -684,8 +766,8 @@ class WebSocketConnectionTest {
         .thenReturn(Flux.fromIterable(secondPageMessages))
         .thenReturn(Flux.empty());
 
-    when(messagesManager.delete(eq(accountUuid), eq(device), any(), any()))
-        .thenReturn(CompletableFuture.completedFuture(null));
+    when(messagesManager.delete(eq(accountUuid), eq(device), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
 
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
@@ -711,7 +793,7 @@ class WebSocketConnectionTest {
       queueEmptyLatch.await();
     });
 
-    verify(client, times(firstPageMessages.size() + secondPageMessages.size())).sendRequest(eq("PUT"),
+    verify(client, timeout(1_000).times(firstPageMessages.size() + secondPageMessages.size())).sendRequest(eq("PUT"),
         eq("/api/v1/message"), any(List.class), any(Optional.class));
     verify(client).sendRequest(eq("PUT"), eq("/api/v1/queue/empty"), any(List.class), eq(Optional.empty()));
   }
@@ -849,8 +931,8 @@ class WebSocketConnectionTest {
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
     when(client.sendRequest(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(successResponse));
-    when(messagesManager.delete(any(), any(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), any(), anyMap())).thenReturn(
+        CompletableFuture.completedFuture(Collections.emptyMap()));
 
     WebSocketConnection connection = webSocketConnection(client);
 
@@ -905,8 +987,8 @@ class WebSocketConnectionTest {
     final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
     when(successResponse.getStatus()).thenReturn(200);
     when(client.sendRequest(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(successResponse));
-    when(messagesManager.delete(any(), any(), any(), any())).thenReturn(
-        CompletableFuture.completedFuture(Optional.empty()));
+    when(messagesManager.delete(any(), any(), anyMap())).thenReturn(
+        CompletableFuture.completedFuture(Collections.emptyMap()));
 
     WebSocketConnection connection = webSocketConnection(client);
 
@@ -102,6 +102,11 @@ public class WebSocketClient {
     return WebsocketHeaders.parseReceiveStoriesHeader(value);
   }
 
+  public boolean shouldReceiveMessageBatches() {
+    String value = session.getUpgradeRequest().getHeader(WebsocketHeaders.X_SIGNAL_RECEIVE_MESSAGE_BATCHES);
+    return WebsocketHeaders.parseReceiveMessageBatchesHeader(value);
+  }
+
   private long generateRequestId() {
     return Math.abs(SECURE_RANDOM.nextLong());
   }
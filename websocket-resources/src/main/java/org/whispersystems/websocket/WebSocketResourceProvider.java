@@ -6,24 +6,28 @@ package org.whispersystems.websocket;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.HttpHeaders;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.UninitializedMessageException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.security.Principal;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
@@ -71,8 +75,44 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   private RemoteEndpoint remoteEndpoint;
   private WebSocketSessionContext context;
 
+  // The upgrade request's headers don't change for the life of the session, so we filter them once at connection time
+  private Map<String, List<String>> upgradeRequestHeaders = Map.of();
+
   private static final Set<String> EXCLUDED_UPGRADE_REQUEST_HEADERS = Set.of("connection", "upgrade");
 
+  private static final String ALLOCATED_BYTES_DISTRIBUTION_NAME = "chat.WebSocketResourceProvider.allocatedBytes";
+
+  // Bytes allocated by the receiving thread while dispatching a request; for resources that complete synchronously, this
+  // includes building and sending the response
+  private static final DistributionSummary DISPATCH_ALLOCATED_BYTES_DISTRIBUTION = DistributionSummary
+      .builder(ALLOCATED_BYTES_DISTRIBUTION_NAME)
+      .tag("phase", "dispatch")
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .register(Metrics.globalRegistry);
+
+  // Bytes allocated while framing and sending a response after the resource has produced it
+  private static final DistributionSummary RESPONSE_ALLOCATED_BYTES_DISTRIBUTION = DistributionSummary
+      .builder(ALLOCATED_BYTES_DISTRIBUTION_NAME)
+      .tag("phase", "response")
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .register(Metrics.globalRegistry);
+
+  @Nullable
+  private static final com.sun.management.ThreadMXBean ALLOCATION_TRACKING_THREAD_MX_BEAN;
+
+  static {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean allocationTrackingThreadMXBean
+        && allocationTrackingThreadMXBean.isThreadAllocatedMemorySupported()
+        && allocationTrackingThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+
+      ALLOCATION_TRACKING_THREAD_MX_BEAN = allocationTrackingThreadMXBean;
+    } else {
+      ALLOCATION_TRACKING_THREAD_MX_BEAN = null;
+    }
+  }
+
   public WebSocketResourceProvider(String remoteAddress,
       String remoteAddressPropertyName,
       ApplicationHandler jerseyHandler,
@@ -95,6 +135,7 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   public void onWebSocketConnect(Session session) {
     this.session = session;
     this.remoteEndpoint = session.getRemote();
+    this.upgradeRequestHeaders = getUpgradeRequestHeaders(session.getUpgradeRequest().getHeaders());
     this.context = new WebSocketSessionContext(
         new WebSocketClient(session, remoteEndpoint, messageFactory, requestMap));
     this.context.setAuthenticated(reusableAuth.orElse(null));
@@ -179,22 +220,23 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   public static final String RESPONSE_LENGTH_PROPERTY = WebSocketResourceProvider.class.getName() + ".responseBytes";
 
   private void handleRequest(WebSocketRequestMessage requestMessage) {
+    final long initialAllocatedBytes = getCurrentThreadAllocatedBytes();
+
     ContainerRequest containerRequest = new ContainerRequest(null, URI.create(requestMessage.getPath()),
         requestMessage.getVerb(), new WebSocketSecurityContext(new ContextPrincipal(context)),
         new MapPropertiesDelegate(new HashMap<>()), jerseyHandler.getConfiguration());
-    containerRequest.headers(getCombinedHeaders(session.getUpgradeRequest().getHeaders(), requestMessage.getHeaders()));
+    setHeaders(containerRequest, upgradeRequestHeaders, requestMessage.getHeaders());
 
-    final int requestBytes = requestMessage.getBody().map(body -> body.length).orElse(0);
-
-    if (requestMessage.getBody().isPresent()) {
-      containerRequest.setEntityStream(new ByteArrayInputStream(requestMessage.getBody().get()));
-    }
+    final int requestBytes = requestMessage.getBodyLength();
+    requestMessage.getBodyAsStream().ifPresent(containerRequest::setEntityStream);
 
     containerRequest.setProperty(remoteAddressPropertyName, remoteAddress);
     containerRequest.setProperty(REUSABLE_AUTH_PROPERTY, reusableAuth);
     containerRequest.setProperty(REQUEST_LENGTH_PROPERTY, requestBytes);
 
-    ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+    // Jersey writes the response body into a list of chunks that become the response message's body without any further
+    // copying
+    ByteString.Output responseBody = ByteString.newOutput();
     CompletableFuture<ContainerResponse> responseFuture = (CompletableFuture<ContainerResponse>) jerseyHandler.apply(
         containerRequest, responseBody);
 
@@ -222,21 +264,45 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
               new ContainerResponse(containerRequest, Response.status(500).build()));
           return null;
         });
+
+    recordAllocatedBytes(DISPATCH_ALLOCATED_BYTES_DISTRIBUTION, initialAllocatedBytes);
   }
 
+  /**
+   * Selects the headers from a websocket upgrade request that should be passed along with every request in the session.
+   *
+   * @return an immutable map of the upgrade request headers to include in each request
+   */
   @VisibleForTesting
-  static Map<String, List<String>> getCombinedHeaders(final Map<String, List<String>> upgradeRequestHeaders, final Map<String, String> requestMessageHeaders) {
-    final Map<String, List<String>> combinedHeaders = new HashMap<>();
+  static Map<String, List<String>> getUpgradeRequestHeaders(final Map<String, List<String>> upgradeRequestHeaders) {
+    final Map<String, List<String>> filteredHeaders = new HashMap<>();
 
-    upgradeRequestHeaders.entrySet().stream()
-        .filter(entry -> shouldIncludeUpgradeRequestHeader(entry.getKey()))
-        .forEach(entry -> combinedHeaders.put(entry.getKey(), entry.getValue()));
+    upgradeRequestHeaders.forEach((name, values) -> {
+      if (shouldIncludeUpgradeRequestHeader(name)) {
+        filteredHeaders.put(name, List.copyOf(values));
+      }
+    });
 
-    requestMessageHeaders.entrySet().stream()
-        .filter(entry -> shouldIncludeRequestMessageHeader(entry.getKey()))
-        .forEach(entry -> combinedHeaders.put(entry.getKey(), List.of(entry.getValue())));
+    return Map.copyOf(filteredHeaders);
+  }
 
-    return combinedHeaders;
+  /**
+   * Sets a request's headers to the session's upgrade request headers overlaid with the headers from an individual
+   * request message. Jersey's header map is case-insensitive, so request message headers replace upgrade request
+   * headers with the same name regardless of case.
+   */
+  @VisibleForTesting
+  static void setHeaders(final ContainerRequest containerRequest,
+      final Map<String, List<String>> upgradeRequestHeaders,
+      final Map<String, String> requestMessageHeaders) {
+
+    containerRequest.headers(upgradeRequestHeaders);
+
+    requestMessageHeaders.forEach((name, value) -> {
+      if (shouldIncludeRequestMessageHeader(name)) {
+        containerRequest.getHeaders().putSingle(name, value);
+      }
+    });
   }
 
   @VisibleForTesting
@@ -262,22 +328,24 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   }
 
   private void sendResponse(WebSocketRequestMessage requestMessage, ContainerResponse response,
-      ByteArrayOutputStream responseBody) throws IOException {
+      ByteString.Output responseBody) throws IOException {
     if (requestMessage.hasRequestId()) {
-      byte[] body = responseBody.toByteArray();
-      response.getHeaders().putIfAbsent(HttpHeaders.CONTENT_LENGTH, List.of(body.length));
-      if (body.length <= 0) {
-        body = null;
-      }
+      final long initialAllocatedBytes = getCurrentThreadAllocatedBytes();
+
+      final ByteString body = responseBody.toByteString();
+      response.getHeaders().putIfAbsent(HttpHeaders.CONTENT_LENGTH, List.of(body.size()));
 
+      // Serializing the message is the only copy of the response body between Jersey and the socket
       byte[] responseBytes = messageFactory.createResponse(requestMessage.getRequestId(),
               response.getStatus(),
               response.getStatusInfo().getReasonPhrase(),
               getHeaderList(response.getStringHeaders()),
-              Optional.ofNullable(body))
+              body.isEmpty() ? null : body)
           .toByteArray();
 
       remoteEndpoint.sendBytes(ByteBuffer.wrap(responseBytes), WriteCallback.NOOP);
+
+      recordAllocatedBytes(RESPONSE_ALLOCATED_BYTES_DISTRIBUTION, initialAllocatedBytes);
     }
   }
 
@@ -301,14 +369,33 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
 
   @VisibleForTesting
   static List<String> getHeaderList(final MultivaluedMap<String, String> headerMap) {
-    final List<String> headers = new LinkedList<>();
+    if (headerMap == null) {
+      return List.of();
+    }
 
-    if (headerMap != null) {
-      for (String key : headerMap.keySet()) {
-        headers.add(key + ":" + headerMap.getFirst(key));
-      }
+    final List<String> headers = new ArrayList<>(headerMap.size());
+
+    for (String key : headerMap.keySet()) {
+      headers.add(key + ":" + headerMap.getFirst(key));
     }
 
     return headers;
   }
+
+  /**
+   * @return the number of bytes allocated by the current thread so far, or -1 if allocation tracking is not available
+   */
+  private static long getCurrentThreadAllocatedBytes() {
+    return ALLOCATION_TRACKING_THREAD_MX_BEAN != null
+        ? ALLOCATION_TRACKING_THREAD_MX_BEAN.getCurrentThreadAllocatedBytes()
+        : -1;
+  }
+
+  private static void recordAllocatedBytes(final DistributionSummary distributionSummary,
+      final long initialAllocatedBytes) {
+
+    if (initialAllocatedBytes >= 0) {
+      distributionSummary.record(getCurrentThreadAllocatedBytes() - initialAllocatedBytes);
+    }
+  }
 }
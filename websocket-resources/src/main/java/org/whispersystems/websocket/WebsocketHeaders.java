@@ -5,8 +5,13 @@ package org.whispersystems.websocket;
  */
 public class WebsocketHeaders {
   public final static String X_SIGNAL_RECEIVE_STORIES = "X-Signal-Receive-Stories";
+  public final static String X_SIGNAL_RECEIVE_MESSAGE_BATCHES = "X-Signal-Receive-Message-Batches";
 
   public static boolean parseReceiveStoriesHeader(String s) {
     return "true".equals(s);
   }
+
+  public static boolean parseReceiveMessageBatchesHeader(String s) {
+    return "true".equals(s);
+  }
 }
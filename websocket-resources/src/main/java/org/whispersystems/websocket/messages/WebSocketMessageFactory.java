@@ -5,8 +5,10 @@
 package org.whispersystems.websocket.messages;
 
 
+import com.google.protobuf.ByteString;
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 public interface WebSocketMessageFactory {
@@ -23,4 +25,14 @@ public interface WebSocketMessageFactory {
                                          List<String> headers,
                                          Optional<byte[]> body);
 
+  /**
+   * Creates a response message whose body is the given byte string. Unlike
+   * {@link #createResponse(long, int, String, List, Optional)}, this method does not copy the body.
+   *
+   * @param body the body of the response, or {@code null} if the response has no body
+   */
+  public WebSocketMessage createResponse(long requestId, int status, String message,
+                                         List<String> headers,
+                                         @Nullable ByteString body);
+
 }
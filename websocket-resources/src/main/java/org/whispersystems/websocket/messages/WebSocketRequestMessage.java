@@ -4,6 +4,7 @@
  */
 package org.whispersystems.websocket.messages;
 
+import java.io.InputStream;
 import java.util.Map;
 import java.util.Optional;
 
@@ -13,6 +14,18 @@ public interface WebSocketRequestMessage {
   public String             getPath();
   public Map<String,String> getHeaders();
   public Optional<byte[]> getBody();
+
+  /**
+   * Returns a stream over this message's body without copying the body into a new array.
+   *
+   * @return a stream over this message's body or empty if this message has no body
+   */
+  public Optional<InputStream> getBodyAsStream();
+
+  /**
+   * @return the length of this message's body in bytes, or zero if this message has no body
+   */
+  public int getBodyLength();
   public long               getRequestId();
   public boolean            hasRequestId();
 
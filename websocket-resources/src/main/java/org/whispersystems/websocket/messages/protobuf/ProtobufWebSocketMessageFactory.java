@@ -11,6 +11,7 @@ import org.whispersystems.websocket.messages.WebSocketMessageFactory;
 
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory {
 
@@ -55,14 +56,19 @@ public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory
 
   @Override
   public WebSocketMessage createResponse(long requestId, int status, String messageString, List<String> headers, Optional<byte[]> body) {
+    return createResponse(requestId, status, messageString, headers, body.map(ByteString::copyFrom).orElse(null));
+  }
+
+  @Override
+  public WebSocketMessage createResponse(long requestId, int status, String messageString, List<String> headers, @Nullable ByteString body) {
     SubProtocol.WebSocketResponseMessage.Builder responseMessage =
         SubProtocol.WebSocketResponseMessage.newBuilder()
                                             .setId(requestId)
                                             .setStatus(status)
                                             .setMessage(messageString);
 
-    if (body.isPresent()) {
-      responseMessage.setBody(ByteString.copyFrom(body.get()));
+    if (body != null) {
+      responseMessage.setBody(body);
     }
 
     if (headers != null) {
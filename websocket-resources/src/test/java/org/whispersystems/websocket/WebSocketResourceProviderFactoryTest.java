@@ -20,6 +20,7 @@ import java.security.Principal;
 import java.util.Optional;
 import javax.security.auth.Subject;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.UpgradeRequest;
 import org.eclipse.jetty.websocket.server.JettyServerUpgradeRequest;
 import org.eclipse.jetty.websocket.server.JettyServerUpgradeResponse;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServletFactory;
@@ -89,7 +90,10 @@ public class WebSocketResourceProviderFactoryTest {
     verifyNoMoreInteractions(response);
     verify(authenticator).authenticate(eq(request));
 
-    ((WebSocketResourceProvider<?>) connection).onWebSocketConnect(mock(Session.class));
+    final Session session = mock(Session.class);
+    when(session.getUpgradeRequest()).thenReturn(mock(UpgradeRequest.class));
+
+    ((WebSocketResourceProvider<?>) connection).onWebSocketConnect(session);
 
     assertNotNull(((WebSocketResourceProvider<?>) connection).getContext().getAuthenticated());
     assertEquals(((WebSocketResourceProvider<?>) connection).getContext().getAuthenticated(), account);
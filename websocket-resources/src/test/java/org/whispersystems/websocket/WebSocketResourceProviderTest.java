@@ -38,6 +38,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
 import java.io.OutputStream;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.security.Principal;
 import java.time.Duration;
@@ -52,6 +53,7 @@ import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.UpgradeRequest;
 import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
@@ -167,6 +169,9 @@ class WebSocketResourceProviderTest {
     assertThat(bundledRequest.getRequest().getMethod()).isEqualTo("GET");
     assertThat(bundledRequest.getBaseUri().toString()).isEqualTo("/");
     assertThat(bundledRequest.getPath(false)).isEqualTo("bar");
+    assertThat(bundledRequest.getEntityStream().readAllBytes()).isEqualTo("hello world!".getBytes());
+    assertThat(bundledRequest.getProperty(WebSocketResourceProvider.REQUEST_LENGTH_PROPERTY)).isEqualTo(12);
+    assertThat(bundledRequest.getProperty(WebSocketResourceProvider.RESPONSE_LENGTH_PROPERTY)).isEqualTo(12);
 
     verify(requestLog).log(eq("127.0.0.1"), eq(bundledRequest), eq(response));
     verify(remoteEndpoint).sendBytes(responseCaptor.capture(), any(WriteCallback.class));
@@ -679,8 +684,8 @@ class WebSocketResourceProviderTest {
   }
 
   @Test
-  void testGetCombinedHeaders() {
-    final Map<String, List<String>> upgradeRequestHeaders = Map.of(
+  void testSetHeaders() {
+    final Map<String, List<String>> upgradeRequestHeaders = WebSocketResourceProvider.getUpgradeRequestHeaders(Map.of(
         "Host", List.of("server.example.com"),
         "Upgrade", List.of("websocket"),
         "Connection", List.of("Upgrade"),
@@ -688,19 +693,30 @@ class WebSocketResourceProviderTest {
         "Sec-WebSocket-Protocol", List.of("chat, superchat"),
         "Sec-WebSocket-Version", List.of("13"),
         HttpHeaders.X_FORWARDED_FOR, List.of("127.0.0.1"),
-        HttpHeaders.USER_AGENT, List.of("Upgrade request user agent"));
+        HttpHeaders.USER_AGENT, List.of("Upgrade request user agent")));
 
-    final Map<String, String> requestMessageHeaders = Map.of(
-        HttpHeaders.X_FORWARDED_FOR, "192.168.0.1",
-        HttpHeaders.USER_AGENT, "Request message user agent");
-
-    final Map<String, List<String>> expectedHeaders = Map.of(
+    assertThat(upgradeRequestHeaders).isEqualTo(Map.of(
         "Host", List.of("server.example.com"),
         HttpHeaders.X_FORWARDED_FOR, List.of("127.0.0.1"),
-        HttpHeaders.USER_AGENT, List.of("Request message user agent"));
+        HttpHeaders.USER_AGENT, List.of("Upgrade request user agent")));
+
+    final Map<String, String> requestMessageHeaders = Map.of(
+        HttpHeaders.X_FORWARDED_FOR.toLowerCase(), "192.168.0.1",
+        HttpHeaders.USER_AGENT.toLowerCase(), "Request message user agent");
+
+    final ContainerRequest containerRequest = new ContainerRequest(null, URI.create("/"), "GET", null,
+        new MapPropertiesDelegate(), null);
+
+    WebSocketResourceProvider.setHeaders(containerRequest, upgradeRequestHeaders, requestMessageHeaders);
+
+    assertThat(containerRequest.getRequestHeaders()).hasSize(3);
+    assertThat(containerRequest.getRequestHeader("Host")).isEqualTo(List.of("server.example.com"));
+    assertThat(containerRequest.getRequestHeader(HttpHeaders.X_FORWARDED_FOR)).isEqualTo(List.of("127.0.0.1"));
+    assertThat(containerRequest.getRequestHeader(HttpHeaders.USER_AGENT))
+        .isEqualTo(List.of("Request message user agent"));
 
-    assertThat(WebSocketResourceProvider.getCombinedHeaders(upgradeRequestHeaders, requestMessageHeaders)).isEqualTo(
-        expectedHeaders);
+    // Upgrade request headers are shared by all requests in a session and must not be modified by any one request
+    assertThat(upgradeRequestHeaders.get(HttpHeaders.USER_AGENT)).isEqualTo(List.of("Upgrade request user agent"));
   }
 
   private SubProtocol.WebSocketResponseMessage getResponse(ArgumentCaptor<ByteBuffer> responseCaptor)